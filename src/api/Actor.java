@@ -37,6 +37,26 @@ public interface Actor {
    */
   Location getCurrentLocation();
 
+  /**
+   * Returns the row of the cell currently occupied by the actor's center, the same as
+   * getCurrentLocation().row() but without looking up a Location.
+   *
+   * @return current row
+   */
+  default int getCurrentRow() {
+    return (int) getRowExact();
+  }
+
+  /**
+   * Returns the column of the cell currently occupied by the actor's center, the same as
+   * getCurrentLocation().col() but without looking up a Location.
+   *
+   * @return current column
+   */
+  default int getCurrentCol() {
+    return (int) getColExact();
+  }
+
   /**
    * Returns the actor's current direction.
    *
@@ -78,6 +98,14 @@ public interface Actor {
   /** Resets this actor to its initial location, direction, and mode. */
   void reset();
 
+  /**
+   * Sets the base actor speed, for example when a new level starts or the frame rate changes. The
+   * current speed follows at once, keeping the factor its mode applies to the base speed.
+   *
+   * @param increment base speed, in units of cells per frame
+   */
+  void setBaseIncrement(double increment);
+
   /**
    * Sets the column (x) coordinate of this actor's center within the maze grid, in units of cells.
    *
@@ -113,4 +141,32 @@ public interface Actor {
    * @param desc current game descriptor
    */
   void update(Descriptor desc);
+
+  /**
+   * Returns how many of the next calls to update() would only carry this actor straight along its
+   * row or column, up to the given limit: no decisions, turns, stops at walls or tunnel wraps, and
+   * no use of the descriptor. Those calls can be replaced by one call to moveStraight(). The
+   * default of 0 is right for any actor, just slower to fast-forward.
+   *
+   * @param limit most frames to count
+   * @return number of straight frames, from 0 to limit
+   */
+  default int getStraightFrames(final int limit) {
+    return 0;
+  }
+
+  /**
+   * Moves this actor exactly as the given number of calls to update() would, to the last bit of
+   * its coordinates. The number must not be more than getStraightFrames() returned since the
+   * actor last changed, so the frames use no descriptor. The default makes those calls one by one,
+   * passing a null descriptor, which is always exact; actors that count straight frames override
+   * it to move in one step.
+   *
+   * @param frames number of frames
+   */
+  default void moveStraight(final int frames) {
+    for (int i = 0; i < frames; ++i) {
+      update(null);
+    }
+  }
 }
@@ -0,0 +1,296 @@
+package api;
+
+/**
+ * Index of the straight runs of a maze, for moving along corridors without deciding at every
+ * cell and for line-of-sight queries. For each cell and direction it keeps the cell an actor
+ * steps into, the number of cells it can move through before it reaches a junction or a wall, and
+ * the number before it reaches a wall. Steps follow the same rules as the ghosts: an actor leaves
+ * a cell toward any open neighbor, and one at the edge of the maze continues through the side
+ * tunnel on its row or column.
+ *
+ * <p>It also lists the open cells, so that a cell can be picked uniformly at random with one call
+ * to the generator rather than by drawing cells until one is not a wall.
+ *
+ * <p>A cell is a corridor for a direction if an actor moving that way can go on and has no other
+ * way to turn but back: there it keeps its direction whatever it is chasing or fleeing. The index
+ * is built once from the walls, which never change, and answers every query with an array lookup.
+ */
+public final class CorridorIndex {
+  /** Marks a step that runs into a wall. */
+  public static final int NONE = -1;
+
+  /** Number of directions. */
+  private static final int DIRECTIONS = 4;
+
+  /** Direction ordinals. */
+  private static final int LEFT = Direction.LEFT.ordinal();
+  private static final int RIGHT = Direction.RIGHT.ordinal();
+  private static final int UP = Direction.UP.ordinal();
+  private static final int DOWN = Direction.DOWN.ordinal();
+
+  /** Opposite of each direction, by ordinal. */
+  private static final int[] OPPOSITE = {RIGHT, LEFT, DOWN, UP};
+
+  /** Number of rows in the maze. */
+  private final int numRows;
+
+  /** Number of columns in the maze. */
+  private final int numCols;
+
+  /** Cell entered by a step from each cell in each direction, or NONE; indexed cell * 4 + dir. */
+  private final int[] neighbors;
+
+  /** Whether each cell is a corridor for each direction. */
+  private final boolean[] corridors;
+
+  /** Cells passed through moving from each cell in each direction before deciding or stopping. */
+  private final int[] runLengths;
+
+  /** Open cells in a straight line from each cell in each direction. */
+  private final int[] wallDistances;
+
+  /** Every cell that is not a wall, in row-major order. */
+  private final int[] openCells;
+
+  /**
+   * Constructs the index of the given maze.
+   *
+   * @param maze the maze, whose walls are all in place
+   */
+  public CorridorIndex(final MazeMap maze) {
+    numRows = maze.getNumRows();
+    numCols = maze.getNumColumns();
+    int cellCount = numRows * numCols;
+    neighbors = new int[cellCount * DIRECTIONS];
+    corridors = new boolean[cellCount * DIRECTIONS];
+    runLengths = new int[cellCount * DIRECTIONS];
+    wallDistances = new int[cellCount * DIRECTIONS];
+
+    int openCount = 0;
+    for (int row = 0; row < numRows; ++row) {
+      for (int col = 0; col < numCols; ++col) {
+        openCount += maze.isWall(row, col) ? 0 : 1;
+      }
+    }
+    openCells = new int[openCount];
+    openCount = 0;
+    for (int row = 0; row < numRows; ++row) {
+      for (int col = 0; col < numCols; ++col) {
+        if (!maze.isWall(row, col)) {
+          openCells[openCount++] = row * numCols + col;
+        }
+        for (int dir = 0; dir < DIRECTIONS; ++dir) {
+          neighbors[(row * numCols + col) * DIRECTIONS + dir] =
+              maze.isWall(row, col) ? NONE : findNeighbor(maze, row, col, dir);
+        }
+      }
+    }
+    for (int cell = 0; cell < cellCount; ++cell) {
+      for (int dir = 0; dir < DIRECTIONS; ++dir) {
+        corridors[cell * DIRECTIONS + dir] = isOnlyWayOn(cell, dir);
+      }
+    }
+    for (int cell = 0; cell < cellCount; ++cell) {
+      for (int dir = 0; dir < DIRECTIONS; ++dir) {
+        // a run around a row or column that is open all the way ends where it started
+        int limit = dir == UP || dir == DOWN ? numRows : numCols;
+        int run = 0;
+        int distance = 0;
+        boolean deciding = false;
+        for (int at = cell; distance < limit && neighbors[at * DIRECTIONS + dir] != NONE; ) {
+          at = neighbors[at * DIRECTIONS + dir];
+          distance++;
+          if (!deciding) {
+            run++;
+            deciding = !corridors[at * DIRECTIONS + dir];
+          }
+        }
+        runLengths[cell * DIRECTIONS + dir] = run;
+        wallDistances[cell * DIRECTIONS + dir] = distance;
+      }
+    }
+  }
+
+  /**
+   * Returns the cell a step from a cell leads to, or NONE if it leads into a wall or out of the
+   * maze. A step off the left or right edge wraps to the other edge, as a step by a ghost does.
+   *
+   * @param maze the maze
+   * @param row row of the cell
+   * @param col column of the cell
+   * @param dir direction ordinal
+   * @return the cell entered, or NONE
+   */
+  private static int findNeighbor(
+      final MazeMap maze, final int row, final int col, final int dir) {
+    int numRows = maze.getNumRows();
+    int numCols = maze.getNumColumns();
+    int toRow = row;
+    int toCol = col;
+    if (dir == UP) {
+      toRow = row - 1;
+    } else if (dir == DOWN) {
+      toRow = row + 1;
+    } else if (dir == LEFT) {
+      toCol = col == 0 ? numCols - 1 : col - 1;
+    } else {
+      toCol = col == numCols - 1 ? 0 : col + 1;
+    }
+    if (toRow < 0 || toRow >= numRows || maze.isWall(toRow, toCol)) {
+      return NONE;
+    }
+    return toRow * numCols + toCol;
+  }
+
+  /**
+   * Returns true if a step from a cell in a direction is open and no other step but the one back
+   * is.
+   *
+   * @param cell the cell
+   * @param dir direction ordinal
+   * @return true if the cell is a corridor for the direction
+   */
+  private boolean isOnlyWayOn(final int cell, final int dir) {
+    if (neighbors[cell * DIRECTIONS + dir] == NONE) {
+      return false;
+    }
+    for (int other = 0; other < DIRECTIONS; ++other) {
+      if (other != dir
+          && other != OPPOSITE[dir]
+          && neighbors[cell * DIRECTIONS + other] != NONE) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of rows of the maze.
+   *
+   * @return number of rows
+   */
+  public int getNumRows() {
+    return numRows;
+  }
+
+  /**
+   * Returns the number of columns of the maze.
+   *
+   * @return number of columns
+   */
+  public int getNumColumns() {
+    return numCols;
+  }
+
+  /**
+   * Returns the cell a step from the given cell in the given direction leads to, numbered
+   * row * getNumColumns() + col, or NONE if the step runs into a wall. Every step out of a wall is
+   * NONE.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @param dir the direction
+   * @return the cell entered, or NONE
+   */
+  public int getNeighbor(final int row, final int col, final Direction dir) {
+    return neighbors[(row * numCols + col) * DIRECTIONS + dir.ordinal()];
+  }
+
+  /**
+   * Returns true if a step from the given cell in the given direction is open.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @param dir the direction
+   * @return true if the step does not run into a wall
+   */
+  public boolean isOpen(final int row, final int col, final Direction dir) {
+    return getNeighbor(row, col, dir) != NONE;
+  }
+
+  /**
+   * Returns true if an actor moving in the given direction through the given cell can go on, and
+   * cannot turn except back.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @param dir the direction
+   * @return true if the cell is a corridor for the direction
+   */
+  public boolean isCorridor(final int row, final int col, final Direction dir) {
+    return corridors[(row * numCols + col) * DIRECTIONS + dir.ordinal()];
+  }
+
+  /**
+   * Returns the number of cells an actor moving from the given cell in the given direction passes
+   * into before it must decide, counting the first cell that is not a corridor for the direction,
+   * or before it runs into a wall. It is 0 if the first step runs into a wall, and at most the
+   * maze's length along the direction.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @param dir the direction
+   * @return run length in cells
+   */
+  public int getRunLength(final int row, final int col, final Direction dir) {
+    return runLengths[(row * numCols + col) * DIRECTIONS + dir.ordinal()];
+  }
+
+  /**
+   * Returns the number of open cells in a straight line from the given cell in the given
+   * direction, through the side tunnels, before a wall. It is at most the maze's length along the
+   * direction, which it is for a row or column open all the way.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @param dir the direction
+   * @return distance to the wall in cells
+   */
+  public int getDistanceToWall(final int row, final int col, final Direction dir) {
+    return wallDistances[(row * numCols + col) * DIRECTIONS + dir.ordinal()];
+  }
+
+  /**
+   * Returns the number of cells of the maze that are not walls.
+   *
+   * @return number of open cells
+   */
+  public int getOpenCellCount() {
+    return openCells.length;
+  }
+
+  /**
+   * Returns one of the cells that are not walls, numbered row * getNumColumns() + col. They are
+   * listed in row-major order, so getOpenCell(random.nextInt(getOpenCellCount())) picks one
+   * uniformly.
+   *
+   * @param index index of the cell, from 0 to getOpenCellCount() - 1
+   * @return the cell
+   */
+  public int getOpenCell(final int index) {
+    return openCells[index];
+  }
+
+  /**
+   * Returns true if two open cells are in the same row or column with no wall between them,
+   * looking straight across the maze rather than through the tunnels. Every open cell can see
+   * itself.
+   *
+   * @param fromRow row of the first cell
+   * @param fromCol column of the first cell
+   * @param toRow row of the second cell
+   * @param toCol column of the second cell
+   * @return true if either cell can be seen from the other
+   */
+  public boolean canSee(final int fromRow, final int fromCol, final int toRow, final int toCol) {
+    if (fromRow == toRow) {
+      Direction dir = toCol < fromCol ? Direction.LEFT : Direction.RIGHT;
+      return Math.abs(toCol - fromCol) <= getDistanceToWall(fromRow, fromCol, dir);
+    }
+    if (fromCol == toCol) {
+      Direction dir = toRow < fromRow ? Direction.UP : Direction.DOWN;
+      return Math.abs(toRow - fromRow) <= getDistanceToWall(fromRow, fromCol, dir);
+    }
+    return false;
+  }
+}
@@ -2,16 +2,18 @@ package api;
 
 /**
  * Data container for aspects of the Pacman game state that are relevant for enemy move calculation.
+ * Actors only read a descriptor; the game refreshes a single instance in place every frame rather
+ * than creating a new one, so actors should not hold on to it between updates.
  */
 public class Descriptor {
   /** Current player location. */
-  private final Location playerLocation;
+  private Location playerLocation;
 
   /** Current player direction. */
-  private final Direction playerDirection;
+  private Direction playerDirection;
 
   /** Current location of the 0th enemy ("Blinky"). */
-  private final Location blinkyLocation;
+  private Location blinkyLocation;
 
   /**
    * Constructs a descriptor with the given parameters.
@@ -29,6 +31,22 @@ public class Descriptor {
     this.blinkyLocation = blinkyLocation;
   }
 
+  /**
+   * Replaces the contents of this descriptor with the given parameters.
+   *
+   * @param newPlayerLocation the location of the player
+   * @param newPlayerDirection the direction the player is facing
+   * @param newBlinkyLocation the location of the 0th enemy
+   */
+  void set(
+      final Location newPlayerLocation,
+      final Direction newPlayerDirection,
+      final Location newBlinkyLocation) {
+    this.playerLocation = newPlayerLocation;
+    this.playerDirection = newPlayerDirection;
+    this.blinkyLocation = newBlinkyLocation;
+  }
+
   /**
    * Returns the player location.
    *
@@ -0,0 +1,79 @@
+package api;
+
+/**
+ * Fixed-point coordinates for movement in integer sub-cell units. A coordinate holds a position
+ * along one axis of the maze in units of 1/ONE cell, so the cell is the integer part, coordinate
+ * >> SHIFT, and the center of a cell is exactly cell * ONE + HALF. Integer coordinates move by
+ * whole units, compare exactly and give the same results on every platform, unlike the double
+ * coordinates of Actor, which need a margin of error around cell centers.
+ */
+public final class FixedPoint {
+  /** Number of bits of a coordinate below the cell. */
+  public static final int SHIFT = 8;
+
+  /** Units per cell. */
+  public static final int ONE = 1 << SHIFT;
+
+  /** Offset from the start of a cell to its center. */
+  public static final int HALF = ONE / 2;
+
+  /** Mask for the offset of a coordinate within its cell. */
+  public static final int MASK = ONE - 1;
+
+  /** Private constructor to prevent instantiation. */
+  private FixedPoint() {
+    // Utility class
+  }
+
+  /**
+   * Returns the coordinate of the center of a cell.
+   *
+   * @param cell row or column of the cell
+   * @return coordinate of its center
+   */
+  public static int center(final int cell) {
+    return (cell << SHIFT) + HALF;
+  }
+
+  /**
+   * Returns the cell of a coordinate.
+   *
+   * @param coordinate the coordinate, not negative
+   * @return row or column of the cell holding it
+   */
+  public static int cell(final int coordinate) {
+    return coordinate >> SHIFT;
+  }
+
+  /**
+   * Returns true if a coordinate is exactly at the center of its cell.
+   *
+   * @param coordinate the coordinate
+   * @return true if it is a cell center
+   */
+  public static boolean isCenter(final int coordinate) {
+    return (coordinate & MASK) == HALF;
+  }
+
+  /**
+   * Converts a coordinate to the cell units of Actor.getRowExact() and getColExact(). The result
+   * is exact, since a double holds any int divided by a power of two.
+   *
+   * @param coordinate the coordinate
+   * @return the same position in cells
+   */
+  public static double toExact(final int coordinate) {
+    return (double) coordinate / ONE;
+  }
+
+  /**
+   * Converts a speed in cells per frame, as given by Actor.getBaseIncrement(), to whole units per
+   * frame, rounding to the nearest unit.
+   *
+   * @param increment speed in cells per frame
+   * @return speed in units per frame
+   */
+  public static int fromIncrement(final double increment) {
+    return (int) Math.round(increment * ONE);
+  }
+}
@@ -0,0 +1,1275 @@
+package api;
+
+import static api.PacmanGame.BASE_GHOST_POINTS;
+import static api.PacmanGame.DOT_POINTS;
+import static api.PacmanGame.ENERGIZER_POINTS;
+import static api.PacmanGame.FIRST_ENEMY_INDEX;
+import static api.PacmanGame.GHOST_POINTS_MULTIPLIER;
+import static api.PacmanGame.GLOBAL_MODES;
+import static api.PacmanGame.INACTIVE_TIME;
+import static api.PacmanGame.INITIAL_LIVES;
+import static api.PacmanGame.MIN_INACTIVE_TIMER;
+import static com.pacman.ghost.ActorImpl.DEAD_SPEED_FACTOR;
+import static com.pacman.ghost.ActorImpl.DISTANCE_TOLERANCE;
+import static com.pacman.ghost.ActorImpl.FRIGHTENED_CONTINUE_PROBABILITY;
+import static com.pacman.ghost.ActorImpl.FRIGHTENED_SPEED_FACTOR;
+
+import com.pacman.ghost.ActorImpl;
+import com.pacman.ghost.Clyde;
+import com.pacman.ghost.Inky;
+import com.pacman.ghost.Pinky;
+import java.util.stream.IntStream;
+
+/**
+ * Many independent games on the same maze, stepped in lockstep. Instead of one PacmanGame object
+ * graph per game, the state of all games lives in primitive arrays indexed by game (and by game
+ * and enemy for the ghosts), so stepping thousands of games walks a few dense arrays rather than
+ * thousands of scattered objects. Chunks of games are stepped in parallel.
+ *
+ * <p>Each game follows exactly the rules of PacmanGame.updateAll(), including the ghosts' movement
+ * and decisions and their shared random number generator: a game in the batch created with a
+ * given seed, and given the same actions and the same calls to nextLevel(), evolves identically to
+ * a PacmanGame created with the same rows, frame rate and seed, whose player death delay is zero.
+ * The batch takes the rule constants, the level tables and the enemies' kinds from PacmanGame and
+ * the ghost classes, and repeats only the movement and targeting code in array form, which
+ * GameBatchTest checks against PacmanGame over several levels. Directions and modes are stored as
+ * their ordinals.
+ *
+ * <p>Every game has one player, so a layout with more than one player start is refused, and the
+ * frame rate is fixed for the life of the batch.
+ */
+public final class GameBatch {
+  /** Action meaning the player is not turned in this frame. */
+  public static final int NO_ACTION = -1;
+
+  /** Number of games stepped together by one task. */
+  private static final int CHUNK_SIZE = 64;
+
+  /** Margin of error for comparing exact coordinates to the center of a cell. */
+  private static final double ERR = 0.001;
+
+  /** Offset from a cell's index to its center. */
+  private static final double HALF_CELL = 0.5;
+
+  /** Lowest row coordinate a ghost moving down may reach, measured from the bottom. */
+  private static final double BOTTOM_LIMIT = 1.5;
+
+  /** Ghost kinds, which differ only in their chase targets. */
+  private static final int BLINKY = 0;
+  private static final int PINKY = 1;
+  private static final int INKY = 2;
+  private static final int CLYDE = 3;
+
+  /** Direction ordinals. */
+  private static final int LEFT = Direction.LEFT.ordinal();
+  private static final int RIGHT = Direction.RIGHT.ordinal();
+  private static final int UP = Direction.UP.ordinal();
+  private static final int DOWN = Direction.DOWN.ordinal();
+
+  /** Order in which ghosts try directions, as in ActorImpl. */
+  private static final int[] DIRECTION_ORDER = {UP, DOWN, LEFT, RIGHT};
+
+  /** Mode ordinals. */
+  private static final int INACTIVE = Mode.INACTIVE.ordinal();
+  private static final int DEAD = Mode.DEAD.ordinal();
+  private static final int FRIGHTENED = Mode.FRIGHTENED.ordinal();
+  private static final int SCATTER = Mode.SCATTER.ordinal();
+  private static final int CHASE = Mode.CHASE.ordinal();
+
+  // ---- shared, read-only maze data ----
+
+  /** Number of games. */
+  private final int gameCount;
+
+  /** Number of enemies in each game. */
+  private final int enemyCount;
+
+  /** Number of rows in the maze. */
+  private final int numRows;
+
+  /** Number of columns in the maze. */
+  private final int numCols;
+
+  /** Frames per second. */
+  private final int frameRate;
+
+  /** Wall flag per cell, indexed by row * numCols + col. */
+  private final boolean[] walls;
+
+  /** Energizer flag per cell. */
+  private final boolean[] energizers;
+
+  /** Pellet bitset of a new game: one bit per cell holding a dot or energizer. */
+  private final long[] initialPellets;
+
+  /** Number of longs in each game's pellet bitset. */
+  private final int pelletWords;
+
+  /** Number of dots in the maze, which is what the player must eat to finish the level. */
+  private final int totalPellets;
+
+  /** Player's home cell and direction. */
+  private final int playerHomeRow;
+  private final int playerHomeCol;
+  private final int playerHomeDir;
+
+  /** Per-enemy kind, home cell and direction, and scatter target. */
+  private final int[] enemyKind;
+  private final int[] enemyHomeRow;
+  private final int[] enemyHomeCol;
+  private final int[] enemyHomeDir;
+  private final int[] enemyScatterRow;
+  private final int[] enemyScatterCol;
+
+  // ---- per-game state, indexed by game ----
+
+  private final long[] rngSeed;
+  private final int[] level;
+  private final int[] score;
+  private final int[] lives;
+  private final int[] pelletCount;
+  private final int[] frameCount;
+  private final int[] globalModeIndex;
+  private final int[] modeCountdown;
+  private final int[] frightenedCountdown;
+  private final int[] currentGhostPoints;
+  private final long[] pellets;
+
+  /** Base speeds of the player and of the enemies, for the game's level. */
+  private final double[] playerIncrement;
+  private final double[] enemyBaseIncrement;
+
+  /** Player state, as in Pacman. */
+  private final double[] playerRow;
+  private final double[] playerCol;
+  private final int[] playerDir;
+  private final boolean[] playerTurning;
+  private final int[] playerPreviousDir;
+  private final double[] playerTurnTarget;
+
+  /** Descriptor values for the current frame, as made by PacmanGame.makeDescriptor(). */
+  private final int[] descPlayerRow;
+  private final int[] descPlayerCol;
+  private final int[] descPlayerDir;
+  private final int[] descBlinkyRow;
+  private final int[] descBlinkyCol;
+
+  // ---- per-enemy state, indexed by game * enemyCount + enemy ----
+
+  private final double[] enemyRow;
+  private final double[] enemyCol;
+  private final int[] enemyCellRow;
+  private final int[] enemyCellCol;
+  private final int[] enemyDir;
+  private final int[] enemyNextDir;
+  private final int[] enemyMode;
+  private final double[] enemyIncrement;
+  private final boolean[] enemyPastCenter;
+  private final int[] inactiveTimer;
+
+  /**
+   * Paths over the current frame, as PacmanGame keeps them for its collisions: each enemy's at
+   * its index, then each game's player's at gameCount * enemyCount + game.
+   */
+  private final SweptCollision paths;
+
+  /**
+   * Constructs a batch of games on the maze given by rows, one game per seed. Game i starts in the
+   * same state as new PacmanGame(rows, frameRate, seeds[i]).
+   *
+   * @param rows array of strings, one per row of the maze, as for PacmanGame
+   * @param frameRate the frames per second rate for every game
+   * @param seeds seed for the enemies' random number generator in each game
+   * @throws IllegalArgumentException if there are no seeds, or the maze has more than one player
+   *     start
+   */
+  public GameBatch(final String[] rows, final int frameRate, final long[] seeds) {
+    if (seeds.length == 0) {
+      throw new IllegalArgumentException("A batch needs at least one game");
+    }
+    // parse the maze the way PacmanGame does, and read the actors' fixed properties back
+    PacmanGame template = new PacmanGame(rows, frameRate, 0);
+    if (template.getTemplate().getPlayerStartCount() > 1) {
+      throw new IllegalArgumentException(
+          "A batch plays one player per game, but the maze has "
+              + template.getTemplate().getPlayerStartCount()
+              + " player starts");
+    }
+    this.gameCount = seeds.length;
+    this.frameRate = frameRate;
+    this.numRows = template.getNumRows();
+    this.numCols = template.getNumColumns();
+    this.enemyCount = template.getEnemyCount();
+
+    int cellCount = numRows * numCols;
+    walls = new boolean[cellCount];
+    energizers = new boolean[cellCount];
+    pelletWords = (cellCount + Long.SIZE - 1) / Long.SIZE;
+    initialPellets = new long[pelletWords];
+    int dots = 0;
+    for (int row = 0; row < numRows; ++row) {
+      for (int col = 0; col < numCols; ++col) {
+        int cell = row * numCols + col;
+        MazeCell c = template.getCell(row, col);
+        walls[cell] = c.isWall();
+        energizers[cell] = c.getType() == CellType.ENERGIZER;
+        if (c.canEat()) {
+          initialPellets[cell >>> 6] |= 1L << cell;
+        }
+        if (c.getType() == CellType.DOT) {
+          dots += 1;
+        }
+      }
+    }
+    totalPellets = dots;
+
+    Actor player = template.getPlayer();
+    playerHomeRow = player.getHomeLocation().row();
+    playerHomeCol = player.getHomeLocation().col();
+    playerHomeDir = player.getHomeDirection().ordinal();
+
+    enemyKind = new int[enemyCount];
+    enemyHomeRow = new int[enemyCount];
+    enemyHomeCol = new int[enemyCount];
+    enemyHomeDir = new int[enemyCount];
+    enemyScatterRow = new int[enemyCount];
+    enemyScatterCol = new int[enemyCount];
+    for (int e = 0; e < enemyCount; ++e) {
+      ActorImpl a = (ActorImpl) template.getEnemy(e);
+      char symbol = template.getEnemySymbol(e);
+      if (symbol == MazeTemplate.BLINKY_CHAR) {
+        enemyKind[e] = BLINKY;
+      } else if (symbol == MazeTemplate.PINKY_CHAR) {
+        enemyKind[e] = PINKY;
+      } else if (symbol == MazeTemplate.INKY_CHAR) {
+        enemyKind[e] = INKY;
+      } else {
+        enemyKind[e] = CLYDE;
+      }
+      enemyHomeRow[e] = a.getHomeLocation().row();
+      enemyHomeCol[e] = a.getHomeLocation().col();
+      // the home direction is where a reset ghost faces, not what getHomeDirection() computes
+      enemyHomeDir[e] = a.getCurrentDirection().ordinal();
+      enemyScatterRow[e] = a.getScatterTarget().row();
+      enemyScatterCol[e] = a.getScatterTarget().col();
+    }
+
+    rngSeed = new long[gameCount];
+    level = new int[gameCount];
+    score = new int[gameCount];
+    lives = new int[gameCount];
+    pelletCount = new int[gameCount];
+    frameCount = new int[gameCount];
+    globalModeIndex = new int[gameCount];
+    modeCountdown = new int[gameCount];
+    frightenedCountdown = new int[gameCount];
+    currentGhostPoints = new int[gameCount];
+    pellets = new long[gameCount * pelletWords];
+    playerIncrement = new double[gameCount];
+    enemyBaseIncrement = new double[gameCount];
+    playerRow = new double[gameCount];
+    playerCol = new double[gameCount];
+    playerDir = new int[gameCount];
+    playerTurning = new boolean[gameCount];
+    playerPreviousDir = new int[gameCount];
+    playerTurnTarget = new double[gameCount];
+    descPlayerRow = new int[gameCount];
+    descPlayerCol = new int[gameCount];
+    descPlayerDir = new int[gameCount];
+    descBlinkyRow = new int[gameCount];
+    descBlinkyCol = new int[gameCount];
+
+    int actorCount = gameCount * enemyCount;
+    enemyRow = new double[actorCount];
+    enemyCol = new double[actorCount];
+    enemyCellRow = new int[actorCount];
+    enemyCellCol = new int[actorCount];
+    enemyDir = new int[actorCount];
+    enemyNextDir = new int[actorCount];
+    enemyMode = new int[actorCount];
+    enemyIncrement = new double[actorCount];
+    enemyPastCenter = new boolean[actorCount];
+    inactiveTimer = new int[actorCount];
+    paths = new SweptCollision(actorCount + gameCount, numCols);
+
+    for (int g = 0; g < gameCount; ++g) {
+      reset(g, seeds[g]);
+    }
+  }
+
+  /**
+   * Restarts the given game from the beginning, as a new PacmanGame with the given seed.
+   *
+   * @param game index of the game
+   * @param seed seed for the game's random number generator
+   */
+  public void reset(final int game, final long seed) {
+    rngSeed[game] = PackedRandom.scramble(seed);
+    score[game] = 0;
+    lives[game] = INITIAL_LIVES;
+    frameCount[game] = 0;
+    startLevel(game, 1);
+  }
+
+  /**
+   * Starts the next level of the given game in place, as PacmanGame.nextLevel() does: the pellets
+   * are restored, the level's speeds and timers are applied, and the actors are reset, keeping the
+   * score, lives and frame count.
+   *
+   * @param game index of the game
+   * @throws IllegalStateException if the game has no lives left
+   */
+  public void nextLevel(final int game) {
+    if (lives[game] == 0) {
+      throw new IllegalStateException("No lives left to start level " + (level[game] + 1));
+    }
+    startLevel(game, level[game] + 1);
+  }
+
+  /**
+   * Puts a game at the start of the given level, keeping its score, lives and frame count.
+   *
+   * @param g index of the game
+   * @param newLevel the level, at least 1
+   */
+  private void startLevel(final int g, final int newLevel) {
+    level[g] = newLevel;
+    playerIncrement[g] = PacmanGame.getPlayerIncrement(newLevel, frameRate);
+    enemyBaseIncrement[g] = PacmanGame.getEnemyIncrement(newLevel, frameRate);
+    System.arraycopy(initialPellets, 0, pellets, g * pelletWords, pelletWords);
+    pelletCount[g] = 0;
+    frightenedCountdown[g] = 0;
+    resetActors(g);
+  }
+
+  /**
+   * Advances every game by one frame. Each game first turns its player according to its action,
+   * as PacmanGame.turnPlayer() does, and then runs the equivalent of PacmanGame.updateAll(). Games
+   * whose level is over are left as they are.
+   *
+   * @param actions one action per game: a Direction ordinal, or NO_ACTION
+   * @throws IllegalArgumentException if there is not exactly one action per game
+   */
+  public void step(final int[] actions) {
+    if (actions.length != gameCount) {
+      throw new IllegalArgumentException(
+          "Expected " + gameCount + " actions, got " + actions.length);
+    }
+    int chunks = (gameCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    if (chunks == 1) {
+      stepChunk(0, actions);
+    } else {
+      IntStream.range(0, chunks).parallel().forEach(chunk -> stepChunk(chunk, actions));
+    }
+  }
+
+  /**
+   * Returns the number of games in this batch.
+   *
+   * @return number of games
+   */
+  public int getGameCount() {
+    return gameCount;
+  }
+
+  /**
+   * Returns the number of enemies in each game.
+   *
+   * @return number of enemies
+   */
+  public int getEnemyCount() {
+    return enemyCount;
+  }
+
+  /**
+   * Returns the number of rows in the maze.
+   *
+   * @return number of rows
+   */
+  public int getNumRows() {
+    return numRows;
+  }
+
+  /**
+   * Returns the number of columns in the maze.
+   *
+   * @return number of columns
+   */
+  public int getNumColumns() {
+    return numCols;
+  }
+
+  /**
+   * Returns the number of frames per second assumed by every game.
+   *
+   * @return frame rate
+   */
+  public int getFrameRate() {
+    return frameRate;
+  }
+
+  /**
+   * Returns true if the given game's level is over.
+   *
+   * @param game index of the game
+   * @return true if the level is over
+   */
+  public boolean levelOver(final int game) {
+    return lives[game] == 0 || pelletCount[game] == totalPellets;
+  }
+
+  /**
+   * Returns the given game's current level.
+   *
+   * @param game index of the game
+   * @return current level, starting at 1
+   */
+  public int getLevel(final int game) {
+    return level[game];
+  }
+
+  /**
+   * Returns the given game's score.
+   *
+   * @param game index of the game
+   * @return current score
+   */
+  public int getScore(final int game) {
+    return score[game];
+  }
+
+  /**
+   * Returns the given game's remaining lives.
+   *
+   * @param game index of the game
+   * @return number of lives remaining
+   */
+  public int getLives(final int game) {
+    return lives[game];
+  }
+
+  /**
+   * Returns the number of frames the given game has simulated.
+   *
+   * @param game index of the game
+   * @return number of simulated frames
+   */
+  public int getFrameCount(final int game) {
+    return frameCount[game];
+  }
+
+  /**
+   * Returns the given game's global mode.
+   *
+   * @param game index of the game
+   * @return current global mode
+   */
+  public Mode getGlobalMode(final int game) {
+    return GLOBAL_MODES[globalModeIndex[game]];
+  }
+
+  /**
+   * Returns the given game's frightened countdown.
+   *
+   * @param game index of the game
+   * @return current value of frightened countdown
+   */
+  public int getFrightenedCount(final int game) {
+    return frightenedCountdown[game];
+  }
+
+  /**
+   * Returns true if the given cell of the given game still holds a dot or energizer.
+   *
+   * @param game index of the game
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return true if there is something to eat in the cell
+   */
+  public boolean canEat(final int game, final int row, final int col) {
+    return hasPellet(game, row * numCols + col);
+  }
+
+  /**
+   * Returns the exact row of the given game's player.
+   *
+   * @param game index of the game
+   * @return exact row
+   */
+  public double getPlayerRowExact(final int game) {
+    return playerRow[game];
+  }
+
+  /**
+   * Returns the exact column of the given game's player.
+   *
+   * @param game index of the game
+   * @return exact column
+   */
+  public double getPlayerColExact(final int game) {
+    return playerCol[game];
+  }
+
+  /**
+   * Returns the direction of the given game's player.
+   *
+   * @param game index of the game
+   * @return current direction
+   */
+  public Direction getPlayerDirection(final int game) {
+    return Direction.values()[playerDir[game]];
+  }
+
+  /**
+   * Returns the exact row of an enemy.
+   *
+   * @param game index of the game
+   * @param enemy index of the enemy, in the order of PacmanGame.getEnemy()
+   * @return exact row
+   */
+  public double getEnemyRowExact(final int game, final int enemy) {
+    return enemyRow[game * enemyCount + enemy];
+  }
+
+  /**
+   * Returns the exact column of an enemy.
+   *
+   * @param game index of the game
+   * @param enemy index of the enemy
+   * @return exact column
+   */
+  public double getEnemyColExact(final int game, final int enemy) {
+    return enemyCol[game * enemyCount + enemy];
+  }
+
+  /**
+   * Returns the direction of an enemy.
+   *
+   * @param game index of the game
+   * @param enemy index of the enemy
+   * @return current direction
+   */
+  public Direction getEnemyDirection(final int game, final int enemy) {
+    return Direction.values()[enemyDir[game * enemyCount + enemy]];
+  }
+
+  /**
+   * Returns the mode of an enemy.
+   *
+   * @param game index of the game
+   * @param enemy index of the enemy
+   * @return current mode
+   */
+  public Mode getEnemyMode(final int game, final int enemy) {
+    return Mode.values()[enemyMode[game * enemyCount + enemy]];
+  }
+
+  /**
+   * Steps the games in one chunk.
+   *
+   * @param chunk index of the chunk
+   * @param actions one action per game
+   */
+  private void stepChunk(final int chunk, final int[] actions) {
+    int end = Math.min(gameCount, (chunk + 1) * CHUNK_SIZE);
+    for (int g = chunk * CHUNK_SIZE; g < end; ++g) {
+      if (levelOver(g)) {
+        continue;
+      }
+      // the player is only ever left dead when the level is over, so this is turnPlayer()'s guard
+      if (actions[g] != NO_ACTION) {
+        tryTurn(g, actions[g]);
+      }
+      updateGame(g);
+    }
+  }
+
+  /**
+   * The equivalent of PacmanGame.updateAll() for one game whose level is not over.
+   *
+   * @param g index of the game
+   */
+  private void updateGame(final int g) {
+    frameCount[g] += 1;
+    int base = g * enemyCount;
+
+    // makeDescriptor()
+    descPlayerRow[g] = (int) playerRow[g];
+    descPlayerCol[g] = (int) playerCol[g];
+    descPlayerDir[g] = playerDir[g];
+    if (enemyCount > 0) {
+      descBlinkyRow[g] = enemyCellRow[base];
+      descBlinkyCol[g] = enemyCellCol[base];
+    }
+
+    // updateInactiveTimers()
+    for (int i = base; i < base + enemyCount; ++i) {
+      if (inactiveTimer[i] > 0) {
+        inactiveTimer[i] -= 1;
+        if (inactiveTimer[i] <= 0) {
+          setMode(g, i, GLOBAL_MODES[globalModeIndex[g]].ordinal());
+        }
+      }
+    }
+
+    if (frightenedCountdown[g] > 0) {
+      frightenedCountdown[g] -= 1;
+      if (frightenedCountdown[g] == 0) {
+        for (int i = base; i < base + enemyCount; ++i) {
+          if (enemyMode[i] == FRIGHTENED) {
+            setMode(g, i, GLOBAL_MODES[globalModeIndex[g]].ordinal());
+          }
+        }
+      }
+    } else if (globalModeIndex[g] < GLOBAL_MODES.length - 1) {
+      modeCountdown[g] -= 1;
+      if (modeCountdown[g] <= 0) {
+        globalModeIndex[g] += 1;
+        for (int i = base; i < base + enemyCount; ++i) {
+          if (enemyMode[i] == SCATTER || enemyMode[i] == CHASE) {
+            setMode(g, i, GLOBAL_MODES[globalModeIndex[g]].ordinal());
+          }
+        }
+        if (globalModeIndex[g] < GLOBAL_MODES.length - 1) {
+          modeCountdown[g] = PacmanGame.getModeFrames(level[g], globalModeIndex[g], frameRate);
+        }
+      }
+    }
+
+    int playerPath = gameCount * enemyCount + g;
+    paths.setStart(playerPath, playerRow[g], playerCol[g]);
+    updatePlayer(g);
+    paths.setEnd(playerPath, playerRow[g], playerCol[g]);
+    for (int i = base; i < base + enemyCount; ++i) {
+      paths.setStart(i, enemyRow[i], enemyCol[i]);
+      updateEnemy(g, i);
+      paths.setEnd(i, enemyRow[i], enemyCol[i]);
+    }
+
+    // handlePelletCollection()
+    int cell = (int) playerRow[g] * numCols + (int) playerCol[g];
+    if (hasPellet(g, cell)) {
+      pellets[g * pelletWords + (cell >>> 6)] &= ~(1L << cell);
+      if (!energizers[cell]) {
+        pelletCount[g] += 1;
+        score[g] += DOT_POINTS;
+      } else {
+        frightenedCountdown[g] = PacmanGame.getFrightenedTime(level[g]) * frameRate;
+        score[g] += ENERGIZER_POINTS;
+        for (int i = base; i < base + enemyCount; ++i) {
+          if (enemyMode[i] != INACTIVE) {
+            setMode(g, i, FRIGHTENED);
+          }
+        }
+        currentGhostPoints[g] = BASE_GHOST_POINTS;
+      }
+    }
+
+    // checkCollisions(), which only looks at the enemies near the player for the same result
+    boolean sentHome = false;
+    for (int i = base; i < base + enemyCount; ++i) {
+      if (enemyCellRow[i] == (int) playerRow[g] && enemyCellCol[i] == (int) playerCol[g]
+          || !sentHome && paths.meet(playerPath, i)) {
+        if (enemyMode[i] == FRIGHTENED) {
+          setMode(g, i, DEAD);
+          score[g] += currentGhostPoints[g];
+          currentGhostPoints[g] *= GHOST_POINTS_MULTIPLIER;
+        } else if (enemyMode[i] != DEAD) {
+          lives[g] -= 1;
+          if (lives[g] == 0) {
+            break;
+          }
+          if (!levelOver(g)) {
+            resetActors(g);
+          }
+          sentHome = true;
+        }
+      }
+    }
+
+    // handleDeadGhosts()
+    for (int i = base; i < base + enemyCount; ++i) {
+      int e = i - base;
+      if (enemyMode[i] == DEAD
+          && enemyCellRow[i] == enemyHomeRow[e]
+          && enemyCellCol[i] == enemyHomeCol[e]) {
+        setMode(g, i, INACTIVE);
+        resetEnemy(g, i, e);
+        inactiveTimer[i] = INACTIVE_TIME * frameRate;
+      }
+    }
+  }
+
+  /**
+   * The equivalent of PacmanGame.resetAll() for one game.
+   *
+   * @param g index of the game
+   */
+  private void resetActors(final int g) {
+    currentGhostPoints[g] = BASE_GHOST_POINTS;
+    playerRow[g] = playerHomeRow + HALF_CELL;
+    playerCol[g] = playerHomeCol + HALF_CELL;
+    playerDir[g] = playerHomeDir;
+    playerTurning[g] = false;
+    int base = g * enemyCount;
+    for (int e = 0; e < enemyCount; ++e) {
+      resetEnemy(g, base + e, e);
+    }
+    globalModeIndex[g] = 0;
+    modeCountdown[g] = PacmanGame.getModeFrames(level[g], 0, frameRate);
+    for (int e = 0; e < enemyCount; ++e) {
+      if (e == FIRST_ENEMY_INDEX) {
+        inactiveTimer[base + e] = MIN_INACTIVE_TIMER;
+      } else {
+        inactiveTimer[base + e] = e * INACTIVE_TIME * frameRate;
+      }
+    }
+  }
+
+  /**
+   * The equivalent of ActorImpl.reset().
+   *
+   * @param g index of the game
+   * @param i index of the enemy's state
+   * @param e index of the enemy within its game
+   */
+  private void resetEnemy(final int g, final int i, final int e) {
+    enemyMode[i] = INACTIVE;
+    enemyIncrement[i] = enemyBaseIncrement[g];
+    enemyDir[i] = enemyHomeDir[e];
+    enemyNextDir[i] = enemyHomeDir[e];
+    enemyRow[i] = enemyHomeRow[e] + HALF_CELL;
+    enemyCol[i] = enemyHomeCol[e] + HALF_CELL;
+    enemyCellRow[i] = enemyHomeRow[e];
+    enemyCellCol[i] = enemyHomeCol[e];
+    enemyPastCenter[i] = false;
+  }
+
+  /**
+   * The equivalent of ActorImpl.setMode() with a non-null descriptor.
+   *
+   * @param g index of the game
+   * @param i index of the enemy's state
+   * @param mode ordinal of the new mode
+   */
+  private void setMode(final int g, final int i, final int mode) {
+    int e = i - g * enemyCount;
+    int previous = enemyMode[i];
+    if (mode == FRIGHTENED) {
+      enemyIncrement[i] = enemyBaseIncrement[g] * FRIGHTENED_SPEED_FACTOR;
+    } else if (mode == DEAD) {
+      enemyIncrement[i] = enemyBaseIncrement[g] * DEAD_SPEED_FACTOR;
+    } else {
+      enemyIncrement[i] = enemyBaseIncrement[g];
+    }
+    enemyMode[i] = mode;
+    if (previous == INACTIVE || previous != mode) {
+      if (previous == INACTIVE
+          && enemyCellRow[i] == enemyHomeRow[e]
+          && enemyCellCol[i] == enemyHomeCol[e]) {
+        enemyDir[i] = UP;
+      }
+      enemyPastCenter[i] = false;
+      calculateNextCell(g, i);
+    }
+  }
+
+  /**
+   * The equivalent of ActorImpl.update().
+   *
+   * @param g index of the game
+   * @param i index of the enemy's state
+   */
+  private void updateEnemy(final int g, final int i) {
+    if (enemyMode[i] == INACTIVE) {
+      return;
+    }
+    double increment = enemyIncrement[i];
+    double rowExact = enemyRow[i];
+    double colExact = enemyCol[i];
+    double rowCenter = (int) Math.floor(rowExact) + HALF_CELL;
+    double colCenter = (int) Math.floor(colExact) + HALF_CELL;
+    boolean atCellCenter =
+        Math.abs(rowExact - rowCenter) < ERR && Math.abs(colExact - colCenter) < ERR;
+
+    if (atCellCenter && !enemyPastCenter[i]) {
+      calculateNextCell(g, i);
+      enemyDir[i] = enemyNextDir[i];
+      enemyPastCenter[i] = true;
+    }
+
+    int next = neighbor(enemyCellRow[i], enemyCellCol[i], enemyDir[i]);
+    boolean canMove = next >= 0 && !walls[next];
+    if (!canMove) {
+      calculateNextCell(g, i);
+      enemyDir[i] = enemyNextDir[i];
+    }
+
+    if (canMove || neighbor(enemyCellRow[i], enemyCellCol[i], enemyDir[i]) >= 0) {
+      double newRowExact = rowExact;
+      double newColExact = colExact;
+      int dir = enemyDir[i];
+      if (dir == UP) {
+        newRowExact = Math.max(HALF_CELL, rowExact - increment);
+        newColExact = Math.floor(colExact) + HALF_CELL;
+      } else if (dir == DOWN) {
+        newRowExact = Math.min(numRows - BOTTOM_LIMIT, rowExact + increment);
+        newColExact = Math.floor(colExact) + HALF_CELL;
+      } else if (dir == LEFT) {
+        newColExact = colExact - increment;
+        newRowExact = Math.floor(rowExact) + HALF_CELL;
+        if (newColExact < HALF_CELL) {
+          newColExact = numCols - HALF_CELL;
+        }
+      } else {
+        newColExact = colExact + increment;
+        newRowExact = Math.floor(rowExact) + HALF_CELL;
+        if (newColExact >= numCols - HALF_CELL) {
+          newColExact = HALF_CELL;
+        }
+      }
+
+      int newCellRow = (int) Math.floor(newRowExact);
+      int newCellCol = (int) Math.floor(newColExact);
+      if (newCellRow >= 0
+          && newCellRow < numRows
+          && newCellCol >= 0
+          && newCellCol < numCols
+          && !walls[newCellRow * numCols + newCellCol]) {
+        enemyRow[i] = newRowExact;
+        enemyCol[i] = newColExact;
+        enemyCellRow[i] = newCellRow;
+        enemyCellCol[i] = newCellCol;
+      } else {
+        enemyRow[i] = rowCenter;
+        enemyCol[i] = colCenter;
+        enemyPastCenter[i] = false;
+      }
+    }
+  }
+
+  /**
+   * The equivalent of ActorImpl.calculateNextCell(): sets the enemy's next direction according to
+   * its mode.
+   *
+   * @param g index of the game
+   * @param i index of the enemy's state
+   */
+  private void calculateNextCell(final int g, final int i) {
+    int mode = enemyMode[i];
+    if (mode == INACTIVE) {
+      return;
+    }
+    if (mode == FRIGHTENED) {
+      chooseFrightenedDirection(g, i);
+      return;
+    }
+
+    int e = i - g * enemyCount;
+    int targetRow;
+    int targetCol;
+    if (mode == DEAD) {
+      targetRow = enemyHomeRow[e];
+      targetCol = enemyHomeCol[e];
+    } else if (mode == SCATTER) {
+      targetRow = enemyScatterRow[e];
+      targetCol = enemyScatterCol[e];
+    } else {
+      targetRow = descPlayerRow[g];
+      targetCol = descPlayerCol[g];
+      int kind = enemyKind[e];
+      if (kind == PINKY || kind == INKY) {
+        int ahead = kind == PINKY ? Pinky.TARGET_DISTANCE : Inky.INTERMEDIATE_DISTANCE;
+        int dir = descPlayerDir[g];
+        if (dir == UP) {
+          // the original game's overflow bug also shifts the target left
+          targetRow -= ahead;
+          targetCol -= ahead;
+        } else if (dir == DOWN) {
+          targetRow += ahead;
+        } else if (dir == LEFT) {
+          targetCol -= ahead;
+        } else if (dir == RIGHT) {
+          targetCol += ahead;
+        }
+        if (kind == INKY) {
+          targetRow += targetRow - descBlinkyRow[g];
+          targetCol += targetCol - descBlinkyCol[g];
+        }
+      } else if (kind == CLYDE
+          && distance(enemyCellRow[i], enemyCellCol[i], targetRow, targetCol)
+              <= Clyde.DISTANCE_THRESHOLD) {
+        targetRow = enemyScatterRow[e];
+        targetCol = enemyScatterCol[e];
+      }
+    }
+    choosePathToTarget(i, targetRow, targetCol);
+  }
+
+  /**
+   * The equivalent of ActorImpl.calculatePathToTarget(): picks the open neighbor closest to the
+   * target, preferring to keep going straight, and reversing only as a last resort.
+   *
+   * @param i index of the enemy's state
+   * @param targetRow row of the target
+   * @param targetCol column of the target
+   */
+  private void choosePathToTarget(final int i, final int targetRow, final int targetCol) {
+    int row = enemyCellRow[i];
+    int col = enemyCellCol[i];
+    int current = enemyDir[i];
+    int opposite = opposite(current);
+    int bestDir = -1;
+    double shortestDistance = Double.MAX_VALUE;
+    int validMoveCount = 0;
+    boolean currentValid = false;
+    double currentDistance = 0;
+    for (int dir : DIRECTION_ORDER) {
+      if (dir == opposite) {
+        continue;
+      }
+      int next = neighbor(row, col, dir);
+      if (next < 0 || walls[next]) {
+        continue;
+      }
+      double d = distance(next / numCols, next % numCols, targetRow, targetCol);
+      validMoveCount++;
+      if (dir == current) {
+        currentValid = true;
+        currentDistance = d;
+      }
+      if (d < shortestDistance) {
+        shortestDistance = d;
+        bestDir = dir;
+      }
+    }
+
+    if (validMoveCount > 1
+        && currentValid
+        && currentDistance <= shortestDistance + DISTANCE_TOLERANCE) {
+      bestDir = current;
+    }
+    if (validMoveCount <= 2 && bestDir >= 0 && currentValid) {
+      bestDir = current;
+    }
+    if (bestDir < 0) {
+      int reverse = neighbor(row, col, opposite);
+      if (reverse >= 0 && !walls[reverse]) {
+        bestDir = opposite;
+      }
+    }
+    if (bestDir >= 0) {
+      enemyNextDir[i] = bestDir;
+    }
+  }
+
+  /**
+   * The equivalent of ActorImpl.handleFrightenedMode(): picks a random open neighbor at
+   * intersections, usually keeping the current direction.
+   *
+   * @param g index of the game
+   * @param i index of the enemy's state
+   */
+  private void chooseFrightenedDirection(final int g, final int i) {
+    int row = enemyCellRow[i];
+    int col = enemyCellCol[i];
+    int current = enemyDir[i];
+    int opposite = opposite(current);
+
+    // the open directions, in DIRECTION_ORDER, packed two bits each
+    int valid = 0;
+    int validMoveCount = 0;
+    int currentIndex = -1;
+    for (int dir : DIRECTION_ORDER) {
+      if (dir == opposite) {
+        continue;
+      }
+      int next = neighbor(row, col, dir);
+      if (next >= 0 && !walls[next]) {
+        if (dir == current) {
+          currentIndex = validMoveCount;
+        }
+        valid |= dir << (2 * validMoveCount);
+        validMoveCount++;
+      }
+    }
+
+    if (validMoveCount > 1) {
+      if (currentIndex >= 0
+          && PackedRandom.nextDouble(rngSeed, g) < FRIGHTENED_CONTINUE_PROBABILITY) {
+        enemyNextDir[i] = current;
+        return;
+      }
+      int choice = PackedRandom.nextInt(rngSeed, g, validMoveCount);
+      enemyNextDir[i] = (valid >>> (2 * choice)) & 3;
+    } else if (validMoveCount == 1) {
+      enemyNextDir[i] = valid & 3;
+    } else {
+      int reverse = neighbor(row, col, opposite);
+      if (reverse >= 0 && !walls[reverse]) {
+        enemyNextDir[i] = opposite;
+      }
+    }
+  }
+
+  /**
+   * The equivalent of Pacman.tryTurn().
+   *
+   * @param g index of the game
+   * @param newDir ordinal of the requested direction
+   */
+  private void tryTurn(final int g, final int newDir) {
+    if (playerTurning[g]) {
+      return;
+    }
+    int currentDir = playerDir[g];
+    if (isHorizontal(newDir) == isHorizontal(currentDir)) {
+      playerDir[g] = newDir;
+      return;
+    }
+
+    double rowPos = playerRow[g];
+    double colPos = playerCol[g];
+    int colNum = (int) colPos;
+    int rowNum = (int) rowPos;
+    int newColNum = colNum;
+    int newRowNum = rowNum;
+    double diff = 0;
+    if (isHorizontal(newDir)) {
+      newColNum = newDir == LEFT ? colNum - 1 : colNum + 1;
+      if (currentDir == UP) {
+        diff = rowPos - ((int) rowPos) - HALF_CELL;
+        if (diff < 0) {
+          diff = diff + 1;
+          newRowNum -= 1;
+        }
+      } else {
+        diff = HALF_CELL - (rowPos - ((int) rowPos));
+        if (diff < 0) {
+          diff = diff + 1;
+          newRowNum += 1;
+        }
+      }
+    } else {
+      newRowNum = newDir == UP ? rowNum - 1 : rowNum + 1;
+      if (currentDir == LEFT) {
+        diff = colPos - ((int) colPos) - HALF_CELL;
+        if (diff < 0) {
+          diff += 1;
+          newColNum -= 1;
+        }
+      } else {
+        diff = HALF_CELL - (colPos - colNum);
+        if (diff < 0) {
+          diff += 1;
+          newColNum += 1;
+        }
+      }
+    }
+
+    if (diff >= 0 && diff < 1.0 && !wall(newRowNum, newColNum)) {
+      playerDir[g] = newDir;
+      if (diff > 0) {
+        playerTurning[g] = true;
+        playerPreviousDir[g] = currentDir;
+        if (isHorizontal(currentDir)) {
+          playerTurnTarget[g] = newColNum + HALF_CELL;
+        } else {
+          playerTurnTarget[g] = newRowNum + HALF_CELL;
+        }
+      }
+    }
+  }
+
+  /**
+   * The equivalent of Pacman.update().
+   *
+   * @param g index of the game
+   */
+  private void updatePlayer(final int g) {
+    if (playerTurning[g]) {
+      finishTurn(g);
+    }
+    double increment = playerIncrement[g];
+    double curRowExact = playerRow[g];
+    double curColExact = playerCol[g];
+    int rowNum = (int) curRowExact;
+    int colNum = (int) curColExact;
+    int dir = playerDir[g];
+
+    if (dir == LEFT) {
+      double diff = curColExact - ((int) curColExact) - HALF_CELL;
+      if (curColExact - increment - HALF_CELL < 0) {
+        curColExact = numCols + (curColExact - increment - HALF_CELL);
+        if (curColExact >= numCols) {
+          curColExact -= numCols;
+        }
+      } else {
+        if (diff > -ERR && diff < increment && wall(rowNum, colNum - 1)) {
+          increment = diff;
+        }
+        curColExact -= increment;
+      }
+    } else if (dir == RIGHT) {
+      double diff = HALF_CELL - (curColExact - ((int) curColExact));
+      if (curColExact + increment + HALF_CELL >= numCols) {
+        curColExact = curColExact + increment + HALF_CELL - numCols;
+      } else {
+        if (diff > -ERR && diff < increment && wall(rowNum, colNum + 1)) {
+          increment = diff;
+        }
+        curColExact += increment;
+      }
+    } else if (dir == UP) {
+      double diff = curRowExact - ((int) curRowExact) - HALF_CELL;
+      if (diff > -ERR && diff < increment && wall(rowNum - 1, colNum)) {
+        increment = diff;
+      }
+      curRowExact -= increment;
+    } else {
+      double diff = HALF_CELL - (curRowExact - ((int) curRowExact));
+      if (diff > -ERR && diff < increment && wall(rowNum + 1, colNum)) {
+        increment = diff;
+      }
+      curRowExact += increment;
+    }
+    playerRow[g] = curRowExact;
+    playerCol[g] = curColExact;
+  }
+
+  /**
+   * The equivalent of Pacman.handleTurn(): moves the player along its previous direction towards
+   * the center of the cell where it is turning.
+   *
+   * @param g index of the game
+   */
+  private void finishTurn(final int g) {
+    double increment = playerIncrement[g];
+    double target = playerTurnTarget[g];
+    int previous = playerPreviousDir[g];
+    if (previous == UP || previous == LEFT) {
+      double position = previous == UP ? playerRow[g] : playerCol[g];
+      double distanceToGo = position - target;
+      if (increment >= distanceToGo - ERR) {
+        increment = distanceToGo;
+        playerTurning[g] = false;
+      }
+      if (previous == UP) {
+        playerRow[g] = position - increment;
+      } else {
+        playerCol[g] = position - increment;
+      }
+    } else {
+      double position = previous == DOWN ? playerRow[g] : playerCol[g];
+      double distanceToGo = target - position;
+      if (increment >= distanceToGo - ERR) {
+        increment = distanceToGo;
+        playerTurning[g] = false;
+      }
+      if (previous == DOWN) {
+        playerRow[g] = position + increment;
+      } else {
+        playerCol[g] = position + increment;
+      }
+    }
+  }
+
+  /**
+   * The equivalent of ActorImpl.getNextLocation(): the cell next to the given one in the given
+   * direction, wrapping through the side tunnels, or -1 if there is none. A wrapped cell is not
+   * checked for a wall.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @param dir direction ordinal
+   * @return index of the neighboring cell, or -1
+   */
+  private int neighbor(final int row, final int col, final int dir) {
+    if (dir == UP) {
+      if (row > 0 && !wall(row - 1, col)) {
+        return (row - 1) * numCols + col;
+      }
+    } else if (dir == DOWN) {
+      if (row < numRows - 1 && !wall(row + 1, col)) {
+        return (row + 1) * numCols + col;
+      }
+    } else if (dir == LEFT) {
+      if (col > 0 && !wall(row, col - 1)) {
+        return row * numCols + col - 1;
+      } else if (col == 0) {
+        return row * numCols + numCols - 1;
+      }
+    } else {
+      if (col < numCols - 1 && !wall(row, col + 1)) {
+        return row * numCols + col + 1;
+      } else if (col == numCols - 1) {
+        return row * numCols;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns true if the given cell is a wall.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return true if the cell is a wall
+   */
+  private boolean wall(final int row, final int col) {
+    return walls[row * numCols + col];
+  }
+
+  /**
+   * Returns true if the given cell of the given game still holds a dot or energizer.
+   *
+   * @param g index of the game
+   * @param cell index of the cell
+   * @return true if there is something to eat in the cell
+   */
+  private boolean hasPellet(final int g, final int cell) {
+    return (pellets[g * pelletWords + (cell >>> 6)] & (1L << cell)) != 0;
+  }
+
+  /**
+   * Euclidean distance between two cells, as ActorImpl.calculateDistanceTween() computes it.
+   *
+   * @param row1 row of the first cell
+   * @param col1 column of the first cell
+   * @param row2 row of the second cell
+   * @param col2 column of the second cell
+   * @return distance between the cells
+   */
+  private static double distance(final int row1, final int col1, final int row2, final int col2) {
+    double dx = col1 - col2;
+    double dy = row1 - row2;
+    return Math.sqrt(dx * dx + dy * dy);
+  }
+
+  /**
+   * Returns the opposite of a direction.
+   *
+   * @param dir direction ordinal
+   * @return ordinal of the opposite direction
+   */
+  private static int opposite(final int dir) {
+    if (dir == UP) {
+      return DOWN;
+    } else if (dir == DOWN) {
+      return UP;
+    } else if (dir == LEFT) {
+      return RIGHT;
+    }
+    return LEFT;
+  }
+
+  /**
+   * Returns true for LEFT and RIGHT.
+   *
+   * @param dir direction ordinal
+   * @return true if the direction is horizontal
+   */
+  private static boolean isHorizontal(final int dir) {
+    return dir == LEFT || dir == RIGHT;
+  }
+}
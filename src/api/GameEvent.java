@@ -0,0 +1,204 @@
+package api;
+
+/**
+ * A single event read from a GameEventRing. Instances are owned by the consumer and refilled by
+ * each successful GameEventRing.Subscriber.poll(), so reading events does not allocate. Which
+ * fields are meaningful depends on the type; see GameEventType. Fields that do not apply are -1,
+ * or null for the mode.
+ */
+public final class GameEvent {
+  /** Modes indexed by ordinal. */
+  private static final Mode[] MODES = Mode.values();
+
+  /** Event types indexed by ordinal. */
+  private static final GameEventType[] TYPES = GameEventType.values();
+
+  /** Kind of event. */
+  private GameEventType type;
+
+  /** Frame in which the event occurred. */
+  private int frame;
+
+  /** Index of the player the event concerns. */
+  private int player;
+
+  /** Index of the enemy the event concerns. */
+  private int enemyIndex;
+
+  /** Row of the cell where the event occurred. */
+  private int row;
+
+  /** Column of the cell where the event occurred. */
+  private int col;
+
+  /** Points awarded by the event. */
+  private int points;
+
+  /** Score after the event. */
+  private int score;
+
+  /** Lives remaining after the event. */
+  private int lives;
+
+  /** New mode, for mode change events. */
+  private Mode mode;
+
+  /**
+   * Fills this event from its encoded form.
+   *
+   * @param typeOrdinal ordinal of the event type
+   * @param newFrame frame of the event
+   * @param newPlayer player index, or -1
+   * @param newEnemyIndex enemy index, or -1
+   * @param newRow row of the event, or -1
+   * @param newCol column of the event, or -1
+   * @param newPoints points awarded, or -1
+   * @param newScore score after the event
+   * @param newLives lives after the event
+   * @param modeOrdinal ordinal of the new mode, or -1
+   */
+  void set(
+      final int typeOrdinal,
+      final int newFrame,
+      final int newPlayer,
+      final int newEnemyIndex,
+      final int newRow,
+      final int newCol,
+      final int newPoints,
+      final int newScore,
+      final int newLives,
+      final int modeOrdinal) {
+    type = TYPES[typeOrdinal];
+    frame = newFrame;
+    player = newPlayer;
+    enemyIndex = newEnemyIndex;
+    row = newRow;
+    col = newCol;
+    points = newPoints;
+    score = newScore;
+    lives = newLives;
+    mode = modeOrdinal < 0 ? null : MODES[modeOrdinal];
+  }
+
+  /**
+   * Returns the kind of event.
+   *
+   * @return event type
+   */
+  public GameEventType getType() {
+    return type;
+  }
+
+  /**
+   * Returns the frame in which the event occurred, as given by the game's getFrameCount() at the
+   * end of that frame.
+   *
+   * @return frame of the event
+   */
+  public int getFrame() {
+    return frame;
+  }
+
+  /**
+   * Returns the index of the player the event concerns, or -1 for events about the whole game,
+   * such as mode changes and the start and end of a level.
+   *
+   * @return player index
+   */
+  public int getPlayer() {
+    return player;
+  }
+
+  /**
+   * Returns the index of the enemy the event concerns, or -1 if it does not concern an enemy.
+   *
+   * @return enemy index
+   */
+  public int getEnemyIndex() {
+    return enemyIndex;
+  }
+
+  /**
+   * Returns the row of the cell where the event occurred, or -1.
+   *
+   * @return row of the event
+   */
+  public int getRow() {
+    return row;
+  }
+
+  /**
+   * Returns the column of the cell where the event occurred, or -1.
+   *
+   * @return column of the event
+   */
+  public int getCol() {
+    return col;
+  }
+
+  /**
+   * Returns the points awarded by the event, or -1 if it awards none.
+   *
+   * @return points awarded
+   */
+  public int getPoints() {
+    return points;
+  }
+
+  /**
+   * Returns the score of the player the event concerns just after the event, or the first
+   * player's score for events about the whole game.
+   *
+   * @return score after the event
+   */
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * Returns the lives of the player the event concerns just after the event, or the first
+   * player's lives for events about the whole game.
+   *
+   * @return lives after the event
+   */
+  public int getLives() {
+    return lives;
+  }
+
+  /**
+   * Returns the new mode for mode change events, or null.
+   *
+   * @return new mode
+   */
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * Returns a string representation of this event.
+   *
+   * @return string representation of the event
+   */
+  @Override
+  public String toString() {
+    return type
+        + " frame="
+        + frame
+        + " player="
+        + player
+        + " enemy="
+        + enemyIndex
+        + " cell=("
+        + row
+        + ", "
+        + col
+        + ") points="
+        + points
+        + " score="
+        + score
+        + " lives="
+        + lives
+        + " mode="
+        + mode;
+  }
+}
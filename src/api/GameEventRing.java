@@ -0,0 +1,251 @@
+package api;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Single-producer, multi-consumer ring buffer of game events. Event data lives in preallocated
+ * slots, so neither publishing nor reading allocates, and neither side takes a lock: each consumer
+ * keeps its own position in a Subscriber and reads at its own pace, while the producer never waits
+ * for consumers. A consumer that falls more than the buffer's capacity behind loses the oldest
+ * events, and the subscriber counts how many.
+ *
+ * <p>Each slot carries a stamp holding the sequence number of the event it contains. The producer
+ * invalidates the stamp before overwriting a slot and sets it once the slot is complete, and a
+ * consumer accepts a slot only if the stamp matches before and after copying it out.
+ */
+public final class GameEventRing {
+  /** Index of the event type ordinal within a slot. */
+  private static final int TYPE = 0;
+
+  /** Index of the frame within a slot. */
+  private static final int FRAME = 1;
+
+  /** Index of the player index within a slot. */
+  private static final int PLAYER = 2;
+
+  /** Index of the enemy index within a slot. */
+  private static final int ENEMY = 3;
+
+  /** Index of the row within a slot. */
+  private static final int ROW = 4;
+
+  /** Index of the column within a slot. */
+  private static final int COL = 5;
+
+  /** Index of the points within a slot. */
+  private static final int POINTS = 6;
+
+  /** Index of the score within a slot. */
+  private static final int SCORE = 7;
+
+  /** Index of the lives within a slot. */
+  private static final int LIVES = 8;
+
+  /** Index of the mode ordinal within a slot. */
+  private static final int MODE = 9;
+
+  /** Number of ints in a slot. */
+  private static final int SLOT_SIZE = 10;
+
+  /** Stamp of a slot that is being written. */
+  private static final long WRITING = -1;
+
+  /** Number of slots, a power of two. */
+  private final int capacity;
+
+  /** Mask for mapping sequence numbers to slots. */
+  private final int mask;
+
+  /** Event data, SLOT_SIZE ints per slot. */
+  private final AtomicIntegerArray slots;
+
+  /** Sequence number of the event in each slot. */
+  private final AtomicLongArray stamps;
+
+  /** Number of events published so far, which is also the sequence number of the next event. */
+  private final AtomicLong published = new AtomicLong();
+
+  /**
+   * Constructs a ring with the given number of slots.
+   *
+   * @param capacity number of slots, a positive power of two
+   * @throws IllegalArgumentException if the capacity is not a positive power of two
+   */
+  public GameEventRing(final int capacity) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+    }
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.slots = new AtomicIntegerArray(capacity * SLOT_SIZE);
+    this.stamps = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; ++i) {
+      stamps.set(i, WRITING);
+    }
+  }
+
+  /**
+   * Returns the number of slots in this ring.
+   *
+   * @return capacity
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the number of events published so far.
+   *
+   * @return number of published events
+   */
+  public long getPublishedCount() {
+    return published.get();
+  }
+
+  /**
+   * Publishes an event. This must only ever be called from a single thread, normally the one
+   * running the game's updateAll().
+   *
+   * @param type kind of event
+   * @param frame frame of the event
+   * @param player index of the player concerned, or -1
+   * @param enemyIndex index of the enemy concerned, or -1
+   * @param row row of the event's cell, or -1
+   * @param col column of the event's cell, or -1
+   * @param points points awarded, or -1
+   * @param score score of the player concerned, or of the first player, after the event
+   * @param lives lives of the player concerned, or of the first player, after the event
+   * @param mode new mode, or null
+   */
+  public void publish(
+      final GameEventType type,
+      final int frame,
+      final int player,
+      final int enemyIndex,
+      final int row,
+      final int col,
+      final int points,
+      final int score,
+      final int lives,
+      final Mode mode) {
+    long seq = published.get();
+    int slot = (int) seq & mask;
+    int base = slot * SLOT_SIZE;
+    stamps.set(slot, WRITING);
+    slots.set(base + TYPE, type.ordinal());
+    slots.set(base + FRAME, frame);
+    slots.set(base + PLAYER, player);
+    slots.set(base + ENEMY, enemyIndex);
+    slots.set(base + ROW, row);
+    slots.set(base + COL, col);
+    slots.set(base + POINTS, points);
+    slots.set(base + SCORE, score);
+    slots.set(base + LIVES, lives);
+    slots.set(base + MODE, mode == null ? -1 : mode.ordinal());
+    stamps.set(slot, seq);
+    published.set(seq + 1);
+  }
+
+  /**
+   * Creates a consumer positioned after the most recently published event, so it sees only events
+   * published from now on.
+   *
+   * @return a new subscriber
+   */
+  public Subscriber subscribe() {
+    return new Subscriber(published.get());
+  }
+
+  /**
+   * A consumer's position in the ring. Each subscriber must be used by one thread at a time, but
+   * any number of subscribers may read the same ring concurrently.
+   */
+  public final class Subscriber {
+    /** Sequence number of the next event to read. */
+    private long next;
+
+    /** Number of events overwritten before this subscriber could read them. */
+    private long lost;
+
+    /**
+     * Constructs a subscriber starting at the given sequence number.
+     *
+     * @param start sequence number of the first event to read
+     */
+    private Subscriber(final long start) {
+      next = start;
+    }
+
+    /**
+     * Copies the next unread event into the given event, if there is one.
+     *
+     * @param event destination for the event's data
+     * @return true if an event was read, false if there are no unread events
+     */
+    public boolean poll(final GameEvent event) {
+      while (true) {
+        long head = published.get();
+        if (next >= head) {
+          return false;
+        }
+        if (head - next > capacity) {
+          // the producer has lapped us; skip to the oldest event still in the ring
+          lost += head - capacity - next;
+          next = head - capacity;
+        }
+        int slot = (int) next & mask;
+        int base = slot * SLOT_SIZE;
+        if (stamps.get(slot) == next) {
+          event.set(
+              slots.get(base + TYPE),
+              slots.get(base + FRAME),
+              slots.get(base + PLAYER),
+              slots.get(base + ENEMY),
+              slots.get(base + ROW),
+              slots.get(base + COL),
+              slots.get(base + POINTS),
+              slots.get(base + SCORE),
+              slots.get(base + LIVES),
+              slots.get(base + MODE));
+          if (stamps.get(slot) == next) {
+            next += 1;
+            return true;
+          }
+        }
+
+        // the slot was overwritten by a later event before or while we read it
+        lost += 1;
+        next += 1;
+      }
+    }
+
+    /**
+     * Skips every event published so far, so the next poll() returns only later events. Skipped
+     * events are not counted as lost.
+     */
+    public void skipAll() {
+      next = published.get();
+    }
+
+    /**
+     * Returns the number of published events this subscriber has not read yet, including any
+     * that have already been overwritten.
+     *
+     * @return number of pending events
+     */
+    public long getPendingCount() {
+      return published.get() - next;
+    }
+
+    /**
+     * Returns the number of events that were overwritten before this subscriber could read them.
+     *
+     * @return number of lost events
+     */
+    public long getLostCount() {
+      return lost;
+    }
+  }
+}
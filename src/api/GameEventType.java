@@ -0,0 +1,45 @@
+package api;
+
+/**
+ * Kinds of events published by a Pacman game. The events about a player carry its index, and its
+ * score and lives; the others carry a player index of -1.
+ */
+public enum GameEventType {
+  /**
+   * A player ate a dot. The event's cell is the dot's cell and its points are the dot's value.
+   */
+  PELLET_EATEN,
+
+  /**
+   * A player ate an energizer. The event's cell is the energizer's cell and its points are the
+   * energizer's value.
+   */
+  ENERGIZER_EATEN,
+
+  /**
+   * A player caught a frightened ghost. The event's enemy index identifies the ghost, its cell is
+   * where the ghost was caught, and its points are the points awarded.
+   */
+  GHOST_EATEN,
+
+  /** A player was caught by a ghost. The event's cell is where the player died. */
+  PLAYER_DEATH,
+
+  /** The game's global mode changed. The event's mode is the new global mode. */
+  GLOBAL_MODE_CHANGE,
+
+  /**
+   * A ghost's mode changed. The event's enemy index identifies the ghost and its mode is the
+   * ghost's new mode.
+   */
+  GHOST_MODE_CHANGE,
+
+  /** The level ended, either because all pellets were eaten or because no lives are left. */
+  LEVEL_OVER,
+
+  /**
+   * A level started in place, through nextLevel() or restartLevel(). Every cell and actor may have
+   * changed, so consumers that track the game incrementally should rebuild their view of it.
+   */
+  LEVEL_START
+}
@@ -0,0 +1,1083 @@
+package api;
+
+import static api.FixedPoint.HALF;
+import static api.FixedPoint.MASK;
+import static api.FixedPoint.ONE;
+import static api.PacmanGame.BASE_GHOST_POINTS;
+import static api.PacmanGame.DOT_POINTS;
+import static api.PacmanGame.ENERGIZER_POINTS;
+import static api.PacmanGame.FIRST_ENEMY_INDEX;
+import static api.PacmanGame.FRIGHTENED_TIME;
+import static api.PacmanGame.GHOST_POINTS_MULTIPLIER;
+import static api.PacmanGame.GLOBAL_MODES;
+import static api.PacmanGame.INACTIVE_TIME;
+import static api.PacmanGame.INITIAL_LIVES;
+import static api.PacmanGame.MIN_INACTIVE_TIMER;
+import static com.pacman.ghost.ActorImpl.DEAD_SPEED_FACTOR;
+import static com.pacman.ghost.ActorImpl.DISTANCE_TOLERANCE;
+import static com.pacman.ghost.ActorImpl.FRIGHTENED_CONTINUE_PROBABILITY;
+import static com.pacman.ghost.ActorImpl.FRIGHTENED_SPEED_FACTOR;
+
+import com.pacman.ghost.ActorImpl;
+import com.pacman.ghost.Clyde;
+import com.pacman.ghost.Inky;
+import com.pacman.ghost.Pacman;
+import com.pacman.ghost.Pinky;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * A game with any number of ghosts on one maze, for arena-style play with thousands of ghosts.
+ * Ghost k starts from the home of the maze's ghost k % H, where H is the number of ghosts in the
+ * maze, and targets the player the way that ghost does. The state of the ghosts lives in primitive
+ * arrays indexed by ghost, the way GameBatch keeps its games, and a frame updates them in one tight
+ * loop, optionally in parallel chunks.
+ *
+ * <p>The rules are those of PacmanGame.updateAll(), with three differences that let the ghosts be
+ * updated independently: each ghost has its own random number generator, so a swarm evolves the
+ * same way whether or not it is updated in parallel; the ghosts of each home leave it one frame
+ * apart; and a dead ghost is sent home as soon as it arrives rather than after the collisions of
+ * the frame. The player dies without a delay.
+ *
+ * <p>Movement is in the integer units of FixedPoint, as in a PacmanGame built with fixed-point
+ * actors, with speeds rounded to whole units per frame. The player is such a Pacman. A ghost that
+ * reaches the center of a cell within a frame stops there exactly, picks its next direction and
+ * goes on with the rest of its increment, so it decides at every cell whatever its speed, where an
+ * ActorImpl in double cells only decides when an increment happens to land within a margin of
+ * error of a center. Everything but the ghosts'
+ * distances to their targets is integer arithmetic, and those are correctly rounded square roots,
+ * so a swarm evolves the same way on every platform. getGhostRowExact() and the other exact
+ * coordinates convert back to cells.
+ *
+ * <p>The rule constants, the ghosts' targeting distances and the mode times are those of
+ * PacmanGame and the ghost classes. Some of what PacmanGame does is deliberately left out, since
+ * it would tie the ghosts to each other or to the frame: a swarm plays level 1 only, with its mode
+ * times and speeds, and has no nextLevel(); it has one player, whatever the maze's start cells;
+ * the player and a ghost only meet when they share a cell after a frame, not when they pass each
+ * other within one as SweptCollision finds in PacmanGame; and it publishes no events, takes no
+ * input listener, and keeps the frame rate it was built with.
+ */
+public final class GhostSwarm {
+  /** Targeting kind of ghosts that chase the player's cell, like Blinky. */
+  public static final int BLINKY = 0;
+
+  /** Targeting kind of ghosts that aim ahead of the player, like Pinky. */
+  public static final int PINKY = 1;
+
+  /** Targeting kind of ghosts that mirror ghost 0 around a point ahead of the player, like Inky. */
+  public static final int INKY = 2;
+
+  /** Targeting kind of ghosts that give up the chase near the player, like Clyde. */
+  public static final int CLYDE = 3;
+
+  /** Number of ghosts updated together by one task. */
+  private static final int CHUNK_SIZE = 1024;
+
+  /** Direction ordinals. */
+  private static final int LEFT = Direction.LEFT.ordinal();
+  private static final int RIGHT = Direction.RIGHT.ordinal();
+  private static final int UP = Direction.UP.ordinal();
+  private static final int DOWN = Direction.DOWN.ordinal();
+
+  /** Order in which ghosts try directions, as in ActorImpl. */
+  private static final int[] DIRECTION_ORDER = {UP, DOWN, LEFT, RIGHT};
+
+  /** Mode ordinals. */
+  private static final int INACTIVE = Mode.INACTIVE.ordinal();
+  private static final int DEAD = Mode.DEAD.ordinal();
+  private static final int FRIGHTENED = Mode.FRIGHTENED.ordinal();
+  private static final int SCATTER = Mode.SCATTER.ordinal();
+  private static final int CHASE = Mode.CHASE.ordinal();
+
+  /** Passes over the ghosts. */
+  private static final int UPDATE_PASS = 0;
+  private static final int FRIGHTEN_PASS = 1;
+
+  // ---- maze data ----
+
+  /** Number of ghosts. */
+  private final int ghostCount;
+
+  /** Number of rows in the maze. */
+  private final int numRows;
+
+  /** Number of columns in the maze. */
+  private final int numCols;
+
+  /** Frames per second. */
+  private final int frameRate;
+
+  /** Wall flag per cell, indexed by row * numCols + col. */
+  private final boolean[] walls;
+
+  /** Energizer flag per cell. */
+  private final boolean[] energizers;
+
+  /** Pellet bitset of a new game: one bit per cell holding a dot or energizer. */
+  private final long[] initialPellets;
+
+  /** Number of dots in the maze, which is what the player must eat to finish the level. */
+  private final int totalPellets;
+
+  /** Per-home kind, cell, direction and scatter target, from the maze's ghosts. */
+  private final int[] homeKind;
+  private final int[] homeRow;
+  private final int[] homeCol;
+  private final int[] homeDir;
+  private final int[] homeScatterRow;
+  private final int[] homeScatterCol;
+
+  /** Per-home speeds in units per frame: base, frightened and dead. */
+  private final int[] homeIncrement;
+  private final int[] homeFrightenedIncrement;
+  private final int[] homeDeadIncrement;
+
+  // ---- game state ----
+
+  /** The player, which moves in fixed-point units. */
+  private final Pacman player;
+
+  /** Pellets left: one bit per cell holding a dot or energizer. */
+  private final long[] pellets;
+
+  /** Index of the ghosts by cell, for collisions. */
+  private final OccupancyGrid occupancy;
+
+  private int score;
+  private int lives;
+  private int pelletCount;
+  private int frameCount;
+  private int globalModeIndex;
+  private int modeCountdown;
+  private int frightenedCountdown;
+  private int currentGhostPoints;
+
+  /** Whether the ghosts are updated in parallel chunks. */
+  private boolean parallel;
+
+  /** Values of the current frame read by every ghost: the player's cell and direction. */
+  private int descPlayerRow;
+  private int descPlayerCol;
+  private int descPlayerDir;
+
+  /** Cell of ghost 0, which INKY ghosts mirror around. */
+  private int descBlinkyRow;
+  private int descBlinkyCol;
+
+  /** Set for the frame in which the global mode changed. */
+  private boolean globalModeChanged;
+
+  /** Set for the frame in which FRIGHTENED mode ended. */
+  private boolean frightenedEnded;
+
+  // ---- per-ghost state, indexed by ghost ----
+
+  private final int[] ghostHome;
+  private final int[] ghostKind;
+  private final int[] ghostRow;
+  private final int[] ghostCol;
+  private final int[] ghostCellRow;
+  private final int[] ghostCellCol;
+  private final int[] ghostDir;
+  private final int[] ghostNextDir;
+  private final int[] ghostMode;
+  private final int[] ghostIncrement;
+  private final boolean[] ghostPastCenter;
+  private final int[] releaseFrame;
+  private final long[] rngSeed;
+
+  /**
+   * Constructs a swarm on the maze given by rows.
+   *
+   * @param rows array of strings, one per row of the maze, as for PacmanGame; it must have at least
+   *     one ghost
+   * @param frameRate the frames per second rate of the game
+   * @param ghostCount number of ghosts, at least 1
+   * @param seed seed for the ghosts' random number generators
+   * @throws IllegalArgumentException if ghostCount is less than 1 or the maze has no ghosts
+   */
+  public GhostSwarm(
+      final String[] rows, final int frameRate, final int ghostCount, final long seed) {
+    // parse the maze the way PacmanGame does, and read the actors' fixed properties back
+    PacmanGame template = new PacmanGame(MazeTemplate.of(rows), frameRate, 0, 1, true);
+    int homes = template.getEnemyCount();
+    if (ghostCount < 1 || homes == 0) {
+      throw new IllegalArgumentException(
+          "A swarm needs at least one ghost and a maze with ghosts: "
+              + ghostCount
+              + " ghosts, "
+              + homes
+              + " in the maze");
+    }
+    this.ghostCount = ghostCount;
+    this.frameRate = frameRate;
+    this.numRows = template.getNumRows();
+    this.numCols = template.getNumColumns();
+    this.player = template.getPlayer();
+
+    int cellCount = numRows * numCols;
+    walls = new boolean[cellCount];
+    energizers = new boolean[cellCount];
+    initialPellets = new long[(cellCount + Long.SIZE - 1) / Long.SIZE];
+    pellets = new long[initialPellets.length];
+    int dots = 0;
+    for (int row = 0; row < numRows; ++row) {
+      for (int col = 0; col < numCols; ++col) {
+        int cell = row * numCols + col;
+        MazeCell c = template.getCell(row, col);
+        walls[cell] = c.isWall();
+        energizers[cell] = c.getType() == CellType.ENERGIZER;
+        if (c.canEat()) {
+          initialPellets[cell >>> 6] |= 1L << cell;
+        }
+        if (c.getType() == CellType.DOT) {
+          dots += 1;
+        }
+      }
+    }
+    totalPellets = dots;
+
+    homeKind = new int[homes];
+    homeRow = new int[homes];
+    homeCol = new int[homes];
+    homeDir = new int[homes];
+    homeScatterRow = new int[homes];
+    homeScatterCol = new int[homes];
+    homeIncrement = new int[homes];
+    homeFrightenedIncrement = new int[homes];
+    homeDeadIncrement = new int[homes];
+    for (int h = 0; h < homes; ++h) {
+      ActorImpl a = (ActorImpl) template.getEnemy(h);
+      char symbol = template.getEnemySymbol(h);
+      if (symbol == MazeTemplate.BLINKY_CHAR) {
+        homeKind[h] = BLINKY;
+      } else if (symbol == MazeTemplate.PINKY_CHAR) {
+        homeKind[h] = PINKY;
+      } else if (symbol == MazeTemplate.INKY_CHAR) {
+        homeKind[h] = INKY;
+      } else {
+        homeKind[h] = CLYDE;
+      }
+      homeRow[h] = a.getHomeLocation().row();
+      homeCol[h] = a.getHomeLocation().col();
+      // the home direction is where a reset ghost faces, not what getHomeDirection() computes
+      homeDir[h] = a.getCurrentDirection().ordinal();
+      homeScatterRow[h] = a.getScatterTarget().row();
+      homeScatterCol[h] = a.getScatterTarget().col();
+      double increment = a.getBaseIncrement();
+      homeIncrement[h] = FixedPoint.fromIncrement(increment);
+      homeFrightenedIncrement[h] = FixedPoint.fromIncrement(increment * FRIGHTENED_SPEED_FACTOR);
+      homeDeadIncrement[h] = FixedPoint.fromIncrement(increment * DEAD_SPEED_FACTOR);
+    }
+
+    ghostHome = new int[ghostCount];
+    ghostKind = new int[ghostCount];
+    ghostRow = new int[ghostCount];
+    ghostCol = new int[ghostCount];
+    ghostCellRow = new int[ghostCount];
+    ghostCellCol = new int[ghostCount];
+    ghostDir = new int[ghostCount];
+    ghostNextDir = new int[ghostCount];
+    ghostMode = new int[ghostCount];
+    ghostIncrement = new int[ghostCount];
+    ghostPastCenter = new boolean[ghostCount];
+    releaseFrame = new int[ghostCount];
+    rngSeed = new long[ghostCount];
+    for (int k = 0; k < ghostCount; ++k) {
+      ghostHome[k] = k % homes;
+      ghostKind[k] = homeKind[ghostHome[k]];
+    }
+    occupancy = new OccupancyGrid(cellCount, ghostCount);
+    reset(seed);
+  }
+
+  /**
+   * Restarts the game from the beginning, with the ghosts' generators seeded from the given seed.
+   *
+   * @param seed seed for the ghosts' random number generators
+   */
+  public void reset(final long seed) {
+    SplittableRandom seeds = new SplittableRandom(seed);
+    for (int k = 0; k < ghostCount; ++k) {
+      rngSeed[k] = PackedRandom.scramble(seeds.nextLong());
+    }
+    score = 0;
+    lives = INITIAL_LIVES;
+    pelletCount = 0;
+    frameCount = 0;
+    frightenedCountdown = 0;
+    System.arraycopy(initialPellets, 0, pellets, 0, pellets.length);
+    resetAll();
+  }
+
+  /**
+   * Sets whether the ghosts are updated in parallel chunks. Since every ghost has its own random
+   * number generator, this changes how fast the swarm is updated but not how it evolves.
+   *
+   * @param parallel true to update chunks of ghosts in parallel
+   */
+  public void setParallel(final boolean parallel) {
+    this.parallel = parallel;
+  }
+
+  /**
+   * Returns true if the ghosts are updated in parallel chunks.
+   *
+   * @return true if updates are parallel
+   */
+  public boolean isParallel() {
+    return parallel;
+  }
+
+  /**
+   * Attempts to turn the player, as PacmanGame.turnPlayer() does.
+   *
+   * @param newDir desired new direction
+   */
+  public void turnPlayer(final Direction newDir) {
+    if (!levelOver()) {
+      player.tryTurn(newDir);
+    }
+  }
+
+  /** Advances the game by one frame, as PacmanGame.updateAll() does. */
+  public void updateAll() {
+    if (levelOver()) {
+      return;
+    }
+    frameCount += 1;
+    descPlayerRow = player.getCurrentRow();
+    descPlayerCol = player.getCurrentCol();
+    descPlayerDir = player.getCurrentDirection().ordinal();
+    descBlinkyRow = ghostCellRow[0];
+    descBlinkyCol = ghostCellCol[0];
+
+    // the global timers; the ghosts apply their transitions in the update pass
+    globalModeChanged = false;
+    frightenedEnded = false;
+    if (frightenedCountdown > 0) {
+      frightenedCountdown -= 1;
+      frightenedEnded = frightenedCountdown == 0;
+    } else if (globalModeIndex < GLOBAL_MODES.length - 1) {
+      modeCountdown -= 1;
+      if (modeCountdown <= 0) {
+        globalModeIndex += 1;
+        globalModeChanged = true;
+        if (globalModeIndex < GLOBAL_MODES.length - 1) {
+          modeCountdown = PacmanGame.getModeFrames(1, globalModeIndex, frameRate);
+        }
+      }
+    }
+
+    player.update(null);
+    runPass(UPDATE_PASS);
+    for (int k = 0; k < ghostCount; ++k) {
+      occupancy.move(k, ghostCellRow[k] * numCols + ghostCellCol[k]);
+    }
+
+    // pellets
+    int cell = player.getCurrentRow() * numCols + player.getCurrentCol();
+    if ((pellets[cell >>> 6] & (1L << cell)) != 0) {
+      pellets[cell >>> 6] &= ~(1L << cell);
+      if (!energizers[cell]) {
+        pelletCount += 1;
+        score += DOT_POINTS;
+      } else {
+        frightenedCountdown = FRIGHTENED_TIME * frameRate;
+        score += ENERGIZER_POINTS;
+        runPass(FRIGHTEN_PASS);
+        currentGhostPoints = BASE_GHOST_POINTS;
+      }
+    }
+
+    // collisions with the ghosts in the player's cell, in index order; with many ghosts to a cell,
+    // the player loses at most one life per frame
+    int k = occupancy.getFirstAfter(cell, OccupancyGrid.NONE);
+    while (k != OccupancyGrid.NONE) {
+      if (ghostMode[k] == FRIGHTENED) {
+        setMode(k, DEAD);
+        score += currentGhostPoints;
+        currentGhostPoints *= GHOST_POINTS_MULTIPLIER;
+      } else if (ghostMode[k] != DEAD) {
+        lives -= 1;
+        if (!levelOver()) {
+          resetAll();
+        }
+        return;
+      }
+      k = occupancy.getFirstAfter(cell, k);
+    }
+  }
+
+  /**
+   * Returns true if the level is over, i.e., either the player has no lives left, or all the dots
+   * have been eaten.
+   *
+   * @return true if the level is over
+   */
+  public boolean levelOver() {
+    return lives == 0 || pelletCount == totalPellets;
+  }
+
+  /**
+   * Returns the current score.
+   *
+   * @return current score
+   */
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * Returns the number of lives remaining for the player.
+   *
+   * @return number of lives remaining
+   */
+  public int getLives() {
+    return lives;
+  }
+
+  /**
+   * Returns the number of frames simulated since the last reset.
+   *
+   * @return number of simulated frames
+   */
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  /**
+   * Returns the current global mode.
+   *
+   * @return current global mode
+   */
+  public Mode getGlobalMode() {
+    return GLOBAL_MODES[globalModeIndex];
+  }
+
+  /**
+   * Returns the current value of the counter for the period of time the ghosts remain frightened.
+   *
+   * @return current value of frightened countdown
+   */
+  public int getFrightenedCount() {
+    return frightenedCountdown;
+  }
+
+  /**
+   * Returns the number of rows in the maze.
+   *
+   * @return number of rows
+   */
+  public int getNumRows() {
+    return numRows;
+  }
+
+  /**
+   * Returns the number of columns in the maze.
+   *
+   * @return number of columns
+   */
+  public int getNumColumns() {
+    return numCols;
+  }
+
+  /**
+   * Returns true if the given cell still holds a dot or energizer.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return true if there is something to eat in the cell
+   */
+  public boolean canEat(final int row, final int col) {
+    int cell = row * numCols + col;
+    return (pellets[cell >>> 6] & (1L << cell)) != 0;
+  }
+
+  /**
+   * Returns the exact row of the player, in cells.
+   *
+   * @return exact row
+   */
+  public double getPlayerRowExact() {
+    return player.getRowExact();
+  }
+
+  /**
+   * Returns the exact column of the player, in cells.
+   *
+   * @return exact column
+   */
+  public double getPlayerColExact() {
+    return player.getColExact();
+  }
+
+  /**
+   * Returns the row coordinate of the player, in the units of FixedPoint.
+   *
+   * @return fixed-point row
+   */
+  public int getPlayerRowFixed() {
+    return player.getRowFixed();
+  }
+
+  /**
+   * Returns the column coordinate of the player, in the units of FixedPoint.
+   *
+   * @return fixed-point column
+   */
+  public int getPlayerColFixed() {
+    return player.getColFixed();
+  }
+
+  /**
+   * Returns the direction of the player.
+   *
+   * @return current direction
+   */
+  public Direction getPlayerDirection() {
+    return player.getCurrentDirection();
+  }
+
+  /**
+   * Returns the player, a Pacman that moves in fixed-point units. Its coordinates are those of
+   * getPlayerRowExact() and the other player getters.
+   *
+   * @return the player
+   */
+  public Actor getPlayer() {
+    return player;
+  }
+
+  /**
+   * Returns the number of ghosts.
+   *
+   * @return number of ghosts
+   */
+  public int getGhostCount() {
+    return ghostCount;
+  }
+
+  /**
+   * Returns the targeting kind of a ghost: BLINKY, PINKY, INKY or CLYDE.
+   *
+   * @param ghost index of the ghost
+   * @return its targeting kind
+   */
+  public int getGhostKind(final int ghost) {
+    return ghostKind[ghost];
+  }
+
+  /**
+   * Returns the exact row of a ghost, in cells.
+   *
+   * @param ghost index of the ghost
+   * @return exact row
+   */
+  public double getGhostRowExact(final int ghost) {
+    return FixedPoint.toExact(ghostRow[ghost]);
+  }
+
+  /**
+   * Returns the exact column of a ghost, in cells.
+   *
+   * @param ghost index of the ghost
+   * @return exact column
+   */
+  public double getGhostColExact(final int ghost) {
+    return FixedPoint.toExact(ghostCol[ghost]);
+  }
+
+  /**
+   * Returns the row coordinate of a ghost, in the units of FixedPoint.
+   *
+   * @param ghost index of the ghost
+   * @return fixed-point row
+   */
+  public int getGhostRowFixed(final int ghost) {
+    return ghostRow[ghost];
+  }
+
+  /**
+   * Returns the column coordinate of a ghost, in the units of FixedPoint.
+   *
+   * @param ghost index of the ghost
+   * @return fixed-point column
+   */
+  public int getGhostColFixed(final int ghost) {
+    return ghostCol[ghost];
+  }
+
+  /**
+   * Returns the direction of a ghost.
+   *
+   * @param ghost index of the ghost
+   * @return current direction
+   */
+  public Direction getGhostDirection(final int ghost) {
+    return Direction.values()[ghostDir[ghost]];
+  }
+
+  /**
+   * Returns the mode of a ghost.
+   *
+   * @param ghost index of the ghost
+   * @return current mode
+   */
+  public Mode getGhostMode(final int ghost) {
+    return Mode.values()[ghostMode[ghost]];
+  }
+
+  /**
+   * Returns the number of ghosts in a cell.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return number of ghosts there
+   */
+  public int getGhostCountAt(final int row, final int col) {
+    return occupancy.getCount(row * numCols + col);
+  }
+
+  /**
+   * Sends the player and every ghost home and restarts the global modes, as PacmanGame.resetAll()
+   * does. Ghosts leave their home after the delay of the maze's ghost with the same home, plus one
+   * frame for each ghost of the home before them, up to a second.
+   */
+  private void resetAll() {
+    currentGhostPoints = BASE_GHOST_POINTS;
+    player.reset();
+    int homes = homeKind.length;
+    for (int k = 0; k < ghostCount; ++k) {
+      int h = ghostHome[k];
+      resetGhost(k);
+      int delay = h == FIRST_ENEMY_INDEX ? MIN_INACTIVE_TIMER : h * INACTIVE_TIME * frameRate;
+      releaseFrame[k] = frameCount + delay + (k / homes) % frameRate;
+      occupancy.move(k, ghostCellRow[k] * numCols + ghostCellCol[k]);
+    }
+    globalModeIndex = 0;
+    modeCountdown = PacmanGame.getModeFrames(1, 0, frameRate);
+  }
+
+  /**
+   * Runs a pass over the ghosts, in parallel chunks if enabled.
+   *
+   * @param pass UPDATE_PASS or FRIGHTEN_PASS
+   */
+  private void runPass(final int pass) {
+    int chunks = (ghostCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    if (!parallel || chunks == 1) {
+      for (int chunk = 0; chunk < chunks; ++chunk) {
+        runChunk(pass, chunk);
+      }
+    } else {
+      IntStream.range(0, chunks).parallel().forEach(chunk -> runChunk(pass, chunk));
+    }
+  }
+
+  /**
+   * Runs a pass over the ghosts of one chunk. Each ghost only reads shared values and writes its
+   * own state, so chunks can run at the same time.
+   *
+   * @param pass UPDATE_PASS or FRIGHTEN_PASS
+   * @param chunk index of the chunk
+   */
+  private void runChunk(final int pass, final int chunk) {
+    int end = Math.min(ghostCount, (chunk + 1) * CHUNK_SIZE);
+    if (pass == UPDATE_PASS) {
+      for (int k = chunk * CHUNK_SIZE; k < end; ++k) {
+        updateGhost(k);
+      }
+    } else {
+      for (int k = chunk * CHUNK_SIZE; k < end; ++k) {
+        if (ghostMode[k] != INACTIVE) {
+          setMode(k, FRIGHTENED);
+        }
+      }
+    }
+  }
+
+  /**
+   * Applies the frame's mode transitions to a ghost, moves it, and sends it home if it is dead and
+   * has arrived there.
+   *
+   * @param k index of the ghost
+   */
+  private void updateGhost(final int k) {
+    int mode = ghostMode[k];
+    int global = GLOBAL_MODES[globalModeIndex].ordinal();
+    if (mode == INACTIVE) {
+      if (frameCount >= releaseFrame[k]) {
+        setMode(k, global);
+      }
+    } else if (mode == FRIGHTENED) {
+      if (frightenedEnded) {
+        setMode(k, global);
+      }
+    } else if (mode != DEAD && globalModeChanged) {
+      setMode(k, global);
+    }
+
+    moveGhost(k);
+
+    int h = ghostHome[k];
+    if (ghostMode[k] == DEAD && ghostCellRow[k] == homeRow[h] && ghostCellCol[k] == homeCol[h]) {
+      resetGhost(k);
+      releaseFrame[k] = frameCount + INACTIVE_TIME * frameRate;
+    }
+  }
+
+  /**
+   * The equivalent of ActorImpl.reset().
+   *
+   * @param k index of the ghost
+   */
+  private void resetGhost(final int k) {
+    int h = ghostHome[k];
+    ghostMode[k] = INACTIVE;
+    ghostIncrement[k] = homeIncrement[h];
+    ghostDir[k] = homeDir[h];
+    ghostNextDir[k] = homeDir[h];
+    ghostRow[k] = FixedPoint.center(homeRow[h]);
+    ghostCol[k] = FixedPoint.center(homeCol[h]);
+    ghostCellRow[k] = homeRow[h];
+    ghostCellCol[k] = homeCol[h];
+    ghostPastCenter[k] = false;
+  }
+
+  /**
+   * The equivalent of ActorImpl.setMode() with a non-null descriptor.
+   *
+   * @param k index of the ghost
+   * @param mode ordinal of the new mode
+   */
+  private void setMode(final int k, final int mode) {
+    int h = ghostHome[k];
+    int previous = ghostMode[k];
+    if (mode == FRIGHTENED) {
+      ghostIncrement[k] = homeFrightenedIncrement[h];
+    } else if (mode == DEAD) {
+      ghostIncrement[k] = homeDeadIncrement[h];
+    } else {
+      ghostIncrement[k] = homeIncrement[h];
+    }
+    ghostMode[k] = mode;
+    if (previous == INACTIVE || previous != mode) {
+      if (previous == INACTIVE && ghostCellRow[k] == homeRow[h] && ghostCellCol[k] == homeCol[h]) {
+        ghostDir[k] = UP;
+      }
+      ghostPastCenter[k] = false;
+      calculateNextCell(k);
+    }
+  }
+
+  /**
+   * Moves a ghost by its increment, the fixed-point counterpart of ActorImpl.update(). The ghost
+   * moves from center to center: whenever it reaches one, it picks its next direction and spends
+   * the rest of its increment in that direction. A ghost with nowhere to go waits at the center and
+   * decides again on the next frame.
+   *
+   * @param k index of the ghost
+   */
+  private void moveGhost(final int k) {
+    if (ghostMode[k] == INACTIVE) {
+      return;
+    }
+    int remaining = ghostIncrement[k];
+    while (true) {
+      int row = ghostRow[k];
+      int col = ghostCol[k];
+      boolean atCellCenter = FixedPoint.isCenter(row) && FixedPoint.isCenter(col);
+      if (atCellCenter) {
+        if (!ghostPastCenter[k]) {
+          calculateNextCell(k);
+          ghostDir[k] = ghostNextDir[k];
+          ghostPastCenter[k] = true;
+        }
+        int next = neighbor(ghostCellRow[k], ghostCellCol[k], ghostDir[k]);
+        if (next < 0 || walls[next]) {
+          ghostPastCenter[k] = false;
+          return;
+        }
+      }
+      if (remaining == 0) {
+        return;
+      }
+
+      // distance to the next center ahead, which is the current cell's if it is not yet reached
+      int dir = ghostDir[k];
+      int offset = ((isHorizontal(dir) ? col : row) & MASK) - HALF;
+      int toCenter;
+      if (dir == RIGHT || dir == DOWN) {
+        toCenter = offset < 0 ? -offset : ONE - offset;
+      } else {
+        toCenter = offset > 0 ? offset : ONE + offset;
+      }
+      int step = Math.min(remaining, toCenter);
+      remaining -= step;
+      if (dir == UP) {
+        row -= step;
+      } else if (dir == DOWN) {
+        row += step;
+      } else if (dir == LEFT) {
+        col -= step;
+        if (col < 0) {
+          // through the tunnel
+          col += numCols * ONE;
+        }
+      } else {
+        col += step;
+        if (col >= numCols * ONE) {
+          col -= numCols * ONE;
+        }
+      }
+      ghostRow[k] = row;
+      ghostCol[k] = col;
+      ghostCellRow[k] = FixedPoint.cell(row);
+      ghostCellCol[k] = FixedPoint.cell(col);
+      if (step < toCenter) {
+        return;
+      }
+      ghostPastCenter[k] = false;
+    }
+  }
+
+  /**
+   * The equivalent of ActorImpl.calculateNextCell(): sets the ghost's next direction according to
+   * its mode and targeting kind.
+   *
+   * @param k index of the ghost
+   */
+  private void calculateNextCell(final int k) {
+    int mode = ghostMode[k];
+    if (mode == INACTIVE) {
+      return;
+    }
+    if (mode == FRIGHTENED) {
+      chooseFrightenedDirection(k);
+      return;
+    }
+
+    int h = ghostHome[k];
+    int targetRow;
+    int targetCol;
+    if (mode == DEAD) {
+      targetRow = homeRow[h];
+      targetCol = homeCol[h];
+    } else if (mode == SCATTER) {
+      targetRow = homeScatterRow[h];
+      targetCol = homeScatterCol[h];
+    } else {
+      targetRow = descPlayerRow;
+      targetCol = descPlayerCol;
+      int kind = ghostKind[k];
+      if (kind == PINKY || kind == INKY) {
+        int ahead = kind == PINKY ? Pinky.TARGET_DISTANCE : Inky.INTERMEDIATE_DISTANCE;
+        int dir = descPlayerDir;
+        if (dir == UP) {
+          // the original game's overflow bug also shifts the target left
+          targetRow -= ahead;
+          targetCol -= ahead;
+        } else if (dir == DOWN) {
+          targetRow += ahead;
+        } else if (dir == LEFT) {
+          targetCol -= ahead;
+        } else if (dir == RIGHT) {
+          targetCol += ahead;
+        }
+        if (kind == INKY) {
+          targetRow += targetRow - descBlinkyRow;
+          targetCol += targetCol - descBlinkyCol;
+        }
+      } else if (kind == CLYDE
+          && distance(ghostCellRow[k], ghostCellCol[k], targetRow, targetCol)
+              <= Clyde.DISTANCE_THRESHOLD) {
+        targetRow = homeScatterRow[h];
+        targetCol = homeScatterCol[h];
+      }
+    }
+    choosePathToTarget(k, targetRow, targetCol);
+  }
+
+  /**
+   * The equivalent of ActorImpl.calculatePathToTarget(): picks the open neighbor closest to the
+   * target, preferring to keep going straight, and reversing only as a last resort.
+   *
+   * @param k index of the ghost
+   * @param targetRow row of the target
+   * @param targetCol column of the target
+   */
+  private void choosePathToTarget(final int k, final int targetRow, final int targetCol) {
+    int row = ghostCellRow[k];
+    int col = ghostCellCol[k];
+    int current = ghostDir[k];
+    int opposite = opposite(current);
+    int bestDir = -1;
+    double shortestDistance = Double.MAX_VALUE;
+    int validMoveCount = 0;
+    boolean currentValid = false;
+    double currentDistance = 0;
+    for (int dir : DIRECTION_ORDER) {
+      if (dir == opposite) {
+        continue;
+      }
+      int next = neighbor(row, col, dir);
+      if (next < 0 || walls[next]) {
+        continue;
+      }
+      double d = distance(next / numCols, next % numCols, targetRow, targetCol);
+      validMoveCount++;
+      if (dir == current) {
+        currentValid = true;
+        currentDistance = d;
+      }
+      if (d < shortestDistance) {
+        shortestDistance = d;
+        bestDir = dir;
+      }
+    }
+
+    if (validMoveCount > 1
+        && currentValid
+        && currentDistance <= shortestDistance + DISTANCE_TOLERANCE) {
+      bestDir = current;
+    }
+    if (validMoveCount <= 2 && bestDir >= 0 && currentValid) {
+      bestDir = current;
+    }
+    if (bestDir < 0) {
+      int reverse = neighbor(row, col, opposite);
+      if (reverse >= 0 && !walls[reverse]) {
+        bestDir = opposite;
+      }
+    }
+    if (bestDir >= 0) {
+      ghostNextDir[k] = bestDir;
+    }
+  }
+
+  /**
+   * The equivalent of ActorImpl.handleFrightenedMode(): picks a random open neighbor at
+   * intersections, usually keeping the current direction.
+   *
+   * @param k index of the ghost
+   */
+  private void chooseFrightenedDirection(final int k) {
+    int row = ghostCellRow[k];
+    int col = ghostCellCol[k];
+    int current = ghostDir[k];
+    int opposite = opposite(current);
+
+    // the open directions, in DIRECTION_ORDER, packed two bits each
+    int valid = 0;
+    int validMoveCount = 0;
+    int currentIndex = -1;
+    for (int dir : DIRECTION_ORDER) {
+      if (dir == opposite) {
+        continue;
+      }
+      int next = neighbor(row, col, dir);
+      if (next >= 0 && !walls[next]) {
+        if (dir == current) {
+          currentIndex = validMoveCount;
+        }
+        valid |= dir << (2 * validMoveCount);
+        validMoveCount++;
+      }
+    }
+
+    if (validMoveCount > 1) {
+      if (currentIndex >= 0
+          && PackedRandom.nextDouble(rngSeed, k) < FRIGHTENED_CONTINUE_PROBABILITY) {
+        ghostNextDir[k] = current;
+        return;
+      }
+      int choice = PackedRandom.nextInt(rngSeed, k, validMoveCount);
+      ghostNextDir[k] = (valid >>> (2 * choice)) & 3;
+    } else if (validMoveCount == 1) {
+      ghostNextDir[k] = valid & 3;
+    } else {
+      int reverse = neighbor(row, col, opposite);
+      if (reverse >= 0 && !walls[reverse]) {
+        ghostNextDir[k] = opposite;
+      }
+    }
+  }
+
+  /**
+   * The equivalent of ActorImpl.getNextLocation(): the cell next to the given one in the given
+   * direction, wrapping through the side tunnels, or -1 if there is none. A wrapped cell is not
+   * checked for a wall.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @param dir direction ordinal
+   * @return index of the neighboring cell, or -1
+   */
+  private int neighbor(final int row, final int col, final int dir) {
+    if (dir == UP) {
+      if (row > 0 && !walls[(row - 1) * numCols + col]) {
+        return (row - 1) * numCols + col;
+      }
+    } else if (dir == DOWN) {
+      if (row < numRows - 1 && !walls[(row + 1) * numCols + col]) {
+        return (row + 1) * numCols + col;
+      }
+    } else if (dir == LEFT) {
+      if (col > 0 && !walls[row * numCols + col - 1]) {
+        return row * numCols + col - 1;
+      } else if (col == 0) {
+        return row * numCols + numCols - 1;
+      }
+    } else {
+      if (col < numCols - 1 && !walls[row * numCols + col + 1]) {
+        return row * numCols + col + 1;
+      } else if (col == numCols - 1) {
+        return row * numCols;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Euclidean distance between two cells, as ActorImpl.calculateDistanceTween() computes it.
+   *
+   * @param row1 row of the first cell
+   * @param col1 column of the first cell
+   * @param row2 row of the second cell
+   * @param col2 column of the second cell
+   * @return distance between the cells
+   */
+  private static double distance(final int row1, final int col1, final int row2, final int col2) {
+    double dx = col1 - col2;
+    double dy = row1 - row2;
+    return Math.sqrt(dx * dx + dy * dy);
+  }
+
+  /**
+   * Returns true if a direction is LEFT or RIGHT.
+   *
+   * @param dir direction ordinal
+   * @return true for horizontal directions
+   */
+  private static boolean isHorizontal(final int dir) {
+    return dir == LEFT || dir == RIGHT;
+  }
+
+  /**
+   * Returns the opposite of a direction.
+   *
+   * @param dir direction ordinal
+   * @return ordinal of the opposite direction
+   */
+  private static int opposite(final int dir) {
+    if (dir == UP) {
+      return DOWN;
+    } else if (dir == DOWN) {
+      return UP;
+    } else if (dir == LEFT) {
+      return RIGHT;
+    }
+    return LEFT;
+  }
+}
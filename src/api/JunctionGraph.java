@@ -0,0 +1,615 @@
+package api;
+
+import java.util.Arrays;
+
+/**
+ * Graph of the junctions of a maze, for pathfinding that looks at the places where there is a
+ * choice rather than at every cell. Nodes are the cells with one, three or four exits, which are
+ * the dead ends and the junctions, and the open cells at the left and right edges, where the side
+ * tunnels are. Each way out of a node follows its corridor, around corners, to the next node, and
+ * is an edge as long as the number of steps it takes. Steps follow CorridorIndex. A corridor that
+ * closes on itself without meeting a node gets a node of its own, so every cell with an exit is a
+ * node or lies on exactly one corridor.
+ *
+ * <p>Nodes are numbered from 0 to getNodeCount() - 1 in the order of their cells, and each edge
+ * leaves one node, so every corridor has two edges, one each way; the edges of a node are
+ * numbered consecutively. Cells are numbered row * columns + col, and every cell on a corridor
+ * knows its edge and its distance from the node the edge leaves. The graph keeps the length of the
+ * shortest path and its first edge between every two nodes, a table far smaller than one between
+ * every two cells, and from those finds shortest paths between cells in constant time. It does not
+ * allocate after construction.
+ */
+public final class JunctionGraph {
+  /** Marks a missing node, edge or path. */
+  public static final int NONE = -1;
+
+  /** Number of directions. */
+  private static final int DIRECTIONS = 4;
+
+  /** Length of a path between nodes that are not connected. */
+  private static final int UNREACHABLE = Integer.MAX_VALUE / 4;
+
+  /** Directions by ordinal. */
+  private static final Direction[] DIRECTION_VALUES = Direction.values();
+
+  /** Opposite of each direction, by ordinal. */
+  private static final int[] OPPOSITE = {
+    Direction.RIGHT.ordinal(), Direction.LEFT.ordinal(),
+    Direction.DOWN.ordinal(), Direction.UP.ordinal()
+  };
+
+  /** Number of columns of the maze. */
+  private final int numCols;
+
+  /** Cell of each node. */
+  private final int[] nodeCells;
+
+  /** Node of each cell, or NONE if it is not a node. */
+  private final int[] cellNodes;
+
+  /** First edge of each node, and the number of edges at the end. */
+  private final int[] firstEdges;
+
+  /** Node each edge leaves. */
+  private final int[] edgeSources;
+
+  /** Node each edge leads to. */
+  private final int[] edgeTargets;
+
+  /** Number of steps along each edge. */
+  private final int[] edgeLengths;
+
+  /** Direction ordinal of the first step of each edge. */
+  private final int[] edgeDirections;
+
+  /** The edge along the same corridor the other way. */
+  private final int[] reverseEdges;
+
+  /** Edge of each cell on a corridor, or NONE for nodes and walls. */
+  private final int[] cellEdges;
+
+  /** Steps from the node its edge leaves to each cell on a corridor. */
+  private final int[] cellOffsets;
+
+  /** Direction ordinal of the step from each cell on a corridor along its edge, and back. */
+  private final int[] cellForward;
+  private final int[] cellBackward;
+
+  /** Length of the shortest path between every two nodes, indexed from * nodes + to. */
+  private final int[] distances;
+
+  /** First edge of a shortest path between every two distinct nodes, or NONE. */
+  private final int[] firstSteps;
+
+  /**
+   * Compiles the graph of the maze indexed by the given corridors.
+   *
+   * @param corridors the maze's corridor index
+   */
+  public JunctionGraph(final CorridorIndex corridors) {
+    numCols = corridors.getNumColumns();
+    int numRows = corridors.getNumRows();
+    int cellCount = numRows * numCols;
+    int[] exits = new int[cellCount * DIRECTIONS];
+    for (int cell = 0; cell < cellCount; ++cell) {
+      for (int dir = 0; dir < DIRECTIONS; ++dir) {
+        exits[cell * DIRECTIONS + dir] =
+            corridors.getNeighbor(cell / numCols, cell % numCols, DIRECTION_VALUES[dir]);
+      }
+    }
+    boolean[] isNode = findNodes(exits, numCols);
+
+    cellNodes = new int[cellCount];
+    Arrays.fill(cellNodes, NONE);
+    int nodeCount = 0;
+    int edgeCount = 0;
+    for (int cell = 0; cell < cellCount; ++cell) {
+      if (isNode[cell]) {
+        cellNodes[cell] = nodeCount++;
+        for (int dir = 0; dir < DIRECTIONS; ++dir) {
+          edgeCount += exits[cell * DIRECTIONS + dir] != CorridorIndex.NONE ? 1 : 0;
+        }
+      }
+    }
+    nodeCells = new int[nodeCount];
+    firstEdges = new int[nodeCount + 1];
+    edgeSources = new int[edgeCount];
+    edgeTargets = new int[edgeCount];
+    edgeLengths = new int[edgeCount];
+    edgeDirections = new int[edgeCount];
+    reverseEdges = new int[edgeCount];
+    cellEdges = new int[cellCount];
+    cellOffsets = new int[cellCount];
+    cellForward = new int[cellCount];
+    cellBackward = new int[cellCount];
+    Arrays.fill(cellEdges, NONE);
+    int[] arrivals = new int[edgeCount];
+    followCorridors(exits, isNode, arrivals);
+    for (int e = 0; e < edgeCount; ++e) {
+      int back = OPPOSITE[arrivals[e]];
+      int target = edgeTargets[e];
+      for (int f = firstEdges[target]; f < firstEdges[target + 1]; ++f) {
+        if (edgeDirections[f] == back) {
+          reverseEdges[e] = f;
+        }
+      }
+    }
+
+    distances = new int[nodeCount * nodeCount];
+    firstSteps = new int[nodeCount * nodeCount];
+    long[] heap = new long[edgeCount + 1];
+    for (int source = 0; source < nodeCount; ++source) {
+      findShortestPaths(source, heap);
+    }
+  }
+
+  /**
+   * Decides which cells are nodes: those with one, three or four exits, those with exits at the
+   * left and right edges, and one cell of each loop of corridors that meets no other node.
+   *
+   * @param exits cell entered by each step, or NONE
+   * @param numCols number of columns
+   * @return whether each cell is a node
+   */
+  private static boolean[] findNodes(final int[] exits, final int numCols) {
+    int cellCount = exits.length / DIRECTIONS;
+    boolean[] open = new boolean[cellCount];
+    boolean[] isNode = new boolean[cellCount];
+    for (int cell = 0; cell < cellCount; ++cell) {
+      int count = 0;
+      for (int dir = 0; dir < DIRECTIONS; ++dir) {
+        count += exits[cell * DIRECTIONS + dir] != CorridorIndex.NONE ? 1 : 0;
+      }
+      int col = cell % numCols;
+      open[cell] = count > 0;
+      isNode[cell] = open[cell] && (count != 2 || col == 0 || col == numCols - 1);
+    }
+    boolean[] covered = new boolean[cellCount];
+    for (int cell = 0; cell < cellCount; ++cell) {
+      if (isNode[cell]) {
+        cover(exits, isNode, covered, cell);
+      }
+    }
+    for (int cell = 0; cell < cellCount; ++cell) {
+      if (open[cell] && !isNode[cell] && !covered[cell]) {
+        isNode[cell] = true;
+        cover(exits, isNode, covered, cell);
+      }
+    }
+    return isNode;
+  }
+
+  /**
+   * Follows the corridor out of every node in every direction to the next node, filling in the
+   * edges and the cells on them.
+   *
+   * @param exits cell entered by each step, or NONE
+   * @param isNode whether each cell is a node
+   * @param arrivals direction ordinal of the last step of each edge, filled in
+   */
+  private void followCorridors(final int[] exits, final boolean[] isNode, final int[] arrivals) {
+    int edge = 0;
+    for (int cell = 0; cell < cellNodes.length; ++cell) {
+      int node = cellNodes[cell];
+      if (node == NONE) {
+        continue;
+      }
+      nodeCells[node] = cell;
+      firstEdges[node] = edge;
+      for (int dir = 0; dir < DIRECTIONS; ++dir) {
+        if (exits[cell * DIRECTIONS + dir] == CorridorIndex.NONE) {
+          continue;
+        }
+        // follow the corridor to the next node, labelling its cells the first time through
+        int at = exits[cell * DIRECTIONS + dir];
+        int arrival = dir;
+        int length = 1;
+        while (!isNode[at]) {
+          int out = arrival;
+          if (exits[at * DIRECTIONS + out] == CorridorIndex.NONE) {
+            out = otherExit(exits, at, OPPOSITE[arrival]);
+          }
+          if (cellEdges[at] == NONE) {
+            cellEdges[at] = edge;
+            cellOffsets[at] = length;
+            cellForward[at] = out;
+            cellBackward[at] = OPPOSITE[arrival];
+          }
+          at = exits[at * DIRECTIONS + out];
+          arrival = out;
+          length++;
+        }
+        edgeSources[edge] = node;
+        edgeTargets[edge] = cellNodes[at];
+        edgeLengths[edge] = length;
+        edgeDirections[edge] = dir;
+        arrivals[edge] = arrival;
+        edge++;
+      }
+    }
+    firstEdges[nodeCells.length] = edge;
+  }
+
+  /**
+   * Marks the cells on the corridors leaving a node as covered.
+   *
+   * @param exits cell entered by each step, or NONE
+   * @param isNode whether each cell is a node
+   * @param covered whether each cell is on a corridor followed so far
+   * @param node cell of the node
+   */
+  private static void cover(
+      final int[] exits, final boolean[] isNode, final boolean[] covered, final int node) {
+    for (int dir = 0; dir < DIRECTIONS; ++dir) {
+      int at = exits[node * DIRECTIONS + dir];
+      int arrival = dir;
+      while (at != CorridorIndex.NONE && !isNode[at] && !covered[at]) {
+        covered[at] = true;
+        int out = arrival;
+        if (exits[at * DIRECTIONS + out] == CorridorIndex.NONE) {
+          out = otherExit(exits, at, OPPOSITE[arrival]);
+        }
+        at = exits[at * DIRECTIONS + out];
+        arrival = out;
+      }
+    }
+  }
+
+  /**
+   * Returns the exit of a cell with two exits other than the given one.
+   *
+   * @param exits cell entered by each step, or NONE
+   * @param cell the cell
+   * @param back the exit not wanted
+   * @return the other exit's direction ordinal
+   */
+  private static int otherExit(final int[] exits, final int cell, final int back) {
+    for (int dir = 0; dir < DIRECTIONS; ++dir) {
+      if (dir != back && exits[cell * DIRECTIONS + dir] != CorridorIndex.NONE) {
+        return dir;
+      }
+    }
+    return back;
+  }
+
+  /**
+   * Finds the shortest paths from one node to every other with Dijkstra's algorithm, filling its
+   * rows of the distance and first step tables.
+   *
+   * @param source the node
+   * @param heap room for a priority queue of (distance, edge) pairs, one per edge and one more
+   */
+  private void findShortestPaths(final int source, final long[] heap) {
+    int nodeCount = nodeCells.length;
+    int row = source * nodeCount;
+    Arrays.fill(distances, row, row + nodeCount, UNREACHABLE);
+    Arrays.fill(firstSteps, row, row + nodeCount, NONE);
+    distances[row + source] = 0;
+    int size = 0;
+    for (int e = firstEdges[source]; e < firstEdges[source + 1]; ++e) {
+      size = push(heap, size, ((long) edgeLengths[e] << Integer.SIZE) | e);
+      int target = edgeTargets[e];
+      if (edgeLengths[e] < distances[row + target] && target != source) {
+        distances[row + target] = edgeLengths[e];
+        firstSteps[row + target] = e;
+      }
+    }
+    while (size > 0) {
+      long top = heap[0];
+      size = pop(heap, size);
+      int distance = (int) (top >>> Integer.SIZE);
+      int node = edgeTargets[(int) top];
+      if (distance > distances[row + node]) {
+        continue;
+      }
+      for (int e = firstEdges[node]; e < firstEdges[node + 1]; ++e) {
+        int target = edgeTargets[e];
+        int through = distance + edgeLengths[e];
+        if (through < distances[row + target]) {
+          distances[row + target] = through;
+          firstSteps[row + target] = firstSteps[row + node];
+          size = push(heap, size, ((long) through << Integer.SIZE) | e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds a value to a binary min-heap.
+   *
+   * @param heap the heap
+   * @param size number of values in it
+   * @param value the value
+   * @return the new number of values
+   */
+  private static int push(final long[] heap, final int size, final long value) {
+    int i = size;
+    while (i > 0 && heap[(i - 1) / 2] > value) {
+      heap[i] = heap[(i - 1) / 2];
+      i = (i - 1) / 2;
+    }
+    heap[i] = value;
+    return size + 1;
+  }
+
+  /**
+   * Removes the smallest value from a binary min-heap.
+   *
+   * @param heap the heap
+   * @param size number of values in it, at least 1
+   * @return the new number of values
+   */
+  private static int pop(final long[] heap, final int size) {
+    int last = size - 1;
+    long value = heap[last];
+    int i = 0;
+    while (2 * i + 1 < last) {
+      int child = 2 * i + 1;
+      if (child + 1 < last && heap[child + 1] < heap[child]) {
+        child++;
+      }
+      if (heap[child] >= value) {
+        break;
+      }
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = value;
+    return last;
+  }
+
+  /**
+   * Returns the number of nodes.
+   *
+   * @return number of nodes
+   */
+  public int getNodeCount() {
+    return nodeCells.length;
+  }
+
+  /**
+   * Returns the number of edges, two for each corridor.
+   *
+   * @return number of edges
+   */
+  public int getEdgeCount() {
+    return edgeTargets.length;
+  }
+
+  /**
+   * Returns the cell of a node.
+   *
+   * @param node the node
+   * @return its cell, numbered row * columns + col
+   */
+  public int getNodeCell(final int node) {
+    return nodeCells[node];
+  }
+
+  /**
+   * Returns the node at a cell.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return the node, or NONE if the cell is not a node
+   */
+  public int getNode(final int row, final int col) {
+    return cellNodes[row * numCols + col];
+  }
+
+  /**
+   * Returns the first of the edges leaving a node, which are numbered consecutively up to the
+   * first edge of the next node. getFirstEdge(getNodeCount()) is the number of edges.
+   *
+   * @param node the node, or getNodeCount()
+   * @return its first edge
+   */
+  public int getFirstEdge(final int node) {
+    return firstEdges[node];
+  }
+
+  /**
+   * Returns the node an edge leaves.
+   *
+   * @param edge the edge
+   * @return the node at its near end
+   */
+  public int getEdgeSource(final int edge) {
+    return edgeSources[edge];
+  }
+
+  /**
+   * Returns the node an edge leads to.
+   *
+   * @param edge the edge
+   * @return the node at its far end
+   */
+  public int getEdgeTarget(final int edge) {
+    return edgeTargets[edge];
+  }
+
+  /**
+   * Returns the number of steps along an edge.
+   *
+   * @param edge the edge
+   * @return its length, at least 1
+   */
+  public int getEdgeLength(final int edge) {
+    return edgeLengths[edge];
+  }
+
+  /**
+   * Returns the direction in which an edge leaves its node.
+   *
+   * @param edge the edge
+   * @return direction of its first step
+   */
+  public Direction getEdgeDirection(final int edge) {
+    return DIRECTION_VALUES[edgeDirections[edge]];
+  }
+
+  /**
+   * Returns the edge along the same corridor the other way.
+   *
+   * @param edge the edge
+   * @return the reverse edge
+   */
+  public int getReverseEdge(final int edge) {
+    return reverseEdges[edge];
+  }
+
+  /**
+   * Returns the edge a cell on a corridor lies on. Each such cell has one, going one way along
+   * its corridor; the other way is its reverse edge.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return the edge, or NONE for nodes and walls
+   */
+  public int getCellEdge(final int row, final int col) {
+    return cellEdges[row * numCols + col];
+  }
+
+  /**
+   * Returns the number of steps along its edge from the node the edge leaves to a cell on a
+   * corridor.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return steps from the edge's node, between 1 and the edge's length - 1
+   */
+  public int getCellOffset(final int row, final int col) {
+    return cellOffsets[row * numCols + col];
+  }
+
+  /**
+   * Returns the length of the shortest path between two nodes.
+   *
+   * @param from the first node
+   * @param to the second node
+   * @return number of steps, or NONE if there is no path
+   */
+  public int getNodeDistance(final int from, final int to) {
+    int distance = distances[from * nodeCells.length + to];
+    return distance == UNREACHABLE ? NONE : distance;
+  }
+
+  /**
+   * Returns the first edge of a shortest path between two distinct nodes.
+   *
+   * @param from the first node
+   * @param to the second node
+   * @return the edge leaving from, or NONE if the nodes are the same or there is no path
+   */
+  public int getFirstEdge(final int from, final int to) {
+    return firstSteps[from * nodeCells.length + to];
+  }
+
+  /**
+   * Returns the length of the shortest path between two cells.
+   *
+   * @param fromRow row of the first cell
+   * @param fromCol column of the first cell
+   * @param toRow row of the second cell
+   * @param toCol column of the second cell
+   * @return number of steps, or NONE if there is no path
+   */
+  public int getDistance(final int fromRow, final int fromCol, final int toRow, final int toCol) {
+    int best = findPath(fromRow * numCols + fromCol, toRow * numCols + toCol, false);
+    return best == UNREACHABLE ? NONE : best;
+  }
+
+  /**
+   * Returns the direction of the first step of a shortest path between two cells.
+   *
+   * @param fromRow row of the first cell
+   * @param fromCol column of the first cell
+   * @param toRow row of the second cell
+   * @param toCol column of the second cell
+   * @return the direction, or null if the cells are the same or there is no path
+   */
+  public Direction getFirstDirection(
+      final int fromRow, final int fromCol, final int toRow, final int toCol) {
+    int dir = findPath(fromRow * numCols + fromCol, toRow * numCols + toCol, true);
+    return dir == NONE ? null : DIRECTION_VALUES[dir];
+  }
+
+  /**
+   * Finds a shortest path between two cells through the nodes at either end of their corridors,
+   * or along their corridor if they share one.
+   *
+   * @param from the first cell
+   * @param to the second cell
+   * @param direction whether to return the first step's direction rather than the length
+   * @return the length, or UNREACHABLE; or the direction ordinal, or NONE
+   */
+  private int findPath(final int from, final int to, final boolean direction) {
+    if (from == to) {
+      return direction ? NONE : 0;
+    }
+    int best = UNREACHABLE;
+    int bestDir = NONE;
+    int fromEdge = cellEdges[from];
+    int toEdge = cellEdges[to];
+    if (fromEdge != NONE && fromEdge == toEdge) {
+      best = Math.abs(cellOffsets[to] - cellOffsets[from]);
+      bestDir = cellOffsets[to] > cellOffsets[from] ? cellForward[from] : cellBackward[from];
+    }
+    int nodeCount = nodeCells.length;
+    for (int i = 0; i < 2; ++i) {
+      int fromNode = endNode(from, i);
+      if (fromNode == NONE) {
+        continue;
+      }
+      int fromSteps = endSteps(from, i);
+      for (int j = 0; j < 2; ++j) {
+        int toNode = endNode(to, j);
+        int through = toNode == NONE ? UNREACHABLE : distances[fromNode * nodeCount + toNode];
+        if (through == UNREACHABLE || fromSteps + through + endSteps(to, j) >= best) {
+          continue;
+        }
+        best = fromSteps + through + endSteps(to, j);
+        if (fromEdge != NONE) {
+          bestDir = i == 0 ? cellBackward[from] : cellForward[from];
+        } else if (fromNode != toNode) {
+          bestDir = edgeDirections[firstSteps[fromNode * nodeCount + toNode]];
+        } else {
+          // the path leaves the node along the corridor of the target cell
+          bestDir = edgeDirections[j == 0 ? toEdge : reverseEdges[toEdge]];
+        }
+      }
+    }
+    return direction ? (best == UNREACHABLE ? NONE : bestDir) : best;
+  }
+
+  /**
+   * Returns one of the nodes nearest a cell: for a node the node itself, and for a cell on a
+   * corridor the node its edge leaves, then the one it leads to.
+   *
+   * @param cell the cell
+   * @param end 0 or 1
+   * @return the node, or NONE
+   */
+  private int endNode(final int cell, final int end) {
+    int edge = cellEdges[cell];
+    if (edge == NONE) {
+      return end == 0 ? cellNodes[cell] : NONE;
+    }
+    return end == 0 ? edgeSources[edge] : edgeTargets[edge];
+  }
+
+  /**
+   * Returns the number of steps from a cell to the node endNode() gives.
+   *
+   * @param cell the cell
+   * @param end 0 or 1
+   * @return number of steps
+   */
+  private int endSteps(final int cell, final int end) {
+    int edge = cellEdges[cell];
+    if (edge == NONE) {
+      return 0;
+    }
+    return end == 0 ? cellOffsets[cell] : edgeLengths[edge] - cellOffsets[cell];
+  }
+}
@@ -2,6 +2,21 @@ package api;
 
 /** Immutable container for a pair of two-dimensional coordinates. */
 public class Location {
+  /** Smallest row or column value the shared instance cache starts out holding. */
+  private static final int CACHE_MIN = -64;
+
+  /** Number of distinct row (and column) values the shared instance cache starts out holding. */
+  private static final int CACHE_SPAN = 256;
+
+  /**
+   * Most distinct row (and column) values the cache grows to hold, for 4M slots. That covers every
+   * ghost target of a maze up to about 680 cells on a side.
+   */
+  private static final int MAX_CACHE_SPAN = 2048;
+
+  /** Shared instances, replaced by a larger cache when a larger maze is loaded. */
+  private static volatile Cache cache = new Cache(CACHE_MIN, CACHE_SPAN);
+
   /** The row. */
   private final int rowValue;
 
@@ -19,6 +34,88 @@ public class Location {
     this.colValue = col;
   }
 
+  /**
+   * Returns a Location with the given row and column. Locations whose coordinates lie in the
+   * range preloaded for the mazes loaded so far, or within a few hundred cells of the origin, are
+   * shared instances, so the per-frame movement code can look up cells without allocating.
+   *
+   * @param row given row
+   * @param col given column
+   * @return a location with the given row and column
+   */
+  public static Location of(final int row, final int col) {
+    Cache shared = cache;
+    int r = row - shared.min;
+    int c = col - shared.min;
+    if (r < 0 || r >= shared.span || c < 0 || c >= shared.span) {
+      return new Location(row, col);
+    }
+    int index = r * shared.span + c;
+    Location loc = shared.slots[index];
+    if (loc == null) {
+      loc = new Location(row, col);
+      shared.slots[index] = loc;
+    }
+    return loc;
+  }
+
+  /**
+   * Grows the cache to hold the given rectangle, up to MAX_CACHE_SPAN values a side, and creates
+   * the shared instances for all cached locations in it, so that later calls to of() for those
+   * coordinates never allocate. A rectangle too large to hold keeps the rows and columns from
+   * CACHE_MIN on, where the maze is.
+   *
+   * @param minRow smallest row, inclusive
+   * @param minCol smallest column, inclusive
+   * @param maxRow largest row, inclusive
+   * @param maxCol largest column, inclusive
+   */
+  static synchronized void preload(
+      final int minRow, final int minCol, final int maxRow, final int maxCol) {
+    grow(Math.min(minRow, minCol), Math.max(maxRow, maxCol));
+    Cache shared = cache;
+    int fromRow = Math.max(minRow, shared.min);
+    int fromCol = Math.max(minCol, shared.min);
+    int toRow = Math.min(maxRow, shared.min + shared.span - 1);
+    int toCol = Math.min(maxCol, shared.min + shared.span - 1);
+    for (int row = fromRow; row <= toRow; ++row) {
+      for (int col = fromCol; col <= toCol; ++col) {
+        of(row, col);
+      }
+    }
+  }
+
+  /**
+   * Replaces the cache with one that also holds the given range of rows and columns, if it does
+   * not already, keeping the shared instances made so far. An instance another thread makes in
+   * the old cache meanwhile is dropped, which is harmless since Locations are immutable.
+   *
+   * @param min smallest row or column, inclusive
+   * @param max largest row or column, inclusive
+   */
+  private static void grow(final int min, final int max) {
+    Cache old = cache;
+    int oldMax = old.min + old.span - 1;
+    int from = Math.min(min, old.min);
+    int to = Math.max(max, oldMax);
+    if (to - from >= MAX_CACHE_SPAN) {
+      from = Math.max(from, CACHE_MIN);
+      to = Math.min(to, from + MAX_CACHE_SPAN - 1);
+    }
+    if (from >= old.min && to <= oldMax) {
+      return;
+    }
+    Cache grown = new Cache(from, to - from + 1);
+    for (Location loc : old.slots) {
+      int r = loc == null ? -1 : loc.rowValue - from;
+      int c = loc == null ? -1 : loc.colValue - from;
+      if (r >= 0 && r < grown.span && c >= 0 && c < grown.span) {
+        grown.slots[r * grown.span + c] = loc;
+      }
+    }
+    cache = grown;
+  }
+
   /**
    * Returns the row value.
    *
@@ -71,4 +168,31 @@ public class Location {
   public String toString() {
     return "(" + rowValue + ", " + colValue + ")";
   }
+
+  /**
+   * Shared instances for a square of coordinates, created on first use. Locations are immutable,
+   * so a race between two threads filling the same slot is harmless.
+   */
+  private static final class Cache {
+    /** Smallest row or column value held. */
+    private final int min;
+
+    /** Number of distinct row (and column) values held. */
+    private final int span;
+
+    /** Instance for each row and column, at (row - min) * span + col - min. */
+    private final Location[] slots;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param min smallest row or column value held
+     * @param span number of distinct row (and column) values held
+     */
+    Cache(final int min, final int span) {
+      this.min = min;
+      this.span = span;
+      this.slots = new Location[span * span];
+    }
+  }
 }
@@ -2,8 +2,8 @@ package api;
 
 /** Provides a limited read-only view of the cell layout in a Pacman game. */
 public class MazeMap {
-  /** The underlying game instance. */
-  private final PacmanGame game;
+  /** The template of the game's maze. */
+  private final MazeTemplate template;
 
   /**
    * Constructs a MazeMap from the given game.
@@ -11,7 +11,16 @@ public class MazeMap {
    * @param game given game instance
    */
   public MazeMap(final PacmanGame game) {
-    this.game = game;
+    this(game.getTemplate());
+  }
+
+  /**
+   * Constructs a MazeMap of the given template, shared by every game played on it.
+   *
+   * @param template the maze template
+   */
+  MazeMap(final MazeTemplate template) {
+    this.template = template;
   }
 
   /**
@@ -22,7 +31,26 @@ public class MazeMap {
    * @return true if the given location is a wall cell
    */
   public boolean isWall(final int row, final int col) {
-    return game.getCell(row, col).isWall();
+    return template.isWall(row, col);
+  }
+
+  /**
+   * Returns the index of the maze's corridors, which tells in one lookup what stepping through
+   * the cells with isWall() would.
+   *
+   * @return corridor index of the maze
+   */
+  public CorridorIndex getCorridors() {
+    return template.getCorridors();
+  }
+
+  /**
+   * Returns the ghost house and the tunnels of the maze, found once when it was loaded.
+   *
+   * @return regions of the maze
+   */
+  public MazeRegions getRegions() {
+    return template.getRegions();
   }
 
   /**
@@ -31,7 +59,7 @@ public class MazeMap {
    * @return number of rows in the game
    */
   public int getNumRows() {
-    return game.getNumRows();
+    return template.getNumRows();
   }
 
   /**
@@ -40,6 +68,6 @@ public class MazeMap {
    * @return number of columns in the game
    */
   public int getNumColumns() {
-    return game.getNumColumns();
+    return template.getNumColumns();
   }
 }
@@ -0,0 +1,135 @@
+package api;
+
+import java.util.Arrays;
+
+/**
+ * The ghost house and the side tunnels of a maze, found once when the maze is loaded so that
+ * either can be asked about with an array lookup. Movement wraps through the tunnels; ghosts leave
+ * the house by heading for their targets like anywhere else, so the house is there for callers
+ * that need to tell where it is.
+ *
+ * <p>The ghost house is taken to be the open cells reached from the enemies' start cells without
+ * leaving the smallest rectangle that holds them all. The walls around the start cells bound it,
+ * wherever the house is in the maze, and a maze whose enemies start out in its corridors gets a
+ * house of just their start cells. A tunnel joins the two ends of a row that are both open: the
+ * cell at either end leads to the one at the other.
+ */
+public final class MazeRegions {
+  /** Marks a cell that is not the mouth of a tunnel. */
+  public static final int NONE = -1;
+
+  /** Number of columns in the maze. */
+  private final int numCols;
+
+  /** Whether each cell is in the ghost house, numbered row * columns + col. */
+  private final boolean[] house;
+
+  /** Number of cells in the ghost house. */
+  private final int houseCellCount;
+
+  /** Cell at the other end of the tunnel from each cell, or NONE. */
+  private final int[] portals;
+
+  /**
+   * Finds the ghost house and the tunnels of a maze.
+   *
+   * @param corridors index of the maze's corridors
+   * @param starts the enemies' start cells, numbered row * columns + col
+   */
+  public MazeRegions(final CorridorIndex corridors, final int[] starts) {
+    int numRows = corridors.getNumRows();
+    numCols = corridors.getNumColumns();
+    house = new boolean[numRows * numCols];
+    portals = new int[numRows * numCols];
+    Arrays.fill(portals, NONE);
+
+    int top = numRows;
+    int bottom = -1;
+    int left = numCols;
+    int right = -1;
+    for (int start : starts) {
+      top = Math.min(top, start / numCols);
+      bottom = Math.max(bottom, start / numCols);
+      left = Math.min(left, start % numCols);
+      right = Math.max(right, start % numCols);
+    }
+    // flood the open cells from the start cells, kept inside their rectangle
+    int[] queue = new int[house.length];
+    int tail = 0;
+    for (int start : starts) {
+      if (!house[start]) {
+        house[start] = true;
+        queue[tail++] = start;
+      }
+    }
+    for (int head = 0; head < tail; ++head) {
+      int cell = queue[head];
+      for (Direction dir : Direction.values()) {
+        int next = corridors.getNeighbor(cell / numCols, cell % numCols, dir);
+        if (next != CorridorIndex.NONE
+            && !house[next]
+            && next / numCols >= top
+            && next / numCols <= bottom
+            && next % numCols >= left
+            && next % numCols <= right) {
+          house[next] = true;
+          queue[tail++] = next;
+        }
+      }
+    }
+    houseCellCount = tail;
+
+    for (int row = 0; row < numRows; ++row) {
+      int first = row * numCols;
+      int last = first + numCols - 1;
+      if (numCols > 1 && corridors.getNeighbor(row, 0, Direction.LEFT) == last) {
+        portals[first] = last;
+        portals[last] = first;
+      }
+    }
+  }
+
+  /**
+   * Returns true if the given cell is in the ghost house.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return true if the cell is in the ghost house
+   */
+  public boolean isInGhostHouse(final int row, final int col) {
+    return house[row * numCols + col];
+  }
+
+  /**
+   * Returns the number of cells in the ghost house.
+   *
+   * @return number of ghost house cells
+   */
+  public int getHouseCellCount() {
+    return houseCellCount;
+  }
+
+  /**
+   * Returns true if the given cell is the mouth of a tunnel.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return true if a step off the edge of the maze from the cell leads through a tunnel
+   */
+  public boolean isPortal(final int row, final int col) {
+    return portals[row * numCols + col] != NONE;
+  }
+
+  /**
+   * Returns the cell at the other end of the tunnel from the given cell, numbered
+   * row * columns + col, or NONE if the cell is not the mouth of a tunnel. A step off the edge of
+   * the maze from one mouth leads into the other.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return the cell the tunnel leads to, or NONE
+   */
+  public int getPortal(final int row, final int col) {
+    return portals[row * numCols + col];
+  }
+}
@@ -0,0 +1,393 @@
+package api;
+
+import static api.CellType.DOT;
+import static api.CellType.EMPTY;
+import static api.CellType.ENERGIZER;
+import static api.CellType.WALL;
+import static api.Direction.DOWN;
+import static api.Direction.LEFT;
+import static api.Direction.RIGHT;
+import static api.Direction.UP;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Everything about a maze layout that never changes while it is played: the walls, the pellets it
+ * starts with, where the actors start, and the indexes built from them. A template is built once
+ * per layout and shared read-only by every game played on it, so that each game only keeps what
+ * changes, which is which pellets are left and its actors.
+ *
+ * <p>Templates are looked up with of(), which keeps one per layout for the games that follow;
+ * building one directly gives a template of its own.
+ */
+public final class MazeTemplate {
+  /** Wall character in maze layout. */
+  static final char WALL_CHAR = '#';
+
+  /** Dot character in maze layout. */
+  static final char DOT_CHAR = '.';
+
+  /** Energizer character in maze layout. */
+  static final char ENERGIZER_CHAR = '*';
+
+  /** Player start character in maze layout. */
+  static final char PLAYER_START_CHAR = 'S';
+
+  /** Blinky ghost character in maze layout. */
+  static final char BLINKY_CHAR = 'B';
+
+  /** Pinky ghost character in maze layout. */
+  static final char PINKY_CHAR = 'P';
+
+  /** Inky ghost character in maze layout. */
+  static final char INKY_CHAR = 'I';
+
+  /** Clyde ghost character in maze layout. */
+  static final char CLYDE_CHAR = 'C';
+
+  /** Most layouts kept by of(); past that the kept ones are dropped and it starts over. */
+  private static final int MAX_KEPT = 64;
+
+  /** Templates kept by of(), by the rows of their layout. */
+  private static final Map<List<String>, MazeTemplate> KEPT = new ConcurrentHashMap<>();
+
+  /** Number of rows in the maze. */
+  private final int numRows;
+
+  /** Number of columns in the maze. */
+  private final int numCols;
+
+  /** Type of each cell, numbered row * columns + col. */
+  private final CellType[] types;
+
+  /** Cell handed out for every wall, which never changes. */
+  private final MazeCell wall = new MazeCell(WALL);
+
+  /** Cell handed out for every empty cell, which never changes. */
+  private final MazeCell empty = new MazeCell(EMPTY);
+
+  /** The DOT and ENERGIZER cells, in row-major order. */
+  private final int[] pelletCells;
+
+  /** Bit set of the DOT and ENERGIZER cells, one bit per cell. */
+  private final long[] pellets;
+
+  /** Number of DOT cells, all of which are eaten when a level is won. */
+  private final int dotCount;
+
+  /** Player start cells, in row-major order. */
+  private final int[] playerStarts;
+
+  /** Enemy start cells, in row-major order. */
+  private final int[] enemyStarts;
+
+  /** Character marking each enemy start cell. */
+  private final char[] enemySymbols;
+
+  /** Read-only view of the walls, shared by the actors. */
+  private final MazeMap map;
+
+  /** Straight runs of the maze. */
+  private final CorridorIndex corridors;
+
+  /** Ghost house and tunnels of the maze. */
+  private final MazeRegions regions;
+
+  /** Junctions of the maze, compiled on first use. */
+  private JunctionGraph junctions;
+
+  /**
+   * Builds the template of a maze layout, as described for PacmanGame.
+   *
+   * @param rows array of strings, one per row of the maze
+   */
+  public MazeTemplate(final String[] rows) {
+    numRows = rows.length;
+    numCols = rows[0].length();
+    types = new CellType[numRows * numCols];
+    pellets = new long[(types.length + Long.SIZE - 1) / Long.SIZE];
+    ArrayList<Integer> pelletList = new ArrayList<>();
+    ArrayList<Integer> playerList = new ArrayList<>();
+    ArrayList<Integer> enemyList = new ArrayList<>();
+    StringBuilder symbols = new StringBuilder();
+    int dots = 0;
+    for (int row = 0; row < numRows; ++row) {
+      for (int col = 0; col < numCols; ++col) {
+        int cell = row * numCols + col;
+        char c = rows[row].charAt(col);
+        if (c == WALL_CHAR) {
+          types[cell] = WALL;
+        } else if (c == DOT_CHAR) {
+          types[cell] = DOT;
+          dots += 1;
+        } else if (c == ENERGIZER_CHAR) {
+          types[cell] = ENERGIZER;
+        } else {
+          types[cell] = EMPTY;
+        }
+        if (types[cell] == DOT || types[cell] == ENERGIZER) {
+          pelletList.add(cell);
+          pellets[cell >>> 6] |= 1L << cell;
+        }
+        if (c == PLAYER_START_CHAR) {
+          playerList.add(cell);
+        } else if (c == BLINKY_CHAR || c == PINKY_CHAR || c == INKY_CHAR || c == CLYDE_CHAR) {
+          enemyList.add(cell);
+          symbols.append(c);
+        }
+      }
+    }
+    dotCount = dots;
+    pelletCells = toArray(pelletList);
+    playerStarts = toArray(playerList);
+    enemyStarts = toArray(enemyList);
+    enemySymbols = symbols.toString().toCharArray();
+    map = new MazeMap(this);
+    corridors = new CorridorIndex(map);
+    regions = new MazeRegions(corridors, enemyStarts);
+  }
+
+  /**
+   * Returns the template of a maze layout, building it on the first call for the layout and
+   * handing out the same one for later calls with equal rows.
+   *
+   * @param rows array of strings, one per row of the maze
+   * @return template of the layout
+   */
+  public static MazeTemplate of(final String[] rows) {
+    List<String> key = List.of(rows);
+    MazeTemplate template = KEPT.get(key);
+    if (template == null) {
+      if (KEPT.size() >= MAX_KEPT) {
+        KEPT.clear();
+      }
+      template = KEPT.computeIfAbsent(key, k -> new MazeTemplate(rows));
+    }
+    return template;
+  }
+
+  /**
+   * Returns the values of a list of cells as an array.
+   *
+   * @param list the cells
+   * @return array of the cells
+   */
+  private static int[] toArray(final List<Integer> list) {
+    return list.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * Returns the number of rows in the maze.
+   *
+   * @return number of rows
+   */
+  public int getNumRows() {
+    return numRows;
+  }
+
+  /**
+   * Returns the number of columns in the maze.
+   *
+   * @return number of columns
+   */
+  public int getNumColumns() {
+    return numCols;
+  }
+
+  /**
+   * Returns true if the cell at the given row and column is a wall. No bounds checking is done.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return true if the cell is a wall
+   */
+  public boolean isWall(final int row, final int col) {
+    return types[row * numCols + col] == WALL;
+  }
+
+  /**
+   * Returns the type of the cell at the given row and column, as the maze starts.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return type of the cell
+   */
+  public CellType getCellType(final int row, final int col) {
+    return types[row * numCols + col];
+  }
+
+  /**
+   * Returns the shared cell for a wall or an empty cell, which no game can change. DOT and
+   * ENERGIZER cells have none, since each game eats its own.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return the shared cell, or null for a DOT or ENERGIZER cell
+   */
+  MazeCell getFixedCell(final int row, final int col) {
+    CellType type = types[row * numCols + col];
+    return type == WALL ? wall : type == EMPTY ? empty : null;
+  }
+
+  /**
+   * Copies the bit set of the DOT and ENERGIZER cells, bit row * columns + col for each, into the
+   * given words.
+   *
+   * @param words room for a bit per cell
+   */
+  void copyPellets(final long[] words) {
+    System.arraycopy(pellets, 0, words, 0, pellets.length);
+  }
+
+  /**
+   * Returns the number of words in the bit set of the pellets.
+   *
+   * @return number of words, a bit per cell
+   */
+  int getPelletWords() {
+    return pellets.length;
+  }
+
+  /**
+   * Returns the number of cells that start with a dot or an energizer.
+   *
+   * @return number of pellet cells
+   */
+  public int getPelletCellCount() {
+    return pelletCells.length;
+  }
+
+  /**
+   * Returns one of the cells that start with a dot or an energizer, numbered
+   * row * getNumColumns() + col, in row-major order.
+   *
+   * @param index index of the cell, from 0 to getPelletCellCount() - 1
+   * @return the cell
+   */
+  public int getPelletCell(final int index) {
+    return pelletCells[index];
+  }
+
+  /**
+   * Returns the number of cells that start with a dot, all of which are eaten when a level is won.
+   *
+   * @return number of dots
+   */
+  public int getDotCount() {
+    return dotCount;
+  }
+
+  /**
+   * Returns the number of player start cells.
+   *
+   * @return number of player start cells
+   */
+  public int getPlayerStartCount() {
+    return playerStarts.length;
+  }
+
+  /**
+   * Returns one of the player start cells, numbered row * getNumColumns() + col, in row-major
+   * order.
+   *
+   * @param index index of the start cell
+   * @return the cell
+   */
+  public int getPlayerStart(final int index) {
+    return playerStarts[index];
+  }
+
+  /**
+   * Returns the number of enemy start cells.
+   *
+   * @return number of enemies
+   */
+  public int getEnemyStartCount() {
+    return enemyStarts.length;
+  }
+
+  /**
+   * Returns one of the enemy start cells, numbered row * getNumColumns() + col, in row-major
+   * order.
+   *
+   * @param index index of the start cell
+   * @return the cell
+   */
+  public int getEnemyStart(final int index) {
+    return enemyStarts[index];
+  }
+
+  /**
+   * Returns the character marking an enemy start cell, B, P, I or C, which tells which enemy
+   * starts there.
+   *
+   * @param index index of the start cell
+   * @return the character
+   */
+  public char getEnemySymbol(final int index) {
+    return enemySymbols[index];
+  }
+
+  /**
+   * Returns the direction an actor starting in the given cell first moves in: the first of up,
+   * left, down and right that is not a wall.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return direction to move initially
+   */
+  public Direction getInitialDirection(final int row, final int col) {
+    if (!isWall(row - 1, col)) {
+      return UP;
+    } else if (!isWall(row, col - 1)) {
+      return LEFT;
+    } else if (!isWall(row + 1, col)) {
+      return DOWN;
+    } else if (!isWall(row, col + 1)) {
+      return RIGHT;
+    }
+    return LEFT; // shouldn't happen?
+  }
+
+  /**
+   * Returns the read-only view of the walls handed to the actors.
+   *
+   * @return map of the maze
+   */
+  public MazeMap getMap() {
+    return map;
+  }
+
+  /**
+   * Returns the index of the maze's corridors.
+   *
+   * @return corridor index of the maze
+   */
+  public CorridorIndex getCorridors() {
+    return corridors;
+  }
+
+  /**
+   * Returns the ghost house and the tunnels of the maze.
+   *
+   * @return regions of the maze
+   */
+  public MazeRegions getRegions() {
+    return regions;
+  }
+
+  /**
+   * Returns the graph of the maze's junctions, compiled on the first call.
+   *
+   * @return junction graph of the maze
+   */
+  public synchronized JunctionGraph getJunctionGraph() {
+    if (junctions == null) {
+      junctions = new JunctionGraph(corridors);
+    }
+    return junctions;
+  }
+}
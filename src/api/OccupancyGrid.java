@@ -0,0 +1,184 @@
+package api;
+
+import java.util.Arrays;
+
+/**
+ * Index from the cells of a maze to the actors in them, for collision detection. Actors are
+ * numbered from 0 to getActorCount() - 1 and cells are numbered row * columns + col. Each cell
+ * keeps a doubly linked list of its actors in arrays, so moving an actor to another cell takes
+ * constant time and costs nothing when it stays in the same cell, and finding the actors in a cell
+ * takes time proportional to their number. The grid does not allocate after construction.
+ */
+public final class OccupancyGrid {
+  /** Marks the end of a list, or an actor that is not in any cell. */
+  public static final int NONE = -1;
+
+  /** First actor in each cell, or NONE. */
+  private final int[] heads;
+
+  /** Number of actors in each cell. */
+  private final int[] counts;
+
+  /** Cell of each actor, or NONE. */
+  private final int[] cellOf;
+
+  /** Next actor in the same cell, or NONE. */
+  private final int[] next;
+
+  /** Previous actor in the same cell, or NONE for the first. */
+  private final int[] previous;
+
+  /** Number of cells holding at least one actor. */
+  private int occupiedCells;
+
+  /**
+   * Constructs an empty grid.
+   *
+   * @param cellCount number of cells
+   * @param actorCount number of actors
+   */
+  public OccupancyGrid(final int cellCount, final int actorCount) {
+    heads = new int[cellCount];
+    counts = new int[cellCount];
+    cellOf = new int[actorCount];
+    next = new int[actorCount];
+    previous = new int[actorCount];
+    Arrays.fill(heads, NONE);
+    Arrays.fill(cellOf, NONE);
+  }
+
+  /**
+   * Returns the number of cells.
+   *
+   * @return number of cells
+   */
+  public int getCellCount() {
+    return heads.length;
+  }
+
+  /**
+   * Returns the number of actors.
+   *
+   * @return number of actors
+   */
+  public int getActorCount() {
+    return cellOf.length;
+  }
+
+  /**
+   * Puts an actor in a cell, taking it out of its previous one. Does nothing if it is already
+   * there.
+   *
+   * @param actor the actor
+   * @param cell the new cell, or NONE to take the actor out of the grid
+   */
+  public void move(final int actor, final int cell) {
+    int old = cellOf[actor];
+    if (old == cell) {
+      return;
+    }
+    if (old != NONE) {
+      if (previous[actor] == NONE) {
+        heads[old] = next[actor];
+      } else {
+        next[previous[actor]] = next[actor];
+      }
+      if (next[actor] != NONE) {
+        previous[next[actor]] = previous[actor];
+      }
+      counts[old] -= 1;
+      if (counts[old] == 0) {
+        occupiedCells -= 1;
+      }
+    }
+    cellOf[actor] = cell;
+    if (cell != NONE) {
+      previous[actor] = NONE;
+      next[actor] = heads[cell];
+      if (heads[cell] != NONE) {
+        previous[heads[cell]] = actor;
+      }
+      heads[cell] = actor;
+      if (counts[cell] == 0) {
+        occupiedCells += 1;
+      }
+      counts[cell] += 1;
+    }
+  }
+
+  /**
+   * Returns the cell of an actor.
+   *
+   * @param actor the actor
+   * @return its cell, or NONE if it is not in the grid
+   */
+  public int getCell(final int actor) {
+    return cellOf[actor];
+  }
+
+  /**
+   * Returns the number of actors in a cell.
+   *
+   * @param cell the cell
+   * @return number of actors
+   */
+  public int getCount(final int cell) {
+    return counts[cell];
+  }
+
+  /**
+   * Returns the number of cells holding at least one actor.
+   *
+   * @return number of occupied cells
+   */
+  public int getOccupiedCellCount() {
+    return occupiedCells;
+  }
+
+  /**
+   * Returns the first actor in a cell. The actors in a cell are in no particular order; use
+   * getNext() to go through the rest.
+   *
+   * @param cell the cell
+   * @return an actor in the cell, or NONE if it is empty
+   */
+  public int getFirst(final int cell) {
+    return heads[cell];
+  }
+
+  /**
+   * Returns the actor after the given one in its cell.
+   *
+   * @param actor an actor in the grid
+   * @return the next actor in the same cell, or NONE
+   */
+  public int getNext(final int actor) {
+    return next[actor];
+  }
+
+  /**
+   * Returns the lowest-numbered actor in a cell that is numbered above the given one, for going
+   * through the actors of a cell in ascending order.
+   *
+   * @param cell the cell
+   * @param after the actor to start after, or NONE to start from the lowest
+   * @return the actor, or NONE if there is none
+   */
+  public int getFirstAfter(final int cell, final int after) {
+    int found = NONE;
+    for (int a = heads[cell]; a != NONE; a = next[a]) {
+      if (a > after && (found == NONE || a < found)) {
+        found = a;
+      }
+    }
+    return found;
+  }
+
+  /** Takes every actor out of the grid. */
+  public void clear() {
+    Arrays.fill(heads, NONE);
+    Arrays.fill(counts, 0);
+    Arrays.fill(cellOf, NONE);
+    occupiedCells = 0;
+  }
+}
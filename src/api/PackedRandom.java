@@ -0,0 +1,80 @@
+package api;
+
+/**
+ * The generator of java.util.Random, with the state of each generator kept as one long in an
+ * array, so that many of them can live side by side without an object each. A generator whose
+ * state comes from scramble(seed) returns the same values as new Random(seed).
+ */
+final class PackedRandom {
+  /** Multiplier of java.util.Random's linear congruential generator. */
+  private static final long MULTIPLIER = 0x5DEECE66DL;
+
+  /** Addend of java.util.Random's linear congruential generator. */
+  private static final long ADDEND = 0xBL;
+
+  /** Mask of the generator's 48 bits of state. */
+  private static final long MASK = (1L << 48) - 1;
+
+  /** Weight of the lowest bit of a double from nextDouble(). */
+  private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+  /** Private constructor to prevent instantiation. */
+  private PackedRandom() {
+    // Utility class
+  }
+
+  /**
+   * Returns the state of a generator seeded with the given seed, as Random.setSeed() makes it.
+   *
+   * @param seed the seed
+   * @return initial state of the generator
+   */
+  static long scramble(final long seed) {
+    return (seed ^ MULTIPLIER) & MASK;
+  }
+
+  /**
+   * Returns the next double from a generator, as Random.nextDouble() does.
+   *
+   * @param states states of the generators
+   * @param index index of the generator
+   * @return next random double in [0, 1)
+   */
+  static double nextDouble(final long[] states, final int index) {
+    return (((long) next(states, index, 26) << 27) + next(states, index, 27)) * DOUBLE_UNIT;
+  }
+
+  /**
+   * Returns the next int below the given bound from a generator, as Random.nextInt(int) does.
+   *
+   * @param states states of the generators
+   * @param index index of the generator
+   * @param bound upper bound, positive
+   * @return next random int in [0, bound)
+   */
+  static int nextInt(final long[] states, final int index, final int bound) {
+    int r = next(states, index, 31);
+    int m = bound - 1;
+    if ((bound & m) == 0) {
+      return (int) ((bound * (long) r) >> 31);
+    }
+    for (int u = r; u - (r = u % bound) + m < 0; u = next(states, index, 31)) {
+      // reject values from the incomplete last range, as Random does
+    }
+    return r;
+  }
+
+  /**
+   * Advances a generator and returns the given number of its high bits, as Random.next(int) does.
+   *
+   * @param states states of the generators
+   * @param index index of the generator
+   * @param bits number of bits
+   * @return random bits
+   */
+  private static int next(final long[] states, final int index, final int bits) {
+    long state = (states[index] * MULTIPLIER + ADDEND) & MASK;
+    states[index] = state;
+    return (int) (state >>> (48 - bits));
+  }
+}
@@ -1,19 +1,24 @@
 package api;
 
-import static api.CellType.DOT;
-import static api.CellType.EMPTY;
-import static api.CellType.ENERGIZER;
-import static api.CellType.WALL;
 import static api.Direction.DOWN;
 import static api.Direction.LEFT;
 import static api.Direction.RIGHT;
 import static api.Direction.UP;
+import static api.GameEventType.ENERGIZER_EATEN;
+import static api.GameEventType.GHOST_EATEN;
+import static api.GameEventType.GHOST_MODE_CHANGE;
+import static api.GameEventType.GLOBAL_MODE_CHANGE;
+import static api.GameEventType.LEVEL_OVER;
+import static api.GameEventType.LEVEL_START;
+import static api.GameEventType.PELLET_EATEN;
+import static api.GameEventType.PLAYER_DEATH;
 import static api.Mode.CHASE;
 import static api.Mode.DEAD;
 import static api.Mode.FRIGHTENED;
 import static api.Mode.INACTIVE;
 import static api.Mode.SCATTER;
 
+import com.pacman.ghost.ActorImpl;
 import com.pacman.ghost.Blinky;
 import com.pacman.ghost.Clyde;
 import com.pacman.ghost.Inky;
@@ -21,29 +26,59 @@ import com.pacman.ghost.Pacman;
 import com.pacman.ghost.Pinky;
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 
 /** State and logic for a Pacman game. */
 public class PacmanGame {
 
-  private static final Mode[] GLOBAL_MODES = {
+  static final Mode[] GLOBAL_MODES = {
     SCATTER, CHASE, SCATTER, CHASE, SCATTER, CHASE, SCATTER, CHASE
   };
-  private static final int[] MODE_TIMES = {7, 20, 7, 20, 5, 20, 5, -1}; // seconds
   private static final double MAX_CELLS_PER_SECOND = 10.0; // cells per second
   private static final double ENEMY_SPEED_FACTOR = 0.4; // fraction of above
   private static final double PLAYER_SPEED_FACTOR = 0.4;
-  private static final int INACTIVE_TIME = 4; // seconds
-  private static final int FRIGHTENED_TIME = 6; // seconds
+  static final int INACTIVE_TIME = 4; // seconds
+  static final int FRIGHTENED_TIME = 6; // seconds
+
+  /** Length of a frame of the arcade game in seconds, the shortest mode time. */
+  private static final double ARCADE_FRAME = 1.0 / 60;
+
+  /** Mode times in seconds for levels 2 to 4. */
+  private static final double[] MIDDLE_MODE_TIMES = {7, 20, 7, 20, 5, 1033, ARCADE_FRAME, -1};
+
+  /**
+   * Mode times in seconds for each level, starting with the first; the last row applies to all
+   * later levels, and the last mode of each row lasts for the rest of the level. These are the
+   * arcade game's, as tabulated in Jamey Pittman's "The Pac-Man Dossier": from level 2 the third
+   * chase lasts 1033 seconds, 1037 from level 5, and the scatter after it a single frame, which
+   * turns the ghosts around once; from level 5 the first two scatters are shorter.
+   */
+  private static final double[][] LEVEL_MODE_TIMES = {
+    {7, 20, 7, 20, 5, 20, 5, -1},
+    MIDDLE_MODE_TIMES,
+    MIDDLE_MODE_TIMES,
+    MIDDLE_MODE_TIMES,
+    {5, 20, 5, 20, 5, 1037, ARCADE_FRAME, -1}
+  };
+
+  /** Frightened time in seconds for each level, starting with the first. */
+  private static final int[] LEVEL_FRIGHTENED_TIMES = {FRIGHTENED_TIME, 5, 4, 3, 2, 1};
+
+  /** Enemy speed factor for each level, starting with the first. */
+  private static final double[] LEVEL_ENEMY_SPEED_FACTORS = {ENEMY_SPEED_FACTOR, 0.45, 0.5};
+
+  /** Player speed factor for each level, starting with the first. */
+  private static final double[] LEVEL_PLAYER_SPEED_FACTORS = {PLAYER_SPEED_FACTOR, 0.45, 0.5};
 
   /** Number of points for each dot. */
-  private static final int DOT_POINTS = 10;
+  static final int DOT_POINTS = 10;
 
   /** Number of points for each energizer. */
-  private static final int ENERGIZER_POINTS = 50;
+  static final int ENERGIZER_POINTS = 50;
 
   /** Number of points for catching the first ghost after eating an energizer. */
-  private static final int BASE_GHOST_POINTS = 200;
+  static final int BASE_GHOST_POINTS = 200;
 
   /** Blinky insertion position in enemy list. */
   private static final int BLINKY_INSERT_POSITION = 0;
@@ -64,46 +99,52 @@ public class PacmanGame {
   private static final int LEFTMOST_SCATTER_COL = 0;
 
   /** Multiplier for doubling ghost points. */
-  private static final int GHOST_POINTS_MULTIPLIER = 2;
+  static final int GHOST_POINTS_MULTIPLIER = 2;
 
   /** First enemy index (Blinky). */
-  private static final int FIRST_ENEMY_INDEX = 0;
+  static final int FIRST_ENEMY_INDEX = 0;
 
   /** Minimum inactive timer value. */
-  private static final int MIN_INACTIVE_TIMER = 1;
+  static final int MIN_INACTIVE_TIMER = 1;
+
+  /** Number of lives the player starts with. */
+  static final int INITIAL_LIVES = 3;
 
   /** Sleep duration when player dies (milliseconds). */
   private static final int PLAYER_DEATH_DELAY = 4000;
 
-  /** Wall character in maze layout. */
-  private static final char WALL_CHAR = '#';
+  /** Margin around the range of possible ghost target cells, beyond twice the maze size. */
+  private static final int TARGET_MARGIN = 4;
 
-  /** Dot character in maze layout. */
-  private static final char DOT_CHAR = '.';
+  /** Most slots in the timer wheel; a timer due further ahead waits for later rounds. */
+  private static final int MAX_TIMER_SLOTS = 4096;
 
-  /** Energizer character in maze layout. */
-  private static final char ENERGIZER_CHAR = '*';
+  /** Number of slots in the event ring, enough for several seconds of busy play. */
+  private static final int EVENT_CAPACITY = 1024;
 
-  /** Player start character in maze layout. */
-  private static final char PLAYER_START_CHAR = 'S';
+  /** Most enemies for which checking each is cheaper than looking them up near a player's path. */
+  private static final int FEW_ENEMIES = 8;
 
-  /** Blinky ghost character in maze layout. */
-  private static final char BLINKY_CHAR = 'B';
+  /** Distance, in cells, kept between actors and the limits of a fast-forward, for rounding. */
+  private static final double FAST_FORWARD_MARGIN = 1e-9;
 
-  /** Pinky ghost character in maze layout. */
-  private static final char PINKY_CHAR = 'P';
+  /** Seed for the enemies' random number generator when none is given. */
+  private static final long DEFAULT_SEED = 42;
 
-  /** Inky ghost character in maze layout. */
-  private static final char INKY_CHAR = 'I';
+  /** The maze's layout, shared with every game played on it. */
+  private final MazeTemplate template;
 
-  /** Clyde ghost character in maze layout. */
-  private static final char CLYDE_CHAR = 'C';
+  /** Bit set of the cells whose pellet is left, bit row * columns + col for each. */
+  private final long[] pellets;
 
-  /** The cells for this game. */
-  private final MazeCell[][] cells;
+  /** Cells handed out by getCell() for the DOT and ENERGIZER cells, made on first request. */
+  private MazeCell[] pelletViews;
 
-  /** Player controlled by UI. */
-  private Pacman player;
+  /** Random number generator shared by the enemies, reseeded when the game restarts. */
+  private final Random rand;
+
+  /** Players, the first of which is the one controlled by the UI. */
+  private final Pacman[] players;
 
   /** Array of enemies. */
   private final Actor[] enemies;
@@ -111,10 +152,54 @@ public class PacmanGame {
   /** Rendering hints for the enemies. */
   private final Color[] colorHints;
 
+  /** Character of the maze layout marking each enemy, B, P, I or C, in the order of enemies. */
+  private final char[] enemySymbols;
+
   /**
-   * Countdowns for number of frames each ghost remains in INACTIVE mode, on startup and on dying.
+   * Timers for the game's timed transitions. Timer i, for each enemy i, releases the enemy from
+   * INACTIVE mode, on startup and after dying; then come frightenedTimer and modeTimer. Timers
+   * that expire on the same frame fire in that order.
    */
-  private int[] inactiveTimer;
+  private final TimingWheel timers;
+
+  /** Timer that ends FRIGHTENED mode. */
+  private final int frightenedTimer;
+
+  /** Timer that moves to the next "global" mode. */
+  private final int modeTimer;
+
+  /** Index of the enemies by cell, so collisions only look at the players' cells. */
+  private final OccupancyGrid occupancy;
+
+  /** Paths of the players, then of the enemies, over the current frame. */
+  private final SweptCollision paths;
+
+  /** Most rows or columns an enemy's cell can be from where it met a player this frame. */
+  private int enemyReach;
+
+  /** Descriptor of each player passed to the actors, refreshed in place every frame. */
+  private final Descriptor[] descriptors;
+
+  /** Index of the player each enemy chases on the current frame. */
+  private final int[] enemyTargets;
+
+  /** Score of each player. */
+  private final int[] scores;
+
+  /** Number of lives of each player. */
+  private final int[] playerLives;
+
+  /** Whether each player is currently dead. */
+  private final boolean[] playersDead;
+
+  /** Whether the actors move in fixed-point units. */
+  private final boolean fixedPoint;
+
+  /** Stream of events published as the game is played, made on the first call to getEvents(). */
+  private volatile GameEventRing events;
+
+  /** Result of the most recent step(), refilled in place. */
+  private final StepResult stepResult = new StepResult();
 
   /** Index into the array of "global" modes. */
   private int globalModeIndex;
@@ -122,29 +207,35 @@ public class PacmanGame {
   /** Current number of pellets eaten. */
   private int pelletCount;
 
-  /** Current score. */
-  private int score;
-
-  /** Countdown for number of frames to remain in the current "global" mode. */
-  private int modeCountdown;
-
   /**
-   * Countdown for number of frames to keep enemies in FRIGHTENED mode. When active, this prevents
-   * the modeCountdown from decrementing.
+   * Frames left in the current "global" mode while the modeTimer is paused, because the enemies
+   * are frightened, or 0 if there is no mode to move to.
    */
-  private int frightenedCountdown;
+  private int pausedModeFrames;
 
-  /** Indicates whether the player is currently dead. */
-  private boolean playerDead = false;
+  /** Number of players with lives left. */
+  private int playersInPlay;
 
-  /** Number of lives for the player. */
-  private int lives = 3;
+  /** Frames per second. */
+  private int frameRate;
 
-  /** Total number of pellets the game started with. */
-  private int totalPellets;
+  /** Seed for the random number generator shared by the enemies. */
+  private long seed;
 
-  /** Frames per second. */
-  private final int frameRate;
+  /** Current level, starting at 1. */
+  private int level = 1;
+
+  /** Frightened time in seconds for the current level. */
+  private int frightenedTime = FRIGHTENED_TIME;
+
+  /** Number of frames simulated so far by updateAll(). */
+  private int frameCount;
+
+  /** Time in milliseconds to pause the calling thread when the player dies. */
+  private int playerDeathDelay = PLAYER_DEATH_DELAY;
+
+  /** Optional observer notified of each attempt to turn the player. */
+  private PlayerInputListener inputListener;
 
   /**
    * Current number of points awarded for catching a frightened ghost. This number doubles each time
@@ -161,107 +252,219 @@ public class PacmanGame {
    * @param frameRate the frames per second rate for this game
    */
   public PacmanGame(final String[] rows, final int frameRate) {
+    this(rows, frameRate, DEFAULT_SEED);
+  }
+
+  /**
+   * Constructs a maze based on a 2D grid, using the given seed for the enemies' random decisions.
+   * Two games constructed from the same rows, frame rate and seed, and given the same sequence of
+   * turnPlayer() calls at the same frames, evolve identically.
+   *
+   * @param rows array of strings, one per row of the maze
+   * @param frameRate the frames per second rate for this game
+   * @param seed seed for the enemies' random number generator
+   */
+  public PacmanGame(final String[] rows, final int frameRate, final long seed) {
+    this(rows, frameRate, seed, 1);
+  }
+
+  /**
+   * Constructs a maze based on a 2D grid for the given number of players, each with its own
+   * score, lives and input. Player p starts at the p % S-th start cell, in reading order, where S
+   * is the number of start cells in the maze, so players share start cells when there are more
+   * players than start cells.
+   *
+   * <p>Every frame each enemy chases the player nearest to it, and players are served in an order
+   * that rotates with the frame count: on frame f, player f % n eats first from a cell that
+   * several players reach on the same frame, and collides first with the enemies it meets.
+   * With one player, a death sends everyone home as in the arcade game; with more, only the
+   * player who died goes home, and a player without lives leaves the maze while the others play
+   * on. The level is over when no player has lives left or all the pellets are eaten.
+   *
+   * @param rows array of strings, one per row of the maze
+   * @param frameRate the frames per second rate for this game
+   * @param seed seed for the enemies' random number generator
+   * @param playerCount number of players, at least 1
+   * @throws IllegalArgumentException if playerCount is less than 1
+   */
+  public PacmanGame(
+      final String[] rows, final int frameRate, final long seed, final int playerCount) {
+    this(MazeTemplate.of(rows), frameRate, seed, playerCount);
+  }
+
+  /**
+   * Constructs a game on the given maze template for the given number of players, as the
+   * constructor from the maze's rows does. The template is shared, so the game only holds the
+   * pellets left and its actors.
+   *
+   * @param template the maze's template
+   * @param frameRate the frames per second rate for this game
+   * @param seed seed for the enemies' random number generator
+   * @param playerCount number of players, at least 1
+   * @throws IllegalArgumentException if playerCount is less than 1
+   */
+  public PacmanGame(
+      final MazeTemplate template, final int frameRate, final long seed, final int playerCount) {
+    this(template, frameRate, seed, playerCount, false);
+  }
+
+  /**
+   * Constructs a game on the given maze template, as the constructor without fixedPoint does, with
+   * a choice of the actors' movement. With fixedPoint set, the player and the enemies move in the
+   * integer units of FixedPoint, as Pacman.setFixedPoint() and ActorImpl.setFixedPoint() describe,
+   * instead of in double cells: the rules are the same, but the enemies decide at every cell
+   * center and positions are exact on every platform, so such a game evolves differently from
+   * one in double cells with the same seed.
+   *
+   * @param template the maze's template
+   * @param frameRate the frames per second rate for this game
+   * @param seed seed for the enemies' random number generator
+   * @param playerCount number of players, at least 1
+   * @param fixedPoint true for actors that move in fixed-point units
+   * @throws IllegalArgumentException if playerCount is less than 1
+   */
+  public PacmanGame(
+      final MazeTemplate template,
+      final int frameRate,
+      final long seed,
+      final int playerCount,
+      final boolean fixedPoint) {
+    if (playerCount < 1) {
+      throw new IllegalArgumentException("A game needs at least one player: " + playerCount);
+    }
+    this.template = template;
     this.frameRate = frameRate;
-    double enemyBaseSpeed = MAX_CELLS_PER_SECOND * ENEMY_SPEED_FACTOR / frameRate;
-    double playerBaseSpeed = MAX_CELLS_PER_SECOND * PLAYER_SPEED_FACTOR / frameRate;
+    this.seed = seed;
+    this.fixedPoint = fixedPoint;
+    double enemyBaseSpeed = getEnemyIncrement(1, frameRate);
+    double playerBaseSpeed = getPlayerIncrement(1, frameRate);
     ArrayList<Actor> enemyList = new ArrayList<>();
     ArrayList<Color> colorList = new ArrayList<>();
-    Random rand = new Random(42);
-    MazeMap maze = new MazeMap(this);
-
-    int width = rows[0].length();
-    int height = rows.length;
-    cells = new MazeCell[height][width];
-    for (int row = 0; row < height; ++row) {
-      String s = rows[row];
-      for (int col = 0; col < width; ++col) {
-        MazeCell current;
-        char c = s.charAt(col);
-        if (c == WALL_CHAR) {
-          current = new MazeCell(WALL);
-        } else if (c == DOT_CHAR) {
-          current = new MazeCell(DOT);
-          totalPellets += 1;
-        } else if (c == ENERGIZER_CHAR) {
-          current = new MazeCell(ENERGIZER);
-        } else {
-          current = new MazeCell(EMPTY);
-        }
-        cells[row][col] = current;
+    StringBuilder symbols = new StringBuilder();
+    rand = new Random(seed);
+    MazeMap maze = template.getMap();
+
+    int width = template.getNumColumns();
+    int height = template.getNumRows();
+    pellets = new long[template.getPelletWords()];
+    template.copyPellets(pellets);
+
+    // enemies in reading order, with Blinky first
+    for (int e = 0; e < template.getEnemyStartCount(); ++e) {
+      int row = template.getEnemyStart(e) / width;
+      int col = template.getEnemyStart(e) % width;
+      char c = template.getEnemySymbol(e);
+      Location home = new Location(row, col);
+      Direction dir = template.getInitialDirection(row, col);
+      if (c == MazeTemplate.BLINKY_CHAR) {
+        Location scatterTarget =
+            new Location(TOP_SCATTER_ROW_OFFSET, width + RIGHT_SCATTER_COL_OFFSET);
+        ActorImpl a = new Blinky(maze, home, enemyBaseSpeed, dir, scatterTarget, rand);
+        a.setFixedPoint(fixedPoint);
+        enemyList.add(BLINKY_INSERT_POSITION, a);
+        colorList.add(BLINKY_INSERT_POSITION, Color.RED);
+        symbols.insert(BLINKY_INSERT_POSITION, c);
+      } else if (c == MazeTemplate.PINKY_CHAR) {
+        Location scatterTarget = new Location(TOP_SCATTER_ROW_OFFSET, LEFT_SCATTER_COL);
+        ActorImpl a = new Pinky(maze, home, enemyBaseSpeed, dir, scatterTarget, rand);
+        a.setFixedPoint(fixedPoint);
+        enemyList.add(a);
+        colorList.add(Color.PINK);
+        symbols.append(c);
+      } else if (c == MazeTemplate.INKY_CHAR) {
+        Location scatterTarget =
+            new Location(height + BOTTOM_SCATTER_ROW_OFFSET, width - BOTTOM_SCATTER_ROW_OFFSET);
+        ActorImpl a = new Inky(maze, home, enemyBaseSpeed, dir, scatterTarget, rand);
+        a.setFixedPoint(fixedPoint);
+        enemyList.add(a);
+        colorList.add(Color.CYAN);
+        symbols.append(c);
+      } else {
+        Location scatterTarget =
+            new Location(height + BOTTOM_SCATTER_ROW_OFFSET, LEFTMOST_SCATTER_COL);
+        ActorImpl a = new Clyde(maze, home, enemyBaseSpeed, dir, scatterTarget, rand);
+        a.setFixedPoint(fixedPoint);
+        enemyList.add(a);
+        colorList.add(Color.ORANGE);
+        symbols.append(c);
       }
     }
-
-    for (int row = 0; row < height; ++row) {
-      String s = rows[row];
-      for (int col = 0; col < width; ++col) {
-        char c = s.charAt(col);
-
-        // check for player initial position
-        if (c == PLAYER_START_CHAR) {
-          Direction playerDir = findInitialDirection(row, col);
-          Location playerHome = new Location(row, col);
-          player = new Pacman(maze, playerHome, playerBaseSpeed, playerDir);
-
-        } else {
-          // check for ghost initial positions
-          if (c == BLINKY_CHAR) {
-            Location home = new Location(row, col);
-            Direction dir = findInitialDirection(row, col);
-            Location scatterTarget = new Location(TOP_SCATTER_ROW_OFFSET, width + RIGHT_SCATTER_COL_OFFSET);
-            Actor a = new Blinky(maze, home, enemyBaseSpeed, dir, scatterTarget, rand);
-            enemyList.add(BLINKY_INSERT_POSITION, a);
-            colorList.add(BLINKY_INSERT_POSITION, Color.RED);
-          } else if (c == PINKY_CHAR) {
-            Location home = new Location(row, col);
-            Direction dir = findInitialDirection(row, col);
-            Location scatterTarget = new Location(TOP_SCATTER_ROW_OFFSET, LEFT_SCATTER_COL);
-            Actor a = new Pinky(maze, home, enemyBaseSpeed, dir, scatterTarget, rand);
-            enemyList.add(a);
-            colorList.add(Color.PINK);
-          } else if (c == INKY_CHAR) {
-            Location home = new Location(row, col);
-            Direction dir = findInitialDirection(row, col);
-            Location scatterTarget = new Location(height + BOTTOM_SCATTER_ROW_OFFSET, width - BOTTOM_SCATTER_ROW_OFFSET);
-            Actor a = new Inky(maze, home, enemyBaseSpeed, dir, scatterTarget, rand);
-            enemyList.add(a);
-            colorList.add(Color.CYAN);
-          } else if (c == CLYDE_CHAR) {
-            Location home = new Location(row, col);
-            Direction dir = findInitialDirection(row, col);
-            Location scatterTarget = new Location(height + BOTTOM_SCATTER_ROW_OFFSET, LEFTMOST_SCATTER_COL);
-            Actor a = new Clyde(maze, home, enemyBaseSpeed, dir, scatterTarget, rand);
-            enemyList.add(a);
-            colorList.add(Color.ORANGE);
-          }
-        }
-      }
+    players = new Pacman[playerCount];
+    descriptors = new Descriptor[playerCount];
+    for (int p = 0; p < playerCount; ++p) {
+      int start = template.getPlayerStart(p % template.getPlayerStartCount());
+      Location playerHome = new Location(start / width, start % width);
+      Direction playerDir = template.getInitialDirection(playerHome.row(), playerHome.col());
+      players[p] = new Pacman(maze, playerHome, playerBaseSpeed, playerDir);
+      players[p].setFixedPoint(fixedPoint);
+      descriptors[p] = new Descriptor(null, null, null);
     }
+    scores = new int[playerCount];
+    playerLives = new int[playerCount];
+    playersDead = new boolean[playerCount];
+    Arrays.fill(playerLives, INITIAL_LIVES);
+    playersInPlay = playerCount;
+
     enemies = enemyList.toArray(new Actor[] {});
     colorHints = colorList.toArray(new Color[] {});
+    enemySymbols = symbols.toString().toCharArray();
+    enemyTargets = new int[enemies.length];
+    frightenedTimer = enemies.length;
+    modeTimer = enemies.length + 1;
+    timers = new TimingWheel(enemies.length + 2, getTimerSlots(enemies.length, frameRate));
+    occupancy = new OccupancyGrid(height * width, enemies.length);
+    paths = new SweptCollision(playerCount + enemies.length, width);
+
+    // Ghost targets can lie well outside the maze (Inky doubles a vector from Blinky), so warm
+    // the shared Location instances for the whole reachable range up front rather than mid-game.
+    Location.preload(
+        -height - TARGET_MARGIN, -width - TARGET_MARGIN,
+        2 * height + TARGET_MARGIN, 2 * width + TARGET_MARGIN);
     resetAll();
   }
 
   /**
-   * Returns true if the level is over, i.e., either the player has no lives left, or all the
-   * pellets have been eaten.
+   * Returns true if the level is over, i.e., either no player has lives left, or all the pellets
+   * have been eaten.
    *
    * @return true if the level is over
    */
   public boolean levelOver() {
-    return lives == 0 || pelletCount == totalPellets;
+    return playersInPlay == 0 || pelletCount == template.getDotCount();
   }
 
   /**
-   * Returns the current score.
+   * Returns the current score of the first player.
    *
    * @return current score
    */
   public int getScore() {
-    return score;
+    return scores[0];
+  }
+
+  /**
+   * Returns the current score of a player.
+   *
+   * @param index index of the player, from 0 to getPlayerCount() - 1
+   * @return current score
+   */
+  public int getScore(final int index) {
+    return scores[index];
+  }
+
+  /**
+   * Returns true if the actors of this game move in the integer units of FixedPoint rather than in
+   * double cells.
+   *
+   * @return true if movement is in fixed-point units
+   */
+  public boolean isFixedPoint() {
+    return fixedPoint;
   }
 
   /**
-   * Returns the number of frames per second assumed in this game instance.
+   * Returns the number of frames per second assumed in this game instance, as given to the
+   * constructor or to setFrameRate().
    *
    * @return frame rate
    */
@@ -269,6 +472,132 @@ public class PacmanGame {
     return frameRate;
   }
 
+  /**
+   * Changes the number of frames per second for the rest of the game, for example to play
+   * uneventful stretches in coarse steps and the moments near the enemies in fine ones. Speeds
+   * are converted to the new frame rate, including those changed by the enemies' modes, and each
+   * running timer, such as the global mode's, the frightened time and the enemies' release, keeps
+   * the time it has left, rounded to a whole number of frames at the new rate and at least one.
+   * So a timer moves by at most half a frame with each change. The frame count goes on counting
+   * frames. The lower the rate, the further the actors move each frame; the player's movement
+   * stays exact up to about half a cell per frame, which it reaches at around 10 frames per
+   * second. A replay log only records the frame rate the game started with, so a game being
+   * recorded refuses to change it.
+   *
+   * @param newFrameRate frames per second from the next frame on, at least 1
+   * @throws IllegalArgumentException if newFrameRate is less than 1
+   * @throws IllegalStateException if the input listener refuses the change
+   */
+  public void setFrameRate(final int newFrameRate) {
+    if (newFrameRate < 1) {
+      throw new IllegalArgumentException("Frame rate must be at least 1: " + newFrameRate);
+    }
+    if (newFrameRate == frameRate) {
+      return;
+    }
+    if (inputListener != null) {
+      inputListener.frameRateChange(frameCount, newFrameRate);
+    }
+    for (int timer = 0; timer < timers.getTimerCount(); ++timer) {
+      if (timers.isScheduled(timer)) {
+        int remaining = rescaleFrames(timers.getRemaining(timer), newFrameRate);
+        timers.schedule(timer, frameCount + remaining);
+      }
+    }
+    if (pausedModeFrames > 0) {
+      pausedModeFrames = rescaleFrames(pausedModeFrames, newFrameRate);
+    }
+    frameRate = newFrameRate;
+    applySpeeds();
+  }
+
+  /**
+   * Converts a number of frames at the current frame rate to the nearest number of frames lasting
+   * as long at another rate, at least one.
+   *
+   * @param frames number of frames at the current rate
+   * @param newFrameRate the other frame rate
+   * @return number of frames at the other rate
+   */
+  private int rescaleFrames(final int frames, final int newFrameRate) {
+    return (int) Math.max(1, Math.round((double) frames * newFrameRate / frameRate));
+  }
+
+  /**
+   * Returns the seed used for the enemies' random number generator.
+   *
+   * @return random seed
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Returns the current level. The game starts at level 1, and each call to nextLevel() advances
+   * it by one.
+   *
+   * @return current level
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * Returns the number of frames simulated so far, that is, the number of calls to updateAll() that
+   * were made while the level was not over.
+   *
+   * @return number of simulated frames
+   */
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  /**
+   * Returns the stream of events published by this game: pellets, energizers and ghosts eaten,
+   * player deaths, mode changes and the end of the level. Consumers call subscribe() on it and
+   * poll at their own pace instead of comparing getScore(), getLives() and getGlobalMode() from
+   * frame to frame. Events are published from the thread that calls updateAll().
+   *
+   * <p>The ring is made on the first call, so a game nobody listens to neither holds one nor
+   * spends time publishing; events from before that call are not kept, which a subscriber never
+   * sees in any case.
+   *
+   * @return event ring for this game
+   */
+  public GameEventRing getEvents() {
+    GameEventRing ring = events;
+    if (ring == null) {
+      synchronized (this) {
+        ring = events;
+        if (ring == null) {
+          ring = new GameEventRing(EVENT_CAPACITY);
+          events = ring;
+        }
+      }
+    }
+    return ring;
+  }
+
+  /**
+   * Sets the time for which updateAll() pauses when the player dies. The default gives a player
+   * watching the UI a moment to notice; headless runs such as replays should set it to zero.
+   *
+   * @param millis delay in milliseconds, or zero for no delay
+   */
+  public void setPlayerDeathDelay(final int millis) {
+    playerDeathDelay = millis;
+  }
+
+  /**
+   * Sets an observer that is notified of every call to turnPlayer() and nextLevel(), together with
+   * the current frame count. Passing null removes the observer.
+   *
+   * @param listener the observer, or null
+   */
+  public void setPlayerInputListener(final PlayerInputListener listener) {
+    inputListener = listener;
+  }
+
   /**
    * Suggested colors for the enemies. This array must be the same length as the enemies array.
    *
@@ -279,14 +608,99 @@ public class PacmanGame {
   }
 
   /**
-   * Returns the cell at the given position.
+   * Returns the template of this game's maze, shared with every game played on the same layout.
+   *
+   * @return the maze template
+   */
+  public MazeTemplate getTemplate() {
+    return template;
+  }
+
+  /**
+   * Returns the index of the maze's corridors, for distances to the walls and lines of sight
+   * along rows and columns.
+   *
+   * @return corridor index of this game's maze
+   */
+  public CorridorIndex getCorridors() {
+    return template.getCorridors();
+  }
+
+  /**
+   * Returns the ghost house and the tunnels of the maze.
+   *
+   * @return regions of this game's maze
+   */
+  public MazeRegions getRegions() {
+    return template.getRegions();
+  }
+
+  /**
+   * Returns the number of cells that start each level with a dot or an energizer.
+   *
+   * @return number of pellet cells
+   */
+  public int getPelletCellCount() {
+    return template.getPelletCellCount();
+  }
+
+  /**
+   * Returns one of the cells that start each level with a dot or an energizer, numbered
+   * row * getNumColumns() + col. They are listed in row-major order, so
+   * getPelletCell(random.nextInt(getPelletCellCount())) picks one uniformly, whether or not it has
+   * been eaten since.
+   *
+   * @param index index of the cell, from 0 to getPelletCellCount() - 1
+   * @return the cell
+   */
+  public int getPelletCell(final int index) {
+    return template.getPelletCell(index);
+  }
+
+  /**
+   * Returns the graph of the maze's junctions, for shortest paths between cells. It is compiled
+   * on the first call for the maze and shared with the other games on it.
+   *
+   * @return junction graph of this game's maze
+   */
+  public JunctionGraph getJunctionGraph() {
+    return template.getJunctionGraph();
+  }
+
+  /**
+   * Returns the cell at the given position. Walls and empty cells are shared with the other games
+   * on the maze; a DOT or ENERGIZER cell belongs to this game, and eating it through the cell
+   * eats it in the game.
    *
    * @param row the row index
    * @param col the column index
    * @return cell at the given position
    */
   public MazeCell getCell(final int row, final int col) {
-    return cells[row][col];
+    MazeCell fixed = template.getFixedCell(row, col);
+    if (fixed != null) {
+      return fixed;
+    }
+    if (pelletViews == null) {
+      pelletViews = new MazeCell[template.getNumRows() * template.getNumColumns()];
+    }
+    int cell = row * template.getNumColumns() + col;
+    if (pelletViews[cell] == null) {
+      pelletViews[cell] = new PelletCell(template.getCellType(row, col), cell);
+    }
+    return pelletViews[cell];
+  }
+
+  /**
+   * Returns true if the cell at the given position has a pellet left to eat.
+   *
+   * @param row the row index
+   * @param col the column index
+   * @return true if the cell's dot or energizer is left
+   */
+  public boolean canEat(final int row, final int col) {
+    int cell = row * template.getNumColumns() + col;
+    return (pellets[cell >>> 6] & 1L << cell) != 0;
   }
 
   /**
@@ -295,7 +709,7 @@ public class PacmanGame {
    * @return number of rows in the grid
    */
   public int getNumRows() {
-    return cells.length;
+    return template.getNumRows();
   }
 
   /**
@@ -304,16 +718,47 @@ public class PacmanGame {
    * @return number of columns in the grid
    */
   public int getNumColumns() {
-    return cells[0].length;
+    return template.getNumColumns();
   }
 
   /**
-   * Returns the player (Pacman) in this game.
+   * Returns the first player (Pacman) in this game, the only one unless the game was constructed
+   * for several.
    *
    * @return reference to the player
    */
   public Pacman getPlayer() {
-    return player;
+    return players[0];
+  }
+
+  /**
+   * Returns the number of players in this game.
+   *
+   * @return number of players
+   */
+  public int getPlayerCount() {
+    return players.length;
+  }
+
+  /**
+   * Returns the player at the given index.
+   *
+   * @param index index of the player, from 0 to getPlayerCount() - 1
+   * @return the player
+   */
+  public Pacman getPlayer(final int index) {
+    return players[index];
+  }
+
+  /**
+   * Returns the index of the player the enemy at the given index chased on the last frame, the
+   * one nearest to it at the start of the frame.
+   *
+   * @param index index of the enemy, from 0 to getEnemyCount() - 1
+   * @return index of the player
+   */
+  public int getEnemyTarget(final int index) {
+    return enemyTargets[index];
   }
 
   /**
@@ -325,6 +770,46 @@ public class PacmanGame {
     return enemies.clone();
   }
 
+  /**
+   * Returns the number of enemies in this game.
+   *
+   * @return number of enemies
+   */
+  public int getEnemyCount() {
+    return enemies.length;
+  }
+
+  /**
+   * Returns the enemy at the given index, without copying the enemies array as getEnemies() does.
+   *
+   * @param index index of the enemy, from 0 to getEnemyCount() - 1
+   * @return the enemy at the given index
+   */
+  public Actor getEnemy(final int index) {
+    return enemies[index];
+  }
+
+  /**
+   * Returns the suggested color for the enemy at the given index.
+   *
+   * @param index index of the enemy, from 0 to getEnemyCount() - 1
+   * @return color hint for the enemy
+   */
+  public Color getColorHint(final int index) {
+    return colorHints[index];
+  }
+
+  /**
+   * Returns the character of the maze layout that placed an enemy, B, P, I or C, which tells
+   * which kind of enemy it is.
+   *
+   * @param index index of the enemy, in the order of getEnemy()
+   * @return the character
+   */
+  char getEnemySymbol(final int index) {
+    return enemySymbols[index];
+  }
+
   /**
    * Returns the current global mode for this game. This will be the current mode for all enemies
    * except when they are frightened, inactive, or dead.
@@ -336,31 +821,66 @@ public class PacmanGame {
   }
 
   /**
-   * True if the player is currently dead.
+   * True if the first player is currently dead.
    *
    * @return true if player is dead, false otherwise
    */
   public boolean isPlayerDead() {
-    return playerDead;
+    return playersDead[0];
+  }
+
+  /**
+   * True if the player at the given index is currently dead, which, with several players, means
+   * that it has no lives left.
+   *
+   * @param index index of the player, from 0 to getPlayerCount() - 1
+   * @return true if the player is dead
+   */
+  public boolean isPlayerDead(final int index) {
+    return playersDead[index];
   }
 
   /**
-   * Returns the number of lives remaining for the player.
+   * Returns the number of lives remaining for the first player.
    *
    * @return number of lives remaining
    */
   public int getLives() {
-    return lives;
+    return playerLives[0];
   }
 
   /**
-   * Attempt to turn the player in response to user control.
+   * Returns the number of lives remaining for a player.
+   *
+   * @param index index of the player, from 0 to getPlayerCount() - 1
+   * @return number of lives remaining
+   */
+  public int getLives(final int index) {
+    return playerLives[index];
+  }
+
+  /**
+   * Attempt to turn the first player in response to user control. Only these turns are reported
+   * to the input listener.
    *
    * @param newDir desired new direction
    */
   public void turnPlayer(final Direction newDir) {
-    if (!playerDead && !levelOver()) {
-      player.tryTurn(newDir);
+    if (inputListener != null) {
+      inputListener.playerInput(frameCount, newDir);
+    }
+    turnPlayer(0, newDir);
+  }
+
+  /**
+   * Attempt to turn the player at the given index in response to its input.
+   *
+   * @param index index of the player, from 0 to getPlayerCount() - 1
+   * @param newDir desired new direction
+   */
+  public void turnPlayer(final int index, final Direction newDir) {
+    if (!playersDead[index] && !levelOver()) {
+      players[index].tryTurn(newDir);
     }
   }
 
@@ -370,154 +890,470 @@ public class PacmanGame {
    * @return current value of frightened countdown
    */
   public int getFrightenedCount() {
-    return frightenedCountdown;
+    return timers.getRemaining(frightenedTimer);
+  }
+
+  /**
+   * Starts the next level in place, once all pellets are eaten: the pellets are restored, the
+   * level's speeds and timers are applied, and the actors are reset, keeping the score, lives and
+   * frame count. This is much cheaper than constructing a new game, since the maze is not parsed
+   * again and no objects are created. Publishes a LEVEL_START event.
+   *
+   * @throws IllegalStateException if no player has lives left
+   */
+  public void nextLevel() {
+    if (playersInPlay == 0) {
+      throw new IllegalStateException("No lives left to start level " + (level + 1));
+    }
+    if (inputListener != null) {
+      inputListener.nextLevel(frameCount);
+    }
+    startLevel(level + 1);
+  }
+
+  /**
+   * Restarts the current level in place as a new game with the same seed: the pellets, score,
+   * lives and frame count are restored to their initial values, the enemies' random number
+   * generator is reseeded, and the actors are reset. A restarted level 1 evolves exactly like a
+   * newly constructed game. Publishes a LEVEL_START event.
+   */
+  public void restartLevel() {
+    restartLevel(seed);
+  }
+
+  /**
+   * Restarts the current level in place as a new game with the given seed, as restartLevel() does.
+   * A restarted level 1 evolves exactly like a game newly constructed with the given seed. A game
+   * being recorded refuses to restart, since a replay log holds a single run from frame 0.
+   *
+   * @param newSeed seed for the enemies' random number generator
+   * @throws IllegalStateException if the input listener refuses the restart
+   */
+  public void restartLevel(final long newSeed) {
+    if (inputListener != null) {
+      inputListener.restart(frameCount, newSeed);
+    }
+    seed = newSeed;
+    rand.setSeed(newSeed);
+    Arrays.fill(scores, 0);
+    Arrays.fill(playerLives, INITIAL_LIVES);
+    Arrays.fill(playersDead, false);
+    playersInPlay = players.length;
+    frameCount = 0;
+    timers.reset(frameCount);
+    startLevel(level);
+  }
+
+  /**
+   * Puts the game at the start of the given level, keeping the score, lives and frame count.
+   *
+   * @param newLevel the level, at least 1
+   */
+  private void startLevel(final int newLevel) {
+    level = newLevel;
+    frightenedTime = getFrightenedTime(newLevel);
+    applySpeeds();
+
+    template.copyPellets(pellets);
+    pelletCount = 0;
+    timers.cancel(frightenedTimer);
+    pausedModeFrames = 0;
+    resetAll();
+    publishEvent(LEVEL_START, -1, -1, -1, -1, null);
+  }
+
+  /**
+   * Sets the actors' base speeds for the current level, in cells per frame at the current frame
+   * rate.
+   */
+  private void applySpeeds() {
+    for (Pacman p : players) {
+      p.setBaseIncrement(getPlayerIncrement(level, frameRate));
+    }
+    for (Actor a : enemies) {
+      a.setBaseIncrement(getEnemyIncrement(level, frameRate));
+    }
+  }
+
+  /**
+   * Returns the number of frames a global mode lasts on the given level at the given frame rate,
+   * at least one. The last global mode has no end, and gives a negative number.
+   *
+   * @param forLevel the level, at least 1
+   * @param modeIndex index of the mode in GLOBAL_MODES
+   * @param rate frames per second
+   * @return frames in the mode
+   */
+  static int getModeFrames(final int forLevel, final int modeIndex, final int rate) {
+    double[] times = LEVEL_MODE_TIMES[Math.min(forLevel - 1, LEVEL_MODE_TIMES.length - 1)];
+    double seconds = times[modeIndex];
+    return seconds < 0 ? -1 : Math.max(1, (int) Math.round(seconds * rate));
+  }
+
+  /**
+   * Returns the number of slots for a game's timer wheel: the smallest power of two that holds the
+   * longest timer the level tables and the enemies' release times can schedule at the given frame
+   * rate, so that a timer expires on the first pass of the wheel over its slot, but no more than
+   * MAX_TIMER_SLOTS.
+   *
+   * @param enemyCount number of enemies
+   * @param rate frames per second
+   * @return number of slots
+   */
+  static int getTimerSlots(final int enemyCount, final int rate) {
+    double seconds = INACTIVE_TIME * Math.max(1, enemyCount - 1);
+    for (double[] times : LEVEL_MODE_TIMES) {
+      for (double time : times) {
+        seconds = Math.max(seconds, time);
+      }
+    }
+    for (int time : LEVEL_FRIGHTENED_TIMES) {
+      seconds = Math.max(seconds, time);
+    }
+    double frames = seconds * rate;
+    int slots = 1;
+    while (slots < frames && slots < MAX_TIMER_SLOTS) {
+      slots <<= 1;
+    }
+    return slots;
+  }
+
+  /**
+   * Returns the time in seconds the enemies stay frightened after an energizer on the given level.
+   *
+   * @param forLevel the level, at least 1
+   * @return frightened time in seconds
+   */
+  static int getFrightenedTime(final int forLevel) {
+    return LEVEL_FRIGHTENED_TIMES[Math.min(forLevel - 1, LEVEL_FRIGHTENED_TIMES.length - 1)];
   }
 
   /**
-   * Resets the player and enemies back to their home position and direction, revives the player,
-   * restarts the global mode index and countdown, and restarts the inactive timers for the enemies.
+   * Returns the enemies' base speed on the given level, in cells per frame.
+   *
+   * @param forLevel the level, at least 1
+   * @param rate frames per second
+   * @return base increment of every enemy
+   */
+  static double getEnemyIncrement(final int forLevel, final int rate) {
+    int index = Math.min(forLevel - 1, LEVEL_ENEMY_SPEED_FACTORS.length - 1);
+    return MAX_CELLS_PER_SECOND * LEVEL_ENEMY_SPEED_FACTORS[index] / rate;
+  }
+
+  /**
+   * Returns the players' base speed on the given level, in cells per frame.
+   *
+   * @param forLevel the level, at least 1
+   * @param rate frames per second
+   * @return base increment of every player
+   */
+  static double getPlayerIncrement(final int forLevel, final int rate) {
+    int index = Math.min(forLevel - 1, LEVEL_PLAYER_SPEED_FACTORS.length - 1);
+    return MAX_CELLS_PER_SECOND * LEVEL_PLAYER_SPEED_FACTORS[index] / rate;
+  }
+
+  /**
+   * Resets the players and enemies back to their home position and direction, revives the players
+   * that have lives left, restarts the global mode index and countdown, and restarts the inactive
+   * timers for the enemies.
    */
   public void resetAll() {
-    // reset everyone to home position and revive the player
-    playerDead = false;
+    // reset everyone to home position and revive the players
     currentGhostPoints = BASE_GHOST_POINTS;
-    player.reset();
-      for (Actor g : enemies) {
-          g.reset();
-      }
+    for (int p = 0; p < players.length; ++p) {
+      playersDead[p] = playerLives[p] == 0;
+      players[p].reset();
+    }
+    for (int i = 0; i < enemies.length; ++i) {
+      Mode before = enemies[i].getMode();
+      enemies[i].reset();
+      publishModeChange(i, before);
+    }
 
     // restart counters for mode and activity
+    Mode previousGlobalMode = GLOBAL_MODES[globalModeIndex];
     globalModeIndex = 0;
-    modeCountdown = MODE_TIMES[0] * frameRate;
-    inactiveTimer = new int[enemies.length];
+    if (GLOBAL_MODES[globalModeIndex] != previousGlobalMode) {
+      publishEvent(GLOBAL_MODE_CHANGE, -1, -1, -1, -1, GLOBAL_MODES[globalModeIndex]);
+    }
+    scheduleModeSwitch(getModeFrames(level, 0, frameRate));
     for (int i = 0; i < enemies.length; ++i) {
+      trackEnemy(i);
       if (i == FIRST_ENEMY_INDEX) {
-        inactiveTimer[i] = MIN_INACTIVE_TIMER;
+        timers.schedule(i, frameCount + MIN_INACTIVE_TIMER);
       } else {
-        inactiveTimer[i] = i * INACTIVE_TIME * frameRate;
+        timers.schedule(i, frameCount + i * INACTIVE_TIME * frameRate);
       }
     }
   }
 
   /**
-   * Updates inactive timers and activates enemies as needed.
+   * Applies the effect of a timer that expired on the current frame.
    *
-   * @param desc current game descriptor
+   * @param timer the timer
    */
-  private void updateInactiveTimers(final Descriptor desc) {
-    for (int i = 0; i < inactiveTimer.length; ++i) {
-      if (inactiveTimer[i] > 0) {
-        inactiveTimer[i] -= 1;
-        if (inactiveTimer[i] <= 0) {
-          enemies[i].setMode(GLOBAL_MODES[globalModeIndex], desc);
-        }
+  private void expireTimer(final int timer) {
+    if (timer == frightenedTimer) {
+      endFrightenedMode();
+    } else if (timer == modeTimer) {
+      switchGlobalMode();
+    } else {
+      // release the enemy from INACTIVE mode
+      setEnemyMode(timer, GLOBAL_MODES[globalModeIndex]);
+    }
+  }
+
+  /**
+   * Returns the frightened enemies to the global mode, and resumes the countdown of the global
+   * mode.
+   */
+  private void endFrightenedMode() {
+    for (int i = 0; i < enemies.length; ++i) {
+      if (enemies[i].getMode() == FRIGHTENED) {
+        setEnemyMode(i, GLOBAL_MODES[globalModeIndex]);
+      }
+    }
+    if (pausedModeFrames > 0) {
+      timers.schedule(modeTimer, frameCount + pausedModeFrames);
+      pausedModeFrames = 0;
+    }
+  }
+
+  /** Moves to the next global mode, and schedules the one after it if there is one. */
+  private void switchGlobalMode() {
+    globalModeIndex += 1;
+    publishEvent(GLOBAL_MODE_CHANGE, -1, -1, -1, -1, GLOBAL_MODES[globalModeIndex]);
+    for (int i = 0; i < enemies.length; ++i) {
+      Mode mode = enemies[i].getMode();
+      if (mode == SCATTER || mode == CHASE) {
+        setEnemyMode(i, GLOBAL_MODES[globalModeIndex]);
       }
     }
+    if (globalModeIndex < GLOBAL_MODES.length - 1) {
+      scheduleModeSwitch(getModeFrames(level, globalModeIndex, frameRate));
+    }
   }
 
   /**
-   * Handles frightened mode countdown and transitions.
+   * Schedules the switch to the next global mode after the given number of frames, counted only
+   * while the enemies are not frightened.
    *
-   * @param desc current game descriptor
+   * @param frames frames to remain in the current global mode
    */
-  private void handleFrightenedMode(final Descriptor desc) {
-    if (frightenedCountdown > 0) {
-      frightenedCountdown -= 1;
-      if (frightenedCountdown == 0) {
-        for (Actor g : enemies) {
-          if (g.getMode() == FRIGHTENED) {
-            g.setMode(GLOBAL_MODES[globalModeIndex], desc);
-          }
-        }
+  private void scheduleModeSwitch(final int frames) {
+    if (timers.isScheduled(frightenedTimer)) {
+      timers.cancel(modeTimer);
+      pausedModeFrames = frames;
+    } else {
+      timers.schedule(modeTimer, frameCount + frames);
+    }
+  }
+
+  /**
+   * Handles pellet collection and scoring for the players in play, in the order of the current
+   * frame, so that the first of several players in a cell eats its pellet.
+   */
+  private void handlePelletCollection() {
+    int first = frameCount % players.length;
+    for (int k = 0; k < players.length; ++k) {
+      int p = (first + k) % players.length;
+      if (!playersDead[p]) {
+        collectPellet(p);
       }
     }
   }
 
   /**
-   * Updates global mode transitions.
+   * Lets a player eat the pellet in its cell, if any.
    *
-   * @param desc current game descriptor
+   * @param p index of the player
    */
-  private void updateGlobalModes(final Descriptor desc) {
-    if (globalModeIndex < GLOBAL_MODES.length - 1) {
-      modeCountdown -= 1;
-      if (modeCountdown <= 0) {
-        globalModeIndex += 1;
-        for (Actor g : enemies) {
-          if (g.getMode() == SCATTER || g.getMode() == CHASE) {
-            g.setMode(GLOBAL_MODES[globalModeIndex], desc);
-          }
-        }
-        if (globalModeIndex < GLOBAL_MODES.length - 1) {
-          modeCountdown = MODE_TIMES[globalModeIndex] * frameRate;
+  private void collectPellet(final int p) {
+    int row = players[p].getCurrentRow();
+    int col = players[p].getCurrentCol();
+    CellType type = template.getCellType(row, col);
+    if (type == CellType.DOT && canEat(row, col)) {
+      eat(row, col);
+      pelletCount += 1;
+      scores[p] += DOT_POINTS;
+      publishPlayerEvent(PELLET_EATEN, p, -1, row, col, DOT_POINTS, null);
+    } else if (type == CellType.ENERGIZER && canEat(row, col)) {
+      eat(row, col);
+      if (timers.isScheduled(modeTimer)) {
+        // the global mode stands still while the enemies are frightened
+        pausedModeFrames = timers.getRemaining(modeTimer);
+        timers.cancel(modeTimer);
+      }
+      timers.schedule(frightenedTimer, frameCount + frightenedTime * frameRate);
+      scores[p] += ENERGIZER_POINTS;
+      publishPlayerEvent(ENERGIZER_EATEN, p, -1, row, col, ENERGIZER_POINTS, null);
+      for (int i = 0; i < enemies.length; ++i) {
+        if (enemies[i].getMode() != INACTIVE) {
+          setEnemyMode(i, FRIGHTENED);
         }
       }
+      currentGhostPoints = BASE_GHOST_POINTS;
     }
   }
 
   /**
-   * Handles pellet collection and scoring.
+   * Checks for collisions between the players in play and the enemies, in the order of the
+   * current frame.
    */
-  private void handlePelletCollection() {
-    Location p = player.getCurrentLocation();
-    MazeCell c = getCell(p.row(), p.col());
-    if (c.getType() == CellType.DOT && c.canEat()) {
-      c.eat();
-      pelletCount += 1;
-      score += DOT_POINTS;
-    } else if (c.getType() == CellType.ENERGIZER && c.canEat()) {
-      c.eat();
-      frightenedCountdown = FRIGHTENED_TIME * frameRate;
-      for (Actor g : enemies) {
-        if (g.getMode() != INACTIVE) {
-          g.setMode(FRIGHTENED, makeDescriptor());
+  private void checkCollisions() {
+    int first = frameCount % players.length;
+    for (int k = 0; k < players.length; ++k) {
+      int p = (first + k) % players.length;
+      if (!playersDead[p]) {
+        checkCollisions(p);
+      }
+    }
+  }
+
+  /**
+   * Checks for collisions between a player and the enemies. A player collides with an enemy in its
+   * cell at the end of the frame, and with an enemy it met during the frame, by the paths they
+   * took; so they cannot pass through each other, whatever the frame rate and speeds.
+   *
+   * @param p index of the player
+   */
+  private void checkCollisions(final int p) {
+    // the enemies near the player's path are taken in index order, until one kills the player
+    int cell = getPlayerCell(p);
+    int i = getNextNearPath(p, OccupancyGrid.NONE);
+    while (i != OccupancyGrid.NONE) {
+      if ((occupancy.getCell(i) == cell || paths.meet(p, players.length + i)) && collide(p, i)) {
+        break;
+      }
+      i = getNextNearPath(p, i);
+    }
+    // a death sends the player home, where only the enemies in its new cell count; the cell is
+    // looked up again after each, since another death sends it home again
+    while (i != OccupancyGrid.NONE && !playersDead[p]) {
+      i = occupancy.getFirstAfter(getPlayerCell(p), i);
+      if (i != OccupancyGrid.NONE) {
+        collide(p, i);
+      }
+    }
+  }
+
+  /**
+   * Resolves a collision between a player and an enemy: a frightened enemy is eaten, and any
+   * other enemy but a dead one kills the player, who is sent home, or out of the game if it has no
+   * lives left.
+   *
+   * @param p index of the player
+   * @param i index of the enemy
+   * @return true if the player died
+   */
+  private boolean collide(final int p, final int i) {
+    Actor a = enemies[i];
+    int row = players[p].getCurrentRow();
+    int col = players[p].getCurrentCol();
+    if (a.getMode() == FRIGHTENED) {
+      setEnemyMode(i, DEAD);
+      scores[p] += currentGhostPoints;
+      publishPlayerEvent(GHOST_EATEN, p, i, row, col, currentGhostPoints, null);
+      currentGhostPoints *= GHOST_POINTS_MULTIPLIER;
+    } else if (a.getMode() != DEAD) {
+      playerLives[p] -= 1;
+      playersDead[p] = true;
+      if (playerLives[p] == 0) {
+        playersInPlay -= 1;
+      }
+      publishPlayerEvent(PLAYER_DEATH, p, -1, row, col, -1, null);
+      if (playerDeathDelay > 0) {
+        try {
+          Thread.sleep(playerDeathDelay);
+        } catch (InterruptedException cantHappen) {
+          // ignore
         }
       }
-      score += ENERGIZER_POINTS;
-      currentGhostPoints = BASE_GHOST_POINTS;
+      if (playerLives[p] == 0) {
+        // out of the game; the enemies left have nobody to collide with
+        return true;
+      }
+      if (players.length == 1) {
+        if (!levelOver()) {
+          resetAll();
+        }
+      } else {
+        playersDead[p] = false;
+        players[p].reset();
+      }
+      return true;
     }
+    return false;
   }
 
   /**
-   * Checks for collisions between player and enemies.
+   * Returns the enemy with the lowest index above the given one that could have met a player
+   * during the frame, which is one in a cell within enemyReach rows and columns of the cells the
+   * player's path crossed. When there are only a few enemies, every enemy is taken in turn.
    *
-   * @param desc current game descriptor
+   * @param p index of the player
+   * @param after index of the enemy to start after, or OccupancyGrid.NONE to start at the first
+   * @return index of the enemy, or OccupancyGrid.NONE if there is none
    */
-  private void checkCollisions(final Descriptor desc) {
-    for (Actor a : enemies) {
-      if (a.getCurrentLocation().equals(player.getCurrentLocation())) {
-        if (a.getMode() == FRIGHTENED) {
-          a.setMode(DEAD, desc);
-          score += currentGhostPoints;
-          currentGhostPoints *= GHOST_POINTS_MULTIPLIER;
-        } else if (a.getMode() != DEAD) {
-          lives -= 1;
-          playerDead = true;
-          try {
-            Thread.sleep(PLAYER_DEATH_DELAY);
-          } catch (InterruptedException cantHappen) {
-            // ignore
-          }
-          if (!levelOver()) {
-            resetAll();
-          }
+  private int getNextNearPath(final int p, final int after) {
+    if (enemies.length <= FEW_ENEMIES) {
+      return after + 1 < enemies.length ? after + 1 : OccupancyGrid.NONE;
+    }
+    int columns = getNumColumns();
+    int firstRow = Math.max(0, paths.getFirstRow(p) - enemyReach);
+    int lastRow = Math.min(getNumRows() - 1, paths.getLastRow(p) + enemyReach);
+    int firstCol = paths.getFirstCol(p) - enemyReach;
+    int lastCol = Math.min(firstCol + columns - 1, paths.getLastCol(p) + enemyReach);
+    int found = OccupancyGrid.NONE;
+    for (int row = firstRow; row <= lastRow; ++row) {
+      for (int col = firstCol; col <= lastCol; ++col) {
+        // columns past the edges are those the tunnels lead to
+        int cell = row * columns + Math.floorMod(col, columns);
+        int i = occupancy.getFirstAfter(cell, after);
+        if (i != OccupancyGrid.NONE && (found == OccupancyGrid.NONE || i < found)) {
+          found = i;
         }
       }
     }
+    return found;
+  }
+
+  /**
+   * Returns the index of a player's cell in the occupancy grid.
+   *
+   * @param p index of the player
+   * @return row * columns + col of the player's cell
+   */
+  private int getPlayerCell(final int p) {
+    return players[p].getCurrentRow() * getNumColumns() + players[p].getCurrentCol();
   }
 
   /**
-   * Handles dead ghosts returning home.
+   * Moves the enemy at the given index to its current cell in the occupancy grid, or out of the
+   * grid if it is outside the maze.
    *
-   * @param desc current game descriptor
+   * @param index index of the enemy
    */
-  private void handleDeadGhosts(final Descriptor desc) {
+  private void trackEnemy(final int index) {
+    Actor a = enemies[index];
+    int row = a.getCurrentRow();
+    int col = a.getCurrentCol();
+    if (row >= 0 && row < getNumRows() && col >= 0 && col < getNumColumns()) {
+      occupancy.move(index, row * getNumColumns() + col);
+    } else {
+      occupancy.move(index, OccupancyGrid.NONE);
+    }
+  }
+
+  /** Handles dead ghosts returning home. */
+  private void handleDeadGhosts() {
     for (int i = 0; i < enemies.length; ++i) {
       Actor a = enemies[i];
       if (a.getMode() == DEAD && a.getCurrentLocation().equals(a.getHomeLocation())) {
-        a.setMode(INACTIVE, desc);
+        setEnemyMode(i, INACTIVE);
         a.reset();
-        inactiveTimer[i] = INACTIVE_TIME * frameRate;
+        trackEnemy(i);
+        timers.schedule(i, frameCount + INACTIVE_TIME * frameRate);
       }
     }
   }
@@ -527,59 +1363,433 @@ public class PacmanGame {
     if (levelOver()) {
       return;
     }
+    frameCount += 1;
 
-    Descriptor desc = makeDescriptor();
-
-    updateInactiveTimers(desc);
+    makeDescriptor();
 
-    if (frightenedCountdown > 0) {
-      handleFrightenedMode(desc);
-    } else {
-      updateGlobalModes(desc);
+    // only the timers due on this frame are visited
+    int expiredCount = timers.advance();
+    for (int i = 0; i < expiredCount; ++i) {
+      expireTimer(timers.getExpired(i));
     }
 
-    player.update(desc);
-    for (Actor a : enemies) {
-      a.update(desc);
+    for (int p = 0; p < players.length; ++p) {
+      if (!playersDead[p]) {
+        Pacman player = players[p];
+        paths.setStart(p, player.getRowExact(), player.getColExact());
+        player.update(descriptors[p]);
+        paths.setEnd(p, player.getRowExact(), player.getColExact());
+      }
     }
+    double enemyTravel = 0;
+    for (int i = 0; i < enemies.length; ++i) {
+      Actor a = enemies[i];
+      int path = players.length + i;
+      paths.setStart(path, a.getRowExact(), a.getColExact());
+      a.update(descriptors[enemyTargets[i]]);
+      paths.setEnd(path, a.getRowExact(), a.getColExact());
+      enemyTravel = Math.max(enemyTravel, paths.getTravel(path));
+      trackEnemy(i);
+    }
+    enemyReach = (int) enemyTravel + 1;
 
     handlePelletCollection();
-    checkCollisions(desc);
-    handleDeadGhosts(desc);
+    checkCollisions();
+    handleDeadGhosts();
+
+    if (levelOver()) {
+      publishEvent(LEVEL_OVER, -1, -1, -1, -1, null);
+    }
+  }
+
+  /**
+   * Applies one action and then advances up to the given number of frames, for agents that do not
+   * decide every frame. The action is applied once, through turnPlayer(), and the frames are
+   * simulated with updateAll(). The step is cut short after the frame in which the player loses a
+   * life, and when the level is over, so an agent always gets to react to a death. In a game with
+   * several players, the agent is the first player.
+   *
+   * <p>The returned result belongs to this game and is refilled by the next call, so stepping does
+   * not allocate.
+   *
+   * @param action direction to turn the player, or null to leave it as it is
+   * @param frames maximum number of frames to advance, at least 1
+   * @return the points scored, frames simulated and terminal flags of this step
+   * @throws IllegalArgumentException if frames is less than 1
+   */
+  public StepResult step(final Direction action, final int frames) {
+    if (frames < 1) {
+      throw new IllegalArgumentException("Frames per step must be at least 1: " + frames);
+    }
+    int startScore = scores[0];
+    int startLives = playerLives[0];
+    if (action != null) {
+      turnPlayer(action);
+    }
+    int simulated = 0;
+    while (simulated < frames && !levelOver() && playerLives[0] == startLives) {
+      updateAll();
+      simulated += 1;
+    }
+    stepResult.set(
+        scores[0] - startScore, simulated, playerLives[0] < startLives, levelOver());
+    return stepResult;
+  }
+
+  /**
+   * Advances up to the given number of frames, stopping when the level is over, with exactly the
+   * result of calling updateAll() as many times, down to the last bit of every coordinate and the
+   * events published, but without the cost of most of those frames.
+   *
+   * <p>Most frames only carry the actors along their corridors. Before playing a frame, this
+   * works out how many frames ahead nothing else can happen: no timer expires, no actor turns or
+   * decides on a direction, no enemy gets home, no player reaches a pellet, and no player and
+   * enemy are near enough to meet, judging by the number of cells between them and their speeds.
+   * It skips straight to the frame before that, moving each actor with moveStraight() and passing
+   * over descriptors, timers, pellets and collisions, then plays the next frame in full. Inputs
+   * cannot arrive during a fast-forward, so scripted and agent-less runs turn the player between
+   * calls.
+   *
+   * @param frames most frames to advance, at least 1
+   * @return number of frames advanced, fewer than asked only if the level is over
+   * @throws IllegalArgumentException if frames is less than 1
+   */
+  public int fastForward(final int frames) {
+    if (frames < 1) {
+      throw new IllegalArgumentException("Frames to fast-forward must be at least 1: " + frames);
+    }
+    int simulated = 0;
+    while (simulated < frames && !levelOver()) {
+      // the last frame is always played in full, which leaves the descriptors as updateAll() does
+      int quiet = getQuietFrames(frames - simulated - 1);
+      if (quiet > 0) {
+        skipFrames(quiet);
+        simulated += quiet;
+      }
+      updateAll();
+      simulated += 1;
+    }
+    return simulated;
+  }
+
+  /**
+   * Returns how many of the coming frames are certain to do nothing but move the actors straight
+   * ahead, up to the given limit.
+   *
+   * @param limit most frames to count
+   * @return number of quiet frames, from 0 to limit
+   */
+  private int getQuietFrames(final int limit) {
+    int quiet = Math.min(limit, timers.getFramesToNext() - 1);
+    for (int p = 0; p < players.length && quiet > 0; ++p) {
+      if (!playersDead[p]) {
+        quiet = Math.min(players[p].getStraightFrames(quiet), getFramesToPellet(p));
+      }
+    }
+    for (int i = 0; i < enemies.length && quiet > 0; ++i) {
+      Actor a = enemies[i];
+      quiet = a.getStraightFrames(quiet);
+      if (a.getMode() == DEAD) {
+        // a dead enemy is sent back to the house once it reaches its home cell
+        Location home = a.getHomeLocation();
+        int cells = getCellDistance(a.getCurrentRow(), a.getCurrentCol(), home.row(), home.col());
+        quiet = Math.min(quiet, getFramesBefore(cells, a.getCurrentIncrement(), 1));
+      } else {
+        for (int p = 0; p < players.length; ++p) {
+          if (!playersDead[p]) {
+            Pacman player = players[p];
+            int cells =
+                getCellDistance(
+                    player.getCurrentRow(),
+                    player.getCurrentCol(),
+                    a.getCurrentRow(),
+                    a.getCurrentCol());
+            double speed = player.getCurrentIncrement() + a.getCurrentIncrement();
+            quiet = Math.min(quiet, getFramesBefore(cells, speed, 2));
+          }
+        }
+      }
+    }
+    return Math.max(quiet, 0);
+  }
+
+  /**
+   * Plays frames that getQuietFrames() found quiet, moving the actors straight ahead and skipping
+   * everything else updateAll() would do.
+   *
+   * @param frames number of frames
+   */
+  private void skipFrames(final int frames) {
+    frameCount += frames;
+    timers.skip(frames);
+    for (int p = 0; p < players.length; ++p) {
+      if (!playersDead[p]) {
+        players[p].moveStraight(frames);
+      }
+    }
+    for (int i = 0; i < enemies.length; ++i) {
+      enemies[i].moveStraight(frames);
+      trackEnemy(i);
+    }
   }
 
   /**
-   * Make a descriptor for current game state.
+   * Returns how many frames a player can move straight ahead before it could reach a cell with
+   * something left to eat.
    *
-   * @return descriptor with current game state
+   * @param p index of the player
+   * @return number of frames, or Integer.MAX_VALUE if there is nothing to eat ahead
+   */
+  private int getFramesToPellet(final int p) {
+    Pacman player = players[p];
+    Direction dir = player.getCurrentDirection();
+    int row = player.getCurrentRow();
+    int col = player.getCurrentCol();
+    if (canEat(row, col)) {
+      return 0;
+    }
+    if (dir == null) {
+      return Integer.MAX_VALUE;
+    }
+    int rowStep = dir == UP ? -1 : dir == DOWN ? 1 : 0;
+    int colStep = dir == LEFT ? -1 : dir == RIGHT ? 1 : 0;
+    boolean forward = rowStep + colStep > 0;
+    double position = rowStep != 0 ? player.getRowExact() : player.getColExact();
+    int cell = rowStep != 0 ? row : col;
+    for (int cells = 1; ; ++cells) {
+      row += rowStep;
+      col += colStep;
+      if (row < 0 || row >= getNumRows() || col < 0 || col >= getNumColumns()) {
+        return Integer.MAX_VALUE;
+      }
+      if (template.isWall(row, col)) {
+        return Integer.MAX_VALUE;
+      }
+      if (canEat(row, col)) {
+        // the player enters that cell when it crosses the cell's near edge
+        double distance = forward ? cell + cells - position : position - (cell - cells + 1);
+        return getFramesWithin(distance, player.getCurrentIncrement());
+      }
+    }
+  }
+
+  /**
+   * Returns the number of cell boundaries a path between two cells must cross, counting the side
+   * tunnels.
+   *
+   * @param row1 row of the first cell
+   * @param col1 column of the first cell
+   * @param row2 row of the second cell
+   * @param col2 column of the second cell
+   * @return distance in cells
+   */
+  private int getCellDistance(final int row1, final int col1, final int row2, final int col2) {
+    int cols = Math.abs(col1 - col2);
+    return Math.abs(row1 - row2) + Math.min(cols, getNumColumns() - cols);
+  }
+
+  /**
+   * Returns how many frames actors can move, closing in by at most the given speed in all, before
+   * they could have crossed the given number of cell boundaries. An actor can cross one boundary
+   * more than the distance it covers, so one cell is set aside for each actor that moves.
+   *
+   * @param cells number of cell boundaries
+   * @param speed sum of the actors' increments
+   * @param movers number of actors moving
+   * @return number of frames, at least 0
+   */
+  private static int getFramesBefore(final int cells, final double speed, final int movers) {
+    return getFramesWithin(cells - movers, speed);
+  }
+
+  /**
+   * Returns how many frames an actor can move at the given speed without covering the given
+   * distance.
+   *
+   * @param distance distance in cells
+   * @param speed increment per frame
+   * @return number of frames, at least 0
+   */
+  private static int getFramesWithin(final double distance, final double speed) {
+    double frames = Math.floor((distance - FAST_FORWARD_MARGIN) / speed);
+    return frames <= 0 ? 0 : (int) Math.min(Integer.MAX_VALUE, frames);
+  }
+
+  /**
+   * Sets the mode of the enemy at the given index, with the descriptor of the player it chases,
+   * publishing a GHOST_MODE_CHANGE event if its mode actually changes.
+   *
+   * @param index index of the enemy
+   * @param mode new mode
+   */
+  private void setEnemyMode(final int index, final Mode mode) {
+    Mode before = enemies[index].getMode();
+    enemies[index].setMode(mode, descriptors[enemyTargets[index]]);
+    publishModeChange(index, before);
+  }
+
+  /**
+   * Publishes a GHOST_MODE_CHANGE event if the mode of the enemy at the given index differs from
+   * the given previous mode.
+   *
+   * @param index index of the enemy
+   * @param before the enemy's mode before the change
+   */
+  private void publishModeChange(final int index, final Mode before) {
+    Actor a = enemies[index];
+    if (a.getMode() != before) {
+      publishEvent(
+          GHOST_MODE_CHANGE, index, a.getCurrentRow(), a.getCurrentCol(), -1, a.getMode());
+    }
+  }
+
+  /**
+   * Publishes an event about the whole game for the current frame, with no player index and the
+   * first player's score and lives.
+   *
+   * @param type kind of event
+   * @param enemyIndex index of the enemy concerned, or -1
+   * @param row row of the event's cell, or -1
+   * @param col column of the event's cell, or -1
+   * @param points points awarded, or -1
+   * @param mode new mode, or null
+   */
+  private void publishEvent(
+      final GameEventType type,
+      final int enemyIndex,
+      final int row,
+      final int col,
+      final int points,
+      final Mode mode) {
+    GameEventRing ring = events;
+    if (ring != null) {
+      ring.publish(
+          type, frameCount, -1, enemyIndex, row, col, points, scores[0], playerLives[0], mode);
+    }
+  }
+
+  /**
+   * Publishes an event about a player for the current frame, with that player's score and lives.
+   *
+   * @param type kind of event
+   * @param p index of the player concerned
+   * @param enemyIndex index of the enemy concerned, or -1
+   * @param row row of the event's cell, or -1
+   * @param col column of the event's cell, or -1
+   * @param points points awarded, or -1
+   * @param mode new mode, or null
+   */
+  private void publishPlayerEvent(
+      final GameEventType type,
+      final int p,
+      final int enemyIndex,
+      final int row,
+      final int col,
+      final int points,
+      final Mode mode) {
+    GameEventRing ring = events;
+    if (ring != null) {
+      ring.publish(
+          type, frameCount, p, enemyIndex, row, col, points, scores[p], playerLives[p], mode);
+    }
+  }
+
+  /**
+   * Make the descriptors for current game state: one per player in play, and the player each
+   * enemy chases, which is the one nearest to it. The game's descriptor instances are refreshed in
+   * place, so the frame loop does not allocate, and picking the targets takes time proportional to
+   * the number of enemies times the number of players.
+   *
+   * @return descriptor of the first player
    */
   protected Descriptor makeDescriptor() {
     Location enemyLoc = null;
     if (enemies.length > 0) {
       enemyLoc = enemies[0].getCurrentLocation();
     }
-    return new Descriptor(player.getCurrentLocation(), player.getCurrentDirection(), enemyLoc);
+    for (int p = 0; p < players.length; ++p) {
+      if (!playersDead[p]) {
+        Pacman player = players[p];
+        descriptors[p].set(player.getCurrentLocation(), player.getCurrentDirection(), enemyLoc);
+      }
+    }
+    if (players.length > 1) {
+      for (int i = 0; i < enemies.length; ++i) {
+        enemyTargets[i] = findNearestPlayer(enemies[i]);
+      }
+    }
+    return descriptors[0];
   }
 
   /**
-   * Choose an initial direction for the player or enemy. This just checks up, left, down, right for
-   * a non-wall, in that order.
+   * Returns the player in play nearest to the given enemy, or the first player if none is in play.
+   * Ties go to the player with the lowest index.
+   *
+   * @param enemy the enemy
+   * @return index of the nearest player
+   */
+  private int findNearestPlayer(final Actor enemy) {
+    int row = enemy.getCurrentRow();
+    int col = enemy.getCurrentCol();
+    int nearest = 0;
+    int shortest = Integer.MAX_VALUE;
+    for (int p = 0; p < players.length; ++p) {
+      if (!playersDead[p]) {
+        int dr = players[p].getCurrentRow() - row;
+        int dc = players[p].getCurrentCol() - col;
+        int distance = dr * dr + dc * dc;
+        if (distance < shortest) {
+          shortest = distance;
+          nearest = p;
+        }
+      }
+    }
+    return nearest;
+  }
+
+  /**
+   * Eats the pellet in the given cell.
    *
    * @param row the row index
    * @param col the column index
-   * @return direction to move initially
-   */
-  private Direction findInitialDirection(final int row, final int col) {
-    // check in order up, left, down, right for a non-wall
-    if (!getCell(row - 1, col).isWall()) {
-      return UP;
-    } else if (!getCell(row, col - 1).isWall()) {
-      return LEFT;
-    } else if (!getCell(row + 1, col).isWall()) {
-      return DOWN;
-    } else if (!getCell(row, col + 1).isWall()) {
-      return RIGHT;
-    }
-    return LEFT; // shouldn't happen?
+   */
+  private void eat(final int row, final int col) {
+    int cell = row * template.getNumColumns() + col;
+    pellets[cell >>> 6] &= ~(1L << cell);
+  }
+
+  /**
+   * A DOT or ENERGIZER cell as getCell() hands it out, which reads and eats the game's pellet in
+   * its cell.
+   */
+  private final class PelletCell extends MazeCell {
+    /** The cell, numbered row * columns + col. */
+    private final int cell;
+
+    /**
+     * Constructs the cell.
+     *
+     * @param type DOT or ENERGIZER
+     * @param cell the cell, numbered row * columns + col
+     */
+    PelletCell(final CellType type, final int cell) {
+      super(type);
+      this.cell = cell;
+    }
+
+    @Override
+    public boolean canEat() {
+      return (pellets[cell >>> 6] & 1L << cell) != 0;
+    }
+
+    @Override
+    public void eat() {
+      pellets[cell >>> 6] &= ~(1L << cell);
+    }
+
+    @Override
+    public void reset() {
+      pellets[cell >>> 6] |= 1L << cell;
+    }
   }
 }
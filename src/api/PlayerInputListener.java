@@ -0,0 +1,46 @@
+package api;
+
+/**
+ * Observer for the steering input given to the player in a Pacman game, and for the calls that
+ * move the game on to its next level, change its frame rate or restart it.
+ */
+public interface PlayerInputListener {
+  /**
+   * Invoked each time the game is asked to turn the player, whether or not the turn succeeds.
+   *
+   * @param frame number of frames simulated before this input
+   * @param dir the requested direction
+   */
+  void playerInput(int frame, Direction dir);
+
+  /**
+   * Invoked each time the game is asked to start its next level, before the level starts.
+   *
+   * @param frame number of frames simulated before the call
+   */
+  default void nextLevel(int frame) {
+    // not observed
+  }
+
+  /**
+   * Invoked each time the game is asked to change its frame rate, before the change is made. An
+   * exception thrown here leaves the game unchanged.
+   *
+   * @param frame number of frames simulated before the call
+   * @param newFrameRate the requested frame rate
+   */
+  default void frameRateChange(int frame, int newFrameRate) {
+    // not observed
+  }
+
+  /**
+   * Invoked each time the game is asked to restart its level, before it restarts. An exception
+   * thrown here leaves the game unchanged.
+   *
+   * @param frame number of frames simulated before the call
+   * @param newSeed seed the game restarts with
+   */
+  default void restart(int frame, long newSeed) {
+    // not observed
+  }
+}
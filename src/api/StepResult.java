@@ -0,0 +1,101 @@
+package api;
+
+/**
+ * Outcome of a multi-frame PacmanGame.step(): the points scored, the number of frames actually
+ * simulated, and whether the step ended early because the player died or the level ended. Each
+ * game refills a single instance on every step, so a result is only valid until the next step.
+ */
+public final class StepResult {
+  /** Points scored during the step. */
+  private int scoreDelta;
+
+  /** Number of frames simulated during the step. */
+  private int frames;
+
+  /** Whether the player lost a life during the step. */
+  private boolean playerDied;
+
+  /** Whether the level was over at the end of the step. */
+  private boolean levelOver;
+
+  /**
+   * Refills this result.
+   *
+   * @param newScoreDelta points scored during the step
+   * @param newFrames number of frames simulated
+   * @param newPlayerDied whether the player lost a life
+   * @param newLevelOver whether the level is over
+   */
+  void set(
+      final int newScoreDelta,
+      final int newFrames,
+      final boolean newPlayerDied,
+      final boolean newLevelOver) {
+    scoreDelta = newScoreDelta;
+    frames = newFrames;
+    playerDied = newPlayerDied;
+    levelOver = newLevelOver;
+  }
+
+  /**
+   * Returns the number of points scored during the step.
+   *
+   * @return score delta
+   */
+  public int getScoreDelta() {
+    return scoreDelta;
+  }
+
+  /**
+   * Returns the number of frames simulated, which is less than requested if the step was cut
+   * short.
+   *
+   * @return number of frames simulated
+   */
+  public int getFrames() {
+    return frames;
+  }
+
+  /**
+   * Returns true if the player lost a life during the step. The step ends on the frame of the
+   * death.
+   *
+   * @return true if the player died
+   */
+  public boolean isPlayerDied() {
+    return playerDied;
+  }
+
+  /**
+   * Returns true if the level was over at the end of the step, either because the player has no
+   * lives left or because all the pellets have been eaten.
+   *
+   * @return true if the level is over
+   */
+  public boolean isLevelOver() {
+    return levelOver;
+  }
+
+  /**
+   * Returns true if the step ended the episode or cost a life, i.e., the player died or the level is
+   * over.
+   *
+   * @return true if the step was terminal
+   */
+  public boolean isTerminal() {
+    return playerDied || levelOver;
+  }
+
+  @Override
+  public String toString() {
+    return "StepResult[scoreDelta="
+        + scoreDelta
+        + ", frames="
+        + frames
+        + ", playerDied="
+        + playerDied
+        + ", levelOver="
+        + levelOver
+        + "]";
+  }
+}
@@ -0,0 +1,248 @@
+package api;
+
+/**
+ * Paths of actors over one frame, for collision detection that does not depend on the frame
+ * rate. Comparing cells after every actor has moved misses two actors that pass through each
+ * other within a frame, which happens when they swap cells and more often the further they move
+ * per frame. Here each actor's path from its position at the start of the frame to its position
+ * at the end is taken as a straight segment covered at constant speed, and two actors meet if they
+ * are in the same cell at the same moment of the frame.
+ *
+ * <p>Actors are numbered from 0 to getActorCount() - 1. A path that crosses a side tunnel is
+ * followed past the edge of the maze, and cells a whole maze width apart are taken as the same,
+ * so actors also meet in the tunnels. The paths are kept in arrays, and recording and testing
+ * them does not allocate; distinct actors can be recorded from different threads.
+ */
+public final class SweptCollision {
+  /** Number of columns of the maze, which is how far a tunnel takes an actor. */
+  private final int columns;
+
+  /** Exact coordinates of each actor at the start of the frame. */
+  private final double[] startRows;
+  private final double[] startCols;
+
+  /** Exact coordinates of each actor at the end of the frame, the column unwrapped. */
+  private final double[] endRows;
+  private final double[] endCols;
+
+  /** Lowest and highest cells each actor's path crosses, for quickly telling paths apart. */
+  private final int[] firstRows;
+  private final int[] lastRows;
+  private final int[] firstCols;
+  private final int[] lastCols;
+
+  /**
+   * Constructs paths for the given number of actors, all standing still at the origin.
+   *
+   * @param actorCount number of actors
+   * @param columns number of columns of the maze
+   */
+  public SweptCollision(final int actorCount, final int columns) {
+    this.columns = columns;
+    startRows = new double[actorCount];
+    startCols = new double[actorCount];
+    endRows = new double[actorCount];
+    endCols = new double[actorCount];
+    firstRows = new int[actorCount];
+    lastRows = new int[actorCount];
+    firstCols = new int[actorCount];
+    lastCols = new int[actorCount];
+  }
+
+  /**
+   * Returns the number of actors.
+   *
+   * @return number of actors
+   */
+  public int getActorCount() {
+    return startRows.length;
+  }
+
+  /**
+   * Records where an actor starts the frame. Its path is complete once its end is recorded.
+   *
+   * @param actor the actor
+   * @param row exact row
+   * @param col exact column
+   */
+  public void setStart(final int actor, final double row, final double col) {
+    startRows[actor] = row;
+    startCols[actor] = col;
+  }
+
+  /**
+   * Records where an actor ends the frame. A move of more than half the maze's width across is
+   * taken to be through a side tunnel, and the column is unwrapped to continue the path past the
+   * edge.
+   *
+   * @param actor the actor
+   * @param row exact row
+   * @param col exact column
+   */
+  public void setEnd(final int actor, final double row, final double col) {
+    double end = col;
+    if (end - startCols[actor] > columns / 2.0) {
+      end -= columns;
+    } else if (startCols[actor] - end > columns / 2.0) {
+      end += columns;
+    }
+    endRows[actor] = row;
+    endCols[actor] = end;
+    int startRow = (int) Math.floor(startRows[actor]);
+    int endRow = (int) Math.floor(row);
+    int startCol = (int) Math.floor(startCols[actor]);
+    int endCol = (int) Math.floor(end);
+    firstRows[actor] = Math.min(startRow, endRow);
+    lastRows[actor] = Math.max(startRow, endRow);
+    firstCols[actor] = Math.min(startCol, endCol);
+    lastCols[actor] = Math.max(startCol, endCol);
+  }
+
+  /**
+   * Returns the longest distance an actor moved along either axis during the frame. An actor that
+   * meets another is at most this far from that meeting at the end of the frame, so its cell is at
+   * most (int) getTravel() + 1 rows and columns away from the cell of the meeting.
+   *
+   * @param actor the actor
+   * @return distance in cells
+   */
+  public double getTravel(final int actor) {
+    return Math.max(
+        Math.abs(endRows[actor] - startRows[actor]), Math.abs(endCols[actor] - startCols[actor]));
+  }
+
+  /**
+   * Returns the lowest row an actor was in during the frame.
+   *
+   * @param actor the actor
+   * @return the row
+   */
+  public int getFirstRow(final int actor) {
+    return firstRows[actor];
+  }
+
+  /**
+   * Returns the highest row an actor was in during the frame.
+   *
+   * @param actor the actor
+   * @return the row
+   */
+  public int getLastRow(final int actor) {
+    return lastRows[actor];
+  }
+
+  /**
+   * Returns the lowest column an actor was in during the frame, which is -1 for a path that left
+   * the maze through a tunnel on its left.
+   *
+   * @param actor the actor
+   * @return the column
+   */
+  public int getFirstCol(final int actor) {
+    return firstCols[actor];
+  }
+
+  /**
+   * Returns the highest column an actor was in during the frame, which is the maze's number of
+   * columns for a path that left the maze through a tunnel on its right.
+   *
+   * @param actor the actor
+   * @return the column
+   */
+  public int getLastCol(final int actor) {
+    return lastCols[actor];
+  }
+
+  /**
+   * Returns true if two actors are in the same cell at some moment of the frame, including its
+   * start and end.
+   *
+   * @param a the first actor
+   * @param b the second actor
+   * @return true if their paths meet
+   */
+  public boolean meet(final int a, final int b) {
+    int firstRow = Math.max(firstRows[a], firstRows[b]);
+    int lastRow = Math.min(lastRows[a], lastRows[b]);
+    return firstRow <= lastRow
+        && (meet(a, b, 0, firstRow, lastRow)
+            || meet(a, b, columns, firstRow, lastRow)
+            || meet(a, b, -columns, firstRow, lastRow));
+  }
+
+  /**
+   * Returns true if two actors are in the same cell at some moment of the frame, with the second
+   * one's columns shifted by the given amount.
+   *
+   * @param a the first actor
+   * @param b the second actor
+   * @param shift columns added to the second actor's path
+   * @param firstRow lowest row both paths cross
+   * @param lastRow highest row both paths cross
+   * @return true if their paths meet
+   */
+  private boolean meet(
+      final int a, final int b, final int shift, final int firstRow, final int lastRow) {
+    int firstCol = Math.max(firstCols[a], firstCols[b] + shift);
+    int lastCol = Math.min(lastCols[a], lastCols[b] + shift);
+    if (firstCol > lastCol) {
+      return false;
+    }
+    double rowA0 = startRows[a];
+    double rowA1 = endRows[a];
+    double colA0 = startCols[a];
+    double colA1 = endCols[a];
+    double rowB0 = startRows[b];
+    double rowB1 = endRows[b];
+    double colB0 = startCols[b] + shift;
+    double colB1 = endCols[b] + shift;
+
+    // the actors meet if, for some cell both paths cross, the times each is in it overlap
+    for (int row = firstRow; row <= lastRow; ++row) {
+      double rowEnter = Math.max(enter(row, rowA0, rowA1), enter(row, rowB0, rowB1));
+      double rowLeave = Math.min(leave(row, rowA0, rowA1), leave(row, rowB0, rowB1));
+      for (int col = firstCol; col <= lastCol && rowEnter <= rowLeave; ++col) {
+        double colEnter = Math.max(enter(col, colA0, colA1), enter(col, colB0, colB1));
+        double colLeave = Math.min(leave(col, colA0, colA1), leave(col, colB0, colB1));
+        if (Math.max(rowEnter, colEnter) <= Math.min(rowLeave, colLeave)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the moment of the frame, from 0 to 1, at which a path along one axis enters a cell,
+   * or infinity if it is never in that cell.
+   *
+   * @param cell the cell
+   * @param from coordinate at the start of the frame
+   * @param to coordinate at the end of the frame
+   * @return the moment
+   */
+  private static double enter(final int cell, final double from, final double to) {
+    if (from == to) {
+      return Math.floor(from) == cell ? 0 : Double.POSITIVE_INFINITY;
+    }
+    double boundary = to > from ? cell : cell + 1;
+    return Math.max(0, (boundary - from) / (to - from));
+  }
+
+  /**
+   * Returns the moment of the frame, from 0 to 1, at which a path along one axis leaves a cell,
+   * or minus infinity if it is never in that cell.
+   *
+   * @param cell the cell
+   * @param from coordinate at the start of the frame
+   * @param to coordinate at the end of the frame
+   * @return the moment
+   */
+  private static double leave(final int cell, final double from, final double to) {
+    if (from == to) {
+      return Math.floor(from) == cell ? 1 : Double.NEGATIVE_INFINITY;
+    }
+    double boundary = to > from ? cell + 1 : cell;
+    return Math.min(1, (boundary - from) / (to - from));
+  }
+}
@@ -0,0 +1,244 @@
+package api;
+
+import java.util.Arrays;
+
+/**
+ * Frame-indexed timing wheel for a fixed set of timers, identified by numbers from 0 to
+ * getTimerCount() - 1. A timer is scheduled to expire on a given frame; advance() moves the wheel
+ * to the next frame and reports the timers that expire on it, so the cost of a frame depends on
+ * the timers due rather than on the number of timers running.
+ *
+ * <p>Frames hash into a ring of slots, each holding a doubly linked list of the timers due on
+ * frames that map to it. A timer due more than getSlotCount() frames ahead waits in its slot for
+ * the later rounds, so advancing past a slot only looks at the timers hashed to it. Timers can be
+ * cancelled or rescheduled at any time in constant time. The wheel keeps its lists in arrays and
+ * does not allocate after construction.
+ */
+public final class TimingWheel {
+  /** Marks the end of a list, or a timer that is not scheduled. */
+  private static final int NONE = -1;
+
+  /** First timer in each slot, or NONE. */
+  private final int[] heads;
+
+  /** Mask from a frame to its slot. */
+  private final int mask;
+
+  /** Frame each timer is due on. */
+  private final int[] due;
+
+  /** Next timer in the same slot, or NONE. */
+  private final int[] next;
+
+  /** Previous timer in the same slot, or NONE for the first. */
+  private final int[] previous;
+
+  /** Slot of each scheduled timer, or NONE. */
+  private final int[] slotOf;
+
+  /** Timers that expired on the current frame, in ascending order. */
+  private final int[] expired;
+
+  /** Number of entries in expired. */
+  private int expiredCount;
+
+  /** The current frame. */
+  private int frame;
+
+  /**
+   * Constructs a wheel with no timers scheduled, at frame 0.
+   *
+   * @param timerCount number of timers, at least 1
+   * @param slotCount number of slots, a power of two; frames this far apart share a slot
+   * @throws IllegalArgumentException if timerCount is less than 1 or slotCount is not a power of
+   *     two
+   */
+  public TimingWheel(final int timerCount, final int slotCount) {
+    if (timerCount < 1 || slotCount < 1 || Integer.bitCount(slotCount) != 1) {
+      throw new IllegalArgumentException(
+          "Invalid timing wheel: " + timerCount + " timers, " + slotCount + " slots");
+    }
+    heads = new int[slotCount];
+    mask = slotCount - 1;
+    due = new int[timerCount];
+    next = new int[timerCount];
+    previous = new int[timerCount];
+    slotOf = new int[timerCount];
+    expired = new int[timerCount];
+    Arrays.fill(heads, NONE);
+    Arrays.fill(slotOf, NONE);
+  }
+
+  /**
+   * Returns the number of timers.
+   *
+   * @return number of timers
+   */
+  public int getTimerCount() {
+    return due.length;
+  }
+
+  /**
+   * Returns the number of slots.
+   *
+   * @return number of slots
+   */
+  public int getSlotCount() {
+    return heads.length;
+  }
+
+  /**
+   * Returns the current frame, the last one advanced to.
+   *
+   * @return current frame
+   */
+  public int getFrame() {
+    return frame;
+  }
+
+  /**
+   * Schedules a timer to expire on the given frame, replacing its earlier schedule if it has one.
+   *
+   * @param timer the timer
+   * @param dueFrame frame on which it expires, after the current frame
+   * @throws IllegalArgumentException if dueFrame is not after the current frame
+   */
+  public void schedule(final int timer, final int dueFrame) {
+    if (dueFrame - frame <= 0) {
+      throw new IllegalArgumentException(
+          "Timer " + timer + " due on frame " + dueFrame + ", not after frame " + frame);
+    }
+    cancel(timer);
+    int slot = dueFrame & mask;
+    due[timer] = dueFrame;
+    slotOf[timer] = slot;
+    previous[timer] = NONE;
+    next[timer] = heads[slot];
+    if (heads[slot] != NONE) {
+      previous[heads[slot]] = timer;
+    }
+    heads[slot] = timer;
+  }
+
+  /**
+   * Cancels a timer. Does nothing if it is not scheduled.
+   *
+   * @param timer the timer
+   */
+  public void cancel(final int timer) {
+    int slot = slotOf[timer];
+    if (slot == NONE) {
+      return;
+    }
+    if (previous[timer] == NONE) {
+      heads[slot] = next[timer];
+    } else {
+      next[previous[timer]] = next[timer];
+    }
+    if (next[timer] != NONE) {
+      previous[next[timer]] = previous[timer];
+    }
+    slotOf[timer] = NONE;
+  }
+
+  /**
+   * Returns true if a timer is scheduled.
+   *
+   * @param timer the timer
+   * @return true if it is waiting to expire
+   */
+  public boolean isScheduled(final int timer) {
+    return slotOf[timer] != NONE;
+  }
+
+  /**
+   * Returns the number of frames left until a timer expires, counting from the current frame.
+   *
+   * @param timer the timer
+   * @return frames until it expires, or 0 if it is not scheduled
+   */
+  public int getRemaining(final int timer) {
+    return slotOf[timer] == NONE ? 0 : due[timer] - frame;
+  }
+
+  /**
+   * Moves to the next frame and removes the timers due on it, which can then be read with
+   * getExpired() in ascending order until the next call. Callers that give related timers numbers
+   * in the order their effects must apply get a deterministic order within a frame.
+   *
+   * @return number of timers that expired
+   */
+  public int advance() {
+    frame += 1;
+    expiredCount = 0;
+    int timer = heads[frame & mask];
+    while (timer != NONE) {
+      int following = next[timer];
+      if (due[timer] == frame) {
+        cancel(timer);
+        // insertion sort; only a handful of timers expire on the same frame
+        int i = expiredCount++;
+        while (i > 0 && expired[i - 1] > timer) {
+          expired[i] = expired[i - 1];
+          i--;
+        }
+        expired[i] = timer;
+      }
+      timer = following;
+    }
+    return expiredCount;
+  }
+
+  /**
+   * Returns the number of frames until the next timer expires, counting from the current frame.
+   * This looks at every timer, so it takes time proportional to getTimerCount().
+   *
+   * @return frames until the earliest timer expires, or Integer.MAX_VALUE if none is scheduled
+   */
+  public int getFramesToNext() {
+    int earliest = Integer.MAX_VALUE;
+    for (int timer = 0; timer < due.length; timer++) {
+      if (slotOf[timer] != NONE) {
+        earliest = Math.min(earliest, due[timer] - frame);
+      }
+    }
+    return earliest;
+  }
+
+  /**
+   * Moves ahead several frames at once, none of which may have a timer due on it.
+   *
+   * @param frames number of frames, less than getFramesToNext()
+   * @throws IllegalArgumentException if frames is negative or a timer is due within them
+   */
+  public void skip(final int frames) {
+    if (frames < 0 || frames >= getFramesToNext()) {
+      throw new IllegalArgumentException(
+          "Cannot skip " + frames + " frames with a timer due in " + getFramesToNext());
+    }
+    frame += frames;
+    expiredCount = 0;
+  }
+
+  /**
+   * Returns one of the timers that expired on the current frame.
+   *
+   * @param index index from 0 to the count returned by advance() - 1
+   * @return the timer
+   */
+  public int getExpired(final int index) {
+    return expired[index];
+  }
+
+  /**
+   * Cancels every timer and sets the current frame.
+   *
+   * @param newFrame the new current frame
+   */
+  public void reset(final int newFrame) {
+    Arrays.fill(heads, NONE);
+    Arrays.fill(slotOf, NONE);
+    expiredCount = 0;
+    frame = newFrame;
+  }
+}
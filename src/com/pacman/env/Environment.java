@@ -0,0 +1,243 @@
+package com.pacman.env;
+
+import api.Direction;
+import api.PacmanGame;
+import api.StepResult;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Gym-style facade over PacmanGame for training agents. An episode starts with reset(seed) and
+ * advances with step(action); each step applies the action and runs a fixed number of frames
+ * through PacmanGame.step(), and the observation is written into the buffer the caller attached
+ * with setObservationBuffer(). The step's reward is its score delta, the episode is done when the
+ * level is over, and lives, score and frame count are available from this object as the step's
+ * info.
+ *
+ * <p>Observations are updated incrementally after each step, so their cost depends on how much
+ * changed rather than on the maze area; see ObservationEncoder.
+ *
+ * <p>Actions are Direction ordinals, or NO_ACTION to leave the player's direction as it is.
+ * Stepping reuses the game's StepResult and writes into the attached buffer, so it does not
+ * allocate as long as the ghosts' movement log is left off, as it is by default; reset() restarts
+ * the same game in place with PacmanGame.restartLevel().
+ */
+public final class Environment {
+  /** Action that does not turn the player. */
+  public static final int NO_ACTION = Direction.values().length;
+
+  /** Number of actions: one per direction, and NO_ACTION. */
+  public static final int ACTION_COUNT = NO_ACTION + 1;
+
+  /** Directions indexed by action. */
+  private static final Direction[] DIRECTIONS = Direction.values();
+
+  /** Rows of the maze. */
+  private final String[] rows;
+
+  /** Frames per second of the game. */
+  private final int frameRate;
+
+  /** Frames simulated per step. */
+  private final int framesPerStep;
+
+  /** Writes observations into the attached buffer. */
+  private final ObservationEncoder encoder;
+
+  /** The game, restarted for each episode. */
+  private final PacmanGame game;
+
+  /**
+   * Constructs an environment on the given maze. The environment starts with an episode seeded
+   * with 0, as if reset(0) had been called.
+   *
+   * @param rows array of strings, one per row of the maze, as for PacmanGame
+   * @param frameRate the frames per second rate of the game
+   * @param framesPerStep number of frames each step simulates, at least 1
+   * @throws IllegalArgumentException if framesPerStep is less than 1
+   */
+  public Environment(final String[] rows, final int frameRate, final int framesPerStep) {
+    if (framesPerStep < 1) {
+      throw new IllegalArgumentException("Frames per step must be at least 1: " + framesPerStep);
+    }
+    this.rows = rows.clone();
+    this.frameRate = frameRate;
+    this.framesPerStep = framesPerStep;
+    this.game = newGame(0);
+    this.encoder =
+        new ObservationEncoder(game.getNumRows(), game.getNumColumns(), game.getEnemyCount());
+  }
+
+  /**
+   * Directs observations into the given buffer, starting at its current position, as bytes 0 and
+   * 1. The current observation is written immediately.
+   *
+   * @param buffer destination for observations, normally a direct buffer
+   * @throws IllegalArgumentException if the buffer has fewer than getObservationSize() bytes
+   *     remaining
+   */
+  public void setObservationBuffer(final ByteBuffer buffer) {
+    encoder.setTarget(buffer);
+    encoder.encode(game);
+  }
+
+  /**
+   * Directs observations into the given buffer, starting at its current position, as 0.0f and
+   * 1.0f. The current observation is written immediately.
+   *
+   * @param buffer destination for observations, normally a view of a direct buffer
+   * @throws IllegalArgumentException if the buffer has fewer than getObservationSize() floats
+   *     remaining
+   */
+  public void setObservationBuffer(final FloatBuffer buffer) {
+    encoder.setTarget(buffer);
+    encoder.encode(game);
+  }
+
+  /**
+   * Starts a new episode whose ghosts use the given seed, and writes its first observation.
+   *
+   * @param seed seed for the game's random number generator
+   */
+  public void reset(final long seed) {
+    game.restartLevel(seed);
+    if (encoder.hasTarget()) {
+      encoder.encode(game);
+    }
+  }
+
+  /**
+   * Applies the given action, advances the game by up to getFramesPerStep() frames, and writes the
+   * new observation. The step ends early on the frame in which the player loses a life. Stepping
+   * an episode that is done has no effect and reports no reward.
+   *
+   * @param action a Direction ordinal, or NO_ACTION
+   * @return the step's reward (getScoreDelta()), done flag (isLevelOver()) and frame count; the
+   *     result is reused by the next step
+   * @throws IllegalArgumentException if the action is out of range
+   */
+  public StepResult step(final int action) {
+    if (action < 0 || action >= ACTION_COUNT) {
+      throw new IllegalArgumentException("Action out of range: " + action);
+    }
+    Direction dir = action == NO_ACTION ? null : DIRECTIONS[action];
+    StepResult result = game.step(dir, framesPerStep);
+    if (encoder.hasTarget()) {
+      encoder.update(game);
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if the current episode is over.
+   *
+   * @return true if the level is over
+   */
+  public boolean isDone() {
+    return game.levelOver();
+  }
+
+  /**
+   * Returns the current episode's score.
+   *
+   * @return current score
+   */
+  public int getScore() {
+    return game.getScore();
+  }
+
+  /**
+   * Returns the player's remaining lives in the current episode.
+   *
+   * @return number of lives remaining
+   */
+  public int getLives() {
+    return game.getLives();
+  }
+
+  /**
+   * Returns the number of frames simulated in the current episode.
+   *
+   * @return number of frames
+   */
+  public int getFrameCount() {
+    return game.getFrameCount();
+  }
+
+  /**
+   * Returns the number of frames each step simulates.
+   *
+   * @return frames per step
+   */
+  public int getFramesPerStep() {
+    return framesPerStep;
+  }
+
+  /**
+   * Sets the number of steps between full rebuilds of the observation. Steps in between only
+   * rewrite the cells that changed.
+   *
+   * @param steps number of steps, at least 1
+   * @throws IllegalArgumentException if steps is less than 1
+   */
+  public void setObservationRebuildInterval(final int steps) {
+    encoder.setRebuildInterval(steps);
+  }
+
+  /**
+   * Returns the number of channels in an observation.
+   *
+   * @return number of channels
+   */
+  public int getObservationChannels() {
+    return encoder.getChannelCount();
+  }
+
+  /**
+   * Returns the number of rows in each observation channel.
+   *
+   * @return number of rows
+   */
+  public int getObservationRows() {
+    return game.getNumRows();
+  }
+
+  /**
+   * Returns the number of columns in each observation channel.
+   *
+   * @return number of columns
+   */
+  public int getObservationColumns() {
+    return game.getNumColumns();
+  }
+
+  /**
+   * Returns the number of values in an observation, which is the room a buffer needs.
+   *
+   * @return observation size in values
+   */
+  public int getObservationSize() {
+    return encoder.getSize();
+  }
+
+  /**
+   * Returns the current episode's game, for inspection.
+   *
+   * @return the game
+   */
+  public PacmanGame getGame() {
+    return game;
+  }
+
+  /**
+   * Creates the headless game that all episodes are played in.
+   *
+   * @param seed seed for the first episode
+   * @return the new game
+   */
+  private PacmanGame newGame(final long seed) {
+    PacmanGame g = new PacmanGame(rows, frameRate, seed);
+    g.setPlayerDeathDelay(0);
+    return g;
+  }
+}
@@ -0,0 +1,376 @@
+package com.pacman.env;
+
+import api.Actor;
+import api.CellType;
+import api.GameEvent;
+import api.GameEventRing;
+import api.GameEventType;
+import api.MazeTemplate;
+import api.Mode;
+import api.PacmanGame;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Writes the state of a game as a stack of grids, one channel per feature, into a ByteBuffer or
+ * FloatBuffer supplied by the caller. Values are 0 or 1. The layout is channel-major: the value for
+ * channel c at (row, col) is at offset + (c * rows + row) * columns + col, where offset is the
+ * buffer's position when it was attached.
+ *
+ * <p>The channels are WALL_CHANNEL, PELLET_CHANNEL (uneaten dots), ENERGIZER_CHANNEL (uneaten
+ * energizers), PLAYER_CHANNEL (the cells of every player), FRIGHTENED_CHANNEL (cells holding a
+ * frightened ghost), and then one channel per enemy starting at FIRST_ENEMY_CHANNEL, in the order
+ * of PacmanGame.getEnemy().
+ *
+ * <p>After a full encode(), update() keeps the observation current by rewriting only what changed:
+ * the cells of pellets and energizers eaten since the last update by any player, read from the
+ * game's event stream, and the old and new cells of each actor. Its cost depends on the number of
+ * changes rather than the maze area. As a guard against drift, update() falls back to a full
+ * rebuild every getRebuildInterval() updates, when it observes a different game, when it has
+ * missed events, and when a level started in place (a LEVEL_START event).
+ */
+public final class ObservationEncoder {
+  /** Channel marking walls. */
+  public static final int WALL_CHANNEL = 0;
+
+  /** Channel marking uneaten dots. */
+  public static final int PELLET_CHANNEL = 1;
+
+  /** Channel marking uneaten energizers. */
+  public static final int ENERGIZER_CHANNEL = 2;
+
+  /** Channel marking the players' cells. */
+  public static final int PLAYER_CHANNEL = 3;
+
+  /** Channel marking the cells of frightened ghosts. */
+  public static final int FRIGHTENED_CHANNEL = 4;
+
+  /** Channel of the first enemy; enemy i is on channel FIRST_ENEMY_CHANNEL + i. */
+  public static final int FIRST_ENEMY_CHANNEL = 5;
+
+  /** Default number of incremental updates between full rebuilds. */
+  public static final int DEFAULT_REBUILD_INTERVAL = 1000;
+
+  /** Number of rows in the grids. */
+  private final int rows;
+
+  /** Number of columns in the grids. */
+  private final int columns;
+
+  /** Number of enemies, hence of enemy channels. */
+  private final int enemyCount;
+
+  /** Byte target, or null. */
+  private ByteBuffer bytes;
+
+  /** Float target, or null. */
+  private FloatBuffer floats;
+
+  /** Index of the first value in the target. */
+  private int offset;
+
+  /** Number of incremental updates between full rebuilds. */
+  private int rebuildInterval = DEFAULT_REBUILD_INTERVAL;
+
+  /** Game whose state the target currently holds, or null if the target must be rebuilt. */
+  private PacmanGame observed;
+
+  /** Position in the observed game's event stream. */
+  private GameEventRing.Subscriber subscriber;
+
+  /** Scratch event for reading the event stream. */
+  private final GameEvent event = new GameEvent();
+
+  /** Events the subscriber had lost at the last full rebuild. */
+  private long lostAtRebuild;
+
+  /** Incremental updates since the last full rebuild. */
+  private int updatesSinceRebuild;
+
+  /** Number of full rebuilds so far. */
+  private long rebuildCount;
+
+  /** Cell index of each player in the target. */
+  private int[] playerCells = new int[1];
+
+  /** Cell index of each enemy in the target. */
+  private final int[] enemyCells;
+
+  /** Whether each enemy is marked as frightened in the target. */
+  private final boolean[] enemyFrightened;
+
+  /**
+   * Constructs an encoder for games with the given maze size and number of enemies.
+   *
+   * @param rows number of rows in the maze
+   * @param columns number of columns in the maze
+   * @param enemyCount number of enemies
+   */
+  public ObservationEncoder(final int rows, final int columns, final int enemyCount) {
+    this.rows = rows;
+    this.columns = columns;
+    this.enemyCount = enemyCount;
+    this.enemyCells = new int[enemyCount];
+    this.enemyFrightened = new boolean[enemyCount];
+  }
+
+  /**
+   * Returns the number of channels.
+   *
+   * @return number of channels
+   */
+  public int getChannelCount() {
+    return FIRST_ENEMY_CHANNEL + enemyCount;
+  }
+
+  /**
+   * Returns the number of values in an observation.
+   *
+   * @return observation size in values
+   */
+  public int getSize() {
+    return getChannelCount() * rows * columns;
+  }
+
+  /**
+   * Directs observations into the given buffer, starting at its current position. Values are
+   * written as bytes 0 and 1, with absolute puts, so the buffer's position is not changed. A direct
+   * buffer can be shared with native code without copying.
+   *
+   * @param buffer destination for observations
+   * @throws IllegalArgumentException if the buffer has fewer than getSize() bytes remaining
+   */
+  public void setTarget(final ByteBuffer buffer) {
+    checkRemaining(buffer.remaining());
+    bytes = buffer;
+    floats = null;
+    offset = buffer.position();
+    observed = null;
+  }
+
+  /**
+   * Directs observations into the given buffer, starting at its current position. Values are
+   * written as 0.0f and 1.0f, with absolute puts, so the buffer's position is not changed.
+   *
+   * @param buffer destination for observations
+   * @throws IllegalArgumentException if the buffer has fewer than getSize() floats remaining
+   */
+  public void setTarget(final FloatBuffer buffer) {
+    checkRemaining(buffer.remaining());
+    floats = buffer;
+    bytes = null;
+    offset = buffer.position();
+    observed = null;
+  }
+
+  /**
+   * Sets the number of incremental updates between full rebuilds.
+   *
+   * @param updates number of updates, at least 1
+   * @throws IllegalArgumentException if updates is less than 1
+   */
+  public void setRebuildInterval(final int updates) {
+    if (updates < 1) {
+      throw new IllegalArgumentException("Rebuild interval must be at least 1: " + updates);
+    }
+    rebuildInterval = updates;
+  }
+
+  /**
+   * Returns the number of incremental updates between full rebuilds.
+   *
+   * @return rebuild interval
+   */
+  public int getRebuildInterval() {
+    return rebuildInterval;
+  }
+
+  /**
+   * Returns the number of full rebuilds done so far, by encode() or by update().
+   *
+   * @return number of full rebuilds
+   */
+  public long getRebuildCount() {
+    return rebuildCount;
+  }
+
+  /**
+   * Returns true if a buffer has been attached.
+   *
+   * @return true if there is a target buffer
+   */
+  public boolean hasTarget() {
+    return bytes != null || floats != null;
+  }
+
+  /**
+   * Writes the full observation of the given game into the target buffer, and starts tracking the
+   * game so that later calls to update() only rewrite what changed.
+   *
+   * @param game the game to observe
+   * @throws IllegalStateException if no buffer has been attached
+   */
+  public void encode(final PacmanGame game) {
+    if (!hasTarget()) {
+      throw new IllegalStateException("No observation buffer attached");
+    }
+    MazeTemplate maze = game.getTemplate();
+    for (int row = 0; row < rows; ++row) {
+      for (int col = 0; col < columns; ++col) {
+        CellType type = maze.getCellType(row, col);
+        boolean uneaten = game.canEat(row, col);
+        put(WALL_CHANNEL, row, col, type == CellType.WALL);
+        put(PELLET_CHANNEL, row, col, uneaten && type == CellType.DOT);
+        put(ENERGIZER_CHANNEL, row, col, uneaten && type == CellType.ENERGIZER);
+      }
+    }
+    int actorStart = offset + PLAYER_CHANNEL * rows * columns;
+    int actorEnd = offset + getSize();
+    for (int i = actorStart; i < actorEnd; ++i) {
+      put(i, false);
+    }
+    if (playerCells.length != game.getPlayerCount()) {
+      playerCells = new int[game.getPlayerCount()];
+    }
+    for (int p = 0; p < playerCells.length; ++p) {
+      Actor player = game.getPlayer(p);
+      playerCells[p] = player.getCurrentRow() * columns + player.getCurrentCol();
+      put(PLAYER_CHANNEL, playerCells[p], true);
+    }
+    for (int e = 0; e < enemyCount; ++e) {
+      Actor enemy = game.getEnemy(e);
+      enemyCells[e] = enemy.getCurrentRow() * columns + enemy.getCurrentCol();
+      enemyFrightened[e] = enemy.getMode() == Mode.FRIGHTENED;
+      put(FIRST_ENEMY_CHANNEL + e, enemyCells[e], true);
+      if (enemyFrightened[e]) {
+        put(FRIGHTENED_CHANNEL, enemyCells[e], true);
+      }
+    }
+
+    // later updates apply only the events published after this point
+    if (game != observed) {
+      subscriber = game.getEvents().subscribe();
+      observed = game;
+    } else {
+      subscriber.skipAll();
+    }
+    lostAtRebuild = subscriber.getLostCount();
+    updatesSinceRebuild = 0;
+    rebuildCount += 1;
+  }
+
+  /**
+   * Brings the observation in the target buffer up to date with the given game, rewriting only the
+   * cells that changed since the last encode() or update(). Falls back to a full encode() if the
+   * target does not hold this game yet, if the rebuild interval has elapsed, if events were missed
+   * because the game ran more than the event ring's capacity ahead, or if a level started.
+   *
+   * @param game the game to observe
+   * @throws IllegalStateException if no buffer has been attached
+   */
+  public void update(final PacmanGame game) {
+    if (game != observed || updatesSinceRebuild >= rebuildInterval) {
+      encode(game);
+      return;
+    }
+    updatesSinceRebuild += 1;
+
+    while (subscriber.poll(event)) {
+      GameEventType type = event.getType();
+      if (type == GameEventType.LEVEL_START) {
+        // the pellets were restored, so rebuild instead of replaying the rest
+        encode(game);
+        return;
+      } else if (type == GameEventType.PELLET_EATEN) {
+        put(PELLET_CHANNEL, event.getRow(), event.getCol(), false);
+      } else if (type == GameEventType.ENERGIZER_EATEN) {
+        put(ENERGIZER_CHANNEL, event.getRow(), event.getCol(), false);
+      }
+    }
+    if (subscriber.getLostCount() != lostAtRebuild) {
+      encode(game);
+      return;
+    }
+
+    // clear every old mark before setting new ones, since players and ghosts can share a cell
+    for (int p = 0; p < playerCells.length; ++p) {
+      put(PLAYER_CHANNEL, playerCells[p], false);
+    }
+    for (int p = 0; p < playerCells.length; ++p) {
+      Actor player = game.getPlayer(p);
+      playerCells[p] = player.getCurrentRow() * columns + player.getCurrentCol();
+      put(PLAYER_CHANNEL, playerCells[p], true);
+    }
+
+    for (int e = 0; e < enemyCount; ++e) {
+      if (enemyFrightened[e]) {
+        put(FRIGHTENED_CHANNEL, enemyCells[e], false);
+      }
+    }
+    for (int e = 0; e < enemyCount; ++e) {
+      Actor enemy = game.getEnemy(e);
+      int cell = enemy.getCurrentRow() * columns + enemy.getCurrentCol();
+      if (cell != enemyCells[e]) {
+        put(FIRST_ENEMY_CHANNEL + e, enemyCells[e], false);
+        put(FIRST_ENEMY_CHANNEL + e, cell, true);
+        enemyCells[e] = cell;
+      }
+      enemyFrightened[e] = enemy.getMode() == Mode.FRIGHTENED;
+    }
+    for (int e = 0; e < enemyCount; ++e) {
+      if (enemyFrightened[e]) {
+        put(FRIGHTENED_CHANNEL, enemyCells[e], true);
+      }
+    }
+  }
+
+  /**
+   * Writes one value of the grid for the given channel.
+   *
+   * @param channel channel index
+   * @param row row of the cell
+   * @param col column of the cell
+   * @param value value to write
+   */
+  private void put(final int channel, final int row, final int col, final boolean value) {
+    put(channel, row * columns + col, value);
+  }
+
+  /**
+   * Writes one value of the grid for the given channel.
+   *
+   * @param channel channel index
+   * @param cell index of the cell, row * columns + col
+   * @param value value to write
+   */
+  private void put(final int channel, final int cell, final boolean value) {
+    put(offset + channel * rows * columns + cell, value);
+  }
+
+  /**
+   * Writes one value at an absolute index of the target buffer.
+   *
+   * @param index index in the buffer
+   * @param value value to write
+   */
+  private void put(final int index, final boolean value) {
+    if (bytes != null) {
+      bytes.put(index, value ? (byte) 1 : (byte) 0);
+    } else {
+      floats.put(index, value ? 1.0f : 0.0f);
+    }
+  }
+
+  /**
+   * Checks that a buffer has room for an observation.
+   *
+   * @param remaining number of values remaining in the buffer
+   * @throws IllegalArgumentException if there is not enough room
+   */
+  private void checkRemaining(final int remaining) {
+    if (remaining < getSize()) {
+      throw new IllegalArgumentException(
+          "Observation needs " + getSize() + " values, buffer has " + remaining);
+    }
+  }
+}
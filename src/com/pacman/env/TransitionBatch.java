@@ -0,0 +1,172 @@
+package com.pacman.env;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Mini-batch of transitions sampled from a TransitionBuffer. The observations of the batch are
+ * packed into two direct buffers, sample k at offset k * observation size, ready to be handed to
+ * native code; the other fields are parallel arrays. A batch is filled in place by each sample
+ * call, so one instance can be reused for the whole of training.
+ */
+public final class TransitionBatch {
+  /** Number of transitions in the batch. */
+  private final int size;
+
+  /** Size of an observation in bytes. */
+  private final int observationSize;
+
+  /** Observations before each transition, packed. */
+  private final ByteBuffer observations;
+
+  /** Observations after each transition, packed. */
+  private final ByteBuffer nextObservations;
+
+  /** Action of each transition. */
+  private final int[] actions;
+
+  /** Reward of each transition. */
+  private final float[] rewards;
+
+  /** Whether each transition ended its episode. */
+  private final boolean[] dones;
+
+  /** Index in the buffer of each transition. */
+  private final int[] indices;
+
+  /** Probability with which each transition was drawn. */
+  private final double[] probabilities;
+
+  /**
+   * Constructs an empty batch.
+   *
+   * @param size number of transitions per batch
+   * @param observationSize size of an observation in bytes
+   * @throws IllegalArgumentException if size is less than 1
+   */
+  public TransitionBatch(final int size, final int observationSize) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1: " + size);
+    }
+    this.size = size;
+    this.observationSize = observationSize;
+    this.observations = ByteBuffer.allocateDirect(size * observationSize);
+    this.nextObservations = ByteBuffer.allocateDirect(size * observationSize);
+    this.actions = new int[size];
+    this.rewards = new float[size];
+    this.dones = new boolean[size];
+    this.indices = new int[size];
+    this.probabilities = new double[size];
+  }
+
+  /**
+   * Returns the number of transitions in the batch.
+   *
+   * @return batch size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the size of an observation in bytes.
+   *
+   * @return observation size
+   */
+  public int getObservationSize() {
+    return observationSize;
+  }
+
+  /**
+   * Returns the packed observations before each transition; sample k starts at offset k *
+   * getObservationSize().
+   *
+   * @return direct buffer of observations
+   */
+  public ByteBuffer getObservations() {
+    return observations;
+  }
+
+  /**
+   * Returns the packed observations after each transition; sample k starts at offset k *
+   * getObservationSize().
+   *
+   * @return direct buffer of next observations
+   */
+  public ByteBuffer getNextObservations() {
+    return nextObservations;
+  }
+
+  /**
+   * Returns the action of a sample.
+   *
+   * @param k index of the sample in the batch
+   * @return the action
+   */
+  public int getAction(final int k) {
+    return actions[k];
+  }
+
+  /**
+   * Returns the reward of a sample.
+   *
+   * @param k index of the sample in the batch
+   * @return the reward
+   */
+  public float getReward(final int k) {
+    return rewards[k];
+  }
+
+  /**
+   * Returns true if a sample ended its episode.
+   *
+   * @param k index of the sample in the batch
+   * @return the done flag
+   */
+  public boolean isDone(final int k) {
+    return dones[k];
+  }
+
+  /**
+   * Returns the index in the buffer of a sample, for TransitionBuffer.setPriority().
+   *
+   * @param k index of the sample in the batch
+   * @return index in the buffer
+   */
+  public int getIndex(final int k) {
+    return indices[k];
+  }
+
+  /**
+   * Returns the probability with which a sample was drawn, for importance-sampling weights.
+   *
+   * @param k index of the sample in the batch
+   * @return the probability
+   */
+  public double getProbability(final int k) {
+    return probabilities[k];
+  }
+
+  /**
+   * Fills the scalar fields of a sample.
+   *
+   * @param k index of the sample in the batch
+   * @param index index in the buffer
+   * @param action the action
+   * @param reward the reward
+   * @param done the done flag
+   * @param probability probability with which the sample was drawn
+   */
+  void set(
+      final int k,
+      final int index,
+      final int action,
+      final float reward,
+      final boolean done,
+      final double probability) {
+    indices[k] = index;
+    actions[k] = action;
+    rewards[k] = reward;
+    dones[k] = done;
+    probabilities[k] = probability;
+  }
+}
@@ -0,0 +1,499 @@
+package com.pacman.env;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-capacity circular replay buffer of transitions (observation, action, reward, next
+ * observation, done), stored off the heap. Once full, each append overwrites the oldest
+ * transition. Observations are bytes, as written by Environment.setObservationBuffer(ByteBuffer).
+ *
+ * <p>Transitions are fixed-size records in direct buffers of up to 1 GiB each. Records beyond a
+ * memory budget are kept in a memory-mapped spill file instead, so a buffer larger than RAM is
+ * paged by the operating system rather than failing to allocate.
+ *
+ * <p>Any number of threads can append concurrently without locking: an append claims its record
+ * with one atomic increment, writes it, and publishes it through a per-record stamp. Sampling may
+ * run at the same time; it copies a record into a TransitionBatch, then checks that the stamp did
+ * not change meanwhile, and draws another record if it did. Sampling is uniform with sample(), or
+ * proportional to per-record priorities with samplePrioritized(), using a sum tree that is updated
+ * with atomic adds. Neither appending nor sampling allocates.
+ */
+public final class TransitionBuffer {
+  /** Largest priority accepted by setPriority(). */
+  public static final double MAX_PRIORITY = 1e6;
+
+  /** Largest size of a single direct or mapped buffer. */
+  private static final int SEGMENT_BYTES = 1 << 30;
+
+  /** Record offset of the action. */
+  private static final int ACTION = 0;
+
+  /** Record offset of the reward. */
+  private static final int REWARD = 4;
+
+  /** Record offset of the done flag. */
+  private static final int DONE = 8;
+
+  /** Record offset of the observation, followed by the next observation. */
+  private static final int OBSERVATION = 16;
+
+  /** Priorities are stored as fixed-point longs with this many units per 1.0. */
+  private static final double PRIORITY_SCALE = 1024;
+
+  /** Number of transitions. */
+  private final int capacity;
+
+  /** Size of an observation in bytes. */
+  private final int observationSize;
+
+  /** Size of a record in bytes. */
+  private final int stride;
+
+  /** Number of records in a full segment. */
+  private final int recordsPerSegment;
+
+  /** Number of records held in direct buffers; the rest are in the spill file. */
+  private final int memoryRecords;
+
+  /** Number of segments held in direct buffers. */
+  private final int memorySegments;
+
+  /** Direct buffers, followed by mapped buffers. */
+  private final ByteBuffer[] segments;
+
+  /** Number of appends so far, which is also the sequence number of the next one. */
+  private final AtomicLong appended = new AtomicLong();
+
+  /**
+   * Stamp of each record: 0 if it was never written, sequence + 1 of the transition it holds, or
+   * the negation of that while an append is writing it.
+   */
+  private final AtomicLongArray stamps;
+
+  /** Number of leaves of the sum tree, a power of two. */
+  private final int leaves;
+
+  /** Sum tree of fixed-point priorities: node i is the sum of nodes 2i and 2i + 1. */
+  private final AtomicLongArray tree;
+
+  /** Largest fixed-point priority set so far, given to new transitions. */
+  private final AtomicLong maxPriority = new AtomicLong(Math.round(PRIORITY_SCALE));
+
+  /**
+   * Constructs a buffer held entirely in direct memory.
+   *
+   * @param capacity number of transitions
+   * @param observationSize size of an observation in bytes
+   * @throws IllegalArgumentException if capacity is less than 1
+   */
+  public TransitionBuffer(final int capacity, final int observationSize) {
+    this(capacity, observationSize, capacity);
+    for (int s = 0; s < memorySegments; s++) {
+      segments[s] = ByteBuffer.allocateDirect(segmentRecords(s, memoryRecords) * stride);
+    }
+  }
+
+  /**
+   * Constructs a buffer that keeps as many transitions in direct memory as fit in the given budget
+   * and the rest in a memory-mapped file. The file is created, or truncated if it exists, only if
+   * some transitions do not fit in the budget; its contents are scratch space and may be deleted
+   * once the buffer is no longer used.
+   *
+   * @param capacity number of transitions
+   * @param observationSize size of an observation in bytes
+   * @param memoryBudget number of bytes of direct memory to use
+   * @param spillFile file for the transitions beyond the budget
+   * @throws IOException if the file cannot be created or mapped
+   * @throws IllegalArgumentException if capacity is less than 1
+   */
+  public TransitionBuffer(
+      final int capacity, final int observationSize, final long memoryBudget, final Path spillFile)
+      throws IOException {
+    this(
+        capacity,
+        observationSize,
+        (int) Math.min(capacity, Math.max(0, memoryBudget) / recordSize(observationSize)));
+    for (int s = 0; s < memorySegments; s++) {
+      segments[s] = ByteBuffer.allocateDirect(segmentRecords(s, memoryRecords) * stride);
+    }
+    int spilled = capacity - memoryRecords;
+    if (spilled > 0) {
+      try (FileChannel channel =
+          FileChannel.open(
+              spillFile,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)) {
+        for (int s = 0; memorySegments + s < segments.length; s++) {
+          long position = (long) s * recordsPerSegment * stride;
+          int size = segmentRecords(s, spilled) * stride;
+          segments[memorySegments + s] =
+              channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets up everything but the contents of the segments.
+   *
+   * @param capacity number of transitions
+   * @param observationSize size of an observation in bytes
+   * @param memoryRecords number of transitions held in direct memory
+   */
+  private TransitionBuffer(final int capacity, final int observationSize, final int memoryRecords) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+    }
+    this.capacity = capacity;
+    this.observationSize = observationSize;
+    this.stride = recordSize(observationSize);
+    this.recordsPerSegment = Math.max(1, SEGMENT_BYTES / stride);
+    this.memoryRecords = memoryRecords;
+    this.memorySegments = segmentCount(memoryRecords);
+    this.segments = new ByteBuffer[memorySegments + segmentCount(capacity - memoryRecords)];
+    this.stamps = new AtomicLongArray(capacity);
+    this.leaves = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    this.tree = new AtomicLongArray(2 * leaves);
+  }
+
+  /**
+   * Appends a transition, overwriting the oldest one if the buffer is full. The observations are
+   * read from their buffers' positions, which are not changed. The transition gets the largest
+   * priority set so far, so that it is likely to be sampled at least once.
+   *
+   * @param observation observation before the transition
+   * @param action the action taken
+   * @param reward the reward received
+   * @param nextObservation observation after the transition
+   * @param done whether the transition ended the episode
+   * @return index of the transition in the buffer, or -1 if a later append overtook it and it was
+   *     dropped, which only happens when appends lap the whole buffer concurrently
+   * @throws IllegalArgumentException if an observation has fewer than getObservationSize() bytes
+   *     remaining
+   */
+  public int append(
+      final ByteBuffer observation,
+      final int action,
+      final float reward,
+      final ByteBuffer nextObservation,
+      final boolean done) {
+    if (observation.remaining() < observationSize
+        || nextObservation.remaining() < observationSize) {
+      throw new IllegalArgumentException("Observations must have " + observationSize + " bytes");
+    }
+    long sequence = appended.getAndIncrement();
+    int index = (int) (sequence % capacity);
+    long stamp = sequence + 1;
+
+    // claim the record, waiting for an earlier append that is still writing it
+    while (true) {
+      long current = stamps.get(index);
+      if (Math.abs(current) >= stamp) {
+        return -1;
+      }
+      if (current < 0) {
+        Thread.onSpinWait();
+      } else if (stamps.compareAndSet(index, current, -stamp)) {
+        break;
+      }
+    }
+
+    ByteBuffer segment = segment(index);
+    int offset = offset(index);
+    segment.putInt(offset + ACTION, action);
+    segment.putFloat(offset + REWARD, reward);
+    segment.put(offset + DONE, done ? (byte) 1 : (byte) 0);
+    segment.put(offset + OBSERVATION, observation, observation.position(), observationSize);
+    segment.put(
+        offset + OBSERVATION + observationSize,
+        nextObservation,
+        nextObservation.position(),
+        observationSize);
+    setFixedPriority(index, maxPriority.get());
+    stamps.setRelease(index, stamp);
+    return index;
+  }
+
+  /**
+   * Fills the batch with transitions drawn uniformly at random, with replacement.
+   *
+   * @param batch the batch to fill
+   * @param random source of randomness, confined to the calling thread
+   * @throws IllegalArgumentException if the batch's observation size differs from this buffer's
+   * @throws IllegalStateException if the buffer is empty
+   */
+  public void sample(final TransitionBatch batch, final Random random) {
+    checkBatch(batch);
+    for (int k = 0; k < batch.size(); ++k) {
+      int count;
+      int index;
+      do {
+        count = size();
+        index = random.nextInt(count);
+      } while (!read(index, batch, k, 1.0 / count));
+    }
+  }
+
+  /**
+   * Fills the batch with transitions drawn at random with replacement, each with probability
+   * proportional to its priority. The probabilities are recorded in the batch, for importance
+   * weights.
+   *
+   * @param batch the batch to fill
+   * @param random source of randomness, confined to the calling thread
+   * @throws IllegalArgumentException if the batch's observation size differs from this buffer's
+   * @throws IllegalStateException if no transition has a positive priority
+   */
+  public void samplePrioritized(final TransitionBatch batch, final Random random) {
+    checkBatch(batch);
+    for (int k = 0; k < batch.size(); ++k) {
+      boolean found = false;
+      while (!found) {
+        long total = tree.get(1);
+        if (total <= 0) {
+          throw new IllegalStateException("No transition has a positive priority");
+        }
+        long target = Math.min(total - 1, (long) (random.nextDouble() * total));
+        int index = find(target);
+        long priority = index < capacity ? tree.get(leaves + index) : 0;
+        found = priority > 0 && read(index, batch, k, (double) priority / total);
+      }
+    }
+  }
+
+  /**
+   * Sets the priority of a transition, typically to its latest temporal-difference error.
+   *
+   * @param index index of the transition, as reported by TransitionBatch.getIndex()
+   * @param priority the new priority, from 0 (never sampled) to MAX_PRIORITY
+   * @throws IllegalArgumentException if the index or priority is out of range
+   */
+  public void setPriority(final int index, final double priority) {
+    if (index < 0 || index >= capacity) {
+      throw new IllegalArgumentException("Index out of range: " + index);
+    }
+    if (!(priority >= 0 && priority <= MAX_PRIORITY)) {
+      throw new IllegalArgumentException("Priority out of range: " + priority);
+    }
+    long fixed = Math.round(priority * PRIORITY_SCALE);
+    setFixedPriority(index, fixed);
+    long max = maxPriority.get();
+    while (fixed > max && !maxPriority.compareAndSet(max, fixed)) {
+      max = maxPriority.get();
+    }
+  }
+
+  /**
+   * Returns the priority of a transition.
+   *
+   * @param index index of the transition
+   * @return its priority, 0 if it was never written
+   */
+  public double getPriority(final int index) {
+    return tree.get(leaves + index) / PRIORITY_SCALE;
+  }
+
+  /**
+   * Returns the number of transitions, counting those still being appended.
+   *
+   * @return number of transitions, at most getCapacity()
+   * @throws IllegalStateException if the buffer is empty
+   */
+  public int size() {
+    long count = appended.get();
+    if (count == 0) {
+      throw new IllegalStateException("Replay buffer is empty");
+    }
+    return (int) Math.min(count, capacity);
+  }
+
+  /**
+   * Returns the number of appends so far, including transitions since overwritten.
+   *
+   * @return number of appends
+   */
+  public long getAppendCount() {
+    return appended.get();
+  }
+
+  /**
+   * Returns the number of transitions the buffer holds when full.
+   *
+   * @return capacity
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the number of transitions kept in the spill file rather than in direct memory.
+   *
+   * @return number of spilled transitions
+   */
+  public int getSpilledCapacity() {
+    return capacity - memoryRecords;
+  }
+
+  /**
+   * Returns the size of an observation in bytes.
+   *
+   * @return observation size
+   */
+  public int getObservationSize() {
+    return observationSize;
+  }
+
+  /**
+   * Copies a record into a batch if it holds a complete transition that does not change while it
+   * is being copied.
+   *
+   * @param index index of the record
+   * @param batch the batch to fill
+   * @param k index of the sample in the batch
+   * @param probability probability with which the record was drawn
+   * @return true if the record was copied
+   */
+  private boolean read(
+      final int index, final TransitionBatch batch, final int k, final double probability) {
+    long stamp = stamps.get(index);
+    if (stamp <= 0) {
+      return false;
+    }
+    ByteBuffer segment = segment(index);
+    int offset = offset(index);
+    int action = segment.getInt(offset + ACTION);
+    float reward = segment.getFloat(offset + REWARD);
+    boolean done = segment.get(offset + DONE) != 0;
+    int target = k * observationSize;
+    batch.getObservations().put(target, segment, offset + OBSERVATION, observationSize);
+    batch
+        .getNextObservations()
+        .put(target, segment, offset + OBSERVATION + observationSize, observationSize);
+
+    // the copy is only valid if no append claimed the record meanwhile
+    VarHandle.loadLoadFence();
+    if (stamps.get(index) != stamp) {
+      return false;
+    }
+    batch.set(k, index, action, reward, done, probability);
+    return true;
+  }
+
+  /**
+   * Sets a leaf of the sum tree and adds the difference to its ancestors.
+   *
+   * @param index index of the transition
+   * @param fixed fixed-point priority
+   */
+  private void setFixedPriority(final int index, final long fixed) {
+    int node = leaves + index;
+    long delta = fixed - tree.getAndSet(node, fixed);
+    if (delta != 0) {
+      for (node >>= 1; node >= 1; node >>= 1) {
+        tree.addAndGet(node, delta);
+      }
+    }
+  }
+
+  /**
+   * Descends the sum tree to the leaf whose priority range holds the target.
+   *
+   * @param target a value from 0 to the total priority
+   * @return index of the transition
+   */
+  private int find(final long target) {
+    long remaining = target;
+    int node = 1;
+    while (node < leaves) {
+      long left = tree.get(2 * node);
+      if (remaining < left) {
+        node = 2 * node;
+      } else {
+        remaining -= left;
+        node = 2 * node + 1;
+      }
+    }
+    return node - leaves;
+  }
+
+  /**
+   * Returns the segment holding a record.
+   *
+   * @param index index of the record
+   * @return its segment
+   */
+  private ByteBuffer segment(final int index) {
+    if (index < memoryRecords) {
+      return segments[index / recordsPerSegment];
+    }
+    return segments[memorySegments + (index - memoryRecords) / recordsPerSegment];
+  }
+
+  /**
+   * Returns the offset of a record in its segment.
+   *
+   * @param index index of the record
+   * @return byte offset in the segment
+   */
+  private int offset(final int index) {
+    int local = index < memoryRecords ? index : index - memoryRecords;
+    return local % recordsPerSegment * stride;
+  }
+
+  /**
+   * Returns the number of segments needed for some records.
+   *
+   * @param records number of records
+   * @return number of segments
+   */
+  private int segmentCount(final int records) {
+    return (records + recordsPerSegment - 1) / recordsPerSegment;
+  }
+
+  /**
+   * Returns the number of records in a segment of a region.
+   *
+   * @param segment index of the segment in the region
+   * @param records number of records in the region
+   * @return number of records in the segment
+   */
+  private int segmentRecords(final int segment, final int records) {
+    return Math.min(recordsPerSegment, records - segment * recordsPerSegment);
+  }
+
+  /**
+   * Returns the size of a record, padded to a multiple of 8 bytes.
+   *
+   * @param observationSize size of an observation in bytes
+   * @return record size in bytes
+   */
+  private static int recordSize(final int observationSize) {
+    return (OBSERVATION + 2 * observationSize + 7) & ~7;
+  }
+
+  /**
+   * Checks that a batch fits this buffer's observations.
+   *
+   * @param batch the batch
+   * @throws IllegalArgumentException if the observation sizes differ
+   */
+  private void checkBatch(final TransitionBatch batch) {
+    if (batch.getObservationSize() != observationSize) {
+      throw new IllegalArgumentException(
+          "Batch holds observations of "
+              + batch.getObservationSize()
+              + " bytes, buffer holds "
+              + observationSize);
+    }
+  }
+}
@@ -0,0 +1,6 @@
+/**
+ * This package contains a reinforcement-learning style facade over PacmanGame: episodes are reset
+ * with a seed, stepped with integer actions, and observed as multi-channel grids written into
+ * caller-supplied buffers, with an off-heap replay buffer for the transitions they produce.
+ */
+package com.pacman.env;
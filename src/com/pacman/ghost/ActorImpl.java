@@ -5,11 +5,18 @@ import static api.Direction.LEFT;
 import static api.Direction.RIGHT;
 import static api.Direction.UP;
 
+import static api.FixedPoint.HALF;
+import static api.FixedPoint.MASK;
+import static api.FixedPoint.ONE;
+
 import api.Actor;
+import api.CorridorIndex;
 import api.Descriptor;
 import api.Direction;
+import api.FixedPoint;
 import api.Location;
 import api.MazeMap;
+import api.MazeRegions;
 import api.Mode;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -19,6 +26,13 @@ import java.util.Random;
 /**
  * Base implementation of the Actor interface for all ghosts. Provides common ghost behavior like
  * movement, collision detection, and mode handling.
+ *
+ * <p>By default a ghost moves in double cells and decides where to go when a frame starts within a
+ * margin of error of a cell center. After setFixedPoint(true) it moves in the integer units of
+ * FixedPoint instead, with its speed rounded to whole units per frame: a ghost that reaches a cell
+ * center within a frame stops there exactly, decides, and goes on with the rest of its increment,
+ * so it decides at every cell whatever its speed. getRowExact() and getColExact() then return the
+ * units converted to cells, which is exact.
  */
 public abstract class ActorImpl implements Actor {
   /** Margin of error for comparing exact coordinates to the center of a cell. */
@@ -27,14 +41,8 @@ public abstract class ActorImpl implements Actor {
   /** Half cell offset for exact positioning. */
   private static final double HALF_CELL = 0.5;
 
-  /** Ghost house row radius. */
-  private static final int GHOST_HOUSE_ROW_RADIUS = 2;
-
-  /** Ghost house column radius. */
-  private static final int GHOST_HOUSE_COL_RADIUS = 3;
-
-  /** Divisor for finding center position. */
-  private static final int CENTER_DIVISOR = 2;
+  /** Distance, in cells, kept between a straight run's end and where it is counted to stop. */
+  private static final double STRAIGHT_MARGIN = 1e-9;
 
   /** First array index. */
   private static final int FIRST_INDEX = 0;
@@ -52,7 +60,7 @@ public abstract class ActorImpl implements Actor {
   private static final double HALF_SECOND_THRESHOLD = 1.5;
 
   /** Frightened continue probability. */
-  private static final double FRIGHTENED_CONTINUE_PROBABILITY = 0.8;
+  public static final double FRIGHTENED_CONTINUE_PROBABILITY = 0.8;
 
   /** Array element count threshold. */
   private static final int ARRAY_ELEMENT_COUNT_THRESHOLD = 1;
@@ -61,14 +69,34 @@ public abstract class ActorImpl implements Actor {
   private static final int MULTIPLE_MOVE_THRESHOLD = 1;
 
   /** Distance tolerance for path preferences. */
-  private static final double DISTANCE_TOLERANCE = 5.0;
+  public static final double DISTANCE_TOLERANCE = 5.0;
+
+  /** Order in which directions are tried when choosing a move. */
+  private static final Direction[] DIRECTION_ORDER = {
+    Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT
+  };
+
+  /** Number of possible directions. */
+  private static final int DIRECTION_COUNT = 4;
+
+  /** Speed of a frightened ghost relative to its base speed. */
+  public static final double FRIGHTENED_SPEED_FACTOR = 2.0 / 3.0;
+
+  /** Speed of a dead ghost relative to its base speed. */
+  public static final double DEAD_SPEED_FACTOR = 2.0;
 
   /** Base speed increment. */
-  private final double baseIncrement;
+  private double baseIncrement;
 
   /** A read-only representation of the maze for detecting walls and edges. */
   protected MazeMap maze;
 
+  /** Straight runs of the maze, for moving through corridors without deciding. */
+  private final CorridorIndex corridors;
+
+  /** Tunnels of the maze, for wrapping around its edges. */
+  private final MazeRegions regions;
+
   /** The scatter location for scatter mode. */
   private final Location scatterTarget;
 
@@ -102,20 +130,39 @@ public abstract class ActorImpl implements Actor {
   /** Current movement speed. */
   private double currentIncrement;
 
+  /** Whether the ghost moves in fixed-point units. */
+  private boolean fixedPoint;
+
+  /** Row coordinate in fixed-point units, when moving in them. */
+  private int rowFixed;
+
+  /** Column coordinate in fixed-point units, when moving in them. */
+  private int colFixed;
+
   /** Flag indicating ghost has passed center of current cell. */
   private boolean pastCenter;
 
   /** Random number generator for movement decisions. */
   protected Random rand;
 
+  /** Scratch space for the candidate directions of a move decision. */
+  private final Direction[] validDirections = new Direction[DIRECTION_COUNT];
+
+  /** Scratch space for the candidate cells of a move decision. */
+  private final Location[] validLocations = new Location[DIRECTION_COUNT];
+
+  /** Scratch space for the candidate distances of a move decision. */
+  private final double[] validDistances = new double[DIRECTION_COUNT];
+
   // Logging
   private static PrintWriter logWriter;
   private final String ghostType;
   private static boolean loggingInitialized = false;
+  private static boolean movementLogging = false;
   private static int frameCounter = 0;
 
-  /** Static initializer for logging. */
-  static {
+  /** Opens ghost_movement.log and writes its header, the first time logging is turned on. */
+  private static void initializeLogWriter() {
     try {
       logWriter = new PrintWriter(new FileWriter("ghost_movement.log", false));
       logWriter.println(
@@ -148,6 +195,8 @@ public abstract class ActorImpl implements Actor {
       final Random rand) {
     this.baseIncrement = baseSpeed;
     this.maze = maze;
+    this.corridors = maze.getCorridors();
+    this.regions = maze.getRegions();
     this.home = home;
     this.rowExact = home.row() + HALF_CELL;
     this.colExact = home.col() + HALF_CELL;
@@ -162,7 +211,7 @@ public abstract class ActorImpl implements Actor {
     this.ghostType = this.getClass().getSimpleName();
 
     // Initialize current location
-    this.currentLocation = new Location(home.row(), home.col());
+    this.currentLocation = Location.of(home.row(), home.col());
 
     // Initialize next direction and location
     this.nextDirection = homeDirection;
@@ -193,7 +242,7 @@ public abstract class ActorImpl implements Actor {
 
     setRowExact(centeredRow);
     setColExact(centeredCol);
-    currentLocation = new Location(home.row(), home.col());
+    currentLocation = Location.of(home.row(), home.col());
 
     pastCenter = false;
     nextDirection = homeDirection;
@@ -224,28 +273,28 @@ public abstract class ActorImpl implements Actor {
     switch (dir) {
       case UP:
         if (row > MINIMUM_BOUNDS && !maze.isWall(row - SINGLE_DECREMENT, col)) {
-          return new Location(row - SINGLE_DECREMENT, col);
+          return Location.of(row - SINGLE_DECREMENT, col);
         }
         break;
       case DOWN:
         if (row < numRows - SINGLE_DECREMENT && !maze.isWall(row + SINGLE_DECREMENT, col)) {
-          return new Location(row + SINGLE_DECREMENT, col);
+          return Location.of(row + SINGLE_DECREMENT, col);
         }
         break;
       case LEFT:
         if (col > MINIMUM_BOUNDS && !maze.isWall(row, col - SINGLE_DECREMENT)) {
-          return new Location(row, col - SINGLE_DECREMENT);
-        } else if (col == FIRST_INDEX) {
+          return Location.of(row, col - SINGLE_DECREMENT);
+        } else if (col == FIRST_INDEX && regions.isPortal(row, col)) {
           // Tunnel wrap around to right side
-          return new Location(row, numCols - SINGLE_DECREMENT);
+          return Location.of(row, numCols - SINGLE_DECREMENT);
         }
         break;
       case RIGHT:
         if (col < numCols - SINGLE_DECREMENT && !maze.isWall(row, col + SINGLE_DECREMENT)) {
-          return new Location(row, col + SINGLE_DECREMENT);
-        } else if (col == numCols - SINGLE_DECREMENT) {
+          return Location.of(row, col + SINGLE_DECREMENT);
+        } else if (col == numCols - SINGLE_DECREMENT && regions.isPortal(row, col)) {
           // Tunnel wrap around to left side
-          return new Location(row, FIRST_INDEX);
+          return Location.of(row, FIRST_INDEX);
         }
         break;
       default:
@@ -268,35 +317,6 @@ public abstract class ActorImpl implements Actor {
       return;
     }
 
-    // Special case: If we're in the ghost house area, navigate carefully
-    Location homeLoc = getHomeLocation();
-    boolean inGhostHouse = false;
-
-    if (homeLoc != null) {
-      // Check if we're in the ghost house area (typically center of maze)
-      int centerRow = maze.getNumRows() / CENTER_DIVISOR;
-      int centerCol = maze.getNumColumns() / CENTER_DIVISOR;
-      inGhostHouse =
-          Math.abs(currentLoc.row() - centerRow) <= GHOST_HOUSE_ROW_RADIUS
-              && Math.abs(currentLoc.col() - centerCol) <= GHOST_HOUSE_COL_RADIUS;
-    }
-
-    if (inGhostHouse && getMode() != Mode.INACTIVE) {
-      // For ghost house escape, prefer moving toward the exit (usually upward)
-      // But avoid walls by checking each direction carefully
-      Direction[] escapeOrder = {Direction.UP, Direction.LEFT, Direction.RIGHT, Direction.DOWN};
-
-      for (Direction dir : escapeOrder) {
-        Location loc = getNextLocation(currentLoc, dir);
-        if (loc != null && !maze.isWall(loc.row(), loc.col())) {
-          nextDirection = dir;
-          nextLocation = loc;
-          logMovement("GHOST_HOUSE_ESCAPE_" + dir);
-          return;
-        }
-      }
-    }
-
     // Try the current direction first
     Location nextLoc = getNextLocation(currentLoc, currentDirection);
 
@@ -310,11 +330,10 @@ public abstract class ActorImpl implements Actor {
 
     // If we can't move in current direction, we need to choose a new one
     // This prevents infinite loops by ensuring we always find a valid path
-    Direction[] directions = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
     Direction oppositeDir = getOppositeDirection(currentDirection);
 
     // First try non-reverse directions
-    for (Direction dir : directions) {
+    for (Direction dir : DIRECTION_ORDER) {
       if (dir == oppositeDir || dir == currentDirection) {
         continue;
       }
@@ -323,7 +342,9 @@ public abstract class ActorImpl implements Actor {
       if (loc != null && !maze.isWall(loc.row(), loc.col())) {
         nextDirection = dir;
         nextLocation = loc;
-        logMovement("FOUND_ALTERNATIVE_DIRECTION: " + dir);
+        if (isLogging()) {
+          logMovement("FOUND_ALTERNATIVE_DIRECTION: " + dir);
+        }
         return;
       }
     }
@@ -340,12 +361,14 @@ public abstract class ActorImpl implements Actor {
     // Fallback: stay in current location but set a valid direction for next attempt
     nextLocation = currentLoc;
     // Try to find ANY valid direction to unstick
-    for (Direction dir : directions) {
+    for (Direction dir : DIRECTION_ORDER) {
       Location loc = getNextLocation(currentLoc, dir);
       if (loc != null && !maze.isWall(loc.row(), loc.col())) {
         nextDirection = dir;
         currentDirection = dir; // Force direction change
-        logMovement("EMERGENCY_UNSTICK_DIRECTION=" + dir);
+        if (isLogging()) {
+          logMovement("EMERGENCY_UNSTICK_DIRECTION=" + dir);
+        }
         return;
       }
     }
@@ -399,18 +422,24 @@ public abstract class ActorImpl implements Actor {
       targetLocation = getScatterTarget();
     }
 
-    logMovement("TARGET_LOC=" + targetLocation);
+    if (isLogging()) {
+      logMovement("TARGET_LOC=" + targetLocation);
+    }
 
     // --- For DEAD mode, head directly toward home ---
     if (getMode() == Mode.DEAD) {
       calculatePathToTarget(currentLoc, getHomeLocation());
-      logMovement("DEAD_MODE_NEXT_DIR=" + nextDirection + ", NEXT_LOC=" + nextLocation);
+      if (isLogging()) {
+        logMovement("DEAD_MODE_NEXT_DIR=" + nextDirection + ", NEXT_LOC=" + nextLocation);
+      }
       return;
     }
 
     // --- For other modes, choose best direction toward target ---
     calculatePathToTarget(currentLoc, targetLocation);
-    logMovement("FOUND_PATH_TO_TARGET: " + nextDirection + ", NEXT_LOC=" + nextLocation);
+    if (isLogging()) {
+      logMovement("FOUND_PATH_TO_TARGET: " + nextDirection + ", NEXT_LOC=" + nextLocation);
+    }
   }
 
   /** Calculates the best path to a target location. */
@@ -423,7 +452,6 @@ public abstract class ActorImpl implements Actor {
 
     // Get all possible directions
     Direction oppositeDir = getOppositeDirection(currentDirection);
-    Direction[] directions = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
 
     Direction bestDir = null;
     Location bestLoc = null;
@@ -431,12 +459,9 @@ public abstract class ActorImpl implements Actor {
 
     // Count valid moves to detect dead-end situations
     int validMoveCount = 0;
-    Direction[] validDirections = new Direction[4];
-    Location[] validLocations = new Location[4];
-    double[] validDistances = new double[4];
 
     // First pass: collect all valid directions except opposite
-    for (Direction dir : directions) {
+    for (Direction dir : DIRECTION_ORDER) {
       // Skip the opposite direction unless it's the only option
       if (dir == oppositeDir) {
         continue;
@@ -508,13 +533,15 @@ public abstract class ActorImpl implements Actor {
     if (bestDir != null) {
       nextDirection = bestDir;
       nextLocation = bestLoc;
-      logMovement(
-          "TARGET_PATH_DIR="
-              + bestDir
-              + ", DISTANCE="
-              + shortestDistance
-              + ", VALID_MOVES="
-              + validMoveCount);
+      if (isLogging()) {
+        logMovement(
+            "TARGET_PATH_DIR="
+                + bestDir
+                + ", DISTANCE="
+                + shortestDistance
+                + ", VALID_MOVES="
+                + validMoveCount);
+      }
     } else {
       // Extremely rare - no valid moves at all
       nextLocation = currentLoc;
@@ -535,14 +562,11 @@ public abstract class ActorImpl implements Actor {
 
     // Get valid directions (no reversing)
     Direction oppositeDir = getOppositeDirection(currentDirection);
-    Direction[] directions = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
 
     // Count valid moves and collect valid directions
     int validMoveCount = 0;
-    Direction[] validDirections = new Direction[4];
-    Location[] validLocations = new Location[4];
 
-      for (Direction direction : directions) {
+      for (Direction direction : DIRECTION_ORDER) {
           // Skip the opposite direction (no reversing)
           if (direction == oppositeDir) {
               continue;
@@ -556,7 +580,9 @@ public abstract class ActorImpl implements Actor {
           }
       }
 
-    logMovement("FRIGHTENED_VALID_MOVES=" + validMoveCount);
+    if (isLogging()) {
+      logMovement("FRIGHTENED_VALID_MOVES=" + validMoveCount);
+    }
 
     // Handle case based on number of valid moves
     if (validMoveCount > MULTIPLE_MOVE_THRESHOLD) {
@@ -593,7 +619,9 @@ public abstract class ActorImpl implements Actor {
       // Only one option, take it
       nextDirection = validDirections[0];
       nextLocation = validLocations[0];
-      logMovement("FRIGHTENED_ONLY_ONE_DIR=" + nextDirection);
+      if (isLogging()) {
+        logMovement("FRIGHTENED_ONLY_ONE_DIR=" + nextDirection);
+      }
 
     } else {
       // No valid directions (rare) - allow reverse as last resort
@@ -623,7 +651,7 @@ public abstract class ActorImpl implements Actor {
   @Override
   public Direction getHomeDirection() {
     // Gets the direction toward the home location
-    Location currentLoc = new Location((int) getRowExact(), (int) getColExact());
+    Location currentLoc = Location.of((int) getRowExact(), (int) getColExact());
     Location homeLoc = getHomeLocation();
 
     // Calculate direction based on relative position
@@ -638,6 +666,36 @@ public abstract class ActorImpl implements Actor {
     }
   }
 
+  /**
+   * Decides on the next cell and direction at the center of the current cell, and turns to it.
+   *
+   * @param description current game descriptor
+   */
+  private void decideAtCenter(final Descriptor description) {
+    Location here = getCurrentLocation();
+    if (corridors.isCorridor(here.row(), here.col(), currentDirection)) {
+      // calculateNextCell() keeps going through a corridor in every mode, without drawing
+      // random numbers, so skip it
+      int next = corridors.getNeighbor(here.row(), here.col(), currentDirection);
+      nextDirection = currentDirection;
+      nextLocation = Location.of(next / maze.getNumColumns(), next % maze.getNumColumns());
+      logMovement("CORRIDOR_CONTINUE");
+    } else {
+      // Recalculate next move
+      calculateNextCell(description);
+    }
+    logMovement("AT_CENTER_RECALCULATING");
+
+    // Change direction if needed
+    if (nextDirection != null && nextDirection != currentDirection) {
+      Direction oldDirection = currentDirection;
+      currentDirection = nextDirection;
+      if (isLogging()) {
+        logMovement("CHANGED_DIRECTION_FROM=" + oldDirection + "_TO=" + currentDirection);
+      }
+    }
+  }
+
   @Override
   public void update(final Descriptor description) {
     frameCounter++;
@@ -648,6 +706,11 @@ public abstract class ActorImpl implements Actor {
       logMovement("UPDATE_SKIPPED_INACTIVE");
       return;
     }
+    if (fixedPoint) {
+      updateFixed(description);
+      logMovement("UPDATE_END");
+      return;
+    }
 
     // Store previous location for change detection
       Location previousLocation = getCurrentLocation();
@@ -675,17 +738,7 @@ public abstract class ActorImpl implements Actor {
 
     // At cell center - make movement decisions
     if (atCellCenter && !pastCenter) {
-      // Recalculate next move
-      calculateNextCell(description);
-      logMovement("AT_CENTER_RECALCULATING");
-
-      // Change direction if needed
-      if (nextDirection != null && nextDirection != currentDirection) {
-        Direction oldDirection = currentDirection;
-        currentDirection = nextDirection;
-        logMovement("CHANGED_DIRECTION_FROM=" + oldDirection + "_TO=" + currentDirection);
-      }
-
+      decideAtCenter(description);
       pastCenter = true;
     }
 
@@ -694,8 +747,8 @@ public abstract class ActorImpl implements Actor {
     double newColExact = currentColExact;
 
     // Check if we can move in current direction
-    Location testNextLoc = getNextLocation(getCurrentLocation(), currentDirection);
-    boolean canMove = (testNextLoc != null && !maze.isWall(testNextLoc.row(), testNextLoc.col()));
+    Location location = getCurrentLocation();
+    boolean canMove = corridors.isOpen(location.row(), location.col(), currentDirection);
 
     if (!canMove) {
       // We're blocked - recalculate direction
@@ -703,7 +756,9 @@ public abstract class ActorImpl implements Actor {
       calculateNextCell(description);
       if (nextDirection != null && nextDirection != currentDirection) {
         currentDirection = nextDirection;
-        logMovement("DIRECTION_CHANGED_TO=" + currentDirection);
+        if (isLogging()) {
+          logMovement("DIRECTION_CHANGED_TO=" + currentDirection);
+        }
       }
     }
 
@@ -752,7 +807,7 @@ public abstract class ActorImpl implements Actor {
         // Safe to move
         setRowExact(newRowExact);
         setColExact(newColExact);
-        currentLocation = new Location(newCellRow, newCellCol);
+        currentLocation = Location.of(newCellRow, newCellCol);
         logMovement("MOVED_TO_POSITION");
       } else {
         // Would hit wall - stay in place and force recalculation
@@ -769,6 +824,213 @@ public abstract class ActorImpl implements Actor {
     logMovement("UPDATE_END");
   }
 
+  /**
+   * The fixed-point counterpart of update() for an active ghost, which moves from center to
+   * center: whenever it reaches one, it decides on its next direction and spends the rest of its
+   * increment in that direction. A ghost with nowhere to go waits at the center and decides again
+   * on the next frame.
+   *
+   * @param description current game descriptor
+   */
+  private void updateFixed(final Descriptor description) {
+    int width = maze.getNumColumns() * ONE;
+    int remaining = FixedPoint.fromIncrement(getCurrentIncrement());
+    while (true) {
+      if (FixedPoint.isCenter(rowFixed) && FixedPoint.isCenter(colFixed)) {
+        if (!pastCenter) {
+          decideAtCenter(description);
+          pastCenter = true;
+        }
+        if (corridors.getNeighbor(currentLocation.row(), currentLocation.col(), currentDirection)
+            == CorridorIndex.NONE) {
+          pastCenter = false;
+          logMovement("COMPLETELY_BLOCKED");
+          return;
+        }
+      }
+      if (remaining == 0) {
+        return;
+      }
+
+      // distance to the next center ahead, which is the current cell's if it is not yet reached
+      Direction dir = currentDirection;
+      int offset = ((dir == LEFT || dir == RIGHT ? colFixed : rowFixed) & MASK) - HALF;
+      int toCenter;
+      if (dir == RIGHT || dir == DOWN) {
+        toCenter = offset < 0 ? -offset : ONE - offset;
+      } else {
+        toCenter = offset > 0 ? offset : ONE + offset;
+      }
+      int step = Math.min(remaining, toCenter);
+      remaining -= step;
+      if (dir == UP) {
+        rowFixed -= step;
+      } else if (dir == DOWN) {
+        rowFixed += step;
+      } else if (dir == LEFT) {
+        // through the tunnel when off the left edge
+        colFixed = Math.floorMod(colFixed - step, width);
+      } else {
+        colFixed = Math.floorMod(colFixed + step, width);
+      }
+      currentLocation = Location.of(FixedPoint.cell(rowFixed), FixedPoint.cell(colFixed));
+      if (step < toCenter) {
+        return;
+      }
+      pastCenter = false;
+    }
+  }
+
+  /**
+   * Sets whether the ghost moves in the integer units of FixedPoint rather than in double cells.
+   * The current position is rounded to the nearest unit when switching to them.
+   *
+   * @param fixed true to move in fixed-point units
+   */
+  public void setFixedPoint(final boolean fixed) {
+    if (fixed && !fixedPoint) {
+      rowFixed = (int) Math.round(rowExact * ONE);
+      colFixed = (int) Math.round(colExact * ONE);
+    } else if (!fixed && fixedPoint) {
+      rowExact = FixedPoint.toExact(rowFixed);
+      colExact = FixedPoint.toExact(colFixed);
+    }
+    fixedPoint = fixed;
+  }
+
+  /**
+   * Returns true if the ghost moves in fixed-point units.
+   *
+   * @return true if movement is in fixed-point units
+   */
+  public boolean isFixedPoint() {
+    return fixedPoint;
+  }
+
+  /**
+   * Returns the row coordinate in fixed-point units. Only meaningful when moving in them.
+   *
+   * @return row coordinate in units
+   */
+  public int getRowFixed() {
+    return rowFixed;
+  }
+
+  /**
+   * Returns the column coordinate in fixed-point units. Only meaningful when moving in them.
+   *
+   * @return column coordinate in units
+   */
+  public int getColFixed() {
+    return colFixed;
+  }
+
+  @Override
+  public int getStraightFrames(final int limit) {
+    if (limit <= 0 || isLogging() || fixedPoint) {
+      // logged frames must go through update() to be logged
+      return 0;
+    }
+    if (getMode() == Mode.INACTIVE) {
+      return limit;
+    }
+    int row = (int) Math.floor(rowExact);
+    int col = (int) Math.floor(colExact);
+    if (currentDirection == null
+        || row != currentLocation.row()
+        || col != currentLocation.col()
+        || !isInterior(row, col)) {
+      return 0;
+    }
+    int rowStep = currentDirection == UP ? -1 : currentDirection == DOWN ? 1 : 0;
+    int colStep = currentDirection == LEFT ? -1 : currentDirection == RIGHT ? 1 : 0;
+
+    // count the cells from this one on whose next cell is open and inside the border; in those,
+    // update() neither decides nor wraps nor runs into a wall
+    int toBorder;
+    if (rowStep != 0) {
+      toBorder = rowStep < 0 ? row - 1 : maze.getNumRows() - 2 - row;
+    } else {
+      toBorder = colStep < 0 ? col - 1 : maze.getNumColumns() - 2 - col;
+    }
+    int run = Math.min(toBorder, corridors.getDistanceToWall(row, col, currentDirection));
+    if (run == 0) {
+      return 0;
+    }
+    boolean vertical = rowStep != 0;
+    boolean forward = rowStep + colStep > 0;
+    double position = vertical ? rowExact : colExact;
+    int cell = vertical ? row : col;
+    double room = forward ? cell + run - position : position - (cell - run + 1);
+    double increment = getCurrentIncrement();
+    int frames = limit;
+    if (increment > 0) {
+      frames = (int) Math.max(0, Math.min(limit, Math.floor((room - STRAIGHT_MARGIN) / increment)));
+    }
+    if (!pastCenter) {
+      // update() decides on the first frame that starts within ERR of a center; whether one does
+      // depends on the rounding of the additions, so they are done here as moveStraight() does
+      double step = forward ? increment : -increment;
+      for (int i = 0; i < frames; ++i) {
+        if (Math.abs(position - (Math.floor(position) + HALF_CELL)) < ERR) {
+          return i;
+        }
+        position += step;
+      }
+    }
+    return frames;
+  }
+
+  @Override
+  public void moveStraight(final int frames) {
+    if (fixedPoint) {
+      // getStraightFrames() counts none, but moving frame by frame is always exact
+      Actor.super.moveStraight(frames);
+      return;
+    }
+    frameCounter += frames;
+    if (getMode() == Mode.INACTIVE || frames <= 0) {
+      return;
+    }
+    // on straight frames update() only adds the increment along the direction of travel and
+    // centers the other coordinate, so doing the same additions one by one keeps every bit
+    double step = getCurrentIncrement();
+    if (currentDirection == UP || currentDirection == LEFT) {
+      step = -step;
+    }
+    if (currentDirection == UP || currentDirection == DOWN) {
+      double position = rowExact;
+      for (int i = 0; i < frames; ++i) {
+        position += step;
+      }
+      setRowExact(position);
+      setColExact(Math.floor(colExact) + BOUNDARY_OFFSET);
+    } else {
+      double position = colExact;
+      for (int i = 0; i < frames; ++i) {
+        position += step;
+      }
+      setColExact(position);
+      setRowExact(Math.floor(rowExact) + BOUNDARY_OFFSET);
+    }
+    currentLocation = Location.of((int) Math.floor(rowExact), (int) Math.floor(colExact));
+  }
+
+  /**
+   * Returns true if a cell is inside the maze and off its border rows and columns, where tunnels
+   * wrap.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return true if the cell is inside the border
+   */
+  private boolean isInterior(final int row, final int col) {
+    return row > MINIMUM_BOUNDS
+        && row < maze.getNumRows() - SINGLE_DECREMENT
+        && col > MINIMUM_BOUNDS
+        && col < maze.getNumColumns() - SINGLE_DECREMENT;
+  }
+
   /**
    * Calculates the distance from the current position to the center of the current cell.
    *
@@ -832,6 +1094,16 @@ public abstract class ActorImpl implements Actor {
     return currentLocation;
   }
 
+  @Override
+  public int getCurrentRow() {
+    return currentLocation.row();
+  }
+
+  @Override
+  public int getCurrentCol() {
+    return currentLocation.col();
+  }
+
   @Override
   public Location getHomeLocation() {
     return home;
@@ -839,22 +1111,30 @@ public abstract class ActorImpl implements Actor {
 
   @Override
   public void setColExact(final double c) {
-    colExact = c;
+    if (fixedPoint) {
+      colFixed = (int) Math.round(c * ONE);
+    } else {
+      colExact = c;
+    }
   }
 
   @Override
   public void setRowExact(final double r) {
-    rowExact = r;
+    if (fixedPoint) {
+      rowFixed = (int) Math.round(r * ONE);
+    } else {
+      rowExact = r;
+    }
   }
 
   @Override
   public double getColExact() {
-    return colExact;
+    return fixedPoint ? FixedPoint.toExact(colFixed) : colExact;
   }
 
   @Override
   public double getRowExact() {
-    return rowExact;
+    return fixedPoint ? FixedPoint.toExact(rowFixed) : rowExact;
   }
 
   @Override
@@ -862,6 +1142,18 @@ public abstract class ActorImpl implements Actor {
     return baseIncrement;
   }
 
+  @Override
+  public void setBaseIncrement(final double increment) {
+    baseIncrement = increment;
+    if (currentMode == Mode.FRIGHTENED) {
+      currentIncrement = baseIncrement * FRIGHTENED_SPEED_FACTOR;
+    } else if (currentMode == Mode.DEAD) {
+      currentIncrement = baseIncrement * DEAD_SPEED_FACTOR;
+    } else {
+      currentIncrement = baseIncrement;
+    }
+  }
+
   @Override
   public double getCurrentIncrement() {
     return currentIncrement;
@@ -871,21 +1163,26 @@ public abstract class ActorImpl implements Actor {
   public void setMode(final Mode gMode, final Descriptor description) {
     // Store previous mode to check for transitions
     Mode previousMode = currentMode;
-    logMovement("SET_MODE_FROM_" + previousMode + "_TO_" + gMode);
+    if (isLogging()) {
+      logMovement("SET_MODE_FROM_" + previousMode + "_TO_" + gMode);
+    }
 
     // Mode based speed adjustments - do this before setting mode
-    final double frightenedSpeedFactor = 2.0 / 3.0;
-    final double deadSpeedFactor = 2.0;
-
     if (gMode == Mode.FRIGHTENED) {
-      currentIncrement = baseIncrement * frightenedSpeedFactor;
-      logMovement("SET_SPEED_FRIGHTENED=" + currentIncrement);
+      currentIncrement = baseIncrement * FRIGHTENED_SPEED_FACTOR;
+      if (isLogging()) {
+        logMovement("SET_SPEED_FRIGHTENED=" + currentIncrement);
+      }
     } else if (gMode == Mode.DEAD) {
-      currentIncrement = baseIncrement * deadSpeedFactor;
-      logMovement("SET_SPEED_DEAD=" + currentIncrement);
+      currentIncrement = baseIncrement * DEAD_SPEED_FACTOR;
+      if (isLogging()) {
+        logMovement("SET_SPEED_DEAD=" + currentIncrement);
+      }
     } else {
       currentIncrement = baseIncrement;
-      logMovement("SET_SPEED_NORMAL=" + currentIncrement);
+      if (isLogging()) {
+        logMovement("SET_SPEED_NORMAL=" + currentIncrement);
+      }
     }
 
     // Set the new mode
@@ -919,10 +1216,21 @@ public abstract class ActorImpl implements Actor {
    *
    * @return The scatter target location
    */
-  protected Location getScatterTarget() {
+  public Location getScatterTarget() {
     return scatterTarget;
   }
 
+  /**
+   * Picks an open cell of the maze uniformly at random with one draw from the generator, as a
+   * target for a frightened ghost.
+   *
+   * @return a random cell that is not a wall
+   */
+  protected Location getRandomTarget() {
+    int cell = corridors.getOpenCell(rand.nextInt(corridors.getOpenCellCount()));
+    return Location.of(cell / corridors.getNumColumns(), cell % corridors.getNumColumns());
+  }
+
   /**
    * Returns the next cell the ghost is headed towards. Used by test classes.
    *
@@ -941,13 +1249,48 @@ public abstract class ActorImpl implements Actor {
    */
   protected abstract Location getTargetLocation(final Descriptor desc);
 
+  /**
+   * Turns the per-update movement log in ghost_movement.log on or off for all ghosts. The log is
+   * off by default: it formats and flushes a line for every decision, and while it is on the
+   * ghosts decide every frame rather than skip through corridors. The file is created the first
+   * time the log is turned on.
+   *
+   * @param enabled true to write movement log entries, false to skip them
+   */
+  public static synchronized void setMovementLogging(final boolean enabled) {
+    if (enabled && logWriter == null) {
+      initializeLogWriter();
+    }
+    movementLogging = enabled;
+  }
+
+  /**
+   * Returns true if the movement log has been turned on with setMovementLogging(), so that code
+   * which turns it off for a while can put it back.
+   *
+   * @return true if movement logging is on
+   */
+  public static boolean isMovementLogging() {
+    return movementLogging;
+  }
+
+  /**
+   * Returns true if movement log entries are currently written. Callers that build a log message
+   * from several parts check this first, so the message is not built when logging is off.
+   *
+   * @return true if movement logging is on
+   */
+  protected static boolean isLogging() {
+    return loggingInitialized && movementLogging;
+  }
+
   /**
    * Log ghost movement for debugging.
    *
    * @param message The message to log
    */
   protected void logMovement(String message) {
-    if (loggingInitialized) {
+    if (isLogging()) {
       String directionStr = currentDirection != null ? currentDirection.toString() : "NULL";
       String nextLocationStr = nextLocation != null ? nextLocation.toString() : "NULL";
       String modeStr = currentMode != null ? currentMode.toString() : "NULL";
@@ -959,7 +1302,7 @@ public abstract class ActorImpl implements Actor {
               + ","
               + currentLocation
               + ","
-              + String.format("%.2f,%.2f", rowExact, colExact)
+              + String.format("%.2f,%.2f", getRowExact(), getColExact())
               + ","
               + directionStr
               + ","
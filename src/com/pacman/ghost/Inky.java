@@ -15,11 +15,8 @@ import java.util.Random;
  */
 public final class Inky extends ActorImpl {
 
-  /** Maximum number of attempts to find a random location. */
-  private static final int MAX_ATTEMPTS = 20;
-
   /** Number of tiles Inky targets ahead of Pacman for intermediate point. */
-  private static final int INTERMEDIATE_DISTANCE = 2;
+  public static final int INTERMEDIATE_DISTANCE = 2;
 
   /**
    * Constructor for Inky ghost.
@@ -81,43 +78,13 @@ public final class Inky extends ActorImpl {
       int targetRow = intermediateRow + vectorRow;
       int targetCol = intermediateCol + vectorCol;
 
-      return new Location(targetRow, targetCol);
+      return Location.of(targetRow, targetCol);
     } else if (super.getMode() == Mode.SCATTER) {
       return super.getScatterTarget();
     } else if (super.getMode() == Mode.FRIGHTENED) {
-      // In FRIGHTENED mode, generate a valid random target location
-      // This is just a target for decision making at intersections
-      // Actual movement will use the handler in ActorImpl
-
-      // Get maze dimensions
-      final int width = maze.getNumColumns();
-      final int height = maze.getNumRows();
-
-      // Try to find a non-wall location
-      Location randomLocation = null;
-      // Limit attempts to prevent infinite loop
-        int attempts = 0;
-
-      while (randomLocation == null && attempts < MAX_ATTEMPTS) {
-        // Generate random coordinates
-        final int randomCol = rand.nextInt(width);
-        final int randomRow = rand.nextInt(height);
-
-        // Check if valid (not a wall)
-        if (!maze.isWall(randomRow, randomCol)) {
-          randomLocation = new Location(randomRow, randomCol);
-        }
-
-        attempts++;
-      }
-
-      // If we couldn't find a valid location, use current location
-      // This is just a fallback - the frightened handler will still work
-      if (randomLocation == null) {
-        return getCurrentLocation();
-      }
-
-      return randomLocation;
+      // Just a target for decision making at intersections; actual movement
+      // uses the handler in ActorImpl
+      return getRandomTarget();
     } else if (super.getMode() == Mode.INACTIVE) {
       return super.getCurrentLocation();
     } else { // DEAD mode
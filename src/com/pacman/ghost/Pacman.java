@@ -5,9 +5,14 @@ import static api.Direction.LEFT;
 import static api.Direction.RIGHT;
 import static api.Direction.UP;
 
+import static api.FixedPoint.HALF;
+import static api.FixedPoint.MASK;
+import static api.FixedPoint.ONE;
+
 import api.Actor;
 import api.Descriptor;
 import api.Direction;
+import api.FixedPoint;
 import api.Location;
 import api.MazeMap;
 import api.Mode;
@@ -15,11 +20,20 @@ import api.Mode;
 /**
  * Implements the player-controlled Pac-Man character. Handles movement, turning, and wall collision
  * detection.
+ *
+ * <p>By default the player moves in double cells, with a margin of error around cell centers.
+ * After setFixedPoint(true) it moves in the integer units of FixedPoint instead, with its speed
+ * rounded to whole units per frame: it stops exactly at the center before a wall and ends a turn
+ * exactly on the new centerline. getRowExact() and getColExact() then return the units converted
+ * to cells, which is exact.
  */
 public final class Pacman implements Actor {
   /** Margin of error for comparing exact position to centerline of cell. */
   private static final double ERR = 0.001;
 
+  /** Distance, in cells, kept between a straight run's end and where it is counted to stop. */
+  private static final double STRAIGHT_MARGIN = 1e-9;
+
   /** Maze configuration. */
   private final MazeMap maze;
 
@@ -33,7 +47,7 @@ public final class Pacman implements Actor {
   private Direction currentDirection;
 
   /** Basic speed increment, used to determine currentIncrement. */
-  private final double baseIncrement;
+  private double baseIncrement;
 
   /** Current speed increment, added in direction of travel each frame. */
   private double currentIncrement;
@@ -62,6 +76,18 @@ public final class Pacman implements Actor {
   /** When in turning mode, records the centerline of the new row or column. */
   private double turnTarget;
 
+  /** Whether the player moves in fixed-point units. */
+  private boolean fixedPoint;
+
+  /** Row coordinate in fixed-point units, when moving in them. */
+  private int rowFixed;
+
+  /** Column coordinate in fixed-point units, when moving in them. */
+  private int colFixed;
+
+  /** When turning in fixed-point units, the center coordinate of the new row or column. */
+  private int turnTargetFixed;
+
   /**
    * Constructs a new Pacman with the given maze, home location, base speed, and initial direction.
    *
@@ -87,9 +113,60 @@ public final class Pacman implements Actor {
     return baseIncrement;
   }
 
+  @Override
+  public void setBaseIncrement(final double increment) {
+    baseIncrement = increment;
+    currentIncrement = increment;
+  }
+
+  /**
+   * Sets whether the player moves in the integer units of FixedPoint rather than in double cells.
+   * The current position is rounded to the nearest unit when switching to them.
+   *
+   * @param fixed true to move in fixed-point units
+   */
+  public void setFixedPoint(final boolean fixed) {
+    if (fixed && !fixedPoint) {
+      rowFixed = (int) Math.round(rowExact * ONE);
+      colFixed = (int) Math.round(colExact * ONE);
+    } else if (!fixed && fixedPoint) {
+      rowExact = FixedPoint.toExact(rowFixed);
+      colExact = FixedPoint.toExact(colFixed);
+    }
+    fixedPoint = fixed;
+    turning = false;
+  }
+
+  /**
+   * Returns true if the player moves in fixed-point units.
+   *
+   * @return true if movement is in fixed-point units
+   */
+  public boolean isFixedPoint() {
+    return fixedPoint;
+  }
+
+  /**
+   * Returns the row coordinate in fixed-point units. Only meaningful when moving in them.
+   *
+   * @return row coordinate in units
+   */
+  public int getRowFixed() {
+    return rowFixed;
+  }
+
+  /**
+   * Returns the column coordinate in fixed-point units. Only meaningful when moving in them.
+   *
+   * @return column coordinate in units
+   */
+  public int getColFixed() {
+    return colFixed;
+  }
+
   @Override
   public double getColExact() {
-    return colExact;
+    return fixedPoint ? FixedPoint.toExact(colFixed) : colExact;
   }
 
   @Override
@@ -104,7 +181,7 @@ public final class Pacman implements Actor {
 
   @Override
   public Location getCurrentLocation() {
-    return new Location((int) rowExact, (int) colExact);
+    return Location.of((int) getRowExact(), (int) getColExact());
   }
 
   @Override
@@ -125,7 +202,7 @@ public final class Pacman implements Actor {
 
   @Override
   public double getRowExact() {
-    return rowExact;
+    return fixedPoint ? FixedPoint.toExact(rowFixed) : rowExact;
   }
 
   @Override
@@ -140,7 +217,11 @@ public final class Pacman implements Actor {
 
   @Override
   public void setColExact(final double c) {
-    colExact = c;
+    if (fixedPoint) {
+      colFixed = (int) Math.round(c * ONE);
+    } else {
+      colExact = c;
+    }
   }
 
   @Override
@@ -155,7 +236,11 @@ public final class Pacman implements Actor {
 
   @Override
   public void setRowExact(final double r) {
-    rowExact = r;
+    if (fixedPoint) {
+      rowFixed = (int) Math.round(r * ONE);
+    } else {
+      rowExact = r;
+    }
   }
 
   /**
@@ -182,6 +267,10 @@ public final class Pacman implements Actor {
       currentDirection = newDir;
       return;
     }
+    if (fixedPoint) {
+      tryTurnFixed(newDir);
+      return;
+    }
 
     double rowPos = getRowExact();
     double colPos = getColExact();
@@ -270,6 +359,10 @@ public final class Pacman implements Actor {
     if (getCurrentDirection() == null) {
       return;
     }
+    if (fixedPoint) {
+      updateFixed();
+      return;
+    }
 
     // if turning, may have to continue moving along the previous direction first.
     // do this first before the forward motion, so we don't mistakenly think we're
@@ -296,6 +389,10 @@ public final class Pacman implements Actor {
         // special case: check whether we are in the tunnel and need to wrap around
         if (curColExact - increment - 0.5 < 0) {
           curColExact = maze.getNumColumns() + (curColExact - increment - 0.5);
+          if (curColExact >= maze.getNumColumns()) {
+            // a sum just below zero rounds up to the far edge, which is outside the maze
+            curColExact -= maze.getNumColumns();
+          }
         } else {
           // if we are approaching a wall, be sure we stop moving
           // at the center of current cell. This only applies when
@@ -340,6 +437,247 @@ public final class Pacman implements Actor {
     setColExact(curColExact);
   }
 
+  @Override
+  public int getStraightFrames(final int limit) {
+    if (limit <= 0 || fixedPoint) {
+      return 0;
+    }
+    Direction dir = getCurrentDirection();
+    if (dir == null) {
+      // update() does nothing
+      return limit;
+    }
+    double increment = getCurrentIncrement();
+    int rowNum = (int) rowExact;
+    int colNum = (int) colExact;
+    if (turning || increment >= 0.5 || !isInterior(rowNum, colNum)) {
+      return 0;
+    }
+    if (isFacingWall()) {
+      // stopped exactly at the center facing a wall, update() moves by 0
+      return distanceToCenter() == 0 ? limit : 0;
+    }
+    int rowStep = dir == UP ? -1 : dir == DOWN ? 1 : 0;
+    int colStep = dir == LEFT ? -1 : dir == RIGHT ? 1 : 0;
+
+    // count the open cells ahead inside the border, through which the player moves a full
+    // increment every frame without wrapping, up to one that has a wall after it, where it slows
+    // down to stop at the center
+    int run = 0;
+    while (isInterior(rowNum + (run + 1) * rowStep, colNum + (run + 1) * colStep)
+        && !maze.isWall(rowNum + (run + 1) * rowStep, colNum + (run + 1) * colStep)) {
+      run++;
+    }
+    boolean blocked = maze.isWall(rowNum + (run + 1) * rowStep, colNum + (run + 1) * colStep);
+    boolean forward = rowStep + colStep > 0;
+    double position = rowStep != 0 ? rowExact : colExact;
+    int cell = rowStep != 0 ? rowNum : colNum;
+    double room;
+    if (forward) {
+      double end = blocked ? cell + run + 0.5 - increment : cell + run + 1;
+      room = end - position;
+    } else {
+      double end = blocked ? cell - run + 0.5 + increment : cell - run;
+      room = position - end;
+    }
+    double frames = Math.floor((room - STRAIGHT_MARGIN) / increment);
+    return frames <= 0 ? 0 : (int) Math.min(limit, frames);
+  }
+
+  @Override
+  public void moveStraight(final int frames) {
+    if (fixedPoint) {
+      // getStraightFrames() counts none, but moving frame by frame is always exact
+      Actor.super.moveStraight(frames);
+      return;
+    }
+    Direction dir = getCurrentDirection();
+    if (dir == null || frames <= 0 || distanceToCenter() == 0 && isFacingWall()) {
+      // update() leaves the player where it is
+      return;
+    }
+    // on straight frames update() only adds the increment along the direction of travel, so
+    // doing the same additions one by one keeps every bit
+    double step = dir == UP || dir == LEFT ? -getCurrentIncrement() : getCurrentIncrement();
+    double position = dir == UP || dir == DOWN ? rowExact : colExact;
+    for (int i = 0; i < frames; ++i) {
+      position += step;
+    }
+    if (dir == UP || dir == DOWN) {
+      setRowExact(position);
+    } else {
+      setColExact(position);
+    }
+  }
+
+  /**
+   * The fixed-point counterpart of tryTurn() for a turn onto the other axis: turns the player,
+   * cutting the corner if it is less than a cell before the center of the row or column it turns
+   * into.
+   *
+   * @param newDir desired direction of travel for the player
+   */
+  private void tryTurnFixed(final Direction newDir) {
+    Direction currentDir = getCurrentDirection();
+    boolean horizontal = newDir == LEFT || newDir == RIGHT;
+    int rowNum = FixedPoint.cell(rowFixed);
+    int colNum = FixedPoint.cell(colFixed);
+    int newRowNum = rowNum;
+    int newColNum = colNum;
+    int diff;
+    if (horizontal) {
+      newColNum = newDir == LEFT ? colNum - 1 : colNum + 1;
+      diff = (rowFixed & MASK) - HALF;
+      if (currentDir == DOWN) {
+        diff = -diff;
+      }
+      if (diff < 0) {
+        // past the center, so the turn is into the next row
+        diff += ONE;
+        newRowNum += currentDir == UP ? -1 : 1;
+      }
+    } else {
+      newRowNum = newDir == UP ? rowNum - 1 : rowNum + 1;
+      diff = (colFixed & MASK) - HALF;
+      if (currentDir == RIGHT) {
+        diff = -diff;
+      }
+      if (diff < 0) {
+        diff += ONE;
+        newColNum += currentDir == LEFT ? -1 : 1;
+      }
+    }
+
+    if (!isWallWrapped(newRowNum, newColNum)) {
+      setDirection(newDir);
+      if (diff > 0) {
+        turning = true;
+        previousDirection = currentDir;
+        int target = horizontal ? newRowNum : Math.floorMod(newColNum, maze.getNumColumns());
+        turnTargetFixed = FixedPoint.center(target);
+      }
+    }
+  }
+
+  /** The fixed-point counterpart of update(). */
+  private void updateFixed() {
+    if (turning) {
+      handleTurnFixed();
+    }
+    int increment = FixedPoint.fromIncrement(getCurrentIncrement());
+    int width = maze.getNumColumns() * ONE;
+    int rowNum = FixedPoint.cell(rowFixed);
+    int colNum = FixedPoint.cell(colFixed);
+    Direction dir = getCurrentDirection();
+
+    // distance to the center of the current cell in the direction of travel; the player stops
+    // there if the next cell is a wall
+    int diff = ((dir == LEFT || dir == RIGHT ? colFixed : rowFixed) & MASK) - HALF;
+    if (dir == RIGHT || dir == DOWN) {
+      diff = -diff;
+    }
+    if (dir == LEFT) {
+      if (diff >= 0 && diff < increment && isWallWrapped(rowNum, colNum - 1)) {
+        increment = diff;
+      }
+      colFixed -= increment;
+      if (colFixed < 0) {
+        colFixed += width;
+      }
+    } else if (dir == RIGHT) {
+      if (diff >= 0 && diff < increment && isWallWrapped(rowNum, colNum + 1)) {
+        increment = diff;
+      }
+      colFixed += increment;
+      if (colFixed >= width) {
+        colFixed -= width;
+      }
+    } else if (dir == UP) {
+      if (diff >= 0 && diff < increment && isWallWrapped(rowNum - 1, colNum)) {
+        increment = diff;
+      }
+      rowFixed -= increment;
+    } else {
+      if (diff >= 0 && diff < increment && isWallWrapped(rowNum + 1, colNum)) {
+        increment = diff;
+      }
+      rowFixed += increment;
+    }
+  }
+
+  /**
+   * The fixed-point counterpart of handleTurn(): moves the player along its previous direction
+   * towards the center of the row or column it is turning into.
+   */
+  private void handleTurnFixed() {
+    int width = maze.getNumColumns() * ONE;
+    boolean horizontal = previousDirection == LEFT || previousDirection == RIGHT;
+    int distanceToGo = (horizontal ? colFixed : rowFixed) - turnTargetFixed;
+    if (previousDirection == DOWN || previousDirection == RIGHT) {
+      distanceToGo = -distanceToGo;
+    }
+    if (distanceToGo < 0) {
+      // the turn target is on the other side of the tunnel
+      distanceToGo += width;
+    }
+    int increment = Math.min(FixedPoint.fromIncrement(getCurrentIncrement()), distanceToGo);
+    if (increment == distanceToGo) {
+      turning = false;
+    }
+    if (previousDirection == UP) {
+      rowFixed -= increment;
+    } else if (previousDirection == DOWN) {
+      rowFixed += increment;
+    } else if (previousDirection == LEFT) {
+      colFixed = Math.floorMod(colFixed - increment, width);
+    } else {
+      colFixed = Math.floorMod(colFixed + increment, width);
+    }
+  }
+
+  /**
+   * Returns true if the given cell is a wall, with columns wrapping around through the tunnels.
+   *
+   * @param row row of the cell
+   * @param col column of the cell, possibly one outside the maze
+   * @return true if the cell is a wall
+   */
+  private boolean isWallWrapped(final int row, final int col) {
+    return maze.isWall(row, Math.floorMod(col, maze.getNumColumns()));
+  }
+
+  /**
+   * Returns true if a cell is off the border rows and columns of the maze, where tunnels wrap.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return true if the cell is inside the border
+   */
+  private boolean isInterior(final int row, final int col) {
+    return row > 0 && row < maze.getNumRows() - 1 && col > 0 && col < maze.getNumColumns() - 1;
+  }
+
+  /**
+   * Returns true if the cell ahead of the current one, in the direction of travel, is a wall. The
+   * current cell must be inside the border.
+   *
+   * @return true if the player faces a wall
+   */
+  private boolean isFacingWall() {
+    int rowNum = (int) rowExact;
+    int colNum = (int) colExact;
+    switch (getCurrentDirection()) {
+      case LEFT:
+        return maze.isWall(rowNum, colNum - 1);
+      case RIGHT:
+        return maze.isWall(rowNum, colNum + 1);
+      case UP:
+        return maze.isWall(rowNum - 1, colNum);
+      default:
+        return maze.isWall(rowNum + 1, colNum);
+    }
+  }
+
   /**
    * When in "turning" mode, we need to update along the previous direction of travel until lined up
    * with the new row or column.
@@ -15,11 +15,8 @@ import java.util.Random;
  */
 public final class Pinky extends ActorImpl {
 
-  /** Maximum number of attempts to find a random location. */
-  private static final int MAX_ATTEMPTS = 20;
-
   /** Number of tiles Pinky targets ahead of Pacman. */
-  private static final int TARGET_DISTANCE = 4;
+  public static final int TARGET_DISTANCE = 4;
 
   /**
    * Constructor for Pinky ghost.
@@ -73,45 +70,14 @@ public final class Pinky extends ActorImpl {
         targetCol += TARGET_DISTANCE;
       }
 
-      // Create a new location for the target
-      return new Location(targetRow, targetCol);
+      // Look up the location for the target
+      return Location.of(targetRow, targetCol);
     } else if (super.getMode() == Mode.SCATTER) {
       return super.getScatterTarget();
     } else if (super.getMode() == Mode.FRIGHTENED) {
-      // In FRIGHTENED mode, generate a valid random target location
-      // This is just a target for decision making at intersections
-      // Actual movement will use the handler in ActorImpl
-
-      // Get maze dimensions
-      int width = maze.getNumColumns();
-      int height = maze.getNumRows();
-
-      // Try to find a non-wall location
-      Location randomLocation = null;
-      // Limit attempts to prevent infinite loop
-      final int maxAttempts = MAX_ATTEMPTS;
-      int attempts = 0;
-
-      while (randomLocation == null && attempts < maxAttempts) {
-        // Generate random coordinates
-        final int randomCol = rand.nextInt(width);
-        final int randomRow = rand.nextInt(height);
-
-        // Check if valid (not a wall)
-        if (!maze.isWall(randomRow, randomCol)) {
-          randomLocation = new Location(randomRow, randomCol);
-        }
-
-        attempts++;
-      }
-
-      // If we couldn't find a valid location, use current location
-      // This is just a fallback - the frightened handler will still work
-      if (randomLocation == null) {
-        return getCurrentLocation();
-      }
-
-      return randomLocation;
+      // Just a target for decision making at intersections; actual movement
+      // uses the handler in ActorImpl
+      return getRandomTarget();
     } else if (super.getMode() == Mode.INACTIVE) {
       return super.getCurrentLocation();
     } else { // DEAD mode
@@ -0,0 +1,290 @@
+package com.pacman.ipc;
+
+import com.pacman.env.Environment;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reference client for EnvironmentServer, meant to run in a different process from the server. It
+ * also documents the protocol for clients in other languages, which only need to follow the
+ * layout described in SharedRing.
+ *
+ * <p>reset() and step() are round trips: they publish a request and wait for its response, which
+ * then becomes the current response read by the getters. A client can also keep up to
+ * getSlotCount() requests in flight with submitReset() and submitStep(), and collect their
+ * responses in order with await().
+ */
+public final class EnvironmentClient implements AutoCloseable {
+  /** The shared file. */
+  private final SharedRing ring;
+
+  /** How to wait for responses. */
+  private final WaitStrategy strategy;
+
+  /** How long to wait for a response. */
+  private final long timeoutNanos;
+
+  /** Observation area of each slot. */
+  private final ByteBuffer[] slotObservations;
+
+  /** Sequence number of the next request. */
+  private long nextSequence = 1;
+
+  /** Sequence number of the last response awaited, whose slot is current. */
+  private long awaitedSequence;
+
+  /** Offset of the slot holding the current response. */
+  private int current = -1;
+
+  /**
+   * Connects to the server that created the given file, waiting for the server to start.
+   *
+   * @param file path of the shared file
+   * @param strategy how to wait for responses
+   * @param timeoutMillis how long to wait for the server to start and for each response
+   * @throws IOException if the file cannot be mapped
+   * @throws IllegalStateException if the server does not start in time
+   */
+  public EnvironmentClient(final Path file, final WaitStrategy strategy, final long timeoutMillis)
+      throws IOException {
+    this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    this.strategy = strategy;
+    this.ring = SharedRing.open(file, timeoutNanos);
+    this.slotObservations = new ByteBuffer[ring.getSlotCount()];
+    for (int i = 0; i < slotObservations.length; i++) {
+      slotObservations[i] = ring.observation(ring.slot(i + 1)).asReadOnlyBuffer();
+    }
+  }
+
+  /**
+   * Starts a new episode with the given seed and waits for its first observation.
+   *
+   * @param seed seed for the game's random number generator
+   */
+  public void reset(final long seed) {
+    await(submitReset(seed));
+  }
+
+  /**
+   * Applies an action and waits for the result.
+   *
+   * @param action a Direction ordinal, or Environment.NO_ACTION
+   * @throws IllegalArgumentException if the action is out of range
+   */
+  public void step(final int action) {
+    await(submitStep(action));
+  }
+
+  /**
+   * Publishes a reset request without waiting for it.
+   *
+   * @param seed seed for the game's random number generator
+   * @return the request's sequence number, for await()
+   * @throws IllegalStateException if getSlotCount() requests are already in flight
+   */
+  public long submitReset(final long seed) {
+    return submit(SharedRing.COMMAND_RESET, seed);
+  }
+
+  /**
+   * Publishes a step request without waiting for it.
+   *
+   * @param action a Direction ordinal, or Environment.NO_ACTION
+   * @return the request's sequence number, for await()
+   * @throws IllegalArgumentException if the action is out of range
+   * @throws IllegalStateException if getSlotCount() requests are already in flight
+   */
+  public long submitStep(final int action) {
+    if (action < 0 || action >= Environment.ACTION_COUNT) {
+      throw new IllegalArgumentException("Action out of range: " + action);
+    }
+    return submit(SharedRing.COMMAND_STEP, action);
+  }
+
+  /**
+   * Waits for the response to the given request and makes it the current response. Responses
+   * arrive in request order, so this also completes every earlier request.
+   *
+   * @param sequence sequence number returned by a submit method
+   * @throws IllegalArgumentException if no such request is in flight
+   * @throws IllegalStateException if the server closes or does not respond in time
+   */
+  public void await(final long sequence) {
+    if (sequence <= awaitedSequence || sequence >= nextSequence) {
+      throw new IllegalArgumentException("No request " + sequence + " in flight");
+    }
+    int slot = ring.slot(sequence);
+    if (!ring.await(slot + SharedRing.RESPONSE_SEQUENCE, sequence, strategy, timeoutNanos)) {
+      throw new IllegalStateException(
+          isClosed()
+              ? "Server closed before responding to request " + sequence
+              : "Server did not respond to request " + sequence + " in time");
+    }
+    awaitedSequence = sequence;
+    current = slot;
+  }
+
+  /**
+   * Returns the reward of the current response, the step's score delta.
+   *
+   * @return reward, 0 for a reset
+   */
+  public int getReward() {
+    return (int) response(SharedRing.REWARD);
+  }
+
+  /**
+   * Returns the number of frames simulated by the current response's step.
+   *
+   * @return number of frames, 0 for a reset
+   */
+  public int getFrames() {
+    return (int) response(SharedRing.FRAMES);
+  }
+
+  /**
+   * Returns true if the episode was done after the current response.
+   *
+   * @return true if the level is over
+   */
+  public boolean isDone() {
+    return (response(SharedRing.FLAGS) & SharedRing.FLAG_DONE) != 0;
+  }
+
+  /**
+   * Returns true if the player lost a life during the current response's step.
+   *
+   * @return true if the player died
+   */
+  public boolean isPlayerDied() {
+    return (response(SharedRing.FLAGS) & SharedRing.FLAG_PLAYER_DIED) != 0;
+  }
+
+  /**
+   * Returns true if the server rejected the current response's request.
+   *
+   * @return true if the request failed
+   */
+  public boolean isError() {
+    return (response(SharedRing.FLAGS) & SharedRing.FLAG_ERROR) != 0;
+  }
+
+  /**
+   * Returns the score after the current response.
+   *
+   * @return current score
+   */
+  public int getScore() {
+    return (int) response(SharedRing.SCORE);
+  }
+
+  /**
+   * Returns the player's remaining lives after the current response.
+   *
+   * @return number of lives remaining
+   */
+  public int getLives() {
+    return (int) response(SharedRing.LIVES);
+  }
+
+  /**
+   * Returns the episode's frame count after the current response.
+   *
+   * @return number of frames
+   */
+  public int getFrameCount() {
+    return (int) response(SharedRing.FRAME_COUNT);
+  }
+
+  /**
+   * Returns the observation of the current response, as a read-only view of its slot in the shared
+   * file. The view stays valid until the slot is reused by a later request, getSlotCount() requests
+   * on.
+   *
+   * @return observation bytes, laid out as by ObservationEncoder
+   * @throws IllegalStateException if no response has been awaited
+   */
+  public ByteBuffer getObservation() {
+    response(SharedRing.FLAGS);
+    return slotObservations[(int) ((awaitedSequence - 1) % slotObservations.length)];
+  }
+
+  /**
+   * Returns the size of an observation in bytes.
+   *
+   * @return observation size
+   */
+  public int getObservationSize() {
+    return ring.getObservationSize();
+  }
+
+  /**
+   * Returns the number of slots, which is the most requests that can be in flight.
+   *
+   * @return slot count
+   */
+  public int getSlotCount() {
+    return ring.getSlotCount();
+  }
+
+  /**
+   * Returns true if the server has stopped.
+   *
+   * @return true if the ring is closed
+   */
+  public boolean isClosed() {
+    return ring.getLongAcquire(SharedRing.STATE_OFFSET) == SharedRing.STATE_CLOSED;
+  }
+
+  /**
+   * Waits for requests in flight, then asks the server to stop and waits for it to acknowledge.
+   * Does nothing if the server has already stopped.
+   */
+  @Override
+  public void close() {
+    if (isClosed()) {
+      return;
+    }
+    if (nextSequence - 1 > awaitedSequence) {
+      await(nextSequence - 1);
+    }
+    await(submit(SharedRing.COMMAND_CLOSE, 0));
+  }
+
+  /**
+   * Writes a request into its slot and publishes it.
+   *
+   * @param command the command
+   * @param argument the command's argument
+   * @return the request's sequence number
+   * @throws IllegalStateException if every slot has a request in flight
+   */
+  private long submit(final long command, final long argument) {
+    if (nextSequence - awaitedSequence > ring.getSlotCount()) {
+      throw new IllegalStateException(
+          "All " + ring.getSlotCount() + " slots are in flight; await a response first");
+    }
+    long sequence = nextSequence++;
+    int slot = ring.slot(sequence);
+    ring.putLong(slot + SharedRing.COMMAND, command);
+    ring.putLong(slot + SharedRing.ARGUMENT, argument);
+    ring.putLongRelease(slot + SharedRing.REQUEST_SEQUENCE, sequence);
+    return sequence;
+  }
+
+  /**
+   * Reads a field of the current response.
+   *
+   * @param field slot offset of the field
+   * @return the field's value
+   * @throws IllegalStateException if no response has been awaited
+   */
+  private long response(final int field) {
+    if (current < 0) {
+      throw new IllegalStateException("No response yet");
+    }
+    return ring.getLong(current + field);
+  }
+}
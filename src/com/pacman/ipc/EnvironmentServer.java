@@ -0,0 +1,149 @@
+package com.pacman.ipc;
+
+import api.StepResult;
+import com.pacman.env.Environment;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Serves an Environment to an agent in another process through a ring of slots in a
+ * memory-mapped file; see SharedRing for the layout. The server creates the file, then run()
+ * performs requests in sequence order: for each one it waits for the client to publish the
+ * request, resets or steps the environment, writes the reward, flags, score, lives, frame count
+ * and observation into the same slot, and publishes the response.
+ *
+ * <p>Observations are bytes, as written by Environment.setObservationBuffer(ByteBuffer). They are
+ * encoded incrementally into a private buffer and copied into the slot, so each slot keeps its own
+ * observation until the client reuses it. Serving a request does not allocate, except for reset,
+ * which builds a new game.
+ *
+ * <p>The request loop runs on the thread that calls run(), until the client sends a close request,
+ * close() is called, or the thread is interrupted.
+ */
+public final class EnvironmentServer implements Runnable, AutoCloseable {
+  /** Default number of slots in the ring. */
+  public static final int DEFAULT_SLOT_COUNT = 8;
+
+  /** The served environment. */
+  private final Environment env;
+
+  /** The shared file. */
+  private final SharedRing ring;
+
+  /** How to wait for requests. */
+  private final WaitStrategy strategy;
+
+  /** The environment's observation, copied into each response. */
+  private final ByteBuffer observation;
+
+  /** Observation area of each slot. */
+  private final ByteBuffer[] slotObservations;
+
+  /** Number of requests served. */
+  private volatile long requestCount;
+
+  /**
+   * Creates the shared file for the given environment. The file is replaced if it exists, and
+   * clients may connect once this constructor returns.
+   *
+   * @param env the environment to serve
+   * @param file path of the shared file, normally on a memory-backed file system
+   * @param slotCount number of slots, which bounds how many requests a client can have in flight
+   * @param strategy how to wait for requests
+   * @throws IOException if the file cannot be created or mapped
+   * @throws IllegalArgumentException if slotCount is less than 1
+   */
+  public EnvironmentServer(
+      final Environment env, final Path file, final int slotCount, final WaitStrategy strategy)
+      throws IOException {
+    this.env = env;
+    this.strategy = strategy;
+    this.ring = SharedRing.create(file, slotCount, env.getObservationSize());
+    this.observation = ByteBuffer.allocateDirect(env.getObservationSize());
+    this.slotObservations = new ByteBuffer[slotCount];
+    for (int i = 0; i < slotCount; i++) {
+      slotObservations[i] = ring.observation(ring.slot(i + 1));
+    }
+    env.setObservationBuffer(observation);
+    ring.putLongRelease(SharedRing.STATE_OFFSET, SharedRing.STATE_READY);
+  }
+
+  /** Serves requests until a close request, close(), or an interrupt. */
+  @Override
+  public void run() {
+    try {
+      boolean open = true;
+      for (long sequence = 1; open; sequence++) {
+        int slot = ring.slot(sequence);
+        if (!ring.await(slot + SharedRing.REQUEST_SEQUENCE, sequence, strategy, -1)) {
+          break;
+        }
+        open = serve(slot, (int) ((sequence - 1) % slotObservations.length));
+        ring.putLongRelease(slot + SharedRing.RESPONSE_SEQUENCE, sequence);
+        requestCount = sequence;
+      }
+    } finally {
+      // a client waiting on a server that failed sees the ring closed rather than timing out
+      close();
+    }
+  }
+
+  /**
+   * Performs the request in the given slot and writes its response, except for the sequence
+   * number.
+   *
+   * @param slot offset of the slot
+   * @param index index of the slot
+   * @return false if the request was a close request
+   */
+  private boolean serve(final int slot, final int index) {
+    long command = ring.getLong(slot + SharedRing.COMMAND);
+    long argument = ring.getLong(slot + SharedRing.ARGUMENT);
+    long reward = 0;
+    long frames = 0;
+    long flags = 0;
+    boolean validAction = argument >= 0 && argument < Environment.ACTION_COUNT;
+    if (command == SharedRing.COMMAND_STEP && validAction) {
+      StepResult result = env.step((int) argument);
+      reward = result.getScoreDelta();
+      frames = result.getFrames();
+      if (result.isPlayerDied()) {
+        flags |= SharedRing.FLAG_PLAYER_DIED;
+      }
+    } else if (command == SharedRing.COMMAND_RESET) {
+      env.reset(argument);
+    } else if (command != SharedRing.COMMAND_CLOSE) {
+      flags |= SharedRing.FLAG_ERROR;
+    }
+    if (env.isDone()) {
+      flags |= SharedRing.FLAG_DONE;
+    }
+    ring.putLong(slot + SharedRing.REWARD, reward);
+    ring.putLong(slot + SharedRing.FRAMES, frames);
+    ring.putLong(slot + SharedRing.FLAGS, flags);
+    ring.putLong(slot + SharedRing.SCORE, env.getScore());
+    ring.putLong(slot + SharedRing.LIVES, env.getLives());
+    ring.putLong(slot + SharedRing.FRAME_COUNT, env.getFrameCount());
+    slotObservations[index].put(0, observation, 0, observation.capacity());
+    return command != SharedRing.COMMAND_CLOSE;
+  }
+
+  /**
+   * Returns the number of requests served so far.
+   *
+   * @return number of requests
+   */
+  public long getRequestCount() {
+    return requestCount;
+  }
+
+  /**
+   * Marks the ring as closed. A server blocked in run() returns, and clients waiting for a
+   * response fail instead of waiting for one that will not come.
+   */
+  @Override
+  public void close() {
+    ring.putLongRelease(SharedRing.STATE_OFFSET, SharedRing.STATE_CLOSED);
+  }
+}
@@ -0,0 +1,347 @@
+package com.pacman.ipc;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Layout of the shared file and access to it. The file starts with a header of HEADER_SIZE bytes,
+ * followed by a ring of equally sized slots. All fields are 8-byte longs in native byte order, so
+ * a client in another language can read them with plain aligned loads.
+ *
+ * <pre>
+ * header: MAGIC, VERSION, slot count, observation size, slot size, state
+ * slot:   request sequence, command, argument,
+ *         response sequence, reward, frames, flags, score, lives, frame count,
+ *         observation bytes (from OBSERVATION_OFFSET, padded to a multiple of 64)
+ * </pre>
+ *
+ * <p>Sequence numbers start at 1 and request n uses slot (n - 1) % slot count. The client writes
+ * the command and argument, then publishes the request by storing its sequence number with release
+ * semantics. The server, having read the sequence number with acquire semantics, performs the
+ * command, writes the response fields and observation, and publishes the response the same way.
+ * The state field becomes STATE_READY once the server has initialized the file, and STATE_CLOSED
+ * once it has stopped.
+ */
+final class SharedRing {
+  /** Identifies the file format: "PACMANRB" in ASCII. */
+  static final long MAGIC = 0x50_41_43_4D_41_4E_52_42L;
+
+  /** Version of the layout. */
+  static final long VERSION = 1;
+
+  /** Size of the header in bytes. */
+  static final int HEADER_SIZE = 64;
+
+  /** Header offset of MAGIC. */
+  static final int MAGIC_OFFSET = 0;
+
+  /** Header offset of VERSION. */
+  static final int VERSION_OFFSET = 8;
+
+  /** Header offset of the slot count. */
+  static final int SLOT_COUNT_OFFSET = 16;
+
+  /** Header offset of the observation size. */
+  static final int OBSERVATION_SIZE_OFFSET = 24;
+
+  /** Header offset of the slot size. */
+  static final int SLOT_SIZE_OFFSET = 32;
+
+  /** Header offset of the server state. */
+  static final int STATE_OFFSET = 40;
+
+  /** State of a file the server has not initialized yet. */
+  static final long STATE_NEW = 0;
+
+  /** State of a file whose server accepts requests. */
+  static final long STATE_READY = 1;
+
+  /** State of a file whose server has stopped. */
+  static final long STATE_CLOSED = 2;
+
+  /** Slot offset of the request sequence number. */
+  static final int REQUEST_SEQUENCE = 0;
+
+  /** Slot offset of the command. */
+  static final int COMMAND = 8;
+
+  /** Slot offset of the command's argument. */
+  static final int ARGUMENT = 16;
+
+  /** Slot offset of the response sequence number. */
+  static final int RESPONSE_SEQUENCE = 24;
+
+  /** Slot offset of the step's reward. */
+  static final int REWARD = 32;
+
+  /** Slot offset of the number of frames the step simulated. */
+  static final int FRAMES = 40;
+
+  /** Slot offset of the response flags. */
+  static final int FLAGS = 48;
+
+  /** Slot offset of the score. */
+  static final int SCORE = 56;
+
+  /** Slot offset of the remaining lives. */
+  static final int LIVES = 64;
+
+  /** Slot offset of the episode's frame count. */
+  static final int FRAME_COUNT = 72;
+
+  /** Slot offset of the observation. */
+  static final int OBSERVATION_OFFSET = 128;
+
+  /** Command that applies an action: the argument is an Environment action. */
+  static final long COMMAND_STEP = 1;
+
+  /** Command that starts an episode: the argument is the seed. */
+  static final long COMMAND_RESET = 2;
+
+  /** Command that stops the server. */
+  static final long COMMAND_CLOSE = 3;
+
+  /** Flag set in responses when the episode is done. */
+  static final long FLAG_DONE = 1;
+
+  /** Flag set in responses when the player lost a life during the step. */
+  static final long FLAG_PLAYER_DIED = 2;
+
+  /** Flag set in responses when the command was unknown or its argument out of range. */
+  static final long FLAG_ERROR = 4;
+
+  /** Slots are padded to a multiple of this size, a cache line. */
+  private static final int ALIGNMENT = 64;
+
+  /** Time between polls while waiting for the server to initialize the file. */
+  private static final long OPEN_POLL_NANOS = 1_000_000;
+
+  /** Ordered access to the longs of a direct buffer. */
+  private static final VarHandle LONGS =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  /** The mapped file. */
+  private final MappedByteBuffer buffer;
+
+  /** Number of slots. */
+  private final int slotCount;
+
+  /** Size of an observation in bytes. */
+  private final int observationSize;
+
+  /** Size of a slot in bytes. */
+  private final int slotSize;
+
+  /**
+   * Maps a file that already has the given layout.
+   *
+   * @param buffer the mapped file
+   * @param slotCount number of slots
+   * @param observationSize size of an observation in bytes
+   */
+  private SharedRing(
+      final MappedByteBuffer buffer, final int slotCount, final int observationSize) {
+    this.buffer = buffer;
+    this.slotCount = slotCount;
+    this.observationSize = observationSize;
+    this.slotSize = slotSize(observationSize);
+  }
+
+  /**
+   * Creates or truncates the file and maps a ring with the given layout. The header is written,
+   * but the state stays STATE_NEW until the caller publishes STATE_READY.
+   *
+   * @param file the file to create
+   * @param slotCount number of slots, at least 1
+   * @param observationSize size of an observation in bytes
+   * @return the mapped ring
+   * @throws IOException if the file cannot be created or mapped
+   */
+  static SharedRing create(final Path file, final int slotCount, final int observationSize)
+      throws IOException {
+    if (slotCount < 1) {
+      throw new IllegalArgumentException("Slot count must be at least 1: " + slotCount);
+    }
+    long size = HEADER_SIZE + (long) slotCount * slotSize(observationSize);
+    MappedByteBuffer buffer;
+    try (FileChannel channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    SharedRing ring = new SharedRing(buffer, slotCount, observationSize);
+    ring.putLong(MAGIC_OFFSET, MAGIC);
+    ring.putLong(VERSION_OFFSET, VERSION);
+    ring.putLong(SLOT_COUNT_OFFSET, slotCount);
+    ring.putLong(OBSERVATION_SIZE_OFFSET, observationSize);
+    ring.putLong(SLOT_SIZE_OFFSET, ring.slotSize);
+    ring.putLongRelease(STATE_OFFSET, STATE_NEW);
+    return ring;
+  }
+
+  /**
+   * Maps an existing ring, waiting until its server has initialized it.
+   *
+   * @param file the file created by the server
+   * @param timeoutNanos how long to wait for the server
+   * @return the mapped ring
+   * @throws IOException if the file cannot be mapped
+   * @throws IllegalStateException if the server does not become ready in time, or if the file is
+   *     not a ring of this version
+   */
+  static SharedRing open(final Path file, final long timeoutNanos) throws IOException {
+    long deadline = System.nanoTime() + timeoutNanos;
+    while (true) {
+      if (Files.exists(file) && Files.size(file) >= HEADER_SIZE) {
+        try (FileChannel channel =
+            FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+          MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+          if ((long) LONGS.getAcquire(header, STATE_OFFSET) == STATE_READY) {
+            if ((long) LONGS.get(header, MAGIC_OFFSET) != MAGIC
+                || (long) LONGS.get(header, VERSION_OFFSET) != VERSION) {
+              throw new IllegalStateException("Not a version " + VERSION + " ring: " + file);
+            }
+            int slots = (int) (long) LONGS.get(header, SLOT_COUNT_OFFSET);
+            int observation = (int) (long) LONGS.get(header, OBSERVATION_SIZE_OFFSET);
+            long size = HEADER_SIZE + (long) slots * slotSize(observation);
+            return new SharedRing(
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, size), slots, observation);
+          }
+        }
+      }
+      if (System.nanoTime() - deadline > 0) {
+        throw new IllegalStateException("Server did not open " + file + " in time");
+      }
+      // the file is reopened on each poll, so do not spin on it
+      LockSupport.parkNanos(OPEN_POLL_NANOS);
+    }
+  }
+
+  /**
+   * Returns the size of a slot holding observations of the given size.
+   *
+   * @param observationSize size of an observation in bytes
+   * @return slot size in bytes, a multiple of 64
+   */
+  private static int slotSize(final int observationSize) {
+    int size = OBSERVATION_OFFSET + observationSize;
+    return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+  }
+
+  /**
+   * Returns the number of slots.
+   *
+   * @return slot count
+   */
+  int getSlotCount() {
+    return slotCount;
+  }
+
+  /**
+   * Returns the size of an observation in bytes.
+   *
+   * @return observation size
+   */
+  int getObservationSize() {
+    return observationSize;
+  }
+
+  /**
+   * Returns the offset in the file of the slot used by the given sequence number.
+   *
+   * @param sequence a sequence number, at least 1
+   * @return offset of the slot
+   */
+  int slot(final long sequence) {
+    return HEADER_SIZE + (int) ((sequence - 1) % slotCount) * slotSize;
+  }
+
+  /**
+   * Returns a view of the observation area of the slot at the given offset. The view shares the
+   * mapped file; its position is 0 and its limit the observation size.
+   *
+   * @param slot offset of the slot
+   * @return view of the slot's observation
+   */
+  ByteBuffer observation(final int slot) {
+    return buffer.slice(slot + OBSERVATION_OFFSET, observationSize);
+  }
+
+  /**
+   * Reads a long with plain semantics.
+   *
+   * @param offset byte offset in the file
+   * @return the value
+   */
+  long getLong(final int offset) {
+    return (long) LONGS.get(buffer, offset);
+  }
+
+  /**
+   * Writes a long with plain semantics; it becomes visible to the other process with the next
+   * release.
+   *
+   * @param offset byte offset in the file
+   * @param value the value
+   */
+  void putLong(final int offset, final long value) {
+    LONGS.set(buffer, offset, value);
+  }
+
+  /**
+   * Reads a long with acquire semantics, so that writes released before it are visible after it.
+   *
+   * @param offset byte offset in the file
+   * @return the value
+   */
+  long getLongAcquire(final int offset) {
+    return (long) LONGS.getAcquire(buffer, offset);
+  }
+
+  /**
+   * Writes a long with release semantics, publishing the writes made before it.
+   *
+   * @param offset byte offset in the file
+   * @param value the value
+   */
+  void putLongRelease(final int offset, final long value) {
+    LONGS.setRelease(buffer, offset, value);
+  }
+
+  /**
+   * Waits until the long at the given offset reaches the given value, or the state becomes
+   * STATE_CLOSED.
+   *
+   * @param offset byte offset in the file
+   * @param value the awaited value
+   * @param strategy how to wait
+   * @param timeoutNanos how long to wait, or a negative value to wait indefinitely
+   * @return true if the value was reached, false if the ring was closed or the time ran out
+   */
+  boolean await(
+      final int offset, final long value, final WaitStrategy strategy, final long timeoutNanos) {
+    long start = timeoutNanos < 0 ? 0 : System.nanoTime();
+    for (int polls = 0; getLongAcquire(offset) != value; polls++) {
+      if (getLongAcquire(STATE_OFFSET) == STATE_CLOSED
+          || (timeoutNanos >= 0 && (polls & 0xFF) == 0 && System.nanoTime() - start > timeoutNanos)
+          || Thread.currentThread().isInterrupted()) {
+        return getLongAcquire(offset) == value;
+      }
+      strategy.idle(polls);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,34 @@
+package com.pacman.ipc;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a side of the bridge waits for the other. Both sides poll a sequence number in shared
+ * memory; the strategies differ in what they do between polls.
+ */
+public enum WaitStrategy {
+  /** Spin continuously, for the lowest latency at the cost of a busy core on each side. */
+  BUSY_SPIN,
+
+  /** Spin briefly, then sleep for short periods, trading some latency for idle cores. */
+  SPIN_THEN_PARK;
+
+  /** Number of polls spent spinning before SPIN_THEN_PARK starts parking. */
+  private static final int SPIN_POLLS = 10_000;
+
+  /** Time parked between polls once SPIN_THEN_PARK has stopped spinning. */
+  private static final long PARK_NANOS = 50_000;
+
+  /**
+   * Waits between two polls.
+   *
+   * @param polls number of unsuccessful polls so far
+   */
+  void idle(final int polls) {
+    if (this == BUSY_SPIN || polls < SPIN_POLLS) {
+      Thread.onSpinWait();
+    } else {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+  }
+}
@@ -0,0 +1,7 @@
+/**
+ * This package contains a shared-memory bridge that lets an agent in another process drive an
+ * Environment. Requests and responses are exchanged through a ring of slots in a memory-mapped
+ * file, published with sequence numbers, so a round trip costs a few memory accesses rather than
+ * a socket write and a parse.
+ */
+package com.pacman.ipc;
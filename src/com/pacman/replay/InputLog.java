@@ -0,0 +1,221 @@
+package com.pacman.replay;
+
+import api.Direction;
+
+/**
+ * Immutable record of a Pacman session: everything needed to reconstruct the game (maze id, seed
+ * and frame rate), the player's inputs indexed by frame, the frames at which the game moved on to
+ * its next level, and the outcome the session reached, so that a playback can be checked against
+ * it.
+ */
+public final class InputLog {
+  /** Identifier of the maze layout the session was played on. */
+  private final String mazeId;
+
+  /** Seed of the enemies' random number generator. */
+  private final long seed;
+
+  /** Frame rate of the recorded game. */
+  private final int frameRate;
+
+  /** Number of frames simulated in the session. */
+  private final int frameCount;
+
+  /** Frame at which each input was given, in nondecreasing order. */
+  private final int[] inputFrames;
+
+  /** Direction of each input, parallel to inputFrames. */
+  private final Direction[] inputDirections;
+
+  /** Frame at which each level change was made, in nondecreasing order. */
+  private final int[] levelFrames;
+
+  /** Number of inputs given before each level change, parallel to levelFrames. */
+  private final int[] levelInputs;
+
+  /** Score at the end of the session. */
+  private final int finalScore;
+
+  /** Lives remaining at the end of the session. */
+  private final int finalLives;
+
+  /** Hash of the game state at the end of the session, see ReplayPlayer.stateHash(). */
+  private final long finalStateHash;
+
+  /**
+   * Constructs a log from its parts. The arrays are used as given, not copied.
+   *
+   * @param mazeId identifier of the maze layout
+   * @param seed random seed of the game
+   * @param frameRate frame rate of the game
+   * @param frameCount number of simulated frames
+   * @param inputFrames frame index of each input
+   * @param inputDirections direction of each input
+   * @param levelFrames frame index of each level change
+   * @param levelInputs number of inputs given before each level change
+   * @param finalScore score at the end of the session
+   * @param finalLives lives at the end of the session
+   * @param finalStateHash state hash at the end of the session
+   */
+  InputLog(
+      final String mazeId,
+      final long seed,
+      final int frameRate,
+      final int frameCount,
+      final int[] inputFrames,
+      final Direction[] inputDirections,
+      final int[] levelFrames,
+      final int[] levelInputs,
+      final int finalScore,
+      final int finalLives,
+      final long finalStateHash) {
+    this.mazeId = mazeId;
+    this.seed = seed;
+    this.frameRate = frameRate;
+    this.frameCount = frameCount;
+    this.inputFrames = inputFrames;
+    this.inputDirections = inputDirections;
+    this.levelFrames = levelFrames;
+    this.levelInputs = levelInputs;
+    this.finalScore = finalScore;
+    this.finalLives = finalLives;
+    this.finalStateHash = finalStateHash;
+  }
+
+  /**
+   * Returns the identifier of the maze layout the session was played on.
+   *
+   * @return maze id
+   */
+  public String getMazeId() {
+    return mazeId;
+  }
+
+  /**
+   * Returns the seed of the enemies' random number generator.
+   *
+   * @return random seed
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Returns the frame rate of the recorded game.
+   *
+   * @return frame rate
+   */
+  public int getFrameRate() {
+    return frameRate;
+  }
+
+  /**
+   * Returns the number of frames simulated in the session.
+   *
+   * @return number of frames
+   */
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  /**
+   * Returns the number of recorded inputs.
+   *
+   * @return number of inputs
+   */
+  public int getInputCount() {
+    return inputFrames.length;
+  }
+
+  /**
+   * Returns the frame at which the i-th input was given.
+   *
+   * @param i input index
+   * @return frame of the input
+   */
+  public int getInputFrame(final int i) {
+    return inputFrames[i];
+  }
+
+  /**
+   * Returns the direction of the i-th input.
+   *
+   * @param i input index
+   * @return direction of the input
+   */
+  public Direction getInputDirection(final int i) {
+    return inputDirections[i];
+  }
+
+  /**
+   * Returns the number of times the game was moved on to its next level.
+   *
+   * @return number of level changes
+   */
+  public int getLevelChangeCount() {
+    return levelFrames.length;
+  }
+
+  /**
+   * Returns the frame at which the i-th level change was made.
+   *
+   * @param i level change index
+   * @return frame of the level change
+   */
+  public int getLevelChangeFrame(final int i) {
+    return levelFrames[i];
+  }
+
+  /**
+   * Returns the number of inputs given before the i-th level change, which places it among the
+   * inputs of its frame.
+   *
+   * @param i level change index
+   * @return number of earlier inputs
+   */
+  public int getLevelChangeInputs(final int i) {
+    return levelInputs[i];
+  }
+
+  /**
+   * Returns the score at the end of the session.
+   *
+   * @return final score
+   */
+  public int getFinalScore() {
+    return finalScore;
+  }
+
+  /**
+   * Returns the lives remaining at the end of the session.
+   *
+   * @return final lives
+   */
+  public int getFinalLives() {
+    return finalLives;
+  }
+
+  /**
+   * Returns the hash of the game state at the end of the session.
+   *
+   * @return final state hash
+   */
+  public long getFinalStateHash() {
+    return finalStateHash;
+  }
+
+  /**
+   * Returns the inputs in the one-direction-per-frame form used by the simulation test framework,
+   * with a null entry for frames without input. When several inputs were given in the same frame
+   * only the last one is kept, so this form is not always an exact replay.
+   *
+   * @return array of length getFrameCount() + 1 of per-frame inputs
+   */
+  public Direction[] toPlayerInputs() {
+    Direction[] result = new Direction[frameCount + 1];
+    for (int i = 0; i < inputFrames.length; ++i) {
+      result[inputFrames[i]] = inputDirections[i];
+    }
+    return result;
+  }
+}
@@ -0,0 +1,326 @@
+package com.pacman.replay;
+
+import api.Direction;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of an InputLog. All integers are unsigned LEB128 varints (the seed is
+ * zigzag-encoded first), and each input is a single varint holding the frame delta from the
+ * previous input shifted left by two, with the direction ordinal in the low two bits. A typical
+ * human session therefore costs one or two bytes per key press. Each level change is two varints:
+ * its frame delta from the previous change and the number of inputs given since it.
+ *
+ * <pre>
+ * magic "PMRL", version, maze id (length + UTF-8), seed, frame rate, frame count,
+ * input count, inputs..., level change count, level changes...,
+ * final score, final lives, final state hash (8 bytes)
+ * </pre>
+ *
+ * <p>Version 1 logs, written before level changes were recorded, have no level change section and
+ * read as logs without level changes.
+ *
+ * <p>Reading checks the maze id length and the input and level change counts against limits
+ * before making room for them, and makes room as entries are read, so a corrupt log fails with an
+ * IOException rather than running out of memory.
+ */
+public final class InputLogCodec {
+  /** File signature. */
+  private static final byte[] MAGIC = {'P', 'M', 'R', 'L'};
+
+  /** Current format version. */
+  private static final int VERSION = 2;
+
+  /** Version written before level changes were recorded. */
+  private static final int VERSION_WITHOUT_LEVELS = 1;
+
+  /** Number of low bits of an input varint that hold the direction. */
+  private static final int DIRECTION_BITS = 2;
+
+  /** Mask for the direction bits of an input varint. */
+  private static final int DIRECTION_MASK = (1 << DIRECTION_BITS) - 1;
+
+  /** Number of payload bits in each varint byte. */
+  private static final int VARINT_BITS = 7;
+
+  /** Mask for the payload bits of a varint byte. */
+  private static final int VARINT_PAYLOAD = 0x7f;
+
+  /** Continuation flag of a varint byte. */
+  private static final int VARINT_MORE = 0x80;
+
+  /** Largest shift that can still contribute bits to a long. */
+  private static final int MAX_VARINT_SHIFT = 63;
+
+  /** Longest maze id read, in bytes. */
+  private static final int MAX_MAZE_ID_BYTES = 256;
+
+  /**
+   * Most inputs or level changes read from a log, more than 90 hours of a key press on every
+   * frame at 50 frames per second.
+   */
+  private static final int MAX_ENTRIES = 1 << 24;
+
+  /** Entries room is first made for when reading, doubled as more are read. */
+  private static final int READ_CHUNK = 1024;
+
+  /** Directions indexed by ordinal. */
+  private static final Direction[] DIRECTIONS = Direction.values();
+
+  /** Private constructor to prevent instantiation. */
+  private InputLogCodec() {
+    // Utility class
+  }
+
+  /**
+   * Encodes the given log into a byte array.
+   *
+   * @param log the log to encode
+   * @return encoded bytes
+   */
+  public static byte[] encode(final InputLog log) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      write(log, bytes);
+    } catch (IOException cantHappen) {
+      throw new IllegalStateException(cantHappen);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decodes a log from the given byte array.
+   *
+   * @param data encoded bytes
+   * @return decoded log
+   * @throws IOException if the data is not a valid encoded log
+   */
+  public static InputLog decode(final byte[] data) throws IOException {
+    return read(new ByteArrayInputStream(data));
+  }
+
+  /**
+   * Writes the given log to a file.
+   *
+   * @param log the log to write
+   * @param file destination file
+   * @throws IOException if the file cannot be written
+   */
+  public static void save(final InputLog log, final Path file) throws IOException {
+    Files.write(file, encode(log));
+  }
+
+  /**
+   * Reads a log from a file.
+   *
+   * @param file source file
+   * @return decoded log
+   * @throws IOException if the file cannot be read or is not a valid encoded log
+   */
+  public static InputLog load(final Path file) throws IOException {
+    return decode(Files.readAllBytes(file));
+  }
+
+  /**
+   * Writes the encoded form of the given log to a stream.
+   *
+   * @param log the log to write
+   * @param stream destination stream
+   * @throws IOException if the stream cannot be written
+   */
+  public static void write(final InputLog log, final OutputStream stream) throws IOException {
+    DataOutputStream out = new DataOutputStream(stream);
+    out.write(MAGIC);
+    writeVarLong(out, VERSION);
+    byte[] mazeId = log.getMazeId().getBytes(StandardCharsets.UTF_8);
+    writeVarLong(out, mazeId.length);
+    out.write(mazeId);
+    writeVarLong(out, (log.getSeed() << 1) ^ (log.getSeed() >> MAX_VARINT_SHIFT));
+    writeVarLong(out, log.getFrameRate());
+    writeVarLong(out, log.getFrameCount());
+    writeVarLong(out, log.getInputCount());
+    int previousFrame = 0;
+    for (int i = 0; i < log.getInputCount(); ++i) {
+      long delta = log.getInputFrame(i) - previousFrame;
+      writeVarLong(out, delta << DIRECTION_BITS | log.getInputDirection(i).ordinal());
+      previousFrame = log.getInputFrame(i);
+    }
+    writeVarLong(out, log.getLevelChangeCount());
+    previousFrame = 0;
+    int previousInputs = 0;
+    for (int i = 0; i < log.getLevelChangeCount(); ++i) {
+      writeVarLong(out, log.getLevelChangeFrame(i) - previousFrame);
+      writeVarLong(out, log.getLevelChangeInputs(i) - previousInputs);
+      previousFrame = log.getLevelChangeFrame(i);
+      previousInputs = log.getLevelChangeInputs(i);
+    }
+    writeVarLong(out, log.getFinalScore());
+    writeVarLong(out, log.getFinalLives());
+    out.writeLong(log.getFinalStateHash());
+    out.flush();
+  }
+
+  /**
+   * Reads an encoded log from a stream.
+   *
+   * @param stream source stream
+   * @return decoded log
+   * @throws IOException if the stream cannot be read or does not hold a valid encoded log
+   */
+  public static InputLog read(final InputStream stream) throws IOException {
+    DataInputStream in = new DataInputStream(stream);
+    byte[] magic = new byte[MAGIC.length];
+    in.readFully(magic);
+    for (int i = 0; i < MAGIC.length; ++i) {
+      if (magic[i] != MAGIC[i]) {
+        throw new IOException("Not an input log");
+      }
+    }
+    int version = readVarInt(in);
+    if (version != VERSION && version != VERSION_WITHOUT_LEVELS) {
+      throw new IOException("Unsupported input log version " + version);
+    }
+    byte[] mazeId = new byte[readCount(in, MAX_MAZE_ID_BYTES, "Maze id length")];
+    in.readFully(mazeId);
+    long zigzag = readVarLong(in);
+    long seed = (zigzag >>> 1) ^ -(zigzag & 1);
+    int frameRate = readVarInt(in);
+    int frameCount = readVarInt(in);
+    int inputCount = readCount(in, MAX_ENTRIES, "Input count");
+    int[] frames = new int[Math.min(inputCount, READ_CHUNK)];
+    Direction[] directions = new Direction[frames.length];
+    int frame = 0;
+    for (int i = 0; i < inputCount; ++i) {
+      if (i == frames.length) {
+        frames = Arrays.copyOf(frames, Math.min(inputCount, i * 2));
+        directions = Arrays.copyOf(directions, frames.length);
+      }
+      long value = readVarLong(in);
+      long delta = value >>> DIRECTION_BITS;
+      if (delta > frameCount - frame) {
+        throw new IOException("Input after last frame at index " + i);
+      }
+      frame += (int) delta;
+      frames[i] = frame;
+      directions[i] = DIRECTIONS[(int) (value & DIRECTION_MASK)];
+    }
+    int levelCount =
+        version == VERSION_WITHOUT_LEVELS ? 0 : readCount(in, MAX_ENTRIES, "Level change count");
+    int[] levelFrames = new int[Math.min(levelCount, READ_CHUNK)];
+    int[] levelInputs = new int[levelFrames.length];
+    frame = 0;
+    int inputs = 0;
+    for (int i = 0; i < levelCount; ++i) {
+      if (i == levelFrames.length) {
+        levelFrames = Arrays.copyOf(levelFrames, Math.min(levelCount, i * 2));
+        levelInputs = Arrays.copyOf(levelInputs, levelFrames.length);
+      }
+      int frameDelta = readVarInt(in);
+      int inputDelta = readVarInt(in);
+      if (frameDelta > frameCount - frame || inputDelta > inputCount - inputs) {
+        throw new IOException("Level change after end of log at index " + i);
+      }
+      frame += frameDelta;
+      inputs += inputDelta;
+      levelFrames[i] = frame;
+      levelInputs[i] = inputs;
+    }
+    int finalScore = readVarInt(in);
+    int finalLives = readVarInt(in);
+    long finalStateHash = in.readLong();
+    return new InputLog(
+        new String(mazeId, StandardCharsets.UTF_8),
+        seed,
+        frameRate,
+        frameCount,
+        frames,
+        directions,
+        levelFrames,
+        levelInputs,
+        finalScore,
+        finalLives,
+        finalStateHash);
+  }
+
+  /**
+   * Writes an unsigned varint.
+   *
+   * @param out destination
+   * @param value value, treated as unsigned
+   * @throws IOException if the stream cannot be written
+   */
+  private static void writeVarLong(final DataOutputStream out, final long value)
+      throws IOException {
+    long v = value;
+    while ((v & ~VARINT_PAYLOAD) != 0) {
+      out.writeByte((int) (v & VARINT_PAYLOAD) | VARINT_MORE);
+      v >>>= VARINT_BITS;
+    }
+    out.writeByte((int) v);
+  }
+
+  /**
+   * Reads an unsigned varint.
+   *
+   * @param in source
+   * @return decoded value
+   * @throws IOException if the stream ends early or the varint is malformed
+   */
+  private static long readVarLong(final DataInputStream in) throws IOException {
+    long result = 0;
+    for (int shift = 0; shift <= MAX_VARINT_SHIFT; shift += VARINT_BITS) {
+      int b = in.read();
+      if (b < 0) {
+        throw new EOFException();
+      }
+      result |= (long) (b & VARINT_PAYLOAD) << shift;
+      if ((b & VARINT_MORE) == 0) {
+        return result;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  /**
+   * Reads an unsigned varint that must fit in a non-negative int.
+   *
+   * @param in source
+   * @return decoded value
+   * @throws IOException if the stream ends early or the value is out of range
+   */
+  private static int readVarInt(final DataInputStream in) throws IOException {
+    long value = readVarLong(in);
+    if (value < 0 || value > Integer.MAX_VALUE) {
+      throw new IOException("Value out of range: " + value);
+    }
+    return (int) value;
+  }
+
+  /**
+   * Reads an unsigned varint that counts something room is made for, checking it against a limit.
+   *
+   * @param in source
+   * @param max largest count accepted
+   * @param what what is counted, for the message
+   * @return decoded count
+   * @throws IOException if the stream ends early or the count is out of range
+   */
+  private static int readCount(final DataInputStream in, final int max, final String what)
+      throws IOException {
+    int value = readVarInt(in);
+    if (value > max) {
+      throw new IOException(what + " out of range: " + value);
+    }
+    return value;
+  }
+}
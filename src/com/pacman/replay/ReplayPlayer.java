@@ -0,0 +1,149 @@
+package com.pacman.replay;
+
+import api.Actor;
+import api.Direction;
+import api.Mode;
+import api.PacmanGame;
+import com.pacman.ghost.ActorImpl;
+
+/**
+ * Headless playback of recorded sessions. Playback recreates the game from the log's seed and
+ * frame rate, feeds the recorded inputs and level changes at their frames, in the order they were
+ * made, and steps as fast as the CPU allows: the
+ * pause on player death is disabled, no rendering takes place, and the ghosts' movement log is
+ * turned off while a session plays and put back as it was afterwards.
+ */
+public final class ReplayPlayer {
+  /** Multiplier for combining values into the state hash. */
+  private static final long HASH_MULTIPLIER = 0x100000001b3L;
+
+  /** Initial value of the state hash. */
+  private static final long HASH_SEED = 0xcbf29ce484222325L;
+
+  /** Private constructor to prevent instantiation. */
+  private ReplayPlayer() {
+    // Utility class
+  }
+
+  /**
+   * Plays the given log on a new game built from the given maze rows and returns the game in its
+   * final state.
+   *
+   * @param log the recorded session
+   * @param rows maze layout identified by the log's maze id
+   * @return the game after all recorded frames and inputs have been applied
+   */
+  public static PacmanGame replay(final InputLog log, final String[] rows) {
+    boolean logging = ActorImpl.isMovementLogging();
+    ActorImpl.setMovementLogging(false);
+    try {
+      return play(log, rows);
+    } finally {
+      ActorImpl.setMovementLogging(logging);
+    }
+  }
+
+  /**
+   * Plays the given log on a new game, as replay() describes.
+   *
+   * @param log the recorded session
+   * @param rows maze layout identified by the log's maze id
+   * @return the game after all recorded frames and inputs have been applied
+   */
+  private static PacmanGame play(final InputLog log, final String[] rows) {
+    PacmanGame game = new PacmanGame(rows, log.getFrameRate(), log.getSeed());
+    game.setPlayerDeathDelay(0);
+    int next = 0;
+    int nextLevel = 0;
+    int inputCount = log.getInputCount();
+    while (game.getFrameCount() < log.getFrameCount()) {
+      int frame = game.getFrameCount();
+      while (true) {
+        if (nextLevel < log.getLevelChangeCount()
+            && log.getLevelChangeFrame(nextLevel) == frame
+            && log.getLevelChangeInputs(nextLevel) == next) {
+          game.nextLevel();
+          nextLevel += 1;
+        } else if (next < inputCount && log.getInputFrame(next) == frame) {
+          game.turnPlayer(log.getInputDirection(next));
+          next += 1;
+        } else {
+          break;
+        }
+      }
+      if (game.levelOver()) {
+        break;
+      }
+      game.updateAll();
+    }
+
+    // inputs given after the last simulated frame can still change the player's direction
+    while (next < inputCount) {
+      game.turnPlayer(log.getInputDirection(next));
+      next += 1;
+    }
+    return game;
+  }
+
+  /**
+   * Plays the given log and checks that it reaches exactly the recorded outcome.
+   *
+   * @param log the recorded session
+   * @param rows maze layout identified by the log's maze id
+   * @return true if the frame count, score, lives and state hash all match the recording
+   */
+  public static boolean verify(final InputLog log, final String[] rows) {
+    PacmanGame game = replay(log, rows);
+    return game.getFrameCount() == log.getFrameCount()
+        && game.getScore() == log.getFinalScore()
+        && game.getLives() == log.getFinalLives()
+        && stateHash(game) == log.getFinalStateHash();
+  }
+
+  /**
+   * Computes a hash of the given game's dynamic state: frame count, score, lives, and the exact
+   * position, direction and mode of every actor. Two games that evolved identically have the same
+   * hash, and any divergence in movement shows up in it.
+   *
+   * @param game the game to hash
+   * @return hash of the game state
+   */
+  public static long stateHash(final PacmanGame game) {
+    long hash = HASH_SEED;
+    hash = mix(hash, game.getFrameCount());
+    hash = mix(hash, game.getScore());
+    hash = mix(hash, game.getLives());
+    hash = mixActor(hash, game.getPlayer());
+    for (Actor enemy : game.getEnemies()) {
+      hash = mixActor(hash, enemy);
+    }
+    return hash;
+  }
+
+  /**
+   * Combines the position, direction and mode of an actor into a hash.
+   *
+   * @param hash hash so far
+   * @param actor the actor
+   * @return combined hash
+   */
+  private static long mixActor(final long hash, final Actor actor) {
+    Direction dir = actor.getCurrentDirection();
+    Mode mode = actor.getMode();
+    long result = mix(hash, Double.doubleToLongBits(actor.getRowExact()));
+    result = mix(result, Double.doubleToLongBits(actor.getColExact()));
+    result = mix(result, dir == null ? -1 : dir.ordinal());
+    return mix(result, mode == null ? -1 : mode.ordinal());
+  }
+
+  /**
+   * Combines one value into a hash.
+   *
+   * @param hash hash so far
+   * @param value value to combine
+   * @return combined hash
+   */
+  private static long mix(final long hash, final long value) {
+    return (hash ^ value) * HASH_MULTIPLIER;
+  }
+}
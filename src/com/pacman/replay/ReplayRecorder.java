@@ -0,0 +1,133 @@
+package com.pacman.replay;
+
+import api.Direction;
+import api.PacmanGame;
+import api.PlayerInputListener;
+import java.util.Arrays;
+
+/**
+ * Records a Pacman session as an InputLog. The recorder observes a game's turnPlayer() calls, so
+ * it works the same whether the game is driven by the UI's key listener or by a bot, and the
+ * driver does not need to know it is being recorded. A log holds one run at one frame rate, so
+ * while the recorder is attached the game refuses setFrameRate() and restartLevel().
+ */
+public final class ReplayRecorder implements PlayerInputListener {
+  /** Initial capacity of the input arrays. */
+  private static final int INITIAL_CAPACITY = 256;
+
+  /** The game being recorded. */
+  private final PacmanGame game;
+
+  /** Identifier of the game's maze layout. */
+  private final String mazeId;
+
+  /** Seed the game started with. */
+  private final long seed;
+
+  /** Frame rate the game started with. */
+  private final int frameRate;
+
+  /** Frame of each recorded input. */
+  private int[] frames = new int[INITIAL_CAPACITY];
+
+  /** Direction of each recorded input. */
+  private Direction[] directions = new Direction[INITIAL_CAPACITY];
+
+  /** Number of recorded inputs. */
+  private int count;
+
+  /** Frame of each recorded level change. */
+  private int[] levelFrames = new int[INITIAL_CAPACITY];
+
+  /** Number of inputs recorded before each level change. */
+  private int[] levelInputs = new int[INITIAL_CAPACITY];
+
+  /** Number of recorded level changes. */
+  private int levelCount;
+
+  /**
+   * Starts recording the given game. The game must not have simulated any frames yet, since a
+   * replay always starts from the initial state.
+   *
+   * @param game the game to record
+   * @param mazeId identifier for the game's maze layout, used to find the layout on playback
+   * @throws IllegalStateException if the game has already simulated frames
+   */
+  public ReplayRecorder(final PacmanGame game, final String mazeId) {
+    if (game.getFrameCount() != 0) {
+      throw new IllegalStateException("Recording must start before the first frame");
+    }
+    this.game = game;
+    this.mazeId = mazeId;
+    seed = game.getSeed();
+    frameRate = game.getFrameRate();
+    game.setPlayerInputListener(this);
+  }
+
+  @Override
+  public void playerInput(final int frame, final Direction dir) {
+    if (count == frames.length) {
+      frames = Arrays.copyOf(frames, count * 2);
+      directions = Arrays.copyOf(directions, count * 2);
+    }
+    frames[count] = frame;
+    directions[count] = dir;
+    count += 1;
+  }
+
+  @Override
+  public void nextLevel(final int frame) {
+    if (levelCount == levelFrames.length) {
+      levelFrames = Arrays.copyOf(levelFrames, levelCount * 2);
+      levelInputs = Arrays.copyOf(levelInputs, levelCount * 2);
+    }
+    levelFrames[levelCount] = frame;
+    levelInputs[levelCount] = count;
+    levelCount += 1;
+  }
+
+  @Override
+  public void frameRateChange(final int frame, final int newFrameRate) {
+    throw new IllegalStateException("Cannot change the frame rate of a game being recorded");
+  }
+
+  @Override
+  public void restart(final int frame, final long newSeed) {
+    throw new IllegalStateException("Cannot restart a game being recorded");
+  }
+
+  /**
+   * Returns the number of inputs recorded so far.
+   *
+   * @return number of inputs
+   */
+  public int getInputCount() {
+    return count;
+  }
+
+  /**
+   * Returns a log of the session so far, including the current state of the game as its outcome.
+   * Recording continues, so this may be called repeatedly.
+   *
+   * @return log of the session up to the current frame
+   */
+  public InputLog toInputLog() {
+    return new InputLog(
+        mazeId,
+        seed,
+        frameRate,
+        game.getFrameCount(),
+        Arrays.copyOf(frames, count),
+        Arrays.copyOf(directions, count),
+        Arrays.copyOf(levelFrames, levelCount),
+        Arrays.copyOf(levelInputs, levelCount),
+        game.getScore(),
+        game.getLives(),
+        ReplayPlayer.stateHash(game));
+  }
+
+  /** Stops recording; later inputs to the game are no longer observed. */
+  public void detach() {
+    game.setPlayerInputListener(null);
+  }
+}
@@ -0,0 +1,6 @@
+/**
+ * This package contains deterministic recording and playback of Pacman sessions. A session is
+ * stored as the maze id, random seed, frame rate and the frame-indexed turnPlayer() calls, which is
+ * enough to reproduce the whole game headless.
+ */
+package com.pacman.replay;
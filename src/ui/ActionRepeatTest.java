@@ -0,0 +1,141 @@
+package ui;
+
+import api.Direction;
+import api.PacmanGame;
+import api.StepResult;
+import com.pacman.ghost.ActorImpl;
+import com.pacman.replay.ReplayPlayer;
+import java.util.Random;
+
+/**
+ * Test for multi-frame stepping with PacmanGame.step(). Plays random episodes with several action
+ * repeat counts alongside a twin game driven frame by frame with turnPlayer() and updateAll(), and
+ * checks that the two stay identical, that the reported score deltas add up, and that each step
+ * ends exactly on the frame of a death or the end of the level.
+ */
+public final class ActionRepeatTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Action repeat counts to test. */
+  private static final int[] REPEATS = {1, 4, 8, 25};
+
+  /** Episodes played for each repeat count. */
+  private static final int EPISODES = 20;
+
+  /** Maximum number of frames per episode. */
+  private static final int MAX_FRAMES = 20000;
+
+  /** Private constructor to prevent instantiation. */
+  private ActionRepeatTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = true;
+    for (int repeat : REPEATS) {
+      ok &= checkRepeat(repeat);
+    }
+    if (ok) {
+      Logger.info("PASS: multi-frame stepping");
+    } else {
+      Logger.error("FAIL: multi-frame stepping");
+    }
+  }
+
+  /**
+   * Plays episodes with the given repeat count and compares them with frame-by-frame twins.
+   *
+   * @param repeat frames per step
+   * @return true if every episode matches
+   */
+  private static boolean checkRepeat(int repeat) {
+    Random random = new Random(repeat);
+    long steps = 0;
+    long frames = 0;
+    int deaths = 0;
+    int cleared = 0;
+    for (int episode = 0; episode < EPISODES; episode++) {
+      long seed = random.nextLong();
+      PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, seed);
+      PacmanGame twin = new PacmanGame(RunGame.MAIN1, FRAME_RATE, seed);
+      game.setPlayerDeathDelay(0);
+      twin.setPlayerDeathDelay(0);
+      int totalDelta = 0;
+      while (!game.levelOver() && game.getFrameCount() < MAX_FRAMES) {
+        Direction action =
+            random.nextInt(3) == 0 ? Direction.values()[random.nextInt(4)] : null;
+        StepResult result = game.step(action, repeat);
+        totalDelta += result.getScoreDelta();
+        steps++;
+        frames += result.getFrames();
+
+        // drive the twin one frame at a time, noting where a step should have stopped
+        if (action != null) {
+          twin.turnPlayer(action);
+        }
+        int startScore = twin.getScore();
+        int startLives = twin.getLives();
+        int twinFrames = 0;
+        boolean died = false;
+        while (twinFrames < result.getFrames()) {
+          if (died || twin.levelOver()) {
+            return fail(repeat, episode, "step ran past a death or the end of the level");
+          }
+          twin.updateAll();
+          twinFrames++;
+          died = twin.getLives() < startLives;
+        }
+        boolean cutShort = result.getFrames() < repeat;
+        if ((cutShort && !died && !twin.levelOver())
+            || result.isPlayerDied() != died
+            || result.isLevelOver() != twin.levelOver()
+            || result.getScoreDelta() != twin.getScore() - startScore) {
+          return fail(repeat, episode, "step result " + result + " does not match the twin");
+        }
+        if (ReplayPlayer.stateHash(game) != ReplayPlayer.stateHash(twin)) {
+          return fail(repeat, episode, "state differs from the twin after " + steps + " steps");
+        }
+        if (died) {
+          deaths++;
+        }
+      }
+      if (totalDelta != game.getScore()) {
+        return fail(repeat, episode, "score deltas do not add up to the score");
+      }
+      if (game.levelOver() && game.getLives() > 0) {
+        cleared++;
+      }
+    }
+    Logger.info(
+        "  ok: repeat "
+            + repeat
+            + ", "
+            + EPISODES
+            + " episodes, "
+            + steps
+            + " steps, "
+            + frames
+            + " frames, "
+            + deaths
+            + " deaths, "
+            + cleared
+            + " levels cleared");
+    return true;
+  }
+
+  /**
+   * Logs a failed check.
+   *
+   * @param repeat frames per step
+   * @param episode index of the episode
+   * @param message description of the failure
+   * @return false
+   */
+  private static boolean fail(int repeat, int episode, String message) {
+    Logger.error("  failed: repeat " + repeat + ", episode " + episode + ": " + message);
+    return false;
+  }
+}
@@ -0,0 +1,128 @@
+package ui;
+
+import api.Direction;
+import api.PacmanGame;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Measures the bytes allocated per call to PacmanGame.updateAll() once the game is in its steady
+ * state, the same figure JMH reports as gc.alloc.rate.norm. Each sample plays a fresh game with
+ * random steering, on the main maze and then on a 512x512 maze, skips the start-up frames (while
+ * ghosts are still being released) and then counts the bytes allocated by the calling thread over
+ * the following frames. Like JMH, a number of unmeasured warm-up games are played first, since the
+ * JVM allocates the first time it runs a code path (class initialization, string constant
+ * resolution, JIT). Games are built as RunGame builds them, leaving the ghosts' movement log off
+ * as it is by default. The expected result is zero.
+ */
+public final class AllocationBenchmark {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Frames played before measuring, long enough for every ghost to be released. */
+  private static final int WARMUP_FRAMES = 800;
+
+  /** Frames measured per game. */
+  private static final int MEASURED_FRAMES = 1000;
+
+  /** Number of unmeasured games played before sampling. */
+  private static final int WARMUP_GAMES = 100;
+
+  /** Number of games to sample. */
+  private static final int GAMES = 200;
+
+  /** Rows and columns of the large maze, most of whose cells lie beyond 191. */
+  private static final int LARGE_SIZE = 512;
+
+  /** Number of unmeasured games played on the large maze, after those on the main maze. */
+  private static final int LARGE_WARMUP_GAMES = 2;
+
+  /** Number of games to sample on the large maze. */
+  private static final int LARGE_GAMES = 10;
+
+  /** Private constructor to prevent instantiation. */
+  private AllocationBenchmark() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    boolean ok = measure("MAIN1", RunGame.MAIN1, WARMUP_GAMES, GAMES);
+    ok &= measure(
+        LARGE_SIZE + "x" + LARGE_SIZE,
+        IncrementalObservationTest.largeMaze(LARGE_SIZE),
+        LARGE_WARMUP_GAMES,
+        LARGE_GAMES);
+    if (ok) {
+      Logger.info("PASS: steady-state frame loop is allocation-free");
+    } else {
+      Logger.error("FAIL: steady-state frame loop allocates");
+    }
+  }
+
+  /**
+   * Plays sample games on a maze and logs the bytes allocated per frame once they are warmed up.
+   *
+   * @param name name of the maze
+   * @param rows the maze
+   * @param warmupGames unmeasured games played first
+   * @param games games measured
+   * @return true if the measured frames allocated nothing
+   */
+  private static boolean measure(String name, String[] rows, int warmupGames, int games) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    Direction[] directions = Direction.values();
+
+    // cost of the measurement itself, subtracted from each sample
+    long overhead = Long.MAX_VALUE;
+    for (int i = 0; i < 1000; i++) {
+      long before = threads.getThreadAllocatedBytes(threadId);
+      long after = threads.getThreadAllocatedBytes(threadId);
+      overhead = Math.min(overhead, after - before);
+    }
+
+    long totalBytes = 0;
+    long totalFrames = 0;
+    for (int sample = -warmupGames; sample < games; sample++) {
+      PacmanGame game = new PacmanGame(rows, FRAME_RATE, sample);
+      game.setPlayerDeathDelay(0);
+      Random random = new Random(sample);
+      Direction[] inputs = new Direction[WARMUP_FRAMES + MEASURED_FRAMES];
+      for (int i = 0; i < inputs.length; i += 5) {
+        inputs[i] = directions[random.nextInt(directions.length)];
+      }
+      int frame = 0;
+      for (; frame < WARMUP_FRAMES && !game.levelOver(); frame++) {
+        step(game, inputs[frame]);
+      }
+
+      long before = threads.getThreadAllocatedBytes(threadId);
+      int measured = 0;
+      for (; frame < inputs.length && !game.levelOver(); frame++) {
+        step(game, inputs[frame]);
+        measured++;
+      }
+      long after = threads.getThreadAllocatedBytes(threadId);
+      if (sample >= 0) {
+        totalBytes += Math.max(0, after - before - overhead);
+        totalFrames += measured;
+      }
+    }
+
+    double perFrame = totalFrames == 0 ? 0 : (double) totalBytes / totalFrames;
+    Logger.info(
+        String.format(
+            "%s updateAll(): %d frames measured, %d bytes allocated, %.3f bytes/frame",
+            name, totalFrames, totalBytes, perFrame));
+    return totalBytes == 0;
+  }
+
+  private static void step(PacmanGame game, Direction input) {
+    if (input != null) {
+      game.turnPlayer(input);
+    }
+    game.updateAll();
+  }
+}
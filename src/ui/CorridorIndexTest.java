@@ -0,0 +1,228 @@
+package ui;
+
+import api.CorridorIndex;
+import api.Direction;
+import api.MazeCell;
+import api.PacmanGame;
+import com.pacman.ghost.ActorImpl;
+
+/**
+ * Test for CorridorIndex. On each maze, compares every lookup with walking the cells one step at a
+ * time through PacmanGame.getCell(): the cell a step leads to, whether a cell is a corridor, the
+ * run to the next junction or wall, the distance to the wall and the lines of sight. Checks that
+ * the lists of open cells and of pellet cells hold exactly those cells, in row-major order. Then
+ * counts how many of the steps through each maze need no decision.
+ */
+public final class CorridorIndexTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Mazes checked, as for RunGame.getMaze(). */
+  private static final String[] MAZES = {"TEST0", "TEST1", "TEST2", "MAIN1"};
+
+  /** Private constructor to prevent instantiation. */
+  private CorridorIndexTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = true;
+    for (String mazeId : MAZES) {
+      ok &= check(mazeId);
+    }
+    if (ok) {
+      Logger.info("PASS: corridor index");
+    } else {
+      Logger.error("FAIL: corridor index");
+    }
+  }
+
+  /**
+   * Compares the index of a maze with walking its cells.
+   *
+   * @param mazeId identifier of the maze
+   * @return true if every lookup agrees
+   */
+  private static boolean check(String mazeId) {
+    PacmanGame game = new PacmanGame(RunGame.getMaze(mazeId), FRAME_RATE, 1);
+    CorridorIndex index = game.getCorridors();
+    int rows = game.getNumRows();
+    int cols = game.getNumColumns();
+    if (!checkCellLists(game, index)) {
+      Logger.error("  failed: " + mazeId + ": open or pellet cells listed wrongly");
+      return false;
+    }
+    int open = 0;
+    int corridors = 0;
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < cols; col++) {
+        for (Direction dir : Direction.values()) {
+          int next = step(game, row * cols + col, dir);
+          boolean corridor = isCorridor(game, row * cols + col, dir);
+          if (index.getNeighbor(row, col, dir) != next
+              || index.isOpen(row, col, dir) != (next != CorridorIndex.NONE)
+              || index.isCorridor(row, col, dir) != corridor
+              || index.getRunLength(row, col, dir) != walk(game, row * cols + col, dir, true)
+              || index.getDistanceToWall(row, col, dir)
+                  != walk(game, row * cols + col, dir, false)) {
+            Logger.error("  failed: " + mazeId + ": cell " + row + ", " + col + " going " + dir);
+            return false;
+          }
+          open += next != CorridorIndex.NONE ? 1 : 0;
+          corridors += corridor ? 1 : 0;
+        }
+        for (int toRow = 0; toRow < rows; toRow++) {
+          for (int toCol = 0; toCol < cols; toCol++) {
+            if (!game.getCell(row, col).isWall()
+                && !game.getCell(toRow, toCol).isWall()
+                && index.canSee(row, col, toRow, toCol) != canSee(game, row, col, toRow, toCol)) {
+              Logger.error(
+                  String.format(
+                      "  failed: %s: sight from %d, %d to %d, %d", mazeId, row, col, toRow, toCol));
+              return false;
+            }
+          }
+        }
+      }
+    }
+    Logger.info(
+        String.format(
+            "  ok: %s, %d of %d open steps lead through corridors", mazeId, corridors, open));
+    return true;
+  }
+
+  /**
+   * Compares the lists of open cells and of pellet cells with the cells of the game.
+   *
+   * @param game the game, at the start of a level
+   * @param index the corridor index
+   * @return true if each list holds exactly its cells, in row-major order
+   */
+  private static boolean checkCellLists(PacmanGame game, CorridorIndex index) {
+    int cols = game.getNumColumns();
+    int open = 0;
+    int pellets = 0;
+    for (int cell = 0; cell < game.getNumRows() * cols; cell++) {
+      MazeCell c = game.getCell(cell / cols, cell % cols);
+      if (!c.isWall()) {
+        if (open >= index.getOpenCellCount() || index.getOpenCell(open++) != cell) {
+          return false;
+        }
+      }
+      if (c.canEat()) {
+        if (pellets >= game.getPelletCellCount() || game.getPelletCell(pellets++) != cell) {
+          return false;
+        }
+      }
+    }
+    return open == index.getOpenCellCount() && pellets == game.getPelletCellCount();
+  }
+
+  /**
+   * Returns the cell a ghost steps into from a cell, wrapping at the left and right edges, or
+   * NONE if it runs into a wall.
+   *
+   * @param game the game
+   * @param cell the cell, numbered row * columns + col
+   * @param dir the direction
+   * @return the cell entered, or NONE
+   */
+  private static int step(PacmanGame game, int cell, Direction dir) {
+    int cols = game.getNumColumns();
+    int row = cell / cols;
+    int col = cell % cols;
+    if (game.getCell(row, col).isWall()) {
+      return CorridorIndex.NONE;
+    }
+    switch (dir) {
+      case UP:
+        row--;
+        break;
+      case DOWN:
+        row++;
+        break;
+      case LEFT:
+        col = (col + cols - 1) % cols;
+        break;
+      default:
+        col = (col + 1) % cols;
+        break;
+    }
+    if (row < 0 || row >= game.getNumRows() || game.getCell(row, col).isWall()) {
+      return CorridorIndex.NONE;
+    }
+    return row * cols + col;
+  }
+
+  /**
+   * Returns true if the step from a cell in a direction is the only open one but the step back.
+   *
+   * @param game the game
+   * @param cell the cell
+   * @param dir the direction
+   * @return true if the cell is a corridor for the direction
+   */
+  private static boolean isCorridor(PacmanGame game, int cell, Direction dir) {
+    if (step(game, cell, dir) == CorridorIndex.NONE) {
+      return false;
+    }
+    for (Direction other : Direction.values()) {
+      boolean across = (other.ordinal() < 2) != (dir.ordinal() < 2);
+      if (across && step(game, cell, other) != CorridorIndex.NONE) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Walks from a cell in a direction until a wall, or for a run until a cell that is not a
+   * corridor, for at most the maze's length along the direction.
+   *
+   * @param game the game
+   * @param cell the cell
+   * @param dir the direction
+   * @param run whether to stop after the first cell that is not a corridor
+   * @return number of cells walked into
+   */
+  private static int walk(PacmanGame game, int cell, Direction dir, boolean run) {
+    boolean vertical = dir == Direction.UP || dir == Direction.DOWN;
+    int limit = vertical ? game.getNumRows() : game.getNumColumns();
+    int cells = 0;
+    int at = step(game, cell, dir);
+    while (at != CorridorIndex.NONE && cells < limit) {
+      cells++;
+      if (run && !isCorridor(game, at, dir)) {
+        break;
+      }
+      at = step(game, at, dir);
+    }
+    return cells;
+  }
+
+  /**
+   * Returns true if two cells are in the same row or column and no cell between them is a wall.
+   *
+   * @param game the game
+   * @param fromRow row of the first cell
+   * @param fromCol column of the first cell
+   * @param toRow row of the second cell
+   * @param toCol column of the second cell
+   * @return true if the cells see each other
+   */
+  private static boolean canSee(PacmanGame game, int fromRow, int fromCol, int toRow, int toCol) {
+    if (fromRow != toRow && fromCol != toCol) {
+      return false;
+    }
+    for (int row = Math.min(fromRow, toRow); row <= Math.max(fromRow, toRow); row++) {
+      for (int col = Math.min(fromCol, toCol); col <= Math.max(fromCol, toCol); col++) {
+        if (game.getCell(row, col).isWall()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
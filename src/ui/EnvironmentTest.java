@@ -0,0 +1,231 @@
+package ui;
+
+import api.Actor;
+import api.CellType;
+import api.MazeCell;
+import api.Mode;
+import api.PacmanGame;
+import api.StepResult;
+import com.pacman.env.Environment;
+import com.pacman.env.ObservationEncoder;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/**
+ * Test for the Environment facade. Checks that observations written into direct buffers describe
+ * the game, that byte and float observations agree, that an episode is reproducible from its seed,
+ * and that stepping allocates nothing, with the game's settings left at their defaults.
+ */
+public final class EnvironmentTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Frames per environment step. */
+  private static final int FRAMES_PER_STEP = 4;
+
+  /** Episodes played for the consistency checks. */
+  private static final int EPISODES = 10;
+
+  /** Steps measured for allocations in each round. */
+  private static final int MEASURED_STEPS = 100_000;
+
+  /** Rounds measured for allocations after a warm-up round; the fewest bytes allocated count. */
+  private static final int MEASURED_ROUNDS = 3;
+
+  /** Private constructor to prevent instantiation. */
+  private EnvironmentTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    boolean ok = checkObservations();
+    ok &= checkAllocations();
+    if (ok) {
+      Logger.info("PASS: environment");
+    } else {
+      Logger.error("FAIL: environment");
+    }
+  }
+
+  /**
+   * Plays episodes in two environments with the same seeds and actions, one observed as bytes and
+   * one as floats, and checks every observation against the game.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkObservations() {
+    Environment byteEnv = new Environment(RunGame.MAIN1, FRAME_RATE, FRAMES_PER_STEP);
+    Environment floatEnv = new Environment(RunGame.MAIN1, FRAME_RATE, FRAMES_PER_STEP);
+    int size = byteEnv.getObservationSize();
+    ByteBuffer bytes = ByteBuffer.allocateDirect(size);
+    FloatBuffer floats =
+        ByteBuffer.allocateDirect(size * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    byteEnv.setObservationBuffer(bytes);
+    floatEnv.setObservationBuffer(floats);
+
+    Random random = new Random(11);
+    long steps = 0;
+    for (int episode = 0; episode < EPISODES; episode++) {
+      long seed = random.nextLong();
+      byteEnv.reset(seed);
+      floatEnv.reset(seed);
+      int totalReward = 0;
+      String problem = check(byteEnv, bytes, floats);
+      while (problem == null && !byteEnv.isDone()) {
+        int action = random.nextInt(Environment.ACTION_COUNT);
+        StepResult byteResult = byteEnv.step(action);
+        StepResult floatResult = floatEnv.step(action);
+        totalReward += byteResult.getScoreDelta();
+        steps++;
+        if (byteResult.getScoreDelta() != floatResult.getScoreDelta()
+            || byteResult.isLevelOver() != floatResult.isLevelOver()) {
+          problem = "same seed and actions gave different results";
+        } else {
+          problem = check(byteEnv, bytes, floats);
+        }
+      }
+      if (problem == null && totalReward != byteEnv.getScore()) {
+        problem = "rewards do not add up to the score";
+      }
+      if (problem != null) {
+        Logger.error("  failed: episode " + episode + ": " + problem);
+        return false;
+      }
+    }
+    Logger.info(
+        "  ok: "
+            + EPISODES
+            + " episodes, "
+            + steps
+            + " steps, observations of "
+            + byteEnv.getObservationChannels()
+            + " x "
+            + byteEnv.getObservationRows()
+            + " x "
+            + byteEnv.getObservationColumns()
+            + " match the game");
+    return true;
+  }
+
+  /**
+   * Compares the observations with the state of the environment's game.
+   *
+   * @param env the environment observed into bytes
+   * @param bytes byte observation
+   * @param floats float observation of an identical game
+   * @return description of the first problem, or null if there is none
+   */
+  private static String check(Environment env, ByteBuffer bytes, FloatBuffer floats) {
+    PacmanGame game = env.getGame();
+    int rows = env.getObservationRows();
+    int cols = env.getObservationColumns();
+    for (int i = 0; i < env.getObservationSize(); i++) {
+      if (bytes.get(i) != floats.get(i)) {
+        return "byte and float observations differ at " + i;
+      }
+    }
+    int frightened = 0;
+    for (int e = 0; e < game.getEnemyCount(); e++) {
+      if (game.getEnemy(e).getMode() == Mode.FRIGHTENED) {
+        frightened++;
+      }
+    }
+    int frightenedCells = 0;
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < cols; col++) {
+        MazeCell cell = game.getCell(row, col);
+        if (value(bytes, env, ObservationEncoder.WALL_CHANNEL, row, col) != cell.isWall()
+            || value(bytes, env, ObservationEncoder.PELLET_CHANNEL, row, col)
+                != (cell.canEat() && cell.getType() == CellType.DOT)
+            || value(bytes, env, ObservationEncoder.ENERGIZER_CHANNEL, row, col)
+                != (cell.canEat() && cell.getType() == CellType.ENERGIZER)) {
+          return "maze channels differ at " + row + "," + col;
+        }
+        Actor player = game.getPlayer();
+        boolean playerHere = player.getCurrentRow() == row && player.getCurrentCol() == col;
+        if (value(bytes, env, ObservationEncoder.PLAYER_CHANNEL, row, col) != playerHere) {
+          return "player channel differs at " + row + "," + col;
+        }
+        for (int e = 0; e < game.getEnemyCount(); e++) {
+          Actor enemy = game.getEnemy(e);
+          boolean enemyHere = enemy.getCurrentRow() == row && enemy.getCurrentCol() == col;
+          if (value(bytes, env, ObservationEncoder.FIRST_ENEMY_CHANNEL + e, row, col)
+              != enemyHere) {
+            return "enemy " + e + " channel differs at " + row + "," + col;
+          }
+        }
+        if (value(bytes, env, ObservationEncoder.FRIGHTENED_CHANNEL, row, col)) {
+          frightenedCells++;
+        }
+      }
+    }
+    if ((frightened == 0) != (frightenedCells == 0) || frightenedCells > frightened) {
+      return "frightened channel does not match the ghosts' modes";
+    }
+    return null;
+  }
+
+  /**
+   * Reads one value of a byte observation.
+   *
+   * @param bytes byte observation
+   * @param env environment, for the layout
+   * @param channel channel index
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return true if the value is 1
+   */
+  private static boolean value(ByteBuffer bytes, Environment env, int channel, int row, int col) {
+    int rows = env.getObservationRows();
+    int cols = env.getObservationColumns();
+    return bytes.get((channel * rows + row) * cols + col) == 1;
+  }
+
+  /**
+   * Measures the bytes allocated by the calling thread while stepping, keeping the least of
+   * several rounds, since the JIT now and then allocates on the thread it compiles for.
+   *
+   * @return true if stepping allocates nothing
+   */
+  private static boolean checkAllocations() {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    Environment env = new Environment(RunGame.MAIN1, FRAME_RATE, FRAMES_PER_STEP);
+    env.setObservationBuffer(ByteBuffer.allocateDirect(env.getObservationSize()));
+    Random random = new Random(3);
+    int[] actions = new int[MEASURED_STEPS];
+    for (int i = 0; i < actions.length; i++) {
+      actions[i] = random.nextInt(Environment.ACTION_COUNT);
+    }
+
+    // warm up, then measure; resets are not counted
+    long bytes = Long.MAX_VALUE;
+    for (int round = 0; round <= MEASURED_ROUNDS; round++) {
+      long roundBytes = 0;
+      for (int i = 0; i < actions.length; ) {
+        if (env.isDone()) {
+          env.reset(i);
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (; i < actions.length && !env.isDone(); i++) {
+          env.step(actions[i]);
+        }
+        roundBytes += threads.getThreadAllocatedBytes(threadId) - before;
+      }
+      if (round > 0) {
+        bytes = Math.min(bytes, roundBytes);
+      }
+    }
+    Logger.info("  " + MEASURED_STEPS + " steps allocated at least " + bytes + " bytes");
+    if (bytes > 0) {
+      Logger.error("  failed: stepping allocates");
+      return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,233 @@
+package ui;
+
+import api.Direction;
+import api.GameEvent;
+import api.GameEventRing;
+import api.GameEventType;
+import api.PacmanGame;
+import com.pacman.ghost.ActorImpl;
+import java.util.Random;
+
+/**
+ * Test for the game event stream. Plays a scripted session with two subscribers reading at
+ * different paces and checks that the events account for the score, the lives lost and the end of
+ * the level. Then checks lapping on a small ring, and a consumer thread reading while the producer
+ * publishes.
+ */
+public final class EventStreamTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Maximum number of frames in the scripted session. */
+  private static final int MAX_FRAMES = 20000;
+
+  /** Frames between polls of the slow subscriber. */
+  private static final int SLOW_POLL_INTERVAL = 50;
+
+  /** Number of events published for the threaded check. */
+  private static final int THREADED_EVENTS = 2_000_000;
+
+  /** Lives at the start of a game. */
+  private static final int INITIAL_LIVES = 3;
+
+  /** Private constructor to prevent instantiation. */
+  private EventStreamTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = checkGame();
+    ok &= checkLapping();
+    ok &= checkThreaded();
+    if (ok) {
+      Logger.info("PASS: event stream");
+    } else {
+      Logger.error("FAIL: event stream");
+    }
+  }
+
+  /**
+   * Plays a scripted session and checks the events seen by a fast and a slow subscriber.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkGame() {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 99L);
+    game.setPlayerDeathDelay(0);
+    GameEventRing ring = game.getEvents();
+    GameEventRing.Subscriber fast = ring.subscribe();
+    GameEventRing.Subscriber slow = ring.subscribe();
+    GameEvent fastEvent = new GameEvent();
+    GameEvent slowEvent = new GameEvent();
+
+    Random random = new Random(3);
+    int[] fastCounts = new int[GameEventType.values().length];
+    int points = 0;
+    int slowSeen = 0;
+    int lastFrame = -1;
+    boolean ordered = true;
+    for (int frame = 0; frame < MAX_FRAMES && game.getLives() > 0 && !game.levelOver(); frame++) {
+      if (random.nextInt(8) == 0) {
+        game.turnPlayer(Direction.values()[random.nextInt(4)]);
+      }
+      game.updateAll();
+      while (fast.poll(fastEvent)) {
+        fastCounts[fastEvent.getType().ordinal()]++;
+        if (fastEvent.getPoints() > 0) {
+          points += fastEvent.getPoints();
+        }
+        ordered &= fastEvent.getFrame() >= lastFrame;
+        lastFrame = fastEvent.getFrame();
+      }
+      if (frame % SLOW_POLL_INTERVAL == 0) {
+        while (slow.poll(slowEvent)) {
+          slowSeen++;
+        }
+      }
+    }
+    while (slow.poll(slowEvent)) {
+      slowSeen++;
+    }
+
+    int fastSeen = 0;
+    for (int count : fastCounts) {
+      fastSeen += count;
+    }
+    Logger.info(
+        "Frames "
+            + game.getFrameCount()
+            + ", score "
+            + game.getScore()
+            + ", lives "
+            + game.getLives()
+            + ", events "
+            + fastSeen
+            + " (pellets "
+            + fastCounts[GameEventType.PELLET_EATEN.ordinal()]
+            + ", energizers "
+            + fastCounts[GameEventType.ENERGIZER_EATEN.ordinal()]
+            + ", ghosts "
+            + fastCounts[GameEventType.GHOST_EATEN.ordinal()]
+            + ", deaths "
+            + fastCounts[GameEventType.PLAYER_DEATH.ordinal()]
+            + ", global modes "
+            + fastCounts[GameEventType.GLOBAL_MODE_CHANGE.ordinal()]
+            + ", ghost modes "
+            + fastCounts[GameEventType.GHOST_MODE_CHANGE.ordinal()]
+            + ")");
+
+    boolean ok = true;
+    ok &= check("events in frame order", ordered);
+    ok &= check("points match score", points == game.getScore());
+    ok &= check(
+        "deaths match lives",
+        fastCounts[GameEventType.PLAYER_DEATH.ordinal()] == INITIAL_LIVES - game.getLives());
+    ok &= check(
+        "level over published once if over",
+        fastCounts[GameEventType.LEVEL_OVER.ordinal()] == (game.levelOver() ? 1 : 0));
+    ok &= check("subscribers agree", slowSeen == fastSeen);
+    ok &= check("nothing lost", fast.getLostCount() == 0 && slow.getLostCount() == 0);
+    return ok;
+  }
+
+  /**
+   * Checks that a subscriber lapped by the producer skips to the oldest retained event and counts
+   * the events it lost.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkLapping() {
+    GameEventRing ring = new GameEventRing(8);
+    GameEventRing.Subscriber sub = ring.subscribe();
+    for (int i = 0; i < 20; i++) {
+      ring.publish(GameEventType.PELLET_EATEN, i, 0, -1, 0, 0, 10, 10 * i, 3, null);
+    }
+    GameEvent event = new GameEvent();
+    int firstFrame = -1;
+    int seen = 0;
+    while (sub.poll(event)) {
+      if (seen == 0) {
+        firstFrame = event.getFrame();
+      }
+      seen++;
+    }
+    boolean ok = true;
+    ok &= check("lapped subscriber keeps the newest events", seen == 8 && firstFrame == 12);
+    ok &= check("lapped subscriber counts lost events", sub.getLostCount() == 12);
+    return ok;
+  }
+
+  /**
+   * Publishes a long run of events while another thread reads them, and checks that everything the
+   * consumer accepts is consistent and in order.
+   *
+   * @return true if the check passes
+   * @throws InterruptedException if interrupted while waiting for the consumer
+   */
+  private static boolean checkThreaded() throws InterruptedException {
+    GameEventRing ring = new GameEventRing(1024);
+    GameEventRing.Subscriber sub = ring.subscribe();
+    long[] result = new long[3]; // seen, torn or out of order, lost
+    Thread consumer =
+        new Thread(
+            () -> {
+              GameEvent event = new GameEvent();
+              int last = -1;
+              long seen = 0;
+              long bad = 0;
+              while (last < THREADED_EVENTS - 1) {
+                if (sub.poll(event)) {
+                  int frame = event.getFrame();
+                  // each event carries its frame number in several fields
+                  if (frame <= last
+                      || event.getScore() != frame
+                      || event.getRow() != (frame & 0xff)) {
+                    bad++;
+                  }
+                  last = frame;
+                  seen++;
+                } else {
+                  Thread.onSpinWait();
+                }
+              }
+              result[0] = seen;
+              result[1] = bad;
+              result[2] = sub.getLostCount();
+            });
+    consumer.start();
+    for (int i = 0; i < THREADED_EVENTS; i++) {
+      ring.publish(GameEventType.PELLET_EATEN, i, 0, -1, i & 0xff, 0, 10, i, 3, null);
+    }
+    consumer.join();
+    Logger.info(
+        "Threaded: "
+            + result[0]
+            + " events read, "
+            + result[2]
+            + " lost to lapping, "
+            + result[1]
+            + " inconsistent");
+    boolean ok = true;
+    ok &= check("threaded reads are consistent", result[1] == 0);
+    ok &= check("threaded reads account for all events", result[0] + result[2] == THREADED_EVENTS);
+    return ok;
+  }
+
+  /**
+   * Logs the outcome of a single check.
+   *
+   * @param name description of the check
+   * @param passed whether the check passed
+   * @return passed
+   */
+  private static boolean check(String name, boolean passed) {
+    if (passed) {
+      Logger.info("  ok: " + name);
+    } else {
+      Logger.error("  failed: " + name);
+    }
+    return passed;
+  }
+}
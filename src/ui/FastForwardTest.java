@@ -0,0 +1,429 @@
+package ui;
+
+import api.Actor;
+import api.Descriptor;
+import api.Direction;
+import api.GameEvent;
+import api.GameEventRing;
+import api.Location;
+import api.Mode;
+import api.PacmanGame;
+import com.pacman.ghost.ActorImpl;
+import java.util.Random;
+
+/**
+ * Differential test and benchmark for PacmanGame.fastForward(). Plays two games with the same
+ * seed and the same scripted inputs, one fast-forwarding between inputs and the other calling
+ * updateAll() frame by frame, and checks after every input that they have the same state, down to
+ * the bits of every coordinate, and published the same events. Runs cover the test mazes and the
+ * main maze, one and several players, and runs without any input. Checks that a game built with
+ * the default settings has frames to skip, and that an actor without its own moveStraight() is
+ * moved frame by frame. Then compares the speed of both ways of playing.
+ */
+public final class FastForwardTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Games played one after the other in each differential run, restarting the level. */
+  private static final int GAMES = 8;
+
+  /** Most frames per game. */
+  private static final int FRAMES = 20_000;
+
+  /** Longest stretch between two inputs. */
+  private static final int MAX_STRETCH = 120;
+
+  /** Frames timed in the benchmark. */
+  private static final int BENCHMARK_FRAMES = 200_000;
+
+  /** Frames between two inputs in the benchmark. */
+  private static final int BENCHMARK_STRETCH = 100;
+
+  /** Frames moved by Actor's own moveStraight(). */
+  private static final int STEPS = 7;
+
+  /** Private constructor to prevent instantiation. */
+  private FastForwardTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    // runs as games are built by default, since fast-forwarding only pays off there
+    boolean ok = checkDefaultSkips();
+    ok &= checkDifferential("TEST0", 1, MAX_STRETCH);
+    ok &= checkDifferential("TEST1", 1, MAX_STRETCH);
+    ok &= checkDifferential("TEST2", 1, MAX_STRETCH);
+    ok &= checkDifferential("MAIN1", 1, MAX_STRETCH);
+    ok &= checkDifferential("MAIN1", 1, 8);
+    ok &= checkDifferential("MAIN1", 3, MAX_STRETCH);
+    ok &= checkDifferential("MAIN1", 1, 0);
+    ok &= checkArguments();
+    ok &= checkDefaultMoveStraight();
+    benchmark("TEST0");
+    benchmark("MAIN1");
+    if (ok) {
+      Logger.info("PASS: fast-forward matches frame-by-frame play");
+    } else {
+      Logger.error("FAIL: fast-forward");
+    }
+  }
+
+  /**
+   * Plays a fast-forwarded game and a frame-by-frame game with the same seed and inputs, comparing
+   * them after every stretch between inputs. Each player gets a random turn at the start of each
+   * stretch, whose length is random up to the given maximum; a maximum of 0 gives no input at all,
+   * with each game played in one stretch.
+   *
+   * @param mazeId identifier of the maze, as for RunGame.getMaze()
+   * @param players number of players
+   * @param maxStretch longest stretch between inputs, or 0 for none
+   * @return true if the games agree after every stretch
+   */
+  private static boolean checkDifferential(String mazeId, int players, int maxStretch) {
+    String[] rows = RunGame.getMaze(mazeId);
+    PacmanGame fast = new PacmanGame(rows, FRAME_RATE, 1, players);
+    PacmanGame slow = new PacmanGame(rows, FRAME_RATE, 1, players);
+    fast.setPlayerDeathDelay(0);
+    slow.setPlayerDeathDelay(0);
+    GameEventRing.Subscriber fastEvents = fast.getEvents().subscribe();
+    GameEventRing.Subscriber slowEvents = slow.getEvents().subscribe();
+    Random random = new Random(mazeId.hashCode() + players * 31 + maxStretch);
+    Direction[] directions = Direction.values();
+    int stretches = 0;
+    long frames = 0;
+    long nanos = 0;
+    for (int game = 0; game < GAMES; game++) {
+      if (game > 0) {
+        fast.restartLevel(game + 1);
+        slow.restartLevel(game + 1);
+      }
+      while (!slow.levelOver() && slow.getFrameCount() < FRAMES) {
+        int stretch = FRAMES;
+        if (maxStretch > 0) {
+          stretch = 1 + random.nextInt(maxStretch);
+          for (int p = 0; p < players; p++) {
+            Direction dir = directions[random.nextInt(directions.length)];
+            fast.turnPlayer(p, dir);
+            slow.turnPlayer(p, dir);
+          }
+        }
+        long start = System.nanoTime();
+        int advanced = fast.fastForward(stretch);
+        nanos += System.nanoTime() - start;
+        int played = 0;
+        while (played < stretch && !slow.levelOver()) {
+          slow.updateAll();
+          played++;
+        }
+        frames += played;
+        stretches++;
+        String mismatch = advanced == played ? compare(fast, slow) : "advanced " + advanced;
+        if (mismatch == null) {
+          mismatch = compareEvents(fastEvents, slowEvents);
+        }
+        if (mismatch != null) {
+          Logger.error(
+              String.format(
+                  "  failed: %s, %d players, game %d, frame %d: %s",
+                  mazeId, players, game, slow.getFrameCount(), mismatch));
+          return false;
+        }
+      }
+    }
+    Logger.info(
+        String.format(
+            "  ok: %s, %d players, %s: %d frames in %d stretches, %.0f ns per frame",
+            mazeId,
+            players,
+            maxStretch > 0 ? "stretches up to " + maxStretch : "no input",
+            frames,
+            stretches,
+            (double) nanos / frames));
+    return true;
+  }
+
+  /**
+   * Compares the state of two games with the same number of players.
+   *
+   * @param a first game
+   * @param b second game
+   * @return a description of the first difference, or null if there is none
+   */
+  private static String compare(PacmanGame a, PacmanGame b) {
+    if (a.getFrameCount() != b.getFrameCount()
+        || a.levelOver() != b.levelOver()
+        || a.getGlobalMode() != b.getGlobalMode()) {
+      return "frame count, level or global mode differs";
+    }
+    for (int row = 0; row < a.getNumRows(); row++) {
+      for (int col = 0; col < a.getNumColumns(); col++) {
+        if (a.getCell(row, col).canEat() != b.getCell(row, col).canEat()) {
+          return "pellet at " + row + ", " + col + " differs";
+        }
+      }
+    }
+    for (int p = 0; p < a.getPlayerCount(); p++) {
+      if (a.getScore(p) != b.getScore(p)
+          || a.getLives(p) != b.getLives(p)
+          || a.isPlayerDead(p) != b.isPlayerDead(p)
+          || !sameActor(a.getPlayer(p), b.getPlayer(p))) {
+        return "player " + p + " differs";
+      }
+    }
+    for (int i = 0; i < a.getEnemyCount(); i++) {
+      if (!sameActor(a.getEnemy(i), b.getEnemy(i)) || a.getEnemyTarget(i) != b.getEnemyTarget(i)) {
+        return "enemy " + i + " differs";
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if two actors have the same coordinates, bit for bit, direction and mode.
+   *
+   * @param a first actor
+   * @param b second actor
+   * @return true if they are the same
+   */
+  private static boolean sameActor(Actor a, Actor b) {
+    return Double.doubleToRawLongBits(a.getRowExact())
+            == Double.doubleToRawLongBits(b.getRowExact())
+        && Double.doubleToRawLongBits(a.getColExact())
+            == Double.doubleToRawLongBits(b.getColExact())
+        && a.getCurrentDirection() == b.getCurrentDirection()
+        && a.getMode() == b.getMode()
+        && a.getCurrentLocation().equals(b.getCurrentLocation());
+  }
+
+  /**
+   * Reads the events both games published since the last call and compares them.
+   *
+   * @param a subscriber to the first game's events
+   * @param b subscriber to the second game's events
+   * @return a description of the first difference, or null if there is none
+   */
+  private static String compareEvents(GameEventRing.Subscriber a, GameEventRing.Subscriber b) {
+    GameEvent x = new GameEvent();
+    GameEvent y = new GameEvent();
+    while (a.poll(x)) {
+      if (!b.poll(y)) {
+        return "extra event " + x;
+      }
+      if (!x.toString().equals(y.toString())) {
+        return "event " + x + " instead of " + y;
+      }
+    }
+    if (b.poll(y)) {
+      return "missing event " + y;
+    }
+    if (a.getLostCount() != 0 || b.getLostCount() != 0) {
+      return "events were lost";
+    }
+    return null;
+  }
+
+  /**
+   * Plays a game on the main maze built with the default settings, frame by frame, and checks
+   * that it has frames where the player and every enemy report frames straight ahead, which are
+   * the frames fastForward() can skip. No actor reports any while the ghosts' movement log is on.
+   *
+   * @return true if the game has frames to skip
+   */
+  private static boolean checkDefaultSkips() {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE);
+    int skippable = 0;
+    int played = 0;
+    for (; played < FRAMES && !game.levelOver(); played++) {
+      int straight = game.getPlayer().getStraightFrames(MAX_STRETCH);
+      for (Actor enemy : game.getEnemies()) {
+        straight = Math.min(straight, enemy.getStraightFrames(straight));
+      }
+      skippable += straight > 0 ? 1 : 0;
+      game.updateAll();
+    }
+    if (skippable == 0) {
+      Logger.error("  failed: a default MAIN1 game has no frames where every actor moves straight");
+      return false;
+    }
+    Logger.info(
+        "  ok: a default MAIN1 game has " + skippable + " of " + played + " frames to skip from");
+    return true;
+  }
+
+  /**
+   * Checks that fast-forwarding needs at least one frame.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkArguments() {
+    try {
+      new PacmanGame(RunGame.MAIN1, FRAME_RATE, 0).fastForward(0);
+      Logger.error("  failed: fast-forwarded by no frames");
+      return false;
+    } catch (IllegalArgumentException expected) {
+      return true;
+    }
+  }
+
+  /**
+   * Checks that Actor's own moveStraight() makes one call to update() per frame.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkDefaultMoveStraight() {
+    StepCounter moved = new StepCounter();
+    StepCounter updated = new StepCounter();
+    moved.moveStraight(STEPS);
+    for (int i = 0; i < STEPS; i++) {
+      updated.update(null);
+    }
+    if (moved.updates != STEPS || moved.getColExact() != updated.getColExact()) {
+      Logger.error("  failed: moveStraight() made " + moved.updates + " updates, not " + STEPS);
+      return false;
+    }
+    Logger.info("  ok: an actor without its own moveStraight() is moved frame by frame");
+    return true;
+  }
+
+  /**
+   * Times a scripted run on a maze, which turns the player at random every BENCHMARK_STRETCH
+   * frames and restarts the level when it ends, played with updateAll() and with fastForward().
+   *
+   * @param mazeId identifier of the maze, as for RunGame.getMaze()
+   */
+  private static void benchmark(String mazeId) {
+    double slowNanos = 0;
+    double fastNanos = 0;
+    for (int round = 0; round < 2; round++) {
+      slowNanos = time(mazeId, false);
+      fastNanos = time(mazeId, true);
+    }
+    Logger.info(
+        String.format(
+            "  %s: updateAll() %.0f ns per frame, fastForward() %.0f ns per frame, %.1fx",
+            mazeId, slowNanos, fastNanos, slowNanos / fastNanos));
+  }
+
+  /**
+   * Plays BENCHMARK_FRAMES frames of a scripted run.
+   *
+   * @param mazeId identifier of the maze
+   * @param fast whether to fast-forward between inputs
+   * @return nanoseconds per frame
+   */
+  private static double time(String mazeId, boolean fast) {
+    PacmanGame game = new PacmanGame(RunGame.getMaze(mazeId), FRAME_RATE, 1);
+    game.setPlayerDeathDelay(0);
+    Random random = new Random(4);
+    Direction[] directions = Direction.values();
+    long start = System.nanoTime();
+    for (int frames = 0; frames < BENCHMARK_FRAMES; frames += BENCHMARK_STRETCH) {
+      if (game.levelOver()) {
+        game.restartLevel(frames);
+      }
+      game.turnPlayer(directions[random.nextInt(directions.length)]);
+      if (fast) {
+        game.fastForward(BENCHMARK_STRETCH);
+      } else {
+        for (int i = 0; i < BENCHMARK_STRETCH && !game.levelOver(); i++) {
+          game.updateAll();
+        }
+      }
+    }
+    return (double) (System.nanoTime() - start) / BENCHMARK_FRAMES;
+  }
+
+  /** Actor that only counts calls to update(), moving a tenth of a cell right on each. */
+  private static final class StepCounter implements Actor {
+    /** Distance moved per update. */
+    private static final double INCREMENT = 0.1;
+
+    /** Number of calls to update(). */
+    private int updates;
+
+    /** Column coordinate. */
+    private double col = INCREMENT / 2;
+
+    @Override
+    public double getBaseIncrement() {
+      return INCREMENT;
+    }
+
+    @Override
+    public double getColExact() {
+      return col;
+    }
+
+    @Override
+    public double getCurrentIncrement() {
+      return INCREMENT;
+    }
+
+    @Override
+    public Location getCurrentLocation() {
+      return new Location(0, (int) col);
+    }
+
+    @Override
+    public Direction getCurrentDirection() {
+      return Direction.RIGHT;
+    }
+
+    @Override
+    public Direction getHomeDirection() {
+      return Direction.RIGHT;
+    }
+
+    @Override
+    public Location getHomeLocation() {
+      return new Location(0, 0);
+    }
+
+    @Override
+    public Mode getMode() {
+      return null;
+    }
+
+    @Override
+    public double getRowExact() {
+      return 0;
+    }
+
+    @Override
+    public void reset() {
+      col = INCREMENT / 2;
+    }
+
+    @Override
+    public void setBaseIncrement(double increment) {
+      // fixed speed
+    }
+
+    @Override
+    public void setColExact(double c) {
+      col = c;
+    }
+
+    @Override
+    public void setDirection(Direction dir) {
+      // always moves right
+    }
+
+    @Override
+    public void setMode(Mode mode, Descriptor desc) {
+      // no modes
+    }
+
+    @Override
+    public void setRowExact(double r) {
+      // stays on row 0
+    }
+
+    @Override
+    public void update(Descriptor desc) {
+      updates++;
+      col += INCREMENT;
+    }
+  }
+}
@@ -0,0 +1,245 @@
+package ui;
+
+import api.Actor;
+import api.Direction;
+import api.FixedPoint;
+import api.GhostSwarm;
+import api.MazeTemplate;
+import api.Mode;
+import api.PacmanGame;
+import com.pacman.ghost.ActorImpl;
+import java.util.Random;
+
+/**
+ * Determinism test for the fixed-point movement of GhostSwarm. Plays millions of frames with
+ * random turns, restarting whenever the level ends, and folds every actor's coordinates, direction
+ * and mode into a checksum after each frame. The run is repeated on a second swarm and both
+ * checksums must equal a recorded value, so any change in movement, on any platform, shows up.
+ * Along the way it checks that the ghosts and the player never enter walls and that moving ghosts
+ * stay exactly on the centerline of their row or column. Then plays a PacmanGame built with
+ * fixed-point actors twice, with the same checks and the coordinates checked to be whole units.
+ */
+public final class FixedPointTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Ghosts in the swarm. */
+  private static final int GHOSTS = 8;
+
+  /** Frames in each run. */
+  private static final int FRAMES = 2_000_000;
+
+  /** Frames in each run of a PacmanGame with fixed-point actors. */
+  private static final int GAME_FRAMES = 200_000;
+
+  /** Checksum of a run, recorded from the first run of this test. */
+  private static final long EXPECTED_CHECKSUM = 0xc456442f0dee3251L;
+
+  /** Private constructor to prevent instantiation. */
+  private FixedPointTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = checkConversions();
+    String[] rows = RunGame.getMaze("MAIN1");
+    long start = System.nanoTime();
+    long first = run(new GhostSwarm(rows, FRAME_RATE, GHOSTS, 1), rows);
+    double seconds = (System.nanoTime() - start) / 1e9;
+    GhostSwarm second = new GhostSwarm(rows, FRAME_RATE, GHOSTS, 1);
+    second.setParallel(true);
+    long again = run(second, rows);
+    Logger.info(
+        String.format(
+            "  %d frames in %.1f s, checksums %016x and %016x", FRAMES, seconds, first, again));
+    if (first != again) {
+      Logger.error("  failed: two runs of the same game differ");
+      ok = false;
+    } else if (first != EXPECTED_CHECKSUM) {
+      Logger.error(String.format("  failed: expected checksum %016x", EXPECTED_CHECKSUM));
+      ok = false;
+    }
+    ok &= checkGame(rows);
+    if (ok) {
+      Logger.info("PASS: fixed-point movement is deterministic");
+    } else {
+      Logger.error("FAIL: fixed-point movement");
+    }
+  }
+
+  /**
+   * Checks the conversions between fixed-point coordinates and cells.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkConversions() {
+    for (int cell = 0; cell < 100; cell++) {
+      int center = FixedPoint.center(cell);
+      if (FixedPoint.cell(center) != cell
+          || !FixedPoint.isCenter(center)
+          || FixedPoint.isCenter(center + 1)
+          || FixedPoint.toExact(center) != cell + 0.5
+          || FixedPoint.cell(center + FixedPoint.HALF - 1) != cell
+          || FixedPoint.cell(center + FixedPoint.HALF) != cell + 1) {
+        Logger.error("  failed: conversions of cell " + cell);
+        return false;
+      }
+    }
+    if (FixedPoint.fromIncrement(0.08) != 20 || FixedPoint.fromIncrement(0.5) != FixedPoint.HALF) {
+      Logger.error("  failed: conversions of increments");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Plays FRAMES frames of a swarm and checks it after each.
+   *
+   * @param swarm the swarm
+   * @param rows its maze
+   * @return checksum of the run, or 0 if a check failed
+   */
+  private static long run(GhostSwarm swarm, String[] rows) {
+    Random random = new Random(3);
+    Direction[] directions = Direction.values();
+    long checksum = 1;
+    long seed = 1;
+    for (int frame = 0; frame < FRAMES; frame++) {
+      if (swarm.levelOver()) {
+        seed += 1;
+        swarm.reset(seed);
+      }
+      if (random.nextInt(8) == 0) {
+        swarm.turnPlayer(directions[random.nextInt(directions.length)]);
+      }
+      swarm.updateAll();
+
+      int row = swarm.getPlayerRowFixed();
+      int col = swarm.getPlayerColFixed();
+      if (wall(rows, row, col)) {
+        Logger.error("  failed: frame " + frame + ": the player is in a wall");
+        return 0;
+      }
+      checksum = fold(checksum, row);
+      checksum = fold(checksum, col);
+      checksum = fold(checksum, swarm.getPlayerDirection().ordinal());
+      checksum = fold(checksum, swarm.getScore());
+      for (int k = 0; k < GHOSTS; k++) {
+        row = swarm.getGhostRowFixed(k);
+        col = swarm.getGhostColFixed(k);
+        Direction dir = swarm.getGhostDirection(k);
+        boolean centered =
+            dir == Direction.LEFT || dir == Direction.RIGHT
+                ? FixedPoint.isCenter(row)
+                : FixedPoint.isCenter(col);
+        if (wall(rows, row, col) || !centered && swarm.getGhostMode(k) != Mode.INACTIVE) {
+          Logger.error("  failed: frame " + frame + ": ghost " + k + " left its corridor");
+          return 0;
+        }
+        checksum = fold(checksum, row);
+        checksum = fold(checksum, col);
+        checksum = fold(checksum, dir.ordinal());
+        checksum = fold(checksum, swarm.getGhostMode(k).ordinal());
+      }
+    }
+    return checksum;
+  }
+
+  /**
+   * Plays a PacmanGame with fixed-point actors twice with the same turns, restarting with a new
+   * seed whenever the level ends, and checks both runs after every frame.
+   *
+   * @param rows the maze
+   * @return true if the checks pass and both runs agree
+   */
+  private static boolean checkGame(String[] rows) {
+    long first = runGame(rows);
+    long again = runGame(rows);
+    if (first == 0 || first != again) {
+      Logger.error("  failed: two runs of a game with fixed-point actors differ");
+      return false;
+    }
+    Logger.info(
+        String.format(
+            "  ok: %d frames of a game with fixed-point actors, checksum %016x",
+            GAME_FRAMES, first));
+    return true;
+  }
+
+  /**
+   * Plays GAME_FRAMES frames of a PacmanGame with fixed-point actors and checks it after each.
+   *
+   * @param rows its maze
+   * @return checksum of the run, or 0 if a check failed
+   */
+  private static long runGame(String[] rows) {
+    PacmanGame game = new PacmanGame(MazeTemplate.of(rows), FRAME_RATE, 1, 1, true);
+    game.setPlayerDeathDelay(0);
+    Random random = new Random(5);
+    Direction[] directions = Direction.values();
+    long checksum = 1;
+    int levels = 0;
+    for (int frame = 0; frame < GAME_FRAMES; frame++) {
+      if (game.levelOver()) {
+        levels += 1;
+        game.restartLevel(levels);
+      }
+      if (random.nextInt(8) == 0) {
+        game.turnPlayer(directions[random.nextInt(directions.length)]);
+      }
+      game.updateAll();
+
+      for (int i = -1; i < game.getEnemyCount(); i++) {
+        Actor a = i < 0 ? game.getPlayer() : game.getEnemy(i);
+        double rowUnits = a.getRowExact() * FixedPoint.ONE;
+        double colUnits = a.getColExact() * FixedPoint.ONE;
+        int row = (int) rowUnits;
+        int col = (int) colUnits;
+        Direction dir = a.getCurrentDirection();
+        boolean centered =
+            i < 0
+                || a.getMode() == Mode.INACTIVE
+                || (dir == Direction.LEFT || dir == Direction.RIGHT
+                    ? FixedPoint.isCenter(row)
+                    : FixedPoint.isCenter(col));
+        if (row != rowUnits || col != colUnits || wall(rows, row, col) || !centered) {
+          Logger.error("  failed: frame " + frame + ": actor " + i + " left its corridor");
+          return 0;
+        }
+        checksum = fold(checksum, row);
+        checksum = fold(checksum, col);
+      }
+      checksum = fold(checksum, game.getScore());
+    }
+    if (!game.isFixedPoint() || levels == 0) {
+      Logger.error("  failed: the game with fixed-point actors never ended a level");
+      return 0;
+    }
+    return checksum;
+  }
+
+  /**
+   * Returns true if the cell holding the given coordinates is a wall.
+   *
+   * @param rows the maze
+   * @param row fixed-point row
+   * @param col fixed-point column
+   * @return true if it is a wall
+   */
+  private static boolean wall(String[] rows, int row, int col) {
+    return rows[FixedPoint.cell(row)].charAt(FixedPoint.cell(col)) == '#';
+  }
+
+  /**
+   * Folds a value into a checksum.
+   *
+   * @param checksum the checksum so far
+   * @param value the value
+   * @return the new checksum
+   */
+  private static long fold(long checksum, int value) {
+    return checksum * 0x100000001B3L ^ value;
+  }
+}
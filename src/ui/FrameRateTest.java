@@ -0,0 +1,259 @@
+package ui;
+
+import api.Actor;
+import api.Direction;
+import api.GameEvent;
+import api.GameEventRing;
+import api.GameEventType;
+import api.Mode;
+import api.PacmanGame;
+import com.pacman.ghost.ActorImpl;
+import java.util.Random;
+
+/**
+ * Test for changing a game's frame rate while it is played. Checks that the actors keep their
+ * speeds in cells per second, frightened enemies included, and the running timers the time they
+ * have left; that the global modes switch after the same number of seconds when the frame rate
+ * changes every second as when it does not; and that an invalid frame rate is rejected. Then plays
+ * at a coarse frame rate while the enemies are far from the player and a fine one when they come
+ * near, and counts the frames this saves.
+ */
+public final class FrameRateTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Coarse frame rate, the lowest at which the player's movement stays exact. */
+  private static final int COARSE_FRAME_RATE = 10;
+
+  /** Seconds of the global modes on the first level, as in PacmanGame. */
+  private static final int[] MODE_TIMES = {7, 20, 7, 20, 5, 20, 5};
+
+  /** Largest relative difference allowed between speeds in cells per second. */
+  private static final double TOLERANCE = 1e-12;
+
+  /** Cells between the player and the nearest enemy below which the adaptive run plays finely. */
+  private static final int NEAR_CELLS = 6;
+
+  /** Seconds of play in the adaptive run. */
+  private static final int ADAPTIVE_SECONDS = 20_000;
+
+  /** Most frames played looking for an energizer. */
+  private static final int FRAMES = 100_000;
+
+  /** Private constructor to prevent instantiation. */
+  private FrameRateTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = checkSpeedsAndTimers();
+    ok &= checkModeTimes();
+    ok &= checkArguments();
+    ok &= checkAdaptive();
+    if (ok) {
+      Logger.info("PASS: frame rate changes");
+    } else {
+      Logger.error("FAIL: frame rate changes");
+    }
+  }
+
+  /**
+   * Plays until the enemies are frightened, then lowers the frame rate and checks that every
+   * actor keeps its speed in cells per second and the frightened time its length in seconds, to
+   * within half a frame.
+   *
+   * @return true if the speeds and the frightened time are kept
+   */
+  private static boolean checkSpeedsAndTimers() {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 2);
+    game.setPlayerDeathDelay(0);
+    Random random = new Random(2);
+    int frame = 0;
+    while (frame < FRAMES && !anyFrightened(game)) {
+      if (game.levelOver()) {
+        game.restartLevel(frame);
+      }
+      if (random.nextInt(8) == 0) {
+        game.turnPlayer(Direction.values()[random.nextInt(4)]);
+      }
+      game.updateAll();
+      frame++;
+    }
+    if (!anyFrightened(game)) {
+      Logger.error("  failed: no enemy was frightened in " + frame + " frames");
+      return false;
+    }
+
+    int newFrameRate = 30;
+    double[] speeds = new double[game.getEnemyCount() + 1];
+    speeds[0] = game.getPlayer().getCurrentIncrement() * FRAME_RATE;
+    for (int i = 0; i < game.getEnemyCount(); i++) {
+      speeds[i + 1] = game.getEnemy(i).getCurrentIncrement() * FRAME_RATE;
+    }
+    double frightenedSeconds = (double) game.getFrightenedCount() / FRAME_RATE;
+    game.setFrameRate(newFrameRate);
+
+    if (game.getFrameRate() != newFrameRate
+        || !sameSpeed(speeds[0], game.getPlayer().getCurrentIncrement() * newFrameRate)) {
+      Logger.error("  failed: the player's speed changed with the frame rate");
+      return false;
+    }
+    for (int i = 0; i < game.getEnemyCount(); i++) {
+      Actor a = game.getEnemy(i);
+      if (!sameSpeed(speeds[i + 1], a.getCurrentIncrement() * newFrameRate)) {
+        Logger.error("  failed: the speed of enemy " + i + " in mode " + a.getMode() + " changed");
+        return false;
+      }
+    }
+    double left = (double) game.getFrightenedCount() / newFrameRate;
+    if (Math.abs(left - frightenedSeconds) > 0.5 / newFrameRate) {
+      Logger.error(
+          String.format(
+              "  failed: %.3f s of frightened time became %.3f s", frightenedSeconds, left));
+      return false;
+    }
+    Logger.info(
+        String.format(
+            "  ok: frame %d, speeds kept at %d fps, %.3f s frightened left", frame, newFrameRate,
+            left));
+    return true;
+  }
+
+  /**
+   * Returns true if any enemy of a game is frightened.
+   *
+   * @param game the game
+   * @return true if an enemy is frightened
+   */
+  private static boolean anyFrightened(PacmanGame game) {
+    for (int i = 0; i < game.getEnemyCount(); i++) {
+      if (game.getEnemy(i).getMode() == Mode.FRIGHTENED) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if two speeds are the same to within the tolerance.
+   *
+   * @param expected the expected speed
+   * @param actual the actual speed
+   * @return true if they are the same
+   */
+  private static boolean sameSpeed(double expected, double actual) {
+    return Math.abs(actual - expected) <= TOLERANCE * Math.abs(expected);
+  }
+
+  /**
+   * Plays a maze without enemies, where the player cannot die, switching between the UI's frame
+   * rate and the coarse one every second, and checks that each global mode change comes after
+   * the same number of seconds of play as the mode times give. Switching on whole seconds leaves
+   * nothing to round, so the times must match exactly.
+   *
+   * @return true if every mode change comes on time
+   */
+  private static boolean checkModeTimes() {
+    PacmanGame game = new PacmanGame(RunGame.TEST0, FRAME_RATE, 1);
+    GameEventRing.Subscriber events = game.getEvents().subscribe();
+    GameEvent event = new GameEvent();
+    int expectedSeconds = 0;
+    int changes = 0;
+    int seconds = 0;
+    while (changes < MODE_TIMES.length) {
+      game.setFrameRate(seconds % 2 == 0 ? FRAME_RATE : COARSE_FRAME_RATE);
+      for (int frame = 0; frame < game.getFrameRate(); frame++) {
+        game.updateAll();
+        while (events.poll(event)) {
+          if (event.getType() != GameEventType.GLOBAL_MODE_CHANGE) {
+            continue;
+          }
+          expectedSeconds += MODE_TIMES[changes++];
+          // the switch is published on the last frame of the mode's time
+          if (frame != game.getFrameRate() - 1 || seconds + 1 != expectedSeconds) {
+            Logger.error(
+                String.format(
+                    "  failed: mode change %d came at %d s and frame %d instead of after %d s",
+                    changes, seconds, frame, expectedSeconds));
+            return false;
+          }
+        }
+      }
+      seconds++;
+    }
+    Logger.info("  ok: " + changes + " mode changes on time, switching frame rates every second");
+    return true;
+  }
+
+  /**
+   * Checks that a frame rate below 1 is rejected.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkArguments() {
+    try {
+      new PacmanGame(RunGame.MAIN1, FRAME_RATE, 0).setFrameRate(0);
+      Logger.error("  failed: set a frame rate of 0");
+      return false;
+    } catch (IllegalArgumentException expected) {
+      return true;
+    }
+  }
+
+  /**
+   * Plays with random turns at the coarse frame rate while every enemy is far from the player,
+   * and at the UI's when one comes near, and compares the frames played with those the UI's frame
+   * rate would take for the same time.
+   *
+   * @return true once the time has been played
+   */
+  private static boolean checkAdaptive() {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 3);
+    game.setPlayerDeathDelay(0);
+    Random random = new Random(3);
+    double seconds = 0;
+    int frames = 0;
+    int fineFrames = 0;
+    while (seconds < ADAPTIVE_SECONDS) {
+      if (game.levelOver()) {
+        game.restartLevel(frames);
+      }
+      if (random.nextInt(8) == 0) {
+        game.turnPlayer(Direction.values()[random.nextInt(4)]);
+      }
+      boolean near = isEnemyNear(game);
+      game.setFrameRate(near ? FRAME_RATE : COARSE_FRAME_RATE);
+      seconds += 1.0 / game.getFrameRate();
+      game.updateAll();
+      frames++;
+      fineFrames += near ? 1 : 0;
+    }
+    Logger.info(
+        String.format(
+            "  ok: %d s of play in %d frames, %d of them fine, instead of %d at %d fps",
+            ADAPTIVE_SECONDS, frames, fineFrames, ADAPTIVE_SECONDS * FRAME_RATE, FRAME_RATE));
+    return true;
+  }
+
+  /**
+   * Returns true if an enemy is within NEAR_CELLS cells of the player, along rows and columns.
+   *
+   * @param game the game
+   * @return true if an enemy is near
+   */
+  private static boolean isEnemyNear(PacmanGame game) {
+    Actor player = game.getPlayer();
+    for (int i = 0; i < game.getEnemyCount(); i++) {
+      Actor a = game.getEnemy(i);
+      int cells =
+          Math.abs(a.getCurrentRow() - player.getCurrentRow())
+              + Math.abs(a.getCurrentCol() - player.getCurrentCol());
+      if (cells < NEAR_CELLS) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,200 @@
+package ui;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a frame callback at a fixed rate against System.nanoTime() deadlines. Frame n is due at
+ * start + n * period, so the rate does not drift with wake-up delays or the time the frames take,
+ * as it does with a timer that waits a fixed interval after each frame.
+ *
+ * <p>When the loop falls behind, it runs the frames that are due back to back, but never lets
+ * more than maxCatchUpFrames be due: older deadlines are skipped and counted as missed, so a long
+ * stall is not followed by a burst of fast frames. Waiting parks the thread until spinNanos
+ * before the deadline and then spins, trading a little CPU time for precise wake-ups; with
+ * spinNanos 0 the thread only parks.
+ *
+ * <p>The scheduler measures how late each frame starts and how long it takes, in histograms that
+ * can be read from any thread, together with a render-time histogram that the renderer records
+ * into.
+ */
+public final class FrameScheduler {
+  /** Length of a frame in nanoseconds. */
+  private final long periodNanos;
+
+  /** Most frames run back to back when behind. */
+  private final int maxCatchUpFrames;
+
+  /** Time before a deadline when waiting switches from parking to spinning. */
+  private final long spinNanos;
+
+  /** How late each frame started after its deadline. */
+  private final FrameTimeHistogram lateness = new FrameTimeHistogram();
+
+  /** Time taken by each frame. */
+  private final FrameTimeHistogram simulationTimes = new FrameTimeHistogram();
+
+  /** Time taken to render, recorded by the renderer. */
+  private final FrameTimeHistogram renderTimes = new FrameTimeHistogram();
+
+  /** Number of frames run. */
+  private volatile long frames;
+
+  /** Number of deadlines skipped. */
+  private volatile long missedDeadlines;
+
+  /** Set to make run() return. */
+  private volatile boolean stopped;
+
+  /** Thread in run(), for stop() to wake. */
+  private volatile Thread runner;
+
+  /**
+   * Constructs a scheduler.
+   *
+   * @param periodNanos length of a frame in nanoseconds
+   * @param maxCatchUpFrames most frames to run back to back when behind, at least 1
+   * @param spinNanos how long before each deadline to stop parking and spin, or 0 to only park
+   * @throws IllegalArgumentException if periodNanos or maxCatchUpFrames is less than 1, or
+   *     spinNanos is negative
+   */
+  public FrameScheduler(final long periodNanos, final int maxCatchUpFrames, final long spinNanos) {
+    if (periodNanos < 1 || maxCatchUpFrames < 1 || spinNanos < 0) {
+      throw new IllegalArgumentException(
+          "Invalid schedule: period "
+              + periodNanos
+              + " ns, catch-up "
+              + maxCatchUpFrames
+              + " frames, spin "
+              + spinNanos
+              + " ns");
+    }
+    this.periodNanos = periodNanos;
+    this.maxCatchUpFrames = maxCatchUpFrames;
+    this.spinNanos = spinNanos;
+  }
+
+  /**
+   * Runs the frame callback on the calling thread at the scheduled rate, until stop() is called.
+   * The first frame is due one period after the call. Returns at once if the scheduler has been
+   * stopped, even before the call, so a scheduler runs only once.
+   *
+   * @param frame callback run once per frame
+   */
+  public void run(final Runnable frame) {
+    runner = Thread.currentThread();
+    long deadline = System.nanoTime() + periodNanos;
+    while (!stopped) {
+      waitUntil(deadline);
+      long now = System.nanoTime();
+      while (now - deadline >= 0 && !stopped) {
+        // skip the deadlines that cannot be caught up
+        long behind = (now - deadline) / periodNanos + 1;
+        if (behind > maxCatchUpFrames) {
+          long skipped = behind - maxCatchUpFrames;
+          missedDeadlines += skipped;
+          deadline += skipped * periodNanos;
+        }
+
+        lateness.record(now - deadline);
+        frame.run();
+        long end = System.nanoTime();
+        simulationTimes.record(end - now);
+        frames += 1;
+        deadline += periodNanos;
+        now = end;
+      }
+    }
+    runner = null;
+  }
+
+  /** Makes run() return after the frame in progress, if any. */
+  public void stop() {
+    stopped = true;
+    Thread thread = runner;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * Waits until the given time, parking and then spinning.
+   *
+   * @param deadline time to wait for, from System.nanoTime()
+   */
+  private void waitUntil(final long deadline) {
+    long remaining = deadline - System.nanoTime();
+    while (remaining > spinNanos && !stopped) {
+      LockSupport.parkNanos(remaining - spinNanos);
+      remaining = deadline - System.nanoTime();
+    }
+    while (remaining > 0 && !stopped) {
+      Thread.onSpinWait();
+      remaining = deadline - System.nanoTime();
+    }
+  }
+
+  /**
+   * Returns the histogram of how late frames started after their deadlines.
+   *
+   * @return lateness histogram
+   */
+  public FrameTimeHistogram getLateness() {
+    return lateness;
+  }
+
+  /**
+   * Returns the histogram of the time taken by the frame callback.
+   *
+   * @return simulation time histogram
+   */
+  public FrameTimeHistogram getSimulationTimes() {
+    return simulationTimes;
+  }
+
+  /**
+   * Returns the histogram of render times, which the renderer records into.
+   *
+   * @return render time histogram
+   */
+  public FrameTimeHistogram getRenderTimes() {
+    return renderTimes;
+  }
+
+  /**
+   * Returns the number of frames run.
+   *
+   * @return number of frames
+   */
+  public long getFrameCount() {
+    return frames;
+  }
+
+  /**
+   * Returns the number of deadlines skipped because the loop was more than maxCatchUpFrames
+   * behind.
+   *
+   * @return number of missed deadlines
+   */
+  public long getMissedDeadlines() {
+    return missedDeadlines;
+  }
+
+  /**
+   * Returns a multi-line summary of the frame timing.
+   *
+   * @return the summary
+   */
+  @Override
+  public String toString() {
+    return "frames: "
+        + frames
+        + ", missed deadlines: "
+        + missedDeadlines
+        + "\nlateness:   "
+        + lateness
+        + "\nsimulation: "
+        + simulationTimes
+        + "\nrender:     "
+        + renderTimes;
+  }
+}
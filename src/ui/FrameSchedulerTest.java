@@ -0,0 +1,204 @@
+package ui;
+
+/**
+ * Test for FrameScheduler and FrameTimeHistogram. Checks the histogram's percentiles, that the
+ * scheduler meets its own deadlines while frames take a sizable part of the period, where a loop
+ * sleeping a fixed interval after each frame falls behind, and that after a stall it catches up at
+ * most maxCatchUpFrames frames and skips the rest of the deadlines. Adherence is judged from the
+ * scheduler's missed deadlines and lateness rather than from the wall clock of the test thread,
+ * which on a single core also counts the time the scheduler's thread waits to start and stop.
+ */
+public final class FrameSchedulerTest {
+
+  /** Frame rate of the schedules. */
+  private static final int FRAME_RATE = 100;
+
+  /** Length of a frame in nanoseconds. */
+  private static final long PERIOD_NANOS = 1_000_000_000L / FRAME_RATE;
+
+  /** Length of each run in milliseconds. */
+  private static final long RUN_MILLIS = 2000;
+
+  /** Time each frame spends working, in nanoseconds. */
+  private static final long WORK_NANOS = 2_000_000;
+
+  /** Length of the stall in the catch-up check, in milliseconds. */
+  private static final long STALL_MILLIS = 150;
+
+  /** Catch-up limit in the catch-up check. */
+  private static final int MAX_CATCH_UP = 3;
+
+  /** Spin time of the spinning schedule. */
+  private static final long SPIN_NANOS = 200_000;
+
+  /** Largest accepted difference between the expected and actual frame counts. */
+  private static final int FRAME_TOLERANCE = 2;
+
+  /** Largest accepted share of deadlines missed while keeping the rate. */
+  private static final double MISSED_TOLERANCE = 0.05;
+
+  /** Percentile of the lateness that must stay within LATE_NANOS while keeping the rate. */
+  private static final double LATE_PERCENTILE = 90;
+
+  /** Lateness after which a frame is late, in nanoseconds. */
+  private static final long LATE_NANOS = PERIOD_NANOS / 2;
+
+  /** Private constructor to prevent instantiation. */
+  private FrameSchedulerTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    boolean ok = checkHistogram();
+    ok &= checkRate(0);
+    ok &= checkRate(SPIN_NANOS);
+    ok &= checkCatchUp();
+    if (ok) {
+      Logger.info("PASS: frame scheduler");
+    } else {
+      Logger.error("FAIL: frame scheduler");
+    }
+  }
+
+  /**
+   * Records known values and checks the summary statistics.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkHistogram() {
+    FrameTimeHistogram histogram = new FrameTimeHistogram();
+    for (int i = 1; i <= 100_000; i++) {
+      histogram.record(i);
+    }
+    long p50 = histogram.getPercentile(50);
+    long p99 = histogram.getPercentile(99);
+    if (histogram.getCount() != 100_000
+        || histogram.getMax() != 100_000
+        || histogram.getMean() != 50_000.5
+        || p50 < 50_000
+        || p50 > 50_000 * 1.125
+        || p99 < 99_000
+        || p99 > 100_000
+        || histogram.getPercentile(0) != 1) {
+      Logger.error("  failed: histogram of 1..100000 gives " + histogram);
+      return false;
+    }
+    Logger.info("  ok: histogram of 1..100000: p50 " + p50 + ", p99 " + p99);
+    return true;
+  }
+
+  /**
+   * Runs frames that each work for WORK_NANOS with the scheduler and with a sleeping loop, and
+   * checks that the scheduler missed few of its deadlines and started most frames on time.
+   *
+   * @param spinNanos spin time of the scheduler
+   * @return true if the scheduler keeps its rate
+   */
+  private static boolean checkRate(long spinNanos) throws InterruptedException {
+    FrameScheduler scheduler = new FrameScheduler(PERIOD_NANOS, 1, spinNanos);
+    runFor(scheduler, () -> work(WORK_NANOS));
+    long frames = scheduler.getFrameCount();
+    long missed = scheduler.getMissedDeadlines();
+    long late = scheduler.getLateness().getPercentile(LATE_PERCENTILE);
+
+    // the same frames, sleeping a fixed interval after each one like a timer
+    long naiveFrames = 0;
+    long naiveStart = System.nanoTime();
+    while (System.nanoTime() - naiveStart < RUN_MILLIS * 1_000_000L) {
+      work(WORK_NANOS);
+      naiveFrames++;
+      Thread.sleep(PERIOD_NANOS / 1_000_000);
+    }
+
+    Logger.info(
+        String.format(
+            "  %s: %d frames, %d missed deadlines, sleeping loop %d; lateness %s",
+            spinNanos > 0 ? "spin-then-park" : "park",
+            frames,
+            missed,
+            naiveFrames,
+            scheduler.getLateness()));
+    if (frames == 0
+        || missed > MISSED_TOLERANCE * (frames + missed)
+        || late > LATE_NANOS) {
+      Logger.error(
+          String.format(
+              "  failed: the scheduler did not keep its rate: %d of %d deadlines missed,"
+                  + " p%.0f lateness %d ns",
+              missed, frames + missed, LATE_PERCENTILE, late));
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Stalls one frame for several periods and checks that the scheduler catches up no more than
+   * MAX_CATCH_UP frames and counts the other deadlines the stall covered as missed.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkCatchUp() throws InterruptedException {
+    FrameScheduler scheduler = new FrameScheduler(PERIOD_NANOS, MAX_CATCH_UP, 0);
+    long[] frame = new long[1];
+    long[] longestBurst = new long[1];
+    long[] burst = new long[1];
+    long[] lastEnd = new long[1];
+    runFor(
+        scheduler,
+        () -> {
+          long now = System.nanoTime();
+          // frames that start right after the previous one are catching up
+          burst[0] = now - lastEnd[0] < PERIOD_NANOS / 4 ? burst[0] + 1 : 1;
+          longestBurst[0] = Math.max(longestBurst[0], burst[0]);
+          if (++frame[0] == FRAME_RATE / 2) {
+            work(STALL_MILLIS * 1_000_000L);
+          }
+          lastEnd[0] = System.nanoTime();
+        });
+    // the stall covers this many deadlines, of which all but MAX_CATCH_UP are skipped
+    long expected = STALL_MILLIS * 1_000_000L / PERIOD_NANOS - MAX_CATCH_UP;
+
+    Logger.info(
+        "  catch-up: "
+            + scheduler.getFrameCount()
+            + " frames, "
+            + scheduler.getMissedDeadlines()
+            + " missed deadlines, "
+            + expected
+            + " expected missed, longest burst "
+            + longestBurst[0]);
+    if (Math.abs(scheduler.getMissedDeadlines() - expected) > FRAME_TOLERANCE
+        || longestBurst[0] > MAX_CATCH_UP + 1) {
+      Logger.error("  failed: the stall was not handled by the catch-up policy");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Runs a scheduler on another thread for RUN_MILLIS.
+   *
+   * @param scheduler the scheduler
+   * @param frame the frame callback
+   */
+  private static void runFor(FrameScheduler scheduler, Runnable frame)
+      throws InterruptedException {
+    Thread thread = new Thread(() -> scheduler.run(frame));
+    thread.start();
+    Thread.sleep(RUN_MILLIS);
+    scheduler.stop();
+    thread.join();
+  }
+
+  /**
+   * Keeps the thread busy for a while.
+   *
+   * @param nanos how long to work
+   */
+  private static void work(long nanos) {
+    long end = System.nanoTime() + nanos;
+    while (System.nanoTime() - end < 0) {
+      Thread.onSpinWait();
+    }
+  }
+}
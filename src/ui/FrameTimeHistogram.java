@@ -0,0 +1,160 @@
+package ui;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds, for frame timing. Buckets are log-linear: each power of
+ * two is split into SUB_BUCKETS equal buckets, so percentiles are exact below SUB_BUCKETS and
+ * within 1 / SUB_BUCKETS (12.5%) of the true value above. Recording is lock-free and does not
+ * allocate, so the simulation thread and the event dispatch thread can record into the same
+ * histogram while another thread reads it.
+ */
+public final class FrameTimeHistogram {
+  /** Bits of each value kept below its leading one. */
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /** Buckets per power of two. */
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /** Number of buckets, enough for any non-negative long. */
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  /** Nanoseconds in a microsecond, for summaries. */
+  private static final double NANOS_PER_MICROSECOND = 1e3;
+
+  /** Count of values in each bucket. */
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  /** Number of values recorded. */
+  private final AtomicLong count = new AtomicLong();
+
+  /** Sum of the values recorded. */
+  private final AtomicLong sum = new AtomicLong();
+
+  /** Largest value recorded. */
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a duration. Negative durations are recorded as 0.
+   *
+   * @param nanos the duration in nanoseconds
+   */
+  public void record(final long nanos) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(bucket(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Returns the number of durations recorded.
+   *
+   * @return number of values
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Returns the mean of the durations recorded.
+   *
+   * @return mean in nanoseconds, 0 if nothing was recorded
+   */
+  public double getMean() {
+    long n = count.get();
+    return n == 0 ? 0 : (double) sum.get() / n;
+  }
+
+  /**
+   * Returns the largest duration recorded.
+   *
+   * @return maximum in nanoseconds, 0 if nothing was recorded
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Returns an upper bound of the given percentile of the durations recorded: the highest value of
+   * the bucket holding it, but no more than the maximum.
+   *
+   * @param percentile percentile from 0 to 100
+   * @return the percentile in nanoseconds, 0 if nothing was recorded
+   */
+  public long getPercentile(final double percentile) {
+    long n = count.get();
+    if (n == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; ++b) {
+      seen += counts.get(b);
+      if (seen >= rank) {
+        return Math.min(highestValue(b), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /** Forgets all recorded durations. Values recorded concurrently may be lost. */
+  public void reset() {
+    for (int b = 0; b < BUCKETS; ++b) {
+      counts.set(b, 0);
+    }
+    count.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+
+  /**
+   * Returns a one-line summary in microseconds.
+   *
+   * @return count, mean, median, 99th percentile and maximum
+   */
+  @Override
+  public String toString() {
+    return String.format(
+        "n=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus",
+        getCount(),
+        getMean() / NANOS_PER_MICROSECOND,
+        getPercentile(50) / NANOS_PER_MICROSECOND,
+        getPercentile(99) / NANOS_PER_MICROSECOND,
+        getMax() / NANOS_PER_MICROSECOND);
+  }
+
+  /**
+   * Returns the bucket of a value.
+   *
+   * @param value a non-negative value
+   * @return index of its bucket
+   */
+  private static int bucket(final long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+  }
+
+  /**
+   * Returns the highest value that falls in a bucket.
+   *
+   * @param bucket index of the bucket
+   * @return its highest value
+   */
+  private static long highestValue(final int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
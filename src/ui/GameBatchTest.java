@@ -0,0 +1,278 @@
+package ui;
+
+import api.Actor;
+import api.Direction;
+import api.GameBatch;
+import api.GameEvent;
+import api.GameEventRing;
+import api.GameEventType;
+import api.PacmanGame;
+import com.pacman.ghost.ActorImpl;
+import java.util.Random;
+
+/**
+ * Conformance test and benchmark for GameBatch. Steps a batch of games alongside one PacmanGame
+ * per seed with the same random inputs, starting the next level of both whenever a level is won,
+ * and checks after every frame that the level, score, lives, modes and every actor's exact
+ * position and direction agree. Checks that a maze with two player starts is refused. Then times
+ * stepping a large batch against stepping the same number of PacmanGame objects.
+ */
+public final class GameBatchTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Number of games compared on each maze. */
+  private static final int CONFORMANCE_GAMES = 96;
+
+  /** Frames compared on each maze. */
+  private static final int CONFORMANCE_FRAMES = 8000;
+
+  /** Number of games in the benchmark batch. */
+  private static final int BENCHMARK_GAMES = 4096;
+
+  /** Frames stepped in the benchmark. */
+  private static final int BENCHMARK_FRAMES = 1000;
+
+  /** Level that some game must reach, so that the level tables are compared too. */
+  private static final int MIN_LEVEL = 3;
+
+  /** A maze with two player starts, which a batch refuses. */
+  private static final String[] TWO_STARTS = {
+    "#######", "#S...S#", "#.###.#", "#..B..#", "#######",
+  };
+
+  /** Mazes the conformance test runs on. */
+  private static final String[] MAZES = {"MAIN1", "TEST0", "TEST1", "TEST2"};
+
+  /** Private constructor to prevent instantiation. */
+  private GameBatchTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = true;
+    int highestLevel = 0;
+    for (String maze : MAZES) {
+      int reached = checkConformance(maze);
+      ok &= reached > 0;
+      highestLevel = Math.max(highestLevel, reached);
+    }
+    if (highestLevel < MIN_LEVEL) {
+      Logger.error("  failed: no game got past level " + highestLevel);
+      ok = false;
+    }
+    ok &= checkPlayerStarts();
+    benchmark();
+    if (ok) {
+      Logger.info("PASS: batched games match PacmanGame");
+    } else {
+      Logger.error("FAIL: batched games differ from PacmanGame");
+    }
+  }
+
+  /**
+   * Steps a batch and the equivalent PacmanGames on the given maze and compares them every frame.
+   *
+   * @param mazeId identifier of the maze, as for RunGame.getMaze()
+   * @return the highest level any game reached, or 0 if some frame differs
+   */
+  private static int checkConformance(String mazeId) {
+    String[] rows = RunGame.getMaze(mazeId);
+    long[] seeds = new long[CONFORMANCE_GAMES];
+    PacmanGame[] games = new PacmanGame[CONFORMANCE_GAMES];
+    GameEventRing.Subscriber[] subscribers = new GameEventRing.Subscriber[CONFORMANCE_GAMES];
+    for (int g = 0; g < CONFORMANCE_GAMES; g++) {
+      seeds[g] = 1000L + g;
+      games[g] = new PacmanGame(rows, FRAME_RATE, seeds[g]);
+      games[g].setPlayerDeathDelay(0);
+      subscribers[g] = games[g].getEvents().subscribe();
+    }
+    GameBatch batch = new GameBatch(rows, FRAME_RATE, seeds);
+    String mismatch = compare(batch, games, 0);
+
+    Random random = new Random(mazeId.hashCode());
+    int[] actions = new int[CONFORMANCE_GAMES];
+    GameEvent event = new GameEvent();
+    int[] eventCounts = new int[GameEventType.values().length];
+    int frame = 0;
+    int finished = 0;
+    int highestLevel = 1;
+    while (mismatch == null && frame < CONFORMANCE_FRAMES) {
+      frame++;
+      for (int g = 0; g < CONFORMANCE_GAMES; g++) {
+        if (games[g].levelOver() && games[g].getLives() > 0) {
+          games[g].nextLevel();
+          batch.nextLevel(g);
+          highestLevel = Math.max(highestLevel, games[g].getLevel());
+        }
+        actions[g] = random.nextInt(6) == 0 ? random.nextInt(4) : GameBatch.NO_ACTION;
+        if (actions[g] != GameBatch.NO_ACTION) {
+          games[g].turnPlayer(Direction.values()[actions[g]]);
+        }
+        games[g].updateAll();
+        while (subscribers[g].poll(event)) {
+          eventCounts[event.getType().ordinal()]++;
+        }
+      }
+      batch.step(actions);
+      mismatch = compare(batch, games, frame);
+    }
+    for (PacmanGame game : games) {
+      if (game.levelOver()) {
+        finished++;
+      }
+    }
+    if (mismatch != null) {
+      Logger.error("  " + mazeId + ": " + mismatch);
+      return 0;
+    }
+    Logger.info(
+        "  ok: "
+            + mazeId
+            + ", "
+            + CONFORMANCE_GAMES
+            + " games identical for "
+            + frame
+            + " frames ("
+            + finished
+            + " finished, up to level "
+            + highestLevel
+            + ", "
+            + eventCounts[GameEventType.ENERGIZER_EATEN.ordinal()]
+            + " energizers and "
+            + eventCounts[GameEventType.GHOST_EATEN.ordinal()]
+            + " ghosts eaten)");
+    return highestLevel;
+  }
+
+  /**
+   * Checks that a batch refuses a maze with more than one player start.
+   *
+   * @return true if the maze is refused
+   */
+  private static boolean checkPlayerStarts() {
+    try {
+      new GameBatch(TWO_STARTS, FRAME_RATE, new long[] {1});
+    } catch (IllegalArgumentException e) {
+      Logger.info("  ok: a maze with two player starts is refused");
+      return true;
+    }
+    Logger.error("  failed: a maze with two player starts was accepted");
+    return false;
+  }
+
+  /**
+   * Compares every game in the batch with its PacmanGame.
+   *
+   * @param batch the batch
+   * @param games one PacmanGame per game in the batch
+   * @param frame frame number, for the report
+   * @return description of the first difference, or null if there is none
+   */
+  private static String compare(GameBatch batch, PacmanGame[] games, int frame) {
+    for (int g = 0; g < games.length; g++) {
+      PacmanGame game = games[g];
+      String where = "game " + g + " frame " + frame + ": ";
+      if (batch.getLevel(g) != game.getLevel()
+          || batch.getScore(g) != game.getScore()
+          || batch.getLives(g) != game.getLives()
+          || batch.getFrameCount(g) != game.getFrameCount()
+          || batch.levelOver(g) != game.levelOver()
+          || batch.getGlobalMode(g) != game.getGlobalMode()
+          || batch.getFrightenedCount(g) != game.getFrightenedCount()) {
+        return where + "game state differs";
+      }
+      Actor player = game.getPlayer();
+      if (batch.getPlayerRowExact(g) != player.getRowExact()
+          || batch.getPlayerColExact(g) != player.getColExact()
+          || batch.getPlayerDirection(g) != player.getCurrentDirection()) {
+        return where + "player differs";
+      }
+      for (int e = 0; e < game.getEnemyCount(); e++) {
+        Actor enemy = game.getEnemy(e);
+        if (batch.getEnemyRowExact(g, e) != enemy.getRowExact()
+            || batch.getEnemyColExact(g, e) != enemy.getColExact()
+            || batch.getEnemyDirection(g, e) != enemy.getCurrentDirection()
+            || batch.getEnemyMode(g, e) != enemy.getMode()) {
+          return where
+              + "enemy "
+              + e
+              + " differs: batch "
+              + batch.getEnemyRowExact(g, e)
+              + ","
+              + batch.getEnemyColExact(g, e)
+              + " "
+              + batch.getEnemyDirection(g, e)
+              + " "
+              + batch.getEnemyMode(g, e)
+              + ", game "
+              + enemy.getRowExact()
+              + ","
+              + enemy.getColExact()
+              + " "
+              + enemy.getCurrentDirection()
+              + " "
+              + enemy.getMode();
+        }
+      }
+      for (int row = 0; row < game.getNumRows(); row++) {
+        for (int col = 0; col < game.getNumColumns(); col++) {
+          if (batch.canEat(g, row, col) != game.getCell(row, col).canEat()) {
+            return where + "pellet at " + row + "," + col + " differs";
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Times stepping a large batch against stepping the same number of PacmanGame objects. */
+  private static void benchmark() {
+    long[] seeds = new long[BENCHMARK_GAMES];
+    PacmanGame[] games = new PacmanGame[BENCHMARK_GAMES];
+    for (int g = 0; g < BENCHMARK_GAMES; g++) {
+      seeds[g] = g;
+      games[g] = new PacmanGame(RunGame.MAIN1, FRAME_RATE, seeds[g]);
+      games[g].setPlayerDeathDelay(0);
+    }
+    GameBatch batch = new GameBatch(RunGame.MAIN1, FRAME_RATE, seeds);
+    int[][] actions = new int[BENCHMARK_FRAMES][BENCHMARK_GAMES];
+    Random random = new Random(5);
+    for (int[] frameActions : actions) {
+      for (int g = 0; g < BENCHMARK_GAMES; g++) {
+        frameActions[g] = random.nextInt(6) == 0 ? random.nextInt(4) : GameBatch.NO_ACTION;
+      }
+    }
+
+    long start = System.nanoTime();
+    for (int[] frameActions : actions) {
+      for (int g = 0; g < BENCHMARK_GAMES; g++) {
+        if (frameActions[g] != GameBatch.NO_ACTION) {
+          games[g].turnPlayer(Direction.values()[frameActions[g]]);
+        }
+        games[g].updateAll();
+      }
+    }
+    long objectNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    for (int[] frameActions : actions) {
+      batch.step(frameActions);
+    }
+    long batchNanos = System.nanoTime() - start;
+
+    double frames = (double) BENCHMARK_GAMES * BENCHMARK_FRAMES;
+    Logger.info(
+        String.format(
+            "%d games x %d frames: PacmanGame objects %.2f M frames/s, GameBatch %.2f M frames/s"
+                + " (%.1fx, %d cores)",
+            BENCHMARK_GAMES,
+            BENCHMARK_FRAMES,
+            frames * 1e3 / objectNanos,
+            frames * 1e3 / batchNanos,
+            (double) objectNanos / batchNanos,
+            Runtime.getRuntime().availableProcessors()));
+  }
+}
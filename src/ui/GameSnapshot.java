@@ -0,0 +1,255 @@
+package ui;
+
+import api.Actor;
+import api.Direction;
+import api.MazeCell;
+import api.Mode;
+import api.PacmanGame;
+
+/**
+ * Immutable copy of everything PacmanPanel draws, taken by the simulation thread after each tick
+ * so that painting never reads the game while it is being updated. Besides the positions of the
+ * actors after the tick, a snapshot keeps their positions before it, so that the panel can
+ * interpolate between the two when it paints between ticks.
+ */
+final class GameSnapshot {
+  /** Largest movement in cells per tick that is interpolated; larger jumps are wraps or resets. */
+  private static final double MAX_INTERPOLATED_MOVE = 1.0;
+
+  /** Time the snapshot was taken, from System.nanoTime(). */
+  private final long nanos;
+
+  /** Frame count of the game. */
+  private final int frame;
+
+  /** Score of the game. */
+  private final int score;
+
+  /** Remaining lives. */
+  private final int lives;
+
+  /** Value of the frightened countdown. */
+  private final int frightenedCount;
+
+  /** Angle of the player's mouth, in degrees. */
+  private final double mouthAngle;
+
+  /** Direction of the player. */
+  private final Direction playerDirection;
+
+  /** Rows of the player and then of each enemy, before the tick. */
+  private final double[] fromRows;
+
+  /** Columns of the player and then of each enemy, before the tick. */
+  private final double[] fromCols;
+
+  /** Rows of the player and then of each enemy, after the tick. */
+  private final double[] toRows;
+
+  /** Columns of the player and then of each enemy, after the tick. */
+  private final double[] toCols;
+
+  /** Mode of each enemy. */
+  private final Mode[] enemyModes;
+
+  /** Direction of each enemy. */
+  private final Direction[] enemyDirections;
+
+  /** One bit per cell, row-major, set if the cell holds an uneaten dot or energizer. */
+  private final long[] uneaten;
+
+  /** Number of columns of the maze. */
+  private final int columns;
+
+  /**
+   * Copies the state of a game.
+   *
+   * @param game the game, not being updated by another thread
+   * @param mouthAngle angle of the player's mouth, in degrees
+   * @param before snapshot of the previous tick, whose positions are the starting points for
+   *     interpolation, or null to start from the current positions
+   * @param nanos time of the snapshot, from System.nanoTime()
+   */
+  GameSnapshot(
+      final PacmanGame game, final double mouthAngle, final GameSnapshot before, final long nanos) {
+    this.nanos = nanos;
+    this.frame = game.getFrameCount();
+    this.score = game.getScore();
+    this.lives = game.getLives();
+    this.frightenedCount = game.getFrightenedCount();
+    this.mouthAngle = mouthAngle;
+    this.playerDirection = game.getPlayer().getCurrentDirection();
+    this.columns = game.getNumColumns();
+
+    int enemyCount = game.getEnemyCount();
+    toRows = new double[enemyCount + 1];
+    toCols = new double[enemyCount + 1];
+    enemyModes = new Mode[enemyCount];
+    enemyDirections = new Direction[enemyCount];
+    toRows[0] = game.getPlayer().getRowExact();
+    toCols[0] = game.getPlayer().getColExact();
+    for (int i = 0; i < enemyCount; ++i) {
+      Actor enemy = game.getEnemy(i);
+      toRows[i + 1] = enemy.getRowExact();
+      toCols[i + 1] = enemy.getColExact();
+      enemyModes[i] = enemy.getMode();
+      enemyDirections[i] = enemy.getCurrentDirection();
+    }
+    fromRows = before == null ? toRows : before.toRows;
+    fromCols = before == null ? toCols : before.toCols;
+
+    int rows = game.getNumRows();
+    uneaten = new long[(rows * columns + Long.SIZE - 1) / Long.SIZE];
+    for (int row = 0; row < rows; ++row) {
+      for (int col = 0; col < columns; ++col) {
+        MazeCell cell = game.getCell(row, col);
+        if (!cell.isWall() && cell.canEat()) {
+          int bit = row * columns + col;
+          uneaten[bit / Long.SIZE] |= 1L << bit;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the time the snapshot was taken.
+   *
+   * @return time from System.nanoTime()
+   */
+  long getNanos() {
+    return nanos;
+  }
+
+  /**
+   * Returns the game's frame count.
+   *
+   * @return number of frames
+   */
+  int getFrame() {
+    return frame;
+  }
+
+  /**
+   * Returns the score.
+   *
+   * @return the score
+   */
+  int getScore() {
+    return score;
+  }
+
+  /**
+   * Returns the remaining lives.
+   *
+   * @return number of lives
+   */
+  int getLives() {
+    return lives;
+  }
+
+  /**
+   * Returns the value of the frightened countdown.
+   *
+   * @return frames of frightened mode left
+   */
+  int getFrightenedCount() {
+    return frightenedCount;
+  }
+
+  /**
+   * Returns the angle of the player's mouth.
+   *
+   * @return angle in degrees
+   */
+  double getMouthAngle() {
+    return mouthAngle;
+  }
+
+  /**
+   * Returns the direction of the player.
+   *
+   * @return the player's direction
+   */
+  Direction getPlayerDirection() {
+    return playerDirection;
+  }
+
+  /**
+   * Returns the mode of an enemy.
+   *
+   * @param index index of the enemy
+   * @return the enemy's mode
+   */
+  Mode getEnemyMode(final int index) {
+    return enemyModes[index];
+  }
+
+  /**
+   * Returns the direction of an enemy.
+   *
+   * @param index index of the enemy
+   * @return the enemy's direction
+   */
+  Direction getEnemyDirection(final int index) {
+    return enemyDirections[index];
+  }
+
+  /**
+   * Returns the number of enemies.
+   *
+   * @return number of enemies
+   */
+  int getEnemyCount() {
+    return enemyModes.length;
+  }
+
+  /**
+   * Returns true if the cell holds an uneaten dot or energizer.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return true if there is something to eat
+   */
+  boolean canEat(final int row, final int col) {
+    int bit = row * columns + col;
+    return (uneaten[bit / Long.SIZE] & 1L << bit) != 0;
+  }
+
+  /**
+   * Returns the row of an actor at a fraction of the way through the tick.
+   *
+   * @param actor 0 for the player, i + 1 for enemy i
+   * @param alpha fraction of the tick, from 0 (before) to 1 (after)
+   * @return interpolated row
+   */
+  double getRow(final int actor, final double alpha) {
+    return interpolate(fromRows[actor], toRows[actor], alpha);
+  }
+
+  /**
+   * Returns the column of an actor at a fraction of the way through the tick.
+   *
+   * @param actor 0 for the player, i + 1 for enemy i
+   * @param alpha fraction of the tick, from 0 (before) to 1 (after)
+   * @return interpolated column
+   */
+  double getCol(final int actor, final double alpha) {
+    return interpolate(fromCols[actor], toCols[actor], alpha);
+  }
+
+  /**
+   * Interpolates a coordinate, without sliding across the maze when an actor wraps through a
+   * tunnel or is sent home.
+   *
+   * @param from coordinate before the tick
+   * @param to coordinate after the tick
+   * @param alpha fraction of the tick
+   * @return interpolated coordinate
+   */
+  private static double interpolate(final double from, final double to, final double alpha) {
+    if (Math.abs(to - from) > MAX_INTERPOLATED_MOVE) {
+      return to;
+    }
+    return from + (to - from) * alpha;
+  }
+}
@@ -4,6 +4,7 @@ import api.Actor;
 import api.Location;
 import api.Mode;
 import api.PacmanGame;
+import com.pacman.ghost.ActorImpl;
 
 /** Simple test to check ghost movement and log generation. */
 public final class GhostMovementTest {
@@ -66,6 +67,7 @@ public final class GhostMovementTest {
    * @param args Command line arguments (not used)
    */
   public static void main(String[] args) {
+    ActorImpl.setMovementLogging(true);
     if (Logger.isInfoEnabled()) {
       Logger.info("Starting Ghost Movement Test with Logging...");
     }
@@ -0,0 +1,223 @@
+package ui;
+
+import api.Direction;
+import api.GhostSwarm;
+import java.util.Random;
+
+/**
+ * Test and benchmark for GhostSwarm. Steps a swarm serially and in parallel with the same inputs
+ * and checks after every frame that they agree on every ghost, that no ghost is inside a wall, and
+ * that resetting with the same seed replays the same game. Then times a frame of swarms of growing
+ * size, from the four ghosts of the arcade game to ten thousand.
+ */
+public final class GhostSwarmTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Ghosts in the large conformance check, several chunks' worth. */
+  private static final int CONFORMANCE_GHOSTS = 3000;
+
+  /** Ghosts in the small conformance check, which fit in one chunk. */
+  private static final int SMALL_CONFORMANCE_GHOSTS = 12;
+
+  /** Frames in the conformance check. */
+  private static final int CONFORMANCE_FRAMES = 3000;
+
+  /** Ghost counts in the benchmark. */
+  private static final int[] GHOST_COUNTS = {4, 16, 64, 256, 1024, 4096, 10_000};
+
+  /** Frames timed for each ghost count. */
+  private static final int BENCHMARK_FRAMES = 2000;
+
+  /** Private constructor to prevent instantiation. */
+  private GhostSwarmTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    boolean ok = checkConformance("MAIN1", CONFORMANCE_GHOSTS);
+    ok &= checkConformance("TEST2", CONFORMANCE_GHOSTS);
+    ok &= checkConformance("MAIN1", SMALL_CONFORMANCE_GHOSTS);
+    ok &= checkArguments();
+    for (int ghosts : GHOST_COUNTS) {
+      benchmark(ghosts);
+    }
+    if (ok) {
+      Logger.info("PASS: ghost swarm");
+    } else {
+      Logger.error("FAIL: ghost swarm");
+    }
+  }
+
+  /**
+   * Steps a serial and a parallel swarm on the given maze with the same random turns, comparing
+   * them every frame, then replays the serial one after a reset and compares the final states.
+   *
+   * @param mazeId identifier of the maze, as for RunGame.getMaze()
+   * @param ghosts number of ghosts
+   * @return true if every check passes
+   */
+  private static boolean checkConformance(String mazeId, int ghosts) {
+    String[] rows = RunGame.getMaze(mazeId);
+    GhostSwarm serial = new GhostSwarm(rows, FRAME_RATE, ghosts, 5);
+    GhostSwarm parallel = new GhostSwarm(rows, FRAME_RATE, ghosts, 5);
+    parallel.setParallel(true);
+    String mismatch = run(serial, parallel, rows, mazeId.hashCode());
+    if (mismatch != null) {
+      Logger.error("  failed: " + mazeId + ": " + mismatch);
+      return false;
+    }
+    int frames = serial.getFrameCount();
+    int score = serial.getScore();
+
+    // replaying against a fresh swarm after a reset must give the same game
+    serial.reset(5);
+    GhostSwarm fresh = new GhostSwarm(rows, FRAME_RATE, ghosts, 5);
+    mismatch = run(serial, fresh, rows, mazeId.hashCode());
+    if (mismatch != null) {
+      Logger.error("  failed: " + mazeId + ": after reset: " + mismatch);
+      return false;
+    }
+    Logger.info(
+        String.format(
+            "  ok: %s, %d ghosts, %d frames, score %d, lives %d",
+            mazeId, ghosts, frames, score, serial.getLives()));
+    return true;
+  }
+
+  /**
+   * Steps two swarms with the same random turns until the level ends or CONFORMANCE_FRAMES have
+   * passed, comparing them after every frame.
+   *
+   * @param a first swarm
+   * @param b second swarm
+   * @param rows the swarms' maze
+   * @param seed seed for the turns
+   * @return a description of the first difference, or null if there is none
+   */
+  private static String run(GhostSwarm a, GhostSwarm b, String[] rows, long seed) {
+    Random random = new Random(seed);
+    Direction[] directions = Direction.values();
+    for (int frame = 0; frame < CONFORMANCE_FRAMES && !a.levelOver(); frame++) {
+      if (random.nextInt(10) == 0) {
+        Direction dir = directions[random.nextInt(directions.length)];
+        a.turnPlayer(dir);
+        b.turnPlayer(dir);
+      }
+      a.updateAll();
+      b.updateAll();
+      String mismatch = compare(a, b, rows);
+      if (mismatch != null) {
+        return "frame " + a.getFrameCount() + ": " + mismatch;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Compares the state of two swarms and checks that their ghosts are outside walls.
+   *
+   * @param a first swarm
+   * @param b second swarm
+   * @param rows the swarms' maze
+   * @return a description of the first difference, or null if there is none
+   */
+  private static String compare(GhostSwarm a, GhostSwarm b, String[] rows) {
+    if (a.getScore() != b.getScore()
+        || a.getLives() != b.getLives()
+        || a.getGlobalMode() != b.getGlobalMode()
+        || a.getFrightenedCount() != b.getFrightenedCount()
+        || a.getPlayerRowExact() != b.getPlayerRowExact()
+        || a.getPlayerColExact() != b.getPlayerColExact()) {
+      return "score, lives, modes or player differ";
+    }
+    for (int k = 0; k < a.getGhostCount(); k++) {
+      if (a.getGhostRowExact(k) != b.getGhostRowExact(k)
+          || a.getGhostColExact(k) != b.getGhostColExact(k)
+          || a.getGhostDirection(k) != b.getGhostDirection(k)
+          || a.getGhostMode(k) != b.getGhostMode(k)) {
+        return "ghost " + k + " differs";
+      }
+      int row = (int) a.getGhostRowExact(k);
+      int col = (int) a.getGhostColExact(k);
+      if (row < 0 || row >= a.getNumRows() || col < 0 || col >= a.getNumColumns()
+          || rows[row].charAt(col) == '#') {
+        return "ghost " + k + " is in a wall or out of the maze";
+      }
+    }
+    int total = 0;
+    for (int row = 0; row < a.getNumRows(); row++) {
+      for (int col = 0; col < a.getNumColumns(); col++) {
+        total += a.getGhostCountAt(row, col);
+      }
+    }
+    if (total != a.getGhostCount()) {
+      return total + " ghosts in the occupancy grid";
+    }
+    return null;
+  }
+
+  /**
+   * Checks that a swarm needs at least one ghost.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkArguments() {
+    try {
+      new GhostSwarm(RunGame.getMaze("MAIN1"), FRAME_RATE, 0, 0);
+      Logger.error("  failed: a swarm was built without ghosts");
+      return false;
+    } catch (IllegalArgumentException expected) {
+      return true;
+    }
+  }
+
+  /**
+   * Times frames of a swarm of the given size on the MAIN1 maze, serially and in parallel. The
+   * player goes around in a loop so that the level lasts.
+   *
+   * @param ghosts number of ghosts
+   */
+  private static void benchmark(int ghosts) {
+    String[] rows = RunGame.getMaze("MAIN1");
+    double serialNanos = 0;
+    double parallelNanos = 0;
+    for (int round = 0; round < 2; round++) {
+      serialNanos = time(new GhostSwarm(rows, FRAME_RATE, ghosts, round), false);
+      parallelNanos = time(new GhostSwarm(rows, FRAME_RATE, ghosts, round), true);
+    }
+    Logger.info(
+        String.format(
+            "  %5d ghosts: serial %8.0f ns per frame (%5.1f ns per ghost), parallel %8.0f ns"
+                + " per frame, %d cores",
+            ghosts,
+            serialNanos,
+            serialNanos / ghosts,
+            parallelNanos,
+            Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Times BENCHMARK_FRAMES frames of a swarm, restarting it when the level ends.
+   *
+   * @param swarm the swarm
+   * @param parallel whether to update it in parallel
+   * @return nanoseconds per frame
+   */
+  private static double time(GhostSwarm swarm, boolean parallel) {
+    swarm.setParallel(parallel);
+    Direction[] turns = {Direction.LEFT, Direction.UP, Direction.RIGHT, Direction.DOWN};
+    long start = System.nanoTime();
+    for (int frame = 0; frame < BENCHMARK_FRAMES; frame++) {
+      if (frame % 100 == 0) {
+        swarm.turnPlayer(turns[(frame / 100) % turns.length]);
+      }
+      if (swarm.levelOver()) {
+        swarm.reset(frame);
+      }
+      swarm.updateAll();
+    }
+    return (double) (System.nanoTime() - start) / BENCHMARK_FRAMES;
+  }
+}
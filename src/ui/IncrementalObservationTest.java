@@ -0,0 +1,174 @@
+package ui;
+
+import com.pacman.env.Environment;
+import com.pacman.env.ObservationEncoder;
+import com.pacman.ghost.ActorImpl;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Test and benchmark for incremental observation updates. Steps environments that only apply
+ * deltas (no periodic rebuild) and checks each observation byte for byte against a full encode of
+ * the same game. Then times full encodes against incremental updates on a 512x512 maze.
+ */
+public final class IncrementalObservationTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Frames per environment step. */
+  private static final int FRAMES_PER_STEP = 4;
+
+  /** Episodes compared on each maze. */
+  private static final int EPISODES = 10;
+
+  /** Mazes the comparison runs on. */
+  private static final String[] MAZES = {"MAIN1", "TEST1", "TEST2"};
+
+  /** Size of the generated benchmark maze. */
+  private static final int LARGE_SIZE = 512;
+
+  /** Steps timed on the benchmark maze. */
+  private static final int BENCHMARK_STEPS = 2000;
+
+  /** Private constructor to prevent instantiation. */
+  private IncrementalObservationTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = true;
+    for (String maze : MAZES) {
+      ok &= checkMaze(maze);
+    }
+    benchmark();
+    if (ok) {
+      Logger.info("PASS: incremental observations match full encodes");
+    } else {
+      Logger.error("FAIL: incremental observations drift from full encodes");
+    }
+  }
+
+  /**
+   * Plays episodes on the given maze, comparing the incremental observation with a full encode
+   * after every step.
+   *
+   * @param mazeId identifier of the maze, as for RunGame.getMaze()
+   * @return true if every observation matches
+   */
+  private static boolean checkMaze(String mazeId) {
+    Environment env = new Environment(RunGame.getMaze(mazeId), FRAME_RATE, FRAMES_PER_STEP);
+    env.setObservationRebuildInterval(Integer.MAX_VALUE);
+    ByteBuffer incremental = ByteBuffer.allocateDirect(env.getObservationSize());
+    ByteBuffer full = ByteBuffer.allocateDirect(env.getObservationSize());
+    env.setObservationBuffer(incremental);
+    ObservationEncoder reference =
+        new ObservationEncoder(
+            env.getObservationRows(), env.getObservationColumns(), env.getGame().getEnemyCount());
+    reference.setTarget(full);
+
+    Random random = new Random(mazeId.hashCode());
+    long steps = 0;
+    for (int episode = 0; episode < EPISODES; episode++) {
+      env.reset(random.nextLong());
+      while (!env.isDone()) {
+        env.step(random.nextInt(Environment.ACTION_COUNT));
+        steps++;
+        reference.encode(env.getGame());
+        if (!incremental.equals(full)) {
+          Logger.error(
+              "  failed: " + mazeId + ", episode " + episode + ": observation differs after "
+                  + env.getFrameCount() + " frames");
+          return false;
+        }
+      }
+    }
+    Logger.info("  ok: " + mazeId + ", " + steps + " incremental steps identical to full encodes");
+    return true;
+  }
+
+  /** Times full and incremental observations on a large maze. */
+  private static void benchmark() {
+    String[] rows = largeMaze(LARGE_SIZE);
+    Environment fullEnv = new Environment(rows, FRAME_RATE, FRAMES_PER_STEP);
+    Environment incrementalEnv = new Environment(rows, FRAME_RATE, FRAMES_PER_STEP);
+    fullEnv.setObservationRebuildInterval(1);
+    fullEnv.setObservationBuffer(ByteBuffer.allocateDirect(fullEnv.getObservationSize()));
+    incrementalEnv.setObservationBuffer(
+        ByteBuffer.allocateDirect(incrementalEnv.getObservationSize()));
+    int[] actions = new int[BENCHMARK_STEPS];
+    Random random = new Random(9);
+    for (int i = 0; i < actions.length; i++) {
+      actions[i] = random.nextInt(Environment.ACTION_COUNT);
+    }
+
+    double fullMicros = timeSteps(fullEnv, actions);
+    double incrementalMicros = timeSteps(incrementalEnv, actions);
+    Logger.info(
+        String.format(
+            "%dx%d maze, %d channels: full encode %.1f us/step, incremental %.1f us/step"
+                + " (including %d simulated frames per step)",
+            LARGE_SIZE,
+            LARGE_SIZE,
+            fullEnv.getObservationChannels(),
+            fullMicros,
+            incrementalMicros,
+            FRAMES_PER_STEP));
+  }
+
+  /**
+   * Plays the given actions twice, restarting episodes as needed, and returns the time per step of
+   * the second run.
+   *
+   * @param env environment to step
+   * @param actions actions to play
+   * @return microseconds per step
+   */
+  private static double timeSteps(Environment env, int[] actions) {
+    long nanos = 0;
+    for (int round = 0; round < 2; round++) {
+      env.reset(round);
+      long start = System.nanoTime();
+      for (int action : actions) {
+        if (env.isDone()) {
+          env.reset(action);
+        }
+        env.step(action);
+      }
+      nanos = System.nanoTime() - start;
+    }
+    return nanos / 1e3 / actions.length;
+  }
+
+  /**
+   * Generates a square maze of corridors between pillars, filled with dots, with the player and
+   * four ghosts near the center.
+   *
+   * @param size number of rows and columns, even
+   * @return rows of the maze
+   */
+  static String[] largeMaze(int size) {
+    char[][] grid = new char[size][size];
+    for (int row = 0; row < size; row++) {
+      for (int col = 0; col < size; col++) {
+        boolean border = row == 0 || col == 0 || row == size - 1 || col == size - 1;
+        boolean pillar = row % 2 == 0 && col % 2 == 0;
+        grid[row][col] = border || pillar ? '#' : '.';
+      }
+    }
+    int center = size / 2 + 1;
+    grid[center][center - 4] = 'B';
+    grid[center][center - 2] = 'P';
+    grid[center][center] = 'I';
+    grid[center][center + 2] = 'C';
+    grid[center + 8][center] = 'S';
+    grid[1][1] = '*';
+    grid[size - 3][size - 3] = '*';
+    String[] rows = new String[size];
+    for (int row = 0; row < size; row++) {
+      rows[row] = new String(grid[row]);
+    }
+    return rows;
+  }
+}
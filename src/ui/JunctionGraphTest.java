@@ -0,0 +1,203 @@
+package ui;
+
+import api.CorridorIndex;
+import api.Direction;
+import api.JunctionGraph;
+import api.PacmanGame;
+import com.pacman.ghost.ActorImpl;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test and benchmark for JunctionGraph. On each maze, checks that every corridor has an edge each
+ * way of the same length, then compares the shortest path between every two cells with a
+ * breadth-first search over the cells, and checks that the first step given leads one step closer.
+ * Then compares the size of the graph and its table with the grid, and times shortest path
+ * queries against searching the cells.
+ */
+public final class JunctionGraphTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Mazes checked, as for RunGame.getMaze(). */
+  private static final String[] MAZES = {"TEST0", "TEST1", "TEST2", "MAIN1"};
+
+  /** Queries timed in the benchmark. */
+  private static final int QUERIES = 2_000_000;
+
+  /** Private constructor to prevent instantiation. */
+  private JunctionGraphTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = true;
+    for (String mazeId : MAZES) {
+      ok &= check(mazeId);
+    }
+    benchmark();
+    if (ok) {
+      Logger.info("PASS: junction graph");
+    } else {
+      Logger.error("FAIL: junction graph");
+    }
+  }
+
+  /**
+   * Checks the graph of a maze against breadth-first searches over its cells.
+   *
+   * @param mazeId identifier of the maze
+   * @return true if every check passes
+   */
+  private static boolean check(String mazeId) {
+    PacmanGame game = new PacmanGame(RunGame.getMaze(mazeId), FRAME_RATE, 1);
+    CorridorIndex corridors = game.getCorridors();
+    JunctionGraph graph = game.getJunctionGraph();
+    for (int e = 0; e < graph.getEdgeCount(); e++) {
+      int back = graph.getReverseEdge(e);
+      if (graph.getReverseEdge(back) != e
+          || graph.getEdgeLength(back) != graph.getEdgeLength(e)
+          || graph.getEdgeTarget(back) != graph.getEdgeSource(e)) {
+        Logger.error("  failed: " + mazeId + ": edge " + e + " and its reverse differ");
+        return false;
+      }
+    }
+
+    int cols = game.getNumColumns();
+    int cellCount = game.getNumRows() * cols;
+    int[][] distances = new int[cellCount][cellCount];
+    int[] queue = new int[cellCount];
+    for (int from = 0; from < cellCount; from++) {
+      search(corridors, from, distances[from], queue);
+    }
+    int cells = 0;
+    for (int from = 0; from < cellCount; from++) {
+      if (!hasExit(corridors, from)) {
+        continue;
+      }
+      cells++;
+      for (int to = 0; to < cellCount; to++) {
+        int expected = distances[from][to];
+        int distance = graph.getDistance(from / cols, from % cols, to / cols, to % cols);
+        Direction dir = graph.getFirstDirection(from / cols, from % cols, to / cols, to % cols);
+        int next =
+            dir == null ? CorridorIndex.NONE : corridors.getNeighbor(from / cols, from % cols, dir);
+        boolean closer =
+            expected <= 0
+                ? dir == null
+                : next != CorridorIndex.NONE && distances[to][next] == expected - 1;
+        if (distance != expected || !closer) {
+          Logger.error(
+              String.format(
+                  "  failed: %s: path from %d, %d to %d, %d is %d going %s, not %d",
+                  mazeId, from / cols, from % cols, to / cols, to % cols, distance, dir,
+                  expected));
+          return false;
+        }
+      }
+    }
+    Logger.info(
+        String.format(
+            "  ok: %s, %d nodes and %d edges for %d cells, tables of %d rather than %d entries",
+            mazeId, graph.getNodeCount(), graph.getEdgeCount(), cells,
+            graph.getNodeCount() * graph.getNodeCount(), cells * cells));
+    return true;
+  }
+
+  /**
+   * Returns true if a cell has a step out of it.
+   *
+   * @param corridors the corridor index
+   * @param cell the cell
+   * @return true if it has an exit
+   */
+  private static boolean hasExit(CorridorIndex corridors, int cell) {
+    int cols = corridors.getNumColumns();
+    for (Direction dir : Direction.values()) {
+      if (corridors.isOpen(cell / cols, cell % cols, dir)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Finds the number of steps from a cell to every other with a breadth-first search.
+   *
+   * @param corridors the corridor index
+   * @param from the cell
+   * @param distances steps to each cell, filled in with -1 for those out of reach
+   * @param queue room for every cell
+   */
+  private static void search(CorridorIndex corridors, int from, int[] distances, int[] queue) {
+    int cols = corridors.getNumColumns();
+    Arrays.fill(distances, -1);
+    distances[from] = 0;
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = from;
+    while (head < tail) {
+      int cell = queue[head++];
+      for (Direction dir : Direction.values()) {
+        int next = corridors.getNeighbor(cell / cols, cell % cols, dir);
+        if (next != CorridorIndex.NONE && distances[next] < 0) {
+          distances[next] = distances[cell] + 1;
+          queue[tail++] = next;
+        }
+      }
+    }
+  }
+
+  /**
+   * Times shortest path queries between random pairs of cells of the main maze, through the graph
+   * and by a breadth-first search over the cells.
+   */
+  private static void benchmark() {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 1);
+    CorridorIndex corridors = game.getCorridors();
+    JunctionGraph graph = game.getJunctionGraph();
+    int cols = game.getNumColumns();
+    int cellCount = game.getNumRows() * cols;
+    int[] open = new int[cellCount];
+    int openCount = 0;
+    for (int cell = 0; cell < cellCount; cell++) {
+      if (hasExit(corridors, cell)) {
+        open[openCount++] = cell;
+      }
+    }
+    int[] distances = new int[cellCount];
+    int[] queue = new int[cellCount];
+    long graphNanos = 0;
+    long searchNanos = 0;
+    long steps = 0;
+    for (int round = 0; round < 2; round++) {
+      Random random = new Random(round);
+      steps = 0;
+      long start = System.nanoTime();
+      for (int q = 0; q < QUERIES; q++) {
+        int from = open[random.nextInt(openCount)];
+        int to = open[random.nextInt(openCount)];
+        steps += graph.getDistance(from / cols, from % cols, to / cols, to % cols);
+      }
+      graphNanos = System.nanoTime() - start;
+      random = new Random(round);
+      start = System.nanoTime();
+      for (int q = 0; q < QUERIES / 100; q++) {
+        int from = open[random.nextInt(openCount)];
+        int to = open[random.nextInt(openCount)];
+        search(corridors, from, distances, queue);
+        steps -= distances[to];
+      }
+      searchNanos = (System.nanoTime() - start) * 100;
+    }
+    // the searches covered the first of the pairs, so what is left is the other pairs' steps
+    Logger.info(
+        String.format(
+            "  MAIN1: %.0f ns per query through the graph, %.0f ns per search of the cells,"
+                + " %.1f steps on average",
+            (double) graphNanos / QUERIES, (double) searchNanos / QUERIES,
+            (double) steps / (QUERIES - QUERIES / 100)));
+  }
+}
@@ -0,0 +1,402 @@
+package ui;
+
+import api.Actor;
+import api.Direction;
+import api.GameEvent;
+import api.GameEventRing;
+import api.GameEventType;
+import api.MazeCell;
+import api.Mode;
+import api.PacmanGame;
+import com.pacman.env.ObservationEncoder;
+import com.pacman.ghost.ActorImpl;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Test and benchmark for starting levels in place. Checks that a game restarted with
+ * restartLevel() plays exactly like a newly constructed game with the same seed, that nextLevel()
+ * restores the pellets, keeps the score and lives, applies the next level's speeds and publishes
+ * a LEVEL_START event that makes incremental observations rebuild, and that neither allocates.
+ * Checks the global mode sequence of levels 2 and 5 against the arcade game's. Then times both
+ * ways of starting a level against constructing a new game.
+ */
+public final class LevelProgressionTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Frames played before restarting, and compared after it. */
+  private static final int FRAMES = 3000;
+
+  /** Levels advanced through in the nextLevel() check. */
+  private static final int LEVELS = 4;
+
+  /**
+   * A maze without enemies whose dot cannot be reached, so the level runs through every global
+   * mode without the player dying or winning.
+   */
+  private static final String[] SEALED = {
+    "#####", "#S#.#", "#####",
+  };
+
+  /** Seconds each global mode but the last lasts on levels 2 to 4. */
+  private static final double[] LEVEL_2_MODES = {7, 20, 7, 20, 5, 1033, 1.0 / 60};
+
+  /** Seconds each global mode but the last lasts from level 5. */
+  private static final double[] LEVEL_5_MODES = {5, 20, 5, 20, 5, 1037, 1.0 / 60};
+
+  /** Turnovers timed for each way of starting over. */
+  private static final int TIMED_TURNOVERS = 20_000;
+
+  /** Private constructor to prevent instantiation. */
+  private LevelProgressionTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = checkRestart();
+    ok &= checkNextLevel();
+    ok &= checkModeSequence(2, LEVEL_2_MODES);
+    ok &= checkModeSequence(5, LEVEL_5_MODES);
+    ok &= checkAllocations();
+    benchmark();
+    if (ok) {
+      Logger.info("PASS: level progression");
+    } else {
+      Logger.error("FAIL: level progression");
+    }
+  }
+
+  /**
+   * Plays a game for a while, restarts it with a new seed, and compares it every frame with a new
+   * game constructed with that seed, given the same inputs.
+   *
+   * @return true if the games agree on every frame
+   */
+  private static boolean checkRestart() {
+    PacmanGame restarted = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 1);
+    restarted.setPlayerDeathDelay(0);
+    Random random = new Random(5);
+    for (int frame = 0; frame < FRAMES && !restarted.levelOver(); frame++) {
+      restarted.turnPlayer(Direction.values()[random.nextInt(4)]);
+      restarted.updateAll();
+    }
+    restarted.restartLevel(2);
+    PacmanGame fresh = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 2);
+    fresh.setPlayerDeathDelay(0);
+
+    String mismatch = compare(restarted, fresh);
+    int frame = 0;
+    for (; frame < FRAMES && mismatch == null && !fresh.levelOver(); frame++) {
+      Direction dir = Direction.values()[random.nextInt(4)];
+      restarted.turnPlayer(dir);
+      fresh.turnPlayer(dir);
+      restarted.updateAll();
+      fresh.updateAll();
+      mismatch = compare(restarted, fresh);
+    }
+    if (mismatch != null) {
+      Logger.error("  failed: restarted game differs at frame " + frame + ": " + mismatch);
+      return false;
+    }
+    Logger.info("  ok: restarted game matches a new game for " + frame + " frames");
+    return true;
+  }
+
+  /**
+   * Advances a game through several levels, eating every pellet directly before each one, and
+   * checks the state of each new level and its incremental observation.
+   *
+   * @return true if every level starts as expected
+   */
+  private static boolean checkNextLevel() {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 3);
+    game.setPlayerDeathDelay(0);
+    GameEventRing.Subscriber subscriber = game.getEvents().subscribe();
+    GameEvent event = new GameEvent();
+    ObservationEncoder encoder =
+        new ObservationEncoder(game.getNumRows(), game.getNumColumns(), game.getEnemyCount());
+    ByteBuffer observation = ByteBuffer.allocateDirect(encoder.getSize());
+    encoder.setTarget(observation);
+    encoder.encode(game);
+    ObservationEncoder reference =
+        new ObservationEncoder(game.getNumRows(), game.getNumColumns(), game.getEnemyCount());
+    ByteBuffer expected = ByteBuffer.allocateDirect(reference.getSize());
+    reference.setTarget(expected);
+
+    double firstSpeed = game.getEnemy(0).getBaseIncrement();
+    for (int level = 2; level <= LEVELS; level++) {
+      for (int frame = 0; frame < FRAME_RATE; frame++) {
+        game.updateAll();
+      }
+      encoder.update(game);
+      int score = game.getScore();
+      int lives = game.getLives();
+      eatEverything(game);
+      game.nextLevel();
+      encoder.update(game);
+      reference.encode(game);
+
+      int starts = 0;
+      while (subscriber.poll(event)) {
+        if (event.getType() == GameEventType.LEVEL_START) {
+          starts++;
+        }
+      }
+      String problem = null;
+      if (game.getLevel() != level) {
+        problem = "level is " + game.getLevel();
+      } else if (game.getScore() != score || game.getLives() != lives) {
+        problem = "score or lives changed";
+      } else if (starts != 1) {
+        problem = starts + " LEVEL_START events";
+      } else if (countUneaten(game) == 0 || game.levelOver()) {
+        problem = "pellets were not restored";
+      } else if (!observation.equals(expected)) {
+        problem = "incremental observation was not rebuilt";
+      } else if (game.getEnemy(0).getBaseIncrement() <= firstSpeed
+          || game.getEnemy(0).getCurrentIncrement() != game.getEnemy(0).getBaseIncrement()) {
+        problem = "enemy speed " + game.getEnemy(0).getCurrentIncrement() + " not applied";
+      } else if (atHome(game) != game.getEnemyCount() + 1) {
+        problem = "actors were not reset";
+      }
+      if (problem != null) {
+        Logger.error("  failed: level " + level + ": " + problem);
+        return false;
+      }
+    }
+    Logger.info(
+        "  ok: advanced to level "
+            + game.getLevel()
+            + ", enemy speed "
+            + firstSpeed
+            + " -> "
+            + game.getEnemy(0).getBaseIncrement()
+            + " cells per frame");
+    return true;
+  }
+
+  /**
+   * Plays a level on a maze where nothing happens but the global mode changes, and checks that
+   * the modes alternate from scatter and each lasts as long as expected, in whole frames and at
+   * least one.
+   *
+   * @param level the level
+   * @param seconds how long each mode but the last lasts
+   * @return true if the modes change as expected
+   */
+  private static boolean checkModeSequence(int level, double[] seconds) {
+    PacmanGame game = new PacmanGame(SEALED, FRAME_RATE, 1);
+    while (game.getLevel() < level) {
+      game.nextLevel();
+    }
+    GameEventRing.Subscriber subscriber = game.getEvents().subscribe();
+    GameEvent event = new GameEvent();
+    int start = game.getFrameCount();
+    int changes = 0;
+    int limit = 0;
+    for (double s : seconds) {
+      limit += Math.max(1, (int) Math.round(s * FRAME_RATE));
+    }
+    while (changes < seconds.length && game.getFrameCount() - start <= limit) {
+      game.updateAll();
+      while (subscriber.poll(event)) {
+        if (event.getType() != GameEventType.GLOBAL_MODE_CHANGE) {
+          continue;
+        }
+        int expected = Math.max(1, (int) Math.round(seconds[changes] * FRAME_RATE));
+        Mode mode = changes % 2 == 0 ? Mode.CHASE : Mode.SCATTER;
+        if (event.getFrame() - start != expected || event.getMode() != mode) {
+          Logger.error(
+              String.format(
+                  "  failed: level %d, mode %d: %s after %d frames, expected %s after %d",
+                  level, changes, event.getMode(), event.getFrame() - start, mode, expected));
+          return false;
+        }
+        start = event.getFrame();
+        changes++;
+      }
+    }
+    if (changes != seconds.length || game.getGlobalMode() != Mode.CHASE) {
+      Logger.error("  failed: level " + level + ": " + changes + " global mode changes");
+      return false;
+    }
+    Logger.info(
+        "  ok: level " + level + " ran through " + changes + " global mode changes on time");
+    return true;
+  }
+
+  /**
+   * Checks that restartLevel() and nextLevel() allocate nothing once warmed up.
+   *
+   * @return true if no bytes were allocated
+   */
+  private static boolean checkAllocations() {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 4);
+    game.setPlayerDeathDelay(0);
+    long bytes = 0;
+    for (int round = 0; round < 2; round++) {
+      long before = threads.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < TIMED_TURNOVERS; i++) {
+        game.updateAll();
+        if (i % 2 == 0) {
+          game.nextLevel();
+        } else {
+          game.restartLevel(i);
+        }
+      }
+      long after = threads.getThreadAllocatedBytes(threadId);
+      if (round == 1) {
+        bytes = after - before;
+      }
+    }
+    Logger.info("  " + TIMED_TURNOVERS + " level starts allocated " + bytes + " bytes");
+    if (bytes > 0) {
+      Logger.error("  failed: starting a level allocates");
+      return false;
+    }
+    return true;
+  }
+
+  /** Times restartLevel() and nextLevel() against constructing a new game. */
+  private static void benchmark() {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 5);
+    long restartNanos = 0;
+    long nextNanos = 0;
+    long constructNanos = 0;
+    long sink = 0;
+    for (int round = 0; round < 2; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < TIMED_TURNOVERS; i++) {
+        game.restartLevel(i);
+      }
+      restartNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < TIMED_TURNOVERS; i++) {
+        game.nextLevel();
+      }
+      nextNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < TIMED_TURNOVERS; i++) {
+        sink += new PacmanGame(RunGame.MAIN1, FRAME_RATE, i).getEnemyCount();
+      }
+      constructNanos = System.nanoTime() - start;
+    }
+    Logger.info(
+        String.format(
+            "  restartLevel %.2f us, nextLevel %.2f us, new PacmanGame %.2f us (%d)",
+            restartNanos / 1e3 / TIMED_TURNOVERS,
+            nextNanos / 1e3 / TIMED_TURNOVERS,
+            constructNanos / 1e3 / TIMED_TURNOVERS,
+            sink));
+  }
+
+  /**
+   * Eats every dot and energizer directly through the cells, as if the level had been cleared.
+   *
+   * @param game the game
+   */
+  private static void eatEverything(PacmanGame game) {
+    for (int row = 0; row < game.getNumRows(); row++) {
+      for (int col = 0; col < game.getNumColumns(); col++) {
+        game.getCell(row, col).eat();
+      }
+    }
+  }
+
+  /**
+   * Counts the cells that can be eaten.
+   *
+   * @param game the game
+   * @return number of uneaten dots and energizers
+   */
+  private static int countUneaten(PacmanGame game) {
+    int count = 0;
+    for (int row = 0; row < game.getNumRows(); row++) {
+      for (int col = 0; col < game.getNumColumns(); col++) {
+        MazeCell cell = game.getCell(row, col);
+        if (cell.canEat()) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Counts the player and enemies that are in their home cells.
+   *
+   * @param game the game
+   * @return number of actors at home
+   */
+  private static int atHome(PacmanGame game) {
+    Actor player = game.getPlayer();
+    int count = 0;
+    if (player.getCurrentLocation().equals(player.getHomeLocation())) {
+      count++;
+    }
+    for (int e = 0; e < game.getEnemyCount(); e++) {
+      Actor enemy = game.getEnemy(e);
+      if (enemy.getCurrentLocation().equals(enemy.getHomeLocation())) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Compares the state of two games.
+   *
+   * @param a one game
+   * @param b the other game
+   * @return description of the first difference, or null if there is none
+   */
+  private static String compare(PacmanGame a, PacmanGame b) {
+    if (a.getScore() != b.getScore()
+        || a.getLives() != b.getLives()
+        || a.getFrameCount() != b.getFrameCount()
+        || a.getGlobalMode() != b.getGlobalMode()
+        || a.getFrightenedCount() != b.getFrightenedCount()) {
+      return "score, lives, frame count or modes";
+    }
+    if (!sameActor(a.getPlayer(), b.getPlayer())) {
+      return "player";
+    }
+    for (int e = 0; e < a.getEnemyCount(); e++) {
+      if (!sameActor(a.getEnemy(e), b.getEnemy(e))) {
+        return "enemy " + e;
+      }
+    }
+    for (int row = 0; row < a.getNumRows(); row++) {
+      for (int col = 0; col < a.getNumColumns(); col++) {
+        if (a.getCell(row, col).canEat() != b.getCell(row, col).canEat()) {
+          return "cell (" + row + ", " + col + ")";
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Compares the exact position, direction, speed and mode of two actors.
+   *
+   * @param a one actor
+   * @param b the other actor
+   * @return true if they agree
+   */
+  private static boolean sameActor(Actor a, Actor b) {
+    return a.getRowExact() == b.getRowExact()
+        && a.getColExact() == b.getColExact()
+        && a.getCurrentDirection() == b.getCurrentDirection()
+        && a.getCurrentIncrement() == b.getCurrentIncrement()
+        && a.getMode() == b.getMode();
+  }
+}
@@ -0,0 +1,107 @@
+package ui;
+
+import api.MazeRegions;
+import api.PacmanGame;
+import com.pacman.ghost.ActorImpl;
+
+/**
+ * Test for MazeRegions. Checks the ghost house found in each maze against the cells expected,
+ * including a maze whose house is in a corner, and the tunnels against the rows whose two ends are
+ * open. Then counts the cells where the ghost house found differs from the box around the centre
+ * of the maze that was used before.
+ */
+public final class MazeRegionsTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** A maze with its ghost house in the top left corner, and a tunnel below it. */
+  private static final String[] CORNER = {
+    "###########",
+    "#B.P#.....#",
+    "#...#.###.#",
+    "#I.C#.....#",
+    "##.##.###.#",
+    " ....S.... ",
+    "###########",
+  };
+
+  /** Rows and columns of the box around the centre that was taken for the ghost house. */
+  private static final int OLD_ROW_RADIUS = 2;
+  private static final int OLD_COL_RADIUS = 3;
+
+  /** Private constructor to prevent instantiation. */
+  private MazeRegionsTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = check("TEST0", RunGame.TEST0, 0, -1, 0, -1);
+    ok &= check("TEST1", RunGame.TEST1, 2, 2, 3, 3);
+    ok &= check("TEST2", RunGame.TEST2, 3, 3, 3, 3);
+    ok &= check("MAIN1", RunGame.MAIN1, 12, 12, 12, 15);
+    ok &= check("CORNER", CORNER, 1, 3, 1, 3);
+    if (ok) {
+      Logger.info("PASS: maze regions");
+    } else {
+      Logger.error("FAIL: maze regions");
+    }
+  }
+
+  /**
+   * Checks that the ghost house of a maze is the open cells of a rectangle, or that it has none
+   * when the rectangle is empty, and that the tunnels are the rows open at both ends.
+   *
+   * @param name name of the maze
+   * @param rows the maze
+   * @param top first row of the house
+   * @param bottom last row of the house, less than top for a maze without enemies
+   * @param left first column of the house
+   * @param right last column of the house
+   * @return true if the checks pass
+   */
+  private static boolean check(
+      String name, String[] rows, int top, int bottom, int left, int right) {
+    PacmanGame game = new PacmanGame(rows, FRAME_RATE);
+    MazeRegions regions = game.getRegions();
+    int numRows = game.getNumRows();
+    int cols = game.getNumColumns();
+    int houseCells = 0;
+    int differences = 0;
+    for (int row = 0; row < numRows; row++) {
+      for (int col = 0; col < cols; col++) {
+        boolean open = !game.getCell(row, col).isWall();
+        boolean inside = row >= top && row <= bottom && col >= left && col <= right;
+        if (regions.isInGhostHouse(row, col) != (open && inside)) {
+          Logger.error("  failed: " + name + ": cell " + row + ", " + col + " in the house");
+          return false;
+        }
+        houseCells += open && inside ? 1 : 0;
+        boolean oldBox =
+            Math.abs(row - numRows / 2) <= OLD_ROW_RADIUS
+                && Math.abs(col - cols / 2) <= OLD_COL_RADIUS;
+        differences += open && oldBox != inside ? 1 : 0;
+
+        boolean tunnel =
+            (col == 0 || col == cols - 1)
+                && !game.getCell(row, 0).isWall()
+                && !game.getCell(row, cols - 1).isWall();
+        int portal = tunnel ? row * cols + cols - 1 - col : MazeRegions.NONE;
+        if (regions.isPortal(row, col) != tunnel || regions.getPortal(row, col) != portal) {
+          Logger.error("  failed: " + name + ": tunnel at cell " + row + ", " + col);
+          return false;
+        }
+      }
+    }
+    if (regions.getHouseCellCount() != houseCells) {
+      Logger.error("  failed: " + name + ": " + regions.getHouseCellCount() + " house cells");
+      return false;
+    }
+    Logger.info(
+        String.format(
+            "  ok: %s, %d cells in the house, %d open cells judged differently by the old box",
+            name, houseCells, differences));
+    return true;
+  }
+}
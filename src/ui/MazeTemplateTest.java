@@ -0,0 +1,134 @@
+package ui;
+
+import api.MazeCell;
+import api.MazeTemplate;
+import api.PacmanGame;
+import com.pacman.ghost.ActorImpl;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Test and benchmark for MazeTemplate. Checks that games on the same layout share one template and
+ * its walls, that each keeps its own pellets, and that a game's cells read and eat its pellets.
+ * Then measures the memory allocated for each new game on the main maze, with the template
+ * shared and with a template built for every game.
+ */
+public final class MazeTemplateTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Games built for each memory measurement. */
+  private static final int GAMES = 1000;
+
+  /** Private constructor to prevent instantiation. */
+  private MazeTemplateTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = checkSharing();
+    ok &= checkPellets();
+    measure();
+    if (ok) {
+      Logger.info("PASS: maze template");
+    } else {
+      Logger.error("FAIL: maze template");
+    }
+  }
+
+  /**
+   * Checks that games on equal rows share a template, its walls and its indexes, and that a
+   * template built directly is a game's own.
+   *
+   * @return true if the checks pass
+   */
+  private static boolean checkSharing() {
+    PacmanGame a = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 1);
+    PacmanGame b = new PacmanGame(RunGame.MAIN1.clone(), FRAME_RATE, 2);
+    PacmanGame own = new PacmanGame(new MazeTemplate(RunGame.MAIN1), FRAME_RATE, 1, 1);
+    if (a.getTemplate() != b.getTemplate()
+        || a.getCorridors() != b.getCorridors()
+        || a.getCell(0, 0) != b.getCell(0, 0)
+        || a.getTemplate() == own.getTemplate()) {
+      Logger.error("  failed: games on the same layout do not share their template");
+      return false;
+    }
+    if (a.getTemplate() == new PacmanGame(RunGame.TEST0, FRAME_RATE).getTemplate()) {
+      Logger.error("  failed: games on different layouts share a template");
+      return false;
+    }
+    Logger.info("  ok: games on the same layout share a template");
+    return true;
+  }
+
+  /**
+   * Eats pellets through the cells of one game and checks that the other game on the template
+   * keeps them, and that restarting the level restores them.
+   *
+   * @return true if the checks pass
+   */
+  private static boolean checkPellets() {
+    PacmanGame a = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 1);
+    PacmanGame b = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 1);
+    int cols = a.getNumColumns();
+    for (int i = 0; i < a.getPelletCellCount(); i += 2) {
+      int cell = a.getPelletCell(i);
+      MazeCell c = a.getCell(cell / cols, cell % cols);
+      if (c != a.getCell(cell / cols, cell % cols) || !c.canEat()) {
+        Logger.error("  failed: pellet cell " + cell + " before eating");
+        return false;
+      }
+      c.eat();
+    }
+    for (int i = 0; i < a.getPelletCellCount(); i++) {
+      int cell = a.getPelletCell(i);
+      int row = cell / cols;
+      int col = cell % cols;
+      boolean eaten = i % 2 == 0;
+      if (a.canEat(row, col) == eaten
+          || a.getCell(row, col).canEat() == eaten
+          || !b.canEat(row, col)
+          || !b.getCell(row, col).canEat()) {
+        Logger.error("  failed: pellet cell " + cell + " after eating in one game");
+        return false;
+      }
+    }
+    a.restartLevel();
+    for (int i = 0; i < a.getPelletCellCount(); i++) {
+      int cell = a.getPelletCell(i);
+      if (!a.canEat(cell / cols, cell % cols)) {
+        Logger.error("  failed: pellet cell " + cell + " not restored");
+        return false;
+      }
+    }
+    Logger.info("  ok: each game eats its own pellets");
+    return true;
+  }
+
+  /** Measures the memory allocated for each game, sharing the template and not. */
+  private static void measure() {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    PacmanGame[] games = new PacmanGame[GAMES];
+    long shared = 0;
+    long separate = 0;
+    for (int round = 0; round < 2; round++) {
+      long before = threads.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < GAMES; i++) {
+        games[i] = new PacmanGame(RunGame.MAIN1, FRAME_RATE, i);
+      }
+      shared = threads.getThreadAllocatedBytes(threadId) - before;
+      before = threads.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < GAMES; i++) {
+        games[i] = new PacmanGame(new MazeTemplate(RunGame.MAIN1), FRAME_RATE, i, 1);
+      }
+      separate = threads.getThreadAllocatedBytes(threadId) - before;
+    }
+    Logger.info(
+        String.format(
+            "  MAIN1: %d bytes allocated per game sharing the template, %d with its own",
+            shared / GAMES, separate / GAMES));
+  }
+}
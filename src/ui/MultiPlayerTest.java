@@ -0,0 +1,471 @@
+package ui;
+
+import api.Actor;
+import api.Direction;
+import api.GameEvent;
+import api.GameEventRing;
+import api.GameEventType;
+import api.MazeCell;
+import api.PacmanGame;
+import com.pacman.env.ObservationEncoder;
+import com.pacman.ghost.ActorImpl;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Test and benchmark for games with several players. Checks that a one-player game plays exactly
+ * like the original constructor, that two players given the same inputs share the pellets a lone
+ * player would eat, that each enemy chases the nearest player in play, that players lose lives
+ * independently and the level only ends when none is left, that events name the player they
+ * concern, that incremental observations mark every player, and that the same inputs replay the
+ * same game. Then times a frame with growing numbers of players.
+ */
+public final class MultiPlayerTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Most frames played in each check. */
+  private static final int FRAMES = 100_000;
+
+  /** Players in the lives and determinism checks. */
+  private static final int PLAYERS = 4;
+
+  /** Player counts in the benchmark. */
+  private static final int[] PLAYER_COUNTS = {1, 2, 8, 64};
+
+  /** Frames timed for each player count. */
+  private static final int BENCHMARK_FRAMES = 20_000;
+
+  /** Private constructor to prevent instantiation. */
+  private MultiPlayerTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = checkSinglePlayer();
+    ok &= checkSharedPellets();
+    ok &= checkLivesAndTargets();
+    ok &= checkEvents();
+    ok &= checkObservations();
+    ok &= checkDeterminism();
+    ok &= checkArguments();
+    for (int players : PLAYER_COUNTS) {
+      benchmark(players);
+    }
+    if (ok) {
+      Logger.info("PASS: multiple players");
+    } else {
+      Logger.error("FAIL: multiple players");
+    }
+  }
+
+  /**
+   * Plays a game made with the original constructor and a one-player game with the same inputs,
+   * comparing them every frame.
+   *
+   * @return true if the games agree on every frame
+   */
+  private static boolean checkSinglePlayer() {
+    PacmanGame original = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 7);
+    PacmanGame single = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 7, 1);
+    original.setPlayerDeathDelay(0);
+    single.setPlayerDeathDelay(0);
+    Random random = new Random(7);
+    int frame = 0;
+    for (; frame < FRAMES && !original.levelOver(); frame++) {
+      if (random.nextInt(8) == 0) {
+        Direction dir = Direction.values()[random.nextInt(4)];
+        original.turnPlayer(dir);
+        single.turnPlayer(0, dir);
+      }
+      original.updateAll();
+      single.updateAll();
+      String mismatch = compare(original, single);
+      if (mismatch != null) {
+        Logger.error("  failed: one-player game differs at frame " + frame + ": " + mismatch);
+        return false;
+      }
+    }
+    Logger.info("  ok: one-player game matches the original for " + frame + " frames");
+    return true;
+  }
+
+  /**
+   * Plays two players on the same start cell with the same inputs in a maze without enemies, next
+   * to a lone player. The two move as one, so between them they must eat exactly the pellets the
+   * lone player eats, taking turns as the frame count rotates the order.
+   *
+   * @return true if the pellets are shared as expected
+   */
+  private static boolean checkSharedPellets() {
+    PacmanGame lone = new PacmanGame(RunGame.TEST0, FRAME_RATE, 1);
+    PacmanGame pair = new PacmanGame(RunGame.TEST0, FRAME_RATE, 1, 2);
+    Random random = new Random(1);
+    int frame = 0;
+    for (; frame < FRAMES && !lone.levelOver(); frame++) {
+      if (random.nextInt(8) == 0) {
+        Direction dir = Direction.values()[random.nextInt(4)];
+        lone.turnPlayer(dir);
+        pair.turnPlayer(0, dir);
+        pair.turnPlayer(1, dir);
+      }
+      lone.updateAll();
+      pair.updateAll();
+      Actor first = pair.getPlayer(0);
+      Actor second = pair.getPlayer(1);
+      if (pair.getScore(0) + pair.getScore(1) != lone.getScore()
+          || first.getRowExact() != second.getRowExact()
+          || first.getColExact() != second.getColExact()
+          || first.getRowExact() != lone.getPlayer().getRowExact()
+          || first.getColExact() != lone.getPlayer().getColExact()) {
+        Logger.error("  failed: frame " + frame + ": the pair and the lone player differ");
+        return false;
+      }
+    }
+    if (!pair.levelOver() || pair.getScore(0) == 0 || pair.getScore(1) == 0) {
+      Logger.error("  failed: the pair did not share the pellets");
+      return false;
+    }
+    Logger.info(
+        String.format(
+            "  ok: the pair scored %d and %d, the lone player %d, in %d frames",
+            pair.getScore(0), pair.getScore(1), lone.getScore(), frame));
+    return true;
+  }
+
+  /**
+   * Plays several players at random until the level ends, checking before each frame which player
+   * each enemy will chase, and after it that lives only go down, that a player without lives stays
+   * dead and still, and that the level goes on while any player has lives.
+   *
+   * @return true if every check passes
+   */
+  private static boolean checkLivesAndTargets() {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 3, PLAYERS);
+    game.setPlayerDeathDelay(0);
+    Random random = new Random(3);
+    int[] lives = new int[PLAYERS];
+    int[] expectedTargets = new int[game.getEnemyCount()];
+    int frame = 0;
+    for (; frame < FRAMES && !game.levelOver(); frame++) {
+      for (int p = 0; p < PLAYERS; p++) {
+        lives[p] = game.getLives(p);
+        if (random.nextInt(8) == 0) {
+          game.turnPlayer(p, Direction.values()[random.nextInt(4)]);
+        }
+      }
+      for (int i = 0; i < expectedTargets.length; i++) {
+        expectedTargets[i] = nearestPlayer(game, game.getEnemy(i));
+      }
+      double outRow = game.getPlayer(0).getRowExact();
+      double outCol = game.getPlayer(0).getColExact();
+      game.updateAll();
+
+      for (int i = 0; i < expectedTargets.length; i++) {
+        if (game.getEnemyTarget(i) != expectedTargets[i]) {
+          Logger.error("  failed: frame " + frame + ": enemy " + i + " chased the wrong player");
+          return false;
+        }
+      }
+      boolean anyLives = false;
+      for (int p = 0; p < PLAYERS; p++) {
+        int left = game.getLives(p);
+        if (left > lives[p] || left < lives[p] - 1 || game.isPlayerDead(p) != (left == 0)) {
+          Logger.error("  failed: frame " + frame + ": player " + p + " has " + left + " lives");
+          return false;
+        }
+        anyLives |= left > 0;
+      }
+      if (lives[0] == 0
+          && (game.getPlayer(0).getRowExact() != outRow
+              || game.getPlayer(0).getColExact() != outCol)) {
+        Logger.error("  failed: frame " + frame + ": a player without lives moved");
+        return false;
+      }
+      if (game.levelOver() == anyLives && countUneaten(game) > 0) {
+        Logger.error("  failed: frame " + frame + ": the level end disagrees with the lives left");
+        return false;
+      }
+    }
+    Logger.info(
+        String.format(
+            "  ok: %d players, %d frames, scores %d %d %d %d, lives %d %d %d %d",
+            PLAYERS,
+            frame,
+            game.getScore(0),
+            game.getScore(1),
+            game.getScore(2),
+            game.getScore(3),
+            game.getLives(0),
+            game.getLives(1),
+            game.getLives(2),
+            game.getLives(3)));
+    return true;
+  }
+
+  /**
+   * Plays several players at random until the level ends, adding up the points and deaths in the
+   * events of each player, and checks them against the player's score and lives, and that each
+   * event carries the score and lives of the player it names.
+   *
+   * @return true if every check passes
+   */
+  private static boolean checkEvents() {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 5, PLAYERS);
+    game.setPlayerDeathDelay(0);
+    GameEventRing.Subscriber subscriber = game.getEvents().subscribe();
+    GameEvent event = new GameEvent();
+    Random random = new Random(5);
+    int[] points = new int[PLAYERS];
+    int[] deaths = new int[PLAYERS];
+    int[] startLives = new int[PLAYERS];
+    for (int p = 0; p < PLAYERS; p++) {
+      startLives[p] = game.getLives(p);
+    }
+    int frame = 0;
+    for (; frame < FRAMES && !game.levelOver(); frame++) {
+      for (int p = 0; p < PLAYERS; p++) {
+        if (random.nextInt(8) == 0) {
+          game.turnPlayer(p, Direction.values()[random.nextInt(4)]);
+        }
+      }
+      game.updateAll();
+      while (subscriber.poll(event)) {
+        int p = event.getPlayer();
+        GameEventType type = event.getType();
+        boolean aboutPlayer =
+            type == GameEventType.PELLET_EATEN
+                || type == GameEventType.ENERGIZER_EATEN
+                || type == GameEventType.GHOST_EATEN
+                || type == GameEventType.PLAYER_DEATH;
+        if (aboutPlayer != (p >= 0) || p >= PLAYERS) {
+          Logger.error("  failed: frame " + frame + ": " + event);
+          return false;
+        }
+        if (!aboutPlayer) {
+          continue;
+        }
+        points[p] += Math.max(event.getPoints(), 0);
+        deaths[p] += type == GameEventType.PLAYER_DEATH ? 1 : 0;
+        if (event.getScore() != points[p] || event.getLives() != startLives[p] - deaths[p]) {
+          Logger.error("  failed: frame " + frame + ": score or lives of " + event);
+          return false;
+        }
+      }
+    }
+    for (int p = 0; p < PLAYERS; p++) {
+      if (points[p] != game.getScore(p) || startLives[p] - deaths[p] != game.getLives(p)) {
+        Logger.error("  failed: the events of player " + p + " do not add up");
+        return false;
+      }
+    }
+    Logger.info(
+        String.format(
+            "  ok: events of %d players add up to their scores and lives over %d frames",
+            PLAYERS, frame));
+    return true;
+  }
+
+  /**
+   * Plays several players at random, keeping an observation up to date incrementally, and checks
+   * it against a full encode after every frame.
+   *
+   * @return true if the observations match on every frame
+   */
+  private static boolean checkObservations() {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 9, PLAYERS);
+    game.setPlayerDeathDelay(0);
+    int rows = game.getNumRows();
+    int cols = game.getNumColumns();
+    ObservationEncoder incremental = new ObservationEncoder(rows, cols, game.getEnemyCount());
+    ObservationEncoder reference = new ObservationEncoder(rows, cols, game.getEnemyCount());
+    ByteBuffer updated = ByteBuffer.allocate(incremental.getSize());
+    ByteBuffer full = ByteBuffer.allocate(reference.getSize());
+    incremental.setTarget(updated);
+    incremental.setRebuildInterval(Integer.MAX_VALUE);
+    reference.setTarget(full);
+    incremental.encode(game);
+    Random random = new Random(9);
+    int frame = 0;
+    for (; frame < FRAMES && !game.levelOver(); frame++) {
+      for (int p = 0; p < PLAYERS; p++) {
+        if (random.nextInt(8) == 0) {
+          game.turnPlayer(p, Direction.values()[random.nextInt(4)]);
+        }
+      }
+      game.updateAll();
+      incremental.update(game);
+      reference.encode(game);
+      if (!updated.equals(full)) {
+        Logger.error("  failed: frame " + frame + ": incremental observation differs");
+        return false;
+      }
+    }
+    for (int p = 0; p < PLAYERS; p++) {
+      Actor player = game.getPlayer(p);
+      int index =
+          (ObservationEncoder.PLAYER_CHANNEL * rows + player.getCurrentRow()) * cols
+              + player.getCurrentCol();
+      if (updated.get(index) != 1) {
+        Logger.error("  failed: player " + p + " is not marked in the observation");
+        return false;
+      }
+    }
+    Logger.info(
+        "  ok: incremental observations of " + PLAYERS + " players for " + frame + " frames");
+    return true;
+  }
+
+  /**
+   * Returns the player in play nearest to an enemy, ties going to the lowest index.
+   *
+   * @param game the game
+   * @param enemy the enemy
+   * @return index of the player
+   */
+  private static int nearestPlayer(PacmanGame game, Actor enemy) {
+    int nearest = 0;
+    int shortest = Integer.MAX_VALUE;
+    for (int p = 0; p < game.getPlayerCount(); p++) {
+      if (!game.isPlayerDead(p)) {
+        int dr = game.getPlayer(p).getCurrentRow() - enemy.getCurrentRow();
+        int dc = game.getPlayer(p).getCurrentCol() - enemy.getCurrentCol();
+        if (dr * dr + dc * dc < shortest) {
+          shortest = dr * dr + dc * dc;
+          nearest = p;
+        }
+      }
+    }
+    return nearest;
+  }
+
+  /**
+   * Counts the cells of a game whose pellet or energizer has not been eaten.
+   *
+   * @param game the game
+   * @return number of uneaten cells
+   */
+  private static int countUneaten(PacmanGame game) {
+    int count = 0;
+    for (int row = 0; row < game.getNumRows(); row++) {
+      for (int col = 0; col < game.getNumColumns(); col++) {
+        MazeCell cell = game.getCell(row, col);
+        if (cell.canEat()) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Plays two games with several players and the same inputs, comparing them every frame.
+   *
+   * @return true if the games agree on every frame
+   */
+  private static boolean checkDeterminism() {
+    PacmanGame a = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 11, PLAYERS);
+    PacmanGame b = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 11, PLAYERS);
+    a.setPlayerDeathDelay(0);
+    b.setPlayerDeathDelay(0);
+    Random random = new Random(11);
+    int frame = 0;
+    for (; frame < FRAMES && !a.levelOver(); frame++) {
+      for (int p = 0; p < PLAYERS; p++) {
+        if (random.nextInt(8) == 0) {
+          Direction dir = Direction.values()[random.nextInt(4)];
+          a.turnPlayer(p, dir);
+          b.turnPlayer(p, dir);
+        }
+      }
+      a.updateAll();
+      b.updateAll();
+      String mismatch = compare(a, b);
+      if (mismatch != null) {
+        Logger.error("  failed: replayed game differs at frame " + frame + ": " + mismatch);
+        return false;
+      }
+    }
+    Logger.info("  ok: replayed " + PLAYERS + "-player game matches for " + frame + " frames");
+    return true;
+  }
+
+  /**
+   * Compares the state of two games with the same number of players.
+   *
+   * @param a first game
+   * @param b second game
+   * @return a description of the first difference, or null if there is none
+   */
+  private static String compare(PacmanGame a, PacmanGame b) {
+    if (a.levelOver() != b.levelOver() || countUneaten(a) != countUneaten(b)) {
+      return "level state differs";
+    }
+    for (int p = 0; p < a.getPlayerCount(); p++) {
+      if (a.getScore(p) != b.getScore(p)
+          || a.getLives(p) != b.getLives(p)
+          || a.isPlayerDead(p) != b.isPlayerDead(p)
+          || a.getPlayer(p).getRowExact() != b.getPlayer(p).getRowExact()
+          || a.getPlayer(p).getColExact() != b.getPlayer(p).getColExact()) {
+        return "player " + p + " differs";
+      }
+    }
+    for (int i = 0; i < a.getEnemyCount(); i++) {
+      Actor x = a.getEnemy(i);
+      Actor y = b.getEnemy(i);
+      if (x.getRowExact() != y.getRowExact()
+          || x.getColExact() != y.getColExact()
+          || x.getMode() != y.getMode()) {
+        return "enemy " + i + " differs";
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks that a game needs at least one player.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkArguments() {
+    try {
+      new PacmanGame(RunGame.MAIN1, FRAME_RATE, 0, 0);
+      Logger.error("  failed: a game was built without players");
+      return false;
+    } catch (IllegalArgumentException expected) {
+      return true;
+    }
+  }
+
+  /**
+   * Times frames of a game on the MAIN1 maze with the given number of players, which turn at
+   * random, restarting the game when the level ends.
+   *
+   * @param players number of players
+   */
+  private static void benchmark(int players) {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 1, players);
+    game.setPlayerDeathDelay(0);
+    Random random = new Random(players);
+    Direction[] directions = Direction.values();
+    double nanos = 0;
+    for (int round = 0; round < 2; round++) {
+      long start = System.nanoTime();
+      for (int frame = 0; frame < BENCHMARK_FRAMES; frame++) {
+        if (game.levelOver()) {
+          game.restartLevel(frame);
+        }
+        int p = random.nextInt(players);
+        game.turnPlayer(p, directions[random.nextInt(directions.length)]);
+        game.updateAll();
+      }
+      nanos = (double) (System.nanoTime() - start) / BENCHMARK_FRAMES;
+    }
+    Logger.info(
+        String.format(
+            "  %2d players: %8.0f ns per frame, %6.0f ns per player",
+            players, nanos, nanos / players));
+  }
+}
@@ -0,0 +1,186 @@
+package ui;
+
+import api.OccupancyGrid;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test and benchmark for OccupancyGrid. Moves random walkers around a grid and checks after every
+ * step that the grid lists exactly the walkers in each cell, in ascending order through
+ * getFirstAfter(). Then times finding the collisions of several players with growing numbers of
+ * ghosts, comparing every player with every ghost against looking up each player's cell.
+ */
+public final class OccupancyGridTest {
+
+  /** Rows of the grids, as in the MAIN1 maze. */
+  private static final int ROWS = 31;
+
+  /** Columns of the grids, as in the MAIN1 maze. */
+  private static final int COLUMNS = 28;
+
+  /** Walkers in the conformance check. */
+  private static final int WALKERS = 100;
+
+  /** Steps in the conformance check. */
+  private static final int STEPS = 2000;
+
+  /** Players in the benchmark. */
+  private static final int PLAYERS = 8;
+
+  /** Ghost counts in the benchmark. */
+  private static final int[] GHOST_COUNTS = {4, 100, 1000, 10_000};
+
+  /** Frames timed for each ghost count. */
+  private static final int FRAMES = 2000;
+
+  /** Private constructor to prevent instantiation. */
+  private OccupancyGridTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    boolean ok = checkConformance();
+    for (int ghosts : GHOST_COUNTS) {
+      ok &= benchmark(ghosts);
+    }
+    if (ok) {
+      Logger.info("PASS: occupancy grid");
+    } else {
+      Logger.error("FAIL: occupancy grid");
+    }
+  }
+
+  /**
+   * Moves walkers at random, sometimes off the grid, and compares the grid with their cells.
+   *
+   * @return true if the grid always matches
+   */
+  private static boolean checkConformance() {
+    OccupancyGrid grid = new OccupancyGrid(ROWS * COLUMNS, WALKERS);
+    int[] cells = new int[WALKERS];
+    Arrays.fill(cells, OccupancyGrid.NONE);
+    Random random = new Random(2);
+    for (int step = 0; step < STEPS; step++) {
+      int walker = random.nextInt(WALKERS);
+      int cell = random.nextInt(50) == 0 ? OccupancyGrid.NONE : random.nextInt(ROWS * COLUMNS / 8);
+      grid.move(walker, cell);
+      cells[walker] = cell;
+
+      int occupied = 0;
+      for (int c = 0; c < ROWS * COLUMNS; c++) {
+        int count = 0;
+        int previous = OccupancyGrid.NONE;
+        for (int w = 0; w < WALKERS; w++) {
+          if (cells[w] == c) {
+            if (grid.getFirstAfter(c, previous) != w) {
+              Logger.error("  failed: step " + step + ": walker " + w + " missing from cell " + c);
+              return false;
+            }
+            previous = w;
+            count++;
+          }
+        }
+        if (grid.getFirstAfter(c, previous) != OccupancyGrid.NONE || grid.getCount(c) != count) {
+          Logger.error("  failed: step " + step + ": cell " + c + " holds other walkers");
+          return false;
+        }
+        occupied += count > 0 ? 1 : 0;
+      }
+      if (occupied != grid.getOccupiedCellCount() || grid.getCell(walker) != cell) {
+        Logger.error("  failed: step " + step + ": occupied cells or walker cell are wrong");
+        return false;
+      }
+    }
+    Logger.info("  ok: " + STEPS + " moves of " + WALKERS + " walkers");
+    return true;
+  }
+
+  /**
+   * Times collision detection between PLAYERS players and the given number of ghosts, which move
+   * one cell at a time, and checks that both methods find the same collisions.
+   *
+   * @param ghosts number of ghosts
+   * @return true if both methods agree
+   */
+  private static boolean benchmark(int ghosts) {
+    Random random = new Random(ghosts);
+    int[] ghostCells = new int[ghosts];
+    int[] playerCells = new int[PLAYERS];
+    OccupancyGrid grid = new OccupancyGrid(ROWS * COLUMNS, ghosts);
+    for (int g = 0; g < ghosts; g++) {
+      ghostCells[g] = random.nextInt(ROWS * COLUMNS);
+      grid.move(g, ghostCells[g]);
+    }
+    for (int p = 0; p < PLAYERS; p++) {
+      playerCells[p] = random.nextInt(ROWS * COLUMNS);
+    }
+
+    long bruteNanos = 0;
+    long gridNanos = 0;
+    long bruteHits = 0;
+    long gridHits = 0;
+    for (int frame = 0; frame < FRAMES; frame++) {
+      // a few ghosts change cells each frame, as they cross cell boundaries
+      for (int g = frame % 8; g < ghosts; g += 8) {
+        ghostCells[g] = step(ghostCells[g], random.nextInt(4));
+      }
+      for (int p = 0; p < PLAYERS; p++) {
+        playerCells[p] = step(playerCells[p], random.nextInt(4));
+      }
+
+      long start = System.nanoTime();
+      for (int p = 0; p < PLAYERS; p++) {
+        for (int g = 0; g < ghosts; g++) {
+          if (ghostCells[g] == playerCells[p]) {
+            bruteHits += g + 1;
+          }
+        }
+      }
+      long middle = System.nanoTime();
+      for (int g = frame % 8; g < ghosts; g += 8) {
+        grid.move(g, ghostCells[g]);
+      }
+      for (int p = 0; p < PLAYERS; p++) {
+        for (int g = grid.getFirst(playerCells[p]);
+            g != OccupancyGrid.NONE;
+            g = grid.getNext(g)) {
+          gridHits += g + 1;
+        }
+      }
+      long end = System.nanoTime();
+      bruteNanos += middle - start;
+      gridNanos += end - middle;
+    }
+    Logger.info(
+        String.format(
+            "  %d players x %d ghosts: all pairs %.2f us per frame, grid %.2f us per frame",
+            PLAYERS, ghosts, bruteNanos / 1e3 / FRAMES, gridNanos / 1e3 / FRAMES));
+    if (bruteHits != gridHits) {
+      Logger.error("  failed: the grid found different collisions");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Moves one cell in a direction, wrapping around the grid.
+   *
+   * @param cell the cell
+   * @param direction 0 to 3 for left, right, up and down
+   * @return the neighboring cell
+   */
+  private static int step(int cell, int direction) {
+    int row = cell / COLUMNS;
+    int col = cell % COLUMNS;
+    if (direction == 0) {
+      col = (col + COLUMNS - 1) % COLUMNS;
+    } else if (direction == 1) {
+      col = (col + 1) % COLUMNS;
+    } else if (direction == 2) {
+      row = (row + ROWS - 1) % ROWS;
+    } else {
+      row = (row + 1) % ROWS;
+    }
+    return row * COLUMNS + col;
+  }
+}
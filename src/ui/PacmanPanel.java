@@ -10,10 +10,10 @@ import api.PacmanGame;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.swing.JPanel;
 import javax.swing.Timer;
 
@@ -21,6 +21,14 @@ import javax.swing.Timer;
  * UI for a Pacman game. This UI does very little besides (a) send periodic update commands to the
  * game, (b) send turn instructions to the game when one of the arrow keys is pressed, and (c) draw
  * the game state
+ *
+ * <p>The game is updated on a simulation thread of its own, at a fixed number of ticks per second
+ * kept by a FrameScheduler against System.nanoTime() deadlines, so neither the Swing timer's
+ * jitter nor slow painting changes the speed of the game. After each tick the simulation thread
+ * publishes an immutable GameSnapshot, and painting, which runs at its own rate and may drop
+ * frames under load, draws only from the latest snapshot, interpolating the actors between their
+ * positions before and after the tick. Turns from the keyboard are queued and applied by the
+ * simulation thread before its next tick.
  */
 public final class PacmanPanel extends JPanel {
   /** Serial version UID for serialization. */
@@ -101,12 +109,45 @@ public final class PacmanPanel extends JPanel {
   /** Margin for score display. */
   private static final int SCORE_MARGIN = 10;
 
+  /** Font for the score and lives display. */
+  private static final Font SCORE_FONT = new Font("Arial", Font.BOLD, SCORE_FONT_SIZE);
+
+  /** Interval between repaints in milliseconds, about the refresh rate of a display. */
+  private static final int RENDER_INTERVAL = 16;
+
+  /** Most ticks run back to back to catch up after a stall, such as the pause after a death. */
+  private static final int MAX_CATCH_UP_TICKS = 5;
+
+  /** Time before each tick's deadline when the simulation thread stops parking and spins. */
+  private static final long SPIN_NANOS = 200_000L;
+
+  /** Nanoseconds in a millisecond. */
+  private static final long NANOS_PER_MILLISECOND = 1_000_000L;
+
   /** The grid to be displayed by this panel. */
   private final transient PacmanGame game;
 
-    /** Timer interval, determined by game's preferred frame rate. */
+  /** Duration of a frame in milliseconds, determined by game's preferred frame rate. */
   private final int interval;
 
+  /** Duration of a simulation tick in nanoseconds. */
+  private final long tickNanos;
+
+  /** Turns requested from the keyboard and not yet applied by the simulation thread. */
+  private final transient Queue<Direction> pendingTurns = new ConcurrentLinkedQueue<>();
+
+  /** State drawn by the panel, replaced by the simulation thread after each tick. */
+  private transient volatile GameSnapshot snapshot;
+
+  /** Thread updating the game. */
+  private final transient Thread simulation;
+
+  /** Timer requesting repaints. */
+  private final Timer renderTimer;
+
+  /** Schedules the ticks and measures frame timing. */
+  private final transient FrameScheduler scheduler;
+
   /** Previous location of the player, used for animation. */
   private transient Location prev;
 
@@ -116,6 +157,18 @@ public final class PacmanPanel extends JPanel {
   /** Increment for changing the angle in Pacman's mouth animation. */
   private double arcIncrement;
 
+  /** Score shown in scoreText. */
+  private int shownScore = -1;
+
+  /** Text for the score display, rebuilt only when the score changes. */
+  private String scoreText;
+
+  /** Number of lives shown in livesText. */
+  private int shownLives = -1;
+
+  /** Text for the lives display, rebuilt only when the number of lives changes. */
+  private String livesText;
+
   /**
    * Constructs a panel to display the given game.
    *
@@ -125,11 +178,38 @@ public final class PacmanPanel extends JPanel {
     this.game = game;
     prev = game.getPlayer().getCurrentLocation();
     interval = MILLISECONDS_PER_SECOND / game.getFrameRate();
-      Timer timer = new Timer(interval, new TimerCallback());
-    timer.start();
+    tickNanos = MILLISECONDS_PER_SECOND * NANOS_PER_MILLISECOND / game.getFrameRate();
+    snapshot = new GameSnapshot(game, angle, null, System.nanoTime());
+    scheduler = new FrameScheduler(tickNanos, MAX_CATCH_UP_TICKS, SPIN_NANOS);
+    simulation = new Thread(new SimulationLoop(), "pacman-simulation");
+    simulation.setDaemon(true);
+    simulation.start();
+    renderTimer = new Timer(RENDER_INTERVAL, e -> repaint());
+    renderTimer.start();
     this.addKeyListener(new MyKeyListener());
   }
 
+  /**
+   * Stops the simulation thread and the repaints. The game is left as it was after the last tick.
+   *
+   * @throws InterruptedException if interrupted while waiting for the simulation thread
+   */
+  public void stop() throws InterruptedException {
+    renderTimer.stop();
+    scheduler.stop();
+    simulation.join();
+  }
+
+  /**
+   * Returns the scheduler of the simulation thread, whose histograms hold the lateness and duration
+   * of each tick and the duration of each paint.
+   *
+   * @return the scheduler
+   */
+  public FrameScheduler getScheduler() {
+    return scheduler;
+  }
+
   /**
    * Paints the game panel, including walls, dots, energizers, Pacman, and ghosts.
    *
@@ -137,6 +217,11 @@ public final class PacmanPanel extends JPanel {
    */
   @Override
   public void paintComponent(final Graphics g) {
+    long start = System.nanoTime();
+    GameSnapshot shot = snapshot;
+    double alpha = (double) (start - shot.getNanos()) / tickNanos;
+    alpha = Math.max(0.0, Math.min(1.0, alpha));
+
     // clear background
     g.clearRect(0, 0, getWidth(), getHeight());
 
@@ -155,14 +240,14 @@ public final class PacmanPanel extends JPanel {
               BORDER_SIZE,
               BORDER_SIZE);
         } else {
-          if (c.getType() == CellType.DOT && c.canEat()) {
+          if (c.getType() == CellType.DOT && shot.canEat(row, col)) {
             g.setColor(Color.WHITE);
             g.fillOval(
                 col * CELL_SIZE + (CELL_SIZE - PELLET_SIZE) / 2,
                 row * CELL_SIZE + (CELL_SIZE - PELLET_SIZE) / 2,
                 PELLET_SIZE,
                 PELLET_SIZE);
-          } else if (c.getType() == CellType.ENERGIZER && c.canEat()) {
+          } else if (c.getType() == CellType.ENERGIZER && shot.canEat(row, col)) {
             g.setColor(Color.LIGHT_GRAY);
             g.fillOval(
                 col * CELL_SIZE + BORDER_SIZE / 2,
@@ -174,21 +259,23 @@ public final class PacmanPanel extends JPanel {
       }
     }
 
-    drawPacman(g);
-    drawGhosts(g);
-    drawScore(g);
-    drawLives(g);
+    drawPacman(g, shot, alpha);
+    drawGhosts(g, shot, alpha);
+    drawScore(g, shot);
+    drawLives(g, shot);
+    scheduler.getRenderTimes().record(System.nanoTime() - start);
   }
 
   /**
    * Draws Pacman with mouth animation based on the current direction and animation state.
    *
    * @param g the graphics context to use for painting
+   * @param shot the state to draw
+   * @param alpha fraction of the tick to interpolate positions to
    */
-  private void drawPacman(final Graphics g) {
+  private void drawPacman(final Graphics g, final GameSnapshot shot, final double alpha) {
     // upper left corner
-    Actor pacman = game.getPlayer();
-    Direction dir = pacman.getCurrentDirection();
+    Direction dir = shot.getPlayerDirection();
 
     int dirDegrees = RIGHT_ANGLE;
     switch (dir) {
@@ -207,13 +294,13 @@ public final class PacmanPanel extends JPanel {
         // No action needed, using RIGHT_ANGLE as default
     }
 
-    int currAngle = (int) Math.round(angle);
+    int currAngle = (int) Math.round(shot.getMouthAngle());
     int start = dirDegrees + currAngle;
     int sweep = FULL_CIRCLE - currAngle * 2;
 
-    double pmRow = pacman.getRowExact() - CENTER_OFFSET;
+    double pmRow = shot.getRow(0, alpha) - CENTER_OFFSET;
     int rowPixel = (int) Math.round(pmRow * CELL_SIZE);
-    double pmCol = pacman.getColExact() - CENTER_OFFSET;
+    double pmCol = shot.getCol(0, alpha) - CENTER_OFFSET;
     int colPixel = (int) Math.round(pmCol * CELL_SIZE);
     g.setColor(Color.YELLOW);
     // g.fillOval(colPixel, rowPixel, CELL_SIZE, CELL_SIZE);
@@ -224,17 +311,17 @@ public final class PacmanPanel extends JPanel {
    * Draws all ghosts with appropriate colors and animations based on their modes.
    *
    * @param g the graphics context to use for painting
+   * @param shot the state to draw
+   * @param alpha fraction of the tick to interpolate positions to
    */
-  private void drawGhosts(final Graphics g) {
-    Actor[] enemies = game.getEnemies();
-    Color[] colorHints = game.getColorHints();
-    for (int i = 0; i < enemies.length; ++i) {
-      Actor ghost = enemies[i];
-      if (ghost.getMode() == Mode.FRIGHTENED) {
+  private void drawGhosts(final Graphics g, final GameSnapshot shot, final double alpha) {
+    for (int i = 0; i < shot.getEnemyCount(); ++i) {
+      Mode mode = shot.getEnemyMode(i);
+      if (mode == Mode.FRIGHTENED) {
         g.setColor(Color.BLUE);
 
         // flash every QUARTER second = 8 flashes in last 4 seconds
-        int count = game.getFrightenedCount();
+        int count = shot.getFrightenedCount();
         int quarterSecondCount = QUARTER_SECOND / interval;
         if (quarterSecondCount * FLASH_CYCLES >= count) {
           int flag = count / quarterSecondCount;
@@ -242,15 +329,15 @@ public final class PacmanPanel extends JPanel {
             g.setColor(Color.WHITE);
           }
         }
-      } else if (ghost.getMode() == Mode.DEAD) {
+      } else if (mode == Mode.DEAD) {
         g.setColor(Color.DARK_GRAY);
       } else {
-        g.setColor(colorHints[i]);
+        g.setColor(game.getColorHint(i));
       }
 
-      double pmRow = ghost.getRowExact() - CENTER_OFFSET;
+      double pmRow = shot.getRow(i + 1, alpha) - CENTER_OFFSET;
       int rowPixel = (int) Math.round(pmRow * CELL_SIZE);
-      double pmCol = ghost.getColExact() - CENTER_OFFSET;
+      double pmCol = shot.getCol(i + 1, alpha) - CENTER_OFFSET;
       int colPixel = (int) Math.round(pmCol * CELL_SIZE);
       g.fillOval(colPixel, rowPixel, CELL_SIZE, CELL_SIZE);
       g.fillRect(colPixel, rowPixel + CELL_SIZE / HALF, CELL_SIZE, CELL_SIZE / HALF);
@@ -268,7 +355,7 @@ public final class PacmanPanel extends JPanel {
       int eyeballX = eyeSize / HALF;
       int eyeballY = eyeSize / HALF;
       int shift = eyeSize / EYEBALL_MOVEMENT_FACTOR;
-      Direction dir = ghost.getCurrentDirection();
+      Direction dir = shot.getEnemyDirection(i);
 
       switch (dir) {
         case LEFT:
@@ -302,11 +389,15 @@ public final class PacmanPanel extends JPanel {
    * Draws the current score at the top of the screen.
    *
    * @param g the graphics context to use for painting
+   * @param shot the state to draw
    */
-  private void drawScore(final Graphics g) {
+  private void drawScore(final Graphics g, final GameSnapshot shot) {
+    if (shot.getScore() != shownScore) {
+      shownScore = shot.getScore();
+      scoreText = "Score: " + shownScore;
+    }
     g.setColor(Color.WHITE);
-    g.setFont(new Font("Arial", Font.BOLD, SCORE_FONT_SIZE));
-    String scoreText = "Score: " + game.getScore();
+    g.setFont(SCORE_FONT);
     g.drawString(scoreText, SCORE_MARGIN, SCORE_FONT_SIZE + SCORE_MARGIN);
   }
 
@@ -314,11 +405,15 @@ public final class PacmanPanel extends JPanel {
    * Draws the current number of lives at the top of the screen.
    *
    * @param g the graphics context to use for painting
+   * @param shot the state to draw
    */
-  private void drawLives(final Graphics g) {
+  private void drawLives(final Graphics g, final GameSnapshot shot) {
+    if (shot.getLives() != shownLives) {
+      shownLives = shot.getLives();
+      livesText = "Lives: " + shownLives;
+    }
     g.setColor(Color.WHITE);
-    g.setFont(new Font("Arial", Font.BOLD, SCORE_FONT_SIZE));
-    String livesText = "Lives: " + game.getLives();
+    g.setFont(SCORE_FONT);
     int textWidth = g.getFontMetrics().stringWidth(livesText);
     int xPosition = game.getNumColumns() * CELL_SIZE - textWidth - SCORE_MARGIN;
     g.drawString(livesText, xPosition, SCORE_FONT_SIZE + SCORE_MARGIN);
@@ -352,7 +447,7 @@ public final class PacmanPanel extends JPanel {
           return;
       }
 
-      game.turnPlayer(dir);
+      pendingTurns.add(dir);
     }
 
     /**
@@ -376,21 +471,29 @@ public final class PacmanPanel extends JPanel {
     }
   }
 
-  /** Timer callback for animation updates. */
-  private class TimerCallback implements ActionListener {
+  /** Updates the game at a fixed rate on the simulation thread. */
+  private class SimulationLoop implements Runnable {
     /** Full unit for speed calculations. */
     private static final double FULL_UNIT = 1.0;
 
     /** Division factor for update count. */
     private static final int UPDATE_DIVISION_FACTOR = 2;
 
-    /**
-     * Handles timer events to update the game state and animations.
-     *
-     * @param e the event to be processed
-     */
+    /** Runs ticks at the game's frame rate until the panel is stopped. */
     @Override
-    public void actionPerformed(final ActionEvent e) {
+    public void run() {
+      scheduler.run(this::tick);
+    }
+
+    /** Applies the queued turns, updates the game and the animation, and publishes a snapshot. */
+    private void tick() {
+      if (game.levelOver() && game.getLives() > 0) {
+        // all pellets eaten: carry on with the next level in the same game
+        game.nextLevel();
+      }
+      for (Direction dir = pendingTurns.poll(); dir != null; dir = pendingTurns.poll()) {
+        game.turnPlayer(dir);
+      }
       game.updateAll();
 
       // calculation for eating animation...
@@ -410,7 +513,7 @@ public final class PacmanPanel extends JPanel {
         angle += arcIncrement;
       }
 
-      repaint();
+      snapshot = new GameSnapshot(game, angle, snapshot, System.nanoTime());
     }
   }
 }
@@ -0,0 +1,290 @@
+package ui;
+
+import api.Direction;
+import api.PacmanGame;
+import com.pacman.ghost.ActorImpl;
+import com.pacman.replay.InputLog;
+import com.pacman.replay.InputLogCodec;
+import com.pacman.replay.ReplayPlayer;
+import com.pacman.replay.ReplayRecorder;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test for recording and headless playback of sessions. With no arguments, records a scripted
+ * session, round-trips it through the binary encoding and checks that playback reproduces it
+ * exactly, then does the same for a session on a small maze that goes on from level to level as
+ * the game UI does. Checks that corrupt counts in a log are rejected and that playback leaves the
+ * movement log as it found it. With file arguments, verifies each recorded session against the
+ * current build and exits with status 1 if any fails.
+ */
+public final class ReplayTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Maximum number of frames in the scripted session. */
+  private static final int MAX_FRAMES = 6000;
+
+  /** Number of playbacks for the throughput measurement. */
+  private static final int PLAYBACK_RUNS = 200;
+
+  /** Frames in the session that crosses levels. */
+  private static final int LEVEL_FRAMES = 3000;
+
+  /** Varint encoding of Integer.MAX_VALUE. */
+  private static final byte[] MAX_VARINT = {-1, -1, -1, -1, 7};
+
+  /** Start of a version 2 log on MAIN1 with seed 0, 50 frames per second and 100 frames. */
+  private static final byte[] HEADER = {
+    'P', 'M', 'R', 'L', 2, 5, 'M', 'A', 'I', 'N', '1', 0, 50, 100,
+  };
+
+  /** Private constructor to prevent instantiation. */
+  private ReplayTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) throws IOException {
+    ActorImpl.setMovementLogging(false);
+    if (args.length > 0) {
+      if (verifyFiles(args) > 0) {
+        System.exit(1);
+      }
+      return;
+    }
+
+    // per-frame inputs, as in SimulationConfig.playerInputs: a new random turn every few frames
+    Random random = new Random(7);
+    Direction[] playerInputs = new Direction[MAX_FRAMES];
+    for (int i = 0; i < playerInputs.length; i += 1 + random.nextInt(12)) {
+      playerInputs[i] = Direction.values()[random.nextInt(4)];
+    }
+
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 1234L);
+    game.setPlayerDeathDelay(0);
+    ReplayRecorder recorder = new ReplayRecorder(game, "MAIN1");
+    for (int frame = 0; frame < MAX_FRAMES && !game.levelOver(); frame++) {
+      if (playerInputs[frame] != null) {
+        game.turnPlayer(playerInputs[frame]);
+      }
+      game.updateAll();
+    }
+    InputLog log = recorder.toInputLog();
+    byte[] encoded = InputLogCodec.encode(log);
+    Logger.info(
+        "Recorded "
+            + log.getFrameCount()
+            + " frames, "
+            + log.getInputCount()
+            + " inputs, score "
+            + log.getFinalScore()
+            + ", lives "
+            + log.getFinalLives()
+            + " in "
+            + encoded.length
+            + " bytes");
+
+    InputLog decoded = InputLogCodec.decode(encoded);
+    boolean sameLog =
+        decoded.getMazeId().equals(log.getMazeId())
+            && decoded.getSeed() == log.getSeed()
+            && decoded.getFrameRate() == log.getFrameRate()
+            && decoded.getFrameCount() == log.getFrameCount()
+            && decoded.getInputCount() == log.getInputCount()
+            && decoded.getFinalStateHash() == log.getFinalStateHash();
+    for (int i = 0; sameLog && i < log.getInputCount(); i++) {
+      sameLog =
+          decoded.getInputFrame(i) == log.getInputFrame(i)
+              && decoded.getInputDirection(i) == log.getInputDirection(i);
+    }
+    report("Decoded log equals recorded log", sameLog);
+
+    PacmanGame replayed = ReplayPlayer.replay(decoded, RunGame.getMaze(decoded.getMazeId()));
+    report(
+        "Playback reproduces final state",
+        ReplayPlayer.stateHash(replayed) == ReplayPlayer.stateHash(game)
+            && ReplayPlayer.verify(decoded, RunGame.MAIN1));
+
+    byte[] tampered = InputLogCodec.encode(log);
+    tampered[tampered.length - 1] ^= 1;
+    report(
+        "Tampered outcome is rejected",
+        !ReplayPlayer.verify(InputLogCodec.decode(tampered), RunGame.MAIN1));
+
+    long start = System.nanoTime();
+    for (int i = 0; i < PLAYBACK_RUNS; i++) {
+      ReplayPlayer.verify(decoded, RunGame.MAIN1);
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    Logger.info(
+        String.format(
+            "Played %d sessions in %.2f s (%.0f frames/s)",
+            PLAYBACK_RUNS, seconds, PLAYBACK_RUNS * (double) log.getFrameCount() / seconds));
+
+    checkLevelChanges();
+    checkRefusals();
+    checkCorruptCounts();
+    checkLoggingRestored(log);
+  }
+
+  /**
+   * Checks that logs claiming a huge maze id or a huge number of inputs are rejected with an
+   * IOException, before room is made for them.
+   */
+  private static void checkCorruptCounts() {
+    byte[] longId = {'P', 'M', 'R', 'L', 2};
+    report("Huge maze id length is rejected", isRejected(concat(longId, MAX_VARINT)));
+    report("Huge input count is rejected", isRejected(concat(HEADER, MAX_VARINT)));
+  }
+
+  /**
+   * Returns true if decoding the given bytes fails with an IOException.
+   *
+   * @param data encoded bytes
+   * @return true if the data is rejected
+   */
+  private static boolean isRejected(byte[] data) {
+    try {
+      InputLogCodec.decode(data);
+      return false;
+    } catch (IOException expected) {
+      return true;
+    }
+  }
+
+  /**
+   * Returns two byte arrays one after the other.
+   *
+   * @param a first bytes
+   * @param b second bytes
+   * @return a followed by b
+   */
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] result = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, result, a.length, b.length);
+    return result;
+  }
+
+  /**
+   * Plays a session with the movement log on and checks that nothing was logged during playback,
+   * which still reproduces the session, and that the log is on again afterwards.
+   *
+   * @param log the recorded session
+   */
+  private static void checkLoggingRestored(InputLog log) {
+    ActorImpl.setMovementLogging(true);
+    File file = new File("ghost_movement.log");
+    long before = file.length();
+    boolean ok =
+        ReplayPlayer.verify(log, RunGame.MAIN1)
+            && file.length() == before
+            && ActorImpl.isMovementLogging();
+    ActorImpl.setMovementLogging(false);
+    report("Playback turns the movement log off and back on", ok);
+  }
+
+  /**
+   * Checks that a game being recorded refuses to change its frame rate or restart, and that the
+   * log keeps the rate and seed it started with.
+   */
+  private static void checkRefusals() {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 5L);
+    ReplayRecorder recorder = new ReplayRecorder(game, "MAIN1");
+    for (int frame = 0; frame < FRAME_RATE; frame++) {
+      game.updateAll();
+    }
+    boolean refused = true;
+    try {
+      game.setFrameRate(FRAME_RATE * 2);
+      refused = false;
+    } catch (IllegalStateException expected) {
+      // refused
+    }
+    try {
+      game.restartLevel(6L);
+      refused = false;
+    } catch (IllegalStateException expected) {
+      // refused
+    }
+    InputLog log = recorder.toInputLog();
+    report(
+        "Recorded game refuses frame rate changes and restarts",
+        refused
+            && game.getFrameRate() == FRAME_RATE
+            && game.getFrameCount() == FRAME_RATE
+            && log.getFrameRate() == FRAME_RATE
+            && log.getSeed() == 5L);
+  }
+
+  /**
+   * Records a session on TEST0, which has no ghosts to end it early, that moves on to the next
+   * level whenever one is cleared, as PacmanPanel does, and checks that its level changes survive
+   * the encoding and that playback reaches the same level and state.
+   *
+   * @throws IOException if the log cannot be decoded
+   */
+  private static void checkLevelChanges() throws IOException {
+    Random random = new Random(11);
+    PacmanGame game = new PacmanGame(RunGame.TEST0, FRAME_RATE, 99L);
+    game.setPlayerDeathDelay(0);
+    ReplayRecorder recorder = new ReplayRecorder(game, "TEST0");
+    for (int frame = 0; frame < LEVEL_FRAMES && game.getLives() > 0; frame++) {
+      if (game.levelOver()) {
+        game.nextLevel();
+      }
+      if (random.nextInt(8) == 0) {
+        game.turnPlayer(Direction.values()[random.nextInt(4)]);
+      }
+      game.updateAll();
+    }
+    InputLog log = InputLogCodec.decode(InputLogCodec.encode(recorder.toInputLog()));
+    Logger.info(
+        "Recorded "
+            + log.getFrameCount()
+            + " frames on TEST0 with "
+            + log.getLevelChangeCount()
+            + " level changes, reaching level "
+            + game.getLevel());
+    PacmanGame replayed = ReplayPlayer.replay(log, RunGame.TEST0);
+    report(
+        "Playback crosses level changes",
+        log.getLevelChangeCount() > 0
+            && replayed.getLevel() == game.getLevel()
+            && ReplayPlayer.stateHash(replayed) == ReplayPlayer.stateHash(game)
+            && ReplayPlayer.verify(log, RunGame.TEST0));
+  }
+
+  /**
+   * Verifies each recorded session against the current build.
+   *
+   * @param files the recordings
+   * @return number of sessions that failed
+   * @throws IOException if a recording cannot be read
+   */
+  private static int verifyFiles(String[] files) throws IOException {
+    int failed = 0;
+    for (String file : files) {
+      InputLog log = InputLogCodec.load(Paths.get(file));
+      String[] maze = RunGame.getMaze(log.getMazeId());
+      boolean ok = maze != null && ReplayPlayer.verify(log, maze);
+      if (!ok) {
+        failed++;
+      }
+      report(file, ok);
+    }
+    Logger.info((files.length - failed) + "/" + files.length + " sessions verified");
+    return failed;
+  }
+
+  private static void report(String name, boolean passed) {
+    if (passed) {
+      Logger.info("PASS: " + name);
+    } else {
+      Logger.error("FAIL: " + name);
+    }
+  }
+}
@@ -1,7 +1,12 @@
 package ui;
 
 import api.PacmanGame;
+import com.pacman.replay.InputLogCodec;
+import com.pacman.replay.ReplayRecorder;
 import java.awt.Dimension;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import javax.swing.JFrame;
 import javax.swing.SwingUtilities;
 
@@ -70,19 +75,79 @@ public final class RunGame {
     "############################",
   };
 
+  /**
+   * Returns the built-in maze layout with the given name, as used for the maze id of recorded
+   * sessions.
+   *
+   * @param id one of "TEST0", "TEST1", "TEST2" or "MAIN1"
+   * @return rows of the maze, or null if there is no maze with that name
+   */
+  public static String[] getMaze(String id) {
+    switch (id) {
+      case "TEST0":
+        return TEST0;
+      case "TEST1":
+        return TEST1;
+      case "TEST2":
+        return TEST2;
+      case "MAIN1":
+        return MAIN1;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Starts the game. With the arguments {@code --record <file>} the session is recorded and
+   * written to the given file when the application exits.
+   *
+   * @param args command line arguments
+   */
   public static void main(String[] args) {
     final PacmanGame maze = new PacmanGame(MAIN1, 50);
+    // the recorder must be attached before the panel starts simulating frames
+    final ReplayRecorder recorder =
+        args.length == 2 && "--record".equals(args[0]) ? new ReplayRecorder(maze, "MAIN1") : null;
     Runnable r =
         new Runnable() {
           @Override
           public void run() {
-            createAndShow(maze);
+            PacmanPanel panel = createAndShow(maze);
+            if (recorder != null) {
+              saveOnExit(recorder, panel, Paths.get(args[1]));
+            }
           }
         };
     SwingUtilities.invokeLater(r);
   }
 
-  private static void createAndShow(final PacmanGame maze) {
+  /**
+   * Saves a recording when the application exits. The panel's simulation thread is stopped and
+   * joined first, so the recording is taken from a game that no longer changes.
+   *
+   * @param recorder recorder attached to the panel's game
+   * @param panel panel simulating the game
+   * @param file destination file
+   */
+  private static void saveOnExit(
+      final ReplayRecorder recorder, final PacmanPanel panel, final Path file) {
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  try {
+                    panel.stop();
+                    InputLogCodec.save(recorder.toInputLog(), file);
+                  } catch (InterruptedException e) {
+                    Logger.error("Recording not saved, interrupted stopping the simulation");
+                    Thread.currentThread().interrupt();
+                  } catch (IOException e) {
+                    Logger.error("Could not save recording to " + file + ": " + e.getMessage());
+                  }
+                }));
+  }
+
+  private static PacmanPanel createAndShow(final PacmanGame maze) {
 
     // create the frame
     JFrame frame = new JFrame("Nonbinary Pac-person");
@@ -108,5 +173,6 @@ public final class RunGame {
 
     // make sure panel gets key events
     panel.grabFocus();
+    return panel;
   }
 }
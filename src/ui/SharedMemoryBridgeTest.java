@@ -0,0 +1,146 @@
+package ui;
+
+import com.pacman.env.Environment;
+import com.pacman.ghost.ActorImpl;
+import com.pacman.ipc.EnvironmentServer;
+import com.pacman.ipc.WaitStrategy;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for the shared-memory bridge. Serves an Environment through a file and starts
+ * StandInClient in a second JVM to play against it. The episodes the client saw must match the
+ * same episodes played on an Environment in this process, and the server must stop when the
+ * client closes the bridge. Reports round-trip latency and pipelined throughput for each wait
+ * strategy.
+ */
+public final class SharedMemoryBridgeTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Frames per environment step. */
+  private static final int FRAMES_PER_STEP = 4;
+
+  /** Steps per phase of the client. */
+  private static final int STEPS = 20_000;
+
+  /** Seed of the client's actions and episodes. */
+  private static final long SEED = 5;
+
+  /** How long the client may take, in seconds. */
+  private static final long CLIENT_TIMEOUT_SECONDS = 300;
+
+  /** Private constructor to prevent instantiation. */
+  private SharedMemoryBridgeTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) throws Exception {
+    ActorImpl.setMovementLogging(false);
+    Environment reference = new Environment(RunGame.MAIN1, FRAME_RATE, FRAMES_PER_STEP);
+    long roundTrip = StandInClient.expectedRoundTrips(reference, STEPS, SEED);
+    long pipelined = StandInClient.expectedPipelined(reference, STEPS, SEED + 1);
+
+    boolean ok = check(WaitStrategy.SPIN_THEN_PARK, roundTrip, pipelined);
+    // two spinning processes need a core each, or every wait lasts a scheduler time slice
+    if (Runtime.getRuntime().availableProcessors() > 1) {
+      ok &= check(WaitStrategy.BUSY_SPIN, roundTrip, pipelined);
+    } else {
+      Logger.info("  skipped BUSY_SPIN: only one processor available");
+    }
+    if (ok) {
+      Logger.info("PASS: shared-memory bridge");
+    } else {
+      Logger.error("FAIL: shared-memory bridge");
+    }
+  }
+
+  /**
+   * Serves an environment and plays the stand-in client against it.
+   *
+   * @param strategy wait strategy of both sides
+   * @param roundTrip expected checksum of the round-trip phase
+   * @param pipelined expected checksum of the pipelined phase
+   * @return true if the check passes
+   */
+  private static boolean check(WaitStrategy strategy, long roundTrip, long pipelined)
+      throws Exception {
+    Path shm = Paths.get("/dev/shm");
+    Path file =
+        Files.isDirectory(shm)
+            ? Files.createTempFile(shm, "pacman", ".ring")
+            : Files.createTempFile("pacman", ".ring");
+    try {
+      Environment env = new Environment(RunGame.MAIN1, FRAME_RATE, FRAMES_PER_STEP);
+      EnvironmentServer server =
+          new EnvironmentServer(env, file, EnvironmentServer.DEFAULT_SLOT_COUNT, strategy);
+      Thread serverThread = new Thread(server, "environment-server");
+      serverThread.start();
+
+      String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+      Process client =
+          new ProcessBuilder(
+                  java,
+                  "-cp",
+                  System.getProperty("java.class.path"),
+                  StandInClient.class.getName(),
+                  file.toString(),
+                  strategy.name(),
+                  Integer.toString(STEPS),
+                  Long.toString(SEED))
+              .redirectErrorStream(true)
+              .start();
+      String result = null;
+      try (BufferedReader out =
+          new BufferedReader(
+              new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8))) {
+        for (String line = out.readLine(); line != null; line = out.readLine()) {
+          if (line.startsWith("RESULT ")) {
+            result = line;
+          } else {
+            Logger.info("  client: " + line);
+          }
+        }
+      }
+      boolean exited = client.waitFor(CLIENT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      if (!exited) {
+        client.destroyForcibly();
+      }
+      serverThread.join(TimeUnit.SECONDS.toMillis(CLIENT_TIMEOUT_SECONDS));
+      server.close();
+
+      if (!exited || client.exitValue() != 0 || result == null) {
+        Logger.error("  failed: " + strategy + ": client did not finish cleanly");
+        return false;
+      }
+      if (serverThread.isAlive()) {
+        Logger.error("  failed: " + strategy + ": server did not stop on close");
+        return false;
+      }
+      String[] fields = result.split(" ");
+      if (Long.parseLong(fields[1]) != roundTrip || Long.parseLong(fields[2]) != pipelined) {
+        Logger.error("  failed: " + strategy + ": client saw different episodes");
+        return false;
+      }
+      Logger.info(
+          String.format(
+              "  ok: %s, %d requests served; round trip median %.1f us, p99 %.1f us;"
+                  + " pipelined %.1f us/step (depth %d)",
+              strategy,
+              server.getRequestCount(),
+              Long.parseLong(fields[3]) / 1e3,
+              Long.parseLong(fields[4]) / 1e3,
+              Long.parseLong(fields[5]) / 1e3,
+              StandInClient.PIPELINE_DEPTH));
+      return true;
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
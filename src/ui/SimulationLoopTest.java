@@ -0,0 +1,104 @@
+package ui;
+
+import api.PacmanGame;
+import com.pacman.ghost.ActorImpl;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+/**
+ * Test for the panel's simulation thread. Runs a game in a PacmanPanel, without showing it, while
+ * this thread paints it into an image, first quickly and then with a deliberately slow painter,
+ * and checks that the game advances at its frame rate either way.
+ */
+public final class SimulationLoopTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Length of each run in milliseconds. */
+  private static final long RUN_MILLIS = 3000;
+
+  /** Extra time spent by the slow painter on each paint, in milliseconds. */
+  private static final long SLOW_PAINT_MILLIS = 70;
+
+  /** Largest accepted difference between the expected and actual tick rates. */
+  private static final double TOLERANCE = 0.05;
+
+  /** Private constructor to prevent instantiation. */
+  private SimulationLoopTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    System.setProperty("java.awt.headless", "true");
+    ActorImpl.setMovementLogging(false);
+    run(0, RUN_MILLIS / 2);
+    boolean ok = check(0);
+    ok &= check(SLOW_PAINT_MILLIS);
+    if (ok) {
+      Logger.info("PASS: simulation rate is independent of painting");
+    } else {
+      Logger.error("FAIL: simulation rate depends on painting");
+    }
+  }
+
+  /**
+   * Runs a game while painting it, and compares its tick rate with the frame rate.
+   *
+   * @param paintMillis extra time spent on each paint, in milliseconds
+   * @return true if the check passes
+   */
+  private static boolean check(long paintMillis) throws InterruptedException {
+    double[] rates = run(paintMillis, RUN_MILLIS);
+    Logger.info(
+        String.format(
+            "  %s painter: %.1f paints/s, %.1f ticks/s for a frame rate of %d",
+            paintMillis > 0 ? "slow" : "fast",
+            rates[1],
+            rates[0],
+            FRAME_RATE));
+    if (Math.abs(rates[0] - FRAME_RATE) > FRAME_RATE * TOLERANCE) {
+      Logger.error("  failed: tick rate is off");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Runs a game in a panel for a while, painting it from this thread. The first run also serves
+   * to warm up painting, whose first calls are slow enough to stall the game.
+   *
+   * @param paintMillis extra time spent on each paint, in milliseconds
+   * @param runMillis length of the run in milliseconds
+   * @return ticks per second and paints per second
+   */
+  private static double[] run(long paintMillis, long runMillis) throws InterruptedException {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, FRAME_RATE, 1);
+    game.setPlayerDeathDelay(0);
+    int width = game.getNumColumns() * PacmanPanel.CELL_SIZE;
+    int height = game.getNumRows() * PacmanPanel.CELL_SIZE;
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+    long start = System.nanoTime();
+    PacmanPanel panel = new PacmanPanel(game);
+    panel.setSize(width, height);
+    int paints = 0;
+    while (System.nanoTime() - start < runMillis * 1_000_000L) {
+      Graphics g = image.getGraphics();
+      panel.paintComponent(g);
+      g.dispose();
+      paints++;
+      if (paintMillis > 0) {
+        Thread.sleep(paintMillis);
+      } else {
+        Thread.yield();
+      }
+    }
+    panel.stop();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    if (runMillis == RUN_MILLIS) {
+      Logger.info("    " + panel.getScheduler().toString().replace("\n", "\n    "));
+    }
+    return new double[] {game.getFrameCount() / seconds, paints / seconds};
+  }
+}
@@ -149,7 +149,7 @@ public final class SimulationTestFramework {
   public static SimulationData runSimulation(String[] mazeLayout, SimulationConfig config) {
     // Create game with deterministic settings
     final int frameRate = 30; // Use consistent frame rate
-    PacmanGame game = new PacmanGame(mazeLayout, frameRate);
+    PacmanGame game = new PacmanGame(mazeLayout, frameRate, config.randomSeed);
 
     Actor[] enemies = game.getEnemies();
     List<List<GhostFrame>> ghostTraces = new ArrayList<>();
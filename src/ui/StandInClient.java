@@ -0,0 +1,200 @@
+package ui;
+
+import api.StepResult;
+import com.pacman.env.Environment;
+import com.pacman.ipc.EnvironmentClient;
+import com.pacman.ipc.WaitStrategy;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * Stand-in for an out-of-process agent, started by SharedMemoryBridgeTest in its own JVM. It
+ * connects to an EnvironmentServer through the shared file, plays random actions first as round
+ * trips and then pipelined, and prints a single line:
+ *
+ * <pre>
+ * RESULT roundTripChecksum pipelinedChecksum medianNanos p99Nanos pipelinedNanosPerStep
+ * </pre>
+ *
+ * <p>The checksums cover every reward, flag, frame count and observation, and the test compares
+ * them with the same episodes played on an Environment in its own process.
+ *
+ * <p>Arguments: shared file, wait strategy name, number of steps per phase, seed.
+ */
+public final class StandInClient {
+
+  /** Requests kept in flight by the pipelined phase. */
+  static final int PIPELINE_DEPTH = 4;
+
+  /** How long to wait for the server, in milliseconds. */
+  private static final long TIMEOUT_MILLIS = 30_000;
+
+  /** Private constructor to prevent instantiation. */
+  private StandInClient() {
+    // Utility class
+  }
+
+  public static void main(String[] args) throws Exception {
+    WaitStrategy strategy = WaitStrategy.valueOf(args[1]);
+    int steps = Integer.parseInt(args[2]);
+    long seed = Long.parseLong(args[3]);
+    try (EnvironmentClient client =
+        new EnvironmentClient(Paths.get(args[0]), strategy, TIMEOUT_MILLIS)) {
+      long[] latencies = new long[steps];
+      long roundTrip = playRoundTrips(client, steps, seed, latencies);
+      long start = System.nanoTime();
+      long pipelined = playPipelined(client, steps, seed + 1);
+      long pipelinedNanos = (System.nanoTime() - start) / steps;
+      Arrays.sort(latencies);
+      System.out.println(
+          "RESULT "
+              + roundTrip
+              + " "
+              + pipelined
+              + " "
+              + latencies[steps / 2]
+              + " "
+              + latencies[steps * 99 / 100]
+              + " "
+              + pipelinedNanos);
+    }
+  }
+
+  /**
+   * Plays random actions one round trip at a time, restarting episodes as they end.
+   *
+   * @param client connected client
+   * @param steps number of steps
+   * @param seed seed for the actions and episodes
+   * @param latencies receives the round-trip time of each step, in nanoseconds
+   * @return checksum of the responses
+   */
+  private static long playRoundTrips(
+      EnvironmentClient client, int steps, long seed, long[] latencies) {
+    Random random = new Random(seed);
+    Checksum checksum = new Checksum();
+    client.reset(seed);
+    checksum.add(client.getReward(), client.getFrames(), client.isDone(), client.getObservation());
+    for (int i = 0; i < steps; i++) {
+      int action = random.nextInt(Environment.ACTION_COUNT);
+      long start = System.nanoTime();
+      client.step(action);
+      latencies[i] = System.nanoTime() - start;
+      checksum.add(
+          client.getReward(), client.getFrames(), client.isDone(), client.getObservation());
+      if (client.isDone()) {
+        client.reset(seed + i);
+      }
+    }
+    return checksum.value;
+  }
+
+  /**
+   * Plays random actions PIPELINE_DEPTH at a time, restarting episodes between batches.
+   *
+   * @param client connected client
+   * @param steps number of steps, a multiple of PIPELINE_DEPTH
+   * @param seed seed for the actions and episodes
+   * @return checksum of the responses
+   */
+  private static long playPipelined(EnvironmentClient client, int steps, long seed) {
+    Random random = new Random(seed);
+    Checksum checksum = new Checksum();
+    long[] sequences = new long[PIPELINE_DEPTH];
+    client.reset(seed);
+    for (int i = 0; i < steps; i += PIPELINE_DEPTH) {
+      for (int j = 0; j < PIPELINE_DEPTH; j++) {
+        sequences[j] = client.submitStep(random.nextInt(Environment.ACTION_COUNT));
+      }
+      for (int j = 0; j < PIPELINE_DEPTH; j++) {
+        client.await(sequences[j]);
+        checksum.add(
+            client.getReward(), client.getFrames(), client.isDone(), client.getObservation());
+      }
+      if (client.isDone()) {
+        client.reset(seed + i);
+      }
+    }
+    return checksum.value;
+  }
+
+  /**
+   * Computes the checksum of the same episodes as playRoundTrips(), played in this process.
+   *
+   * @param env environment on the same maze as the server's
+   * @param steps number of steps
+   * @param seed seed for the actions and episodes
+   * @return checksum of the results
+   */
+  static long expectedRoundTrips(Environment env, int steps, long seed) {
+    ByteBuffer observation = ByteBuffer.allocateDirect(env.getObservationSize());
+    env.setObservationBuffer(observation);
+    Random random = new Random(seed);
+    Checksum checksum = new Checksum();
+    env.reset(seed);
+    checksum.add(0, 0, env.isDone(), observation);
+    for (int i = 0; i < steps; i++) {
+      StepResult result = env.step(random.nextInt(Environment.ACTION_COUNT));
+      checksum.add(result.getScoreDelta(), result.getFrames(), env.isDone(), observation);
+      if (env.isDone()) {
+        env.reset(seed + i);
+      }
+    }
+    return checksum.value;
+  }
+
+  /**
+   * Computes the checksum of the same episodes as playPipelined(), played in this process.
+   *
+   * @param env environment on the same maze as the server's
+   * @param steps number of steps, a multiple of PIPELINE_DEPTH
+   * @param seed seed for the actions and episodes
+   * @return checksum of the results
+   */
+  static long expectedPipelined(Environment env, int steps, long seed) {
+    ByteBuffer observation = ByteBuffer.allocateDirect(env.getObservationSize());
+    env.setObservationBuffer(observation);
+    Random random = new Random(seed);
+    Checksum checksum = new Checksum();
+    env.reset(seed);
+    for (int i = 0; i < steps; i += PIPELINE_DEPTH) {
+      for (int j = 0; j < PIPELINE_DEPTH; j++) {
+        StepResult result = env.step(random.nextInt(Environment.ACTION_COUNT));
+        checksum.add(result.getScoreDelta(), result.getFrames(), env.isDone(), observation);
+      }
+      if (env.isDone()) {
+        env.reset(seed + i);
+      }
+    }
+    return checksum.value;
+  }
+
+  /** Running checksum of responses. */
+  private static final class Checksum {
+    /** Checksum of observations. */
+    private final CRC32 crc = new CRC32();
+
+    /** Combined value. */
+    private long value;
+
+    /**
+     * Adds a response to the checksum.
+     *
+     * @param reward the response's reward
+     * @param frames the response's frame count
+     * @param done the response's done flag
+     * @param observation the response's observation; its position is left unchanged
+     */
+    void add(int reward, int frames, boolean done, ByteBuffer observation) {
+      crc.reset();
+      crc.update(observation.duplicate());
+      value = value * 31 + crc.getValue();
+      value = value * 31 + reward;
+      value = value * 31 + frames;
+      value = value * 31 + (done ? 1 : 0);
+    }
+  }
+}
@@ -0,0 +1,298 @@
+package ui;
+
+import api.Actor;
+import api.Direction;
+import api.GameEvent;
+import api.GameEventRing;
+import api.GameEventType;
+import api.Mode;
+import api.PacmanGame;
+import api.SweptCollision;
+import com.pacman.ghost.ActorImpl;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test for SweptCollision and the collisions of PacmanGame. Checks typical meetings and misses,
+ * including actors swapping cells, passing through each other at high speed, crossing at an
+ * intersection and meeting in a tunnel. Then compares meet() with a reference that tests every
+ * stretch of the frame between two cell boundaries on random paths. Finally plays games at
+ * decreasing frame rates and checks that no player and enemy ever pass through each other
+ * unnoticed.
+ */
+public final class SweptCollisionTest {
+
+  /** Columns of the maze, as in the MAIN1 maze. */
+  private static final int COLUMNS = 28;
+
+  /** Random pairs of paths compared with the reference. */
+  private static final int PAIRS = 1_000_000;
+
+  /** Frame rates of the games played, from the game UI's down to very coarse steps. */
+  private static final int[] FRAME_RATES = {50, 25, 10};
+
+  /** Frames played at each frame rate. */
+  private static final int FRAMES = 200_000;
+
+  /** Private constructor to prevent instantiation. */
+  private SweptCollisionTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = checkCases();
+    ok &= checkRandom();
+    for (int frameRate : FRAME_RATES) {
+      ok &= checkGames(frameRate);
+    }
+    if (ok) {
+      Logger.info("PASS: swept collisions");
+    } else {
+      Logger.error("FAIL: swept collisions");
+    }
+  }
+
+  /**
+   * Checks meetings and misses whose outcome is known.
+   *
+   * @return true if every case has the expected outcome
+   */
+  private static boolean checkCases() {
+    // swapping cells within a frame, and passing through each other over several cells
+    boolean ok = check("swap", true, 5.5, 5.9, 5.5, 6.3, 5.5, 6.3, 5.5, 5.9);
+    ok &= check("pass through", true, 5.5, 2.5, 5.5, 6.5, 5.5, 6.5, 5.5, 2.5);
+    // one behind the other, never in the same cell
+    ok &= check("follow", false, 5.5, 2.2, 5.5, 2.9, 5.5, 4.1, 5.5, 4.8);
+    ok &= check("parallel", false, 3.5, 2.5, 3.5, 6.5, 4.5, 6.5, 4.5, 2.5);
+    // across an intersection at the same time, and one after the other
+    ok &= check("cross", true, 5.5, 3.5, 5.5, 7.5, 1.5, 5.5, 9.5, 5.5);
+    ok &= check("cross later", false, 5.5, 3.5, 5.5, 7.5, 4.5, 5.5, 12.5, 5.5);
+    // both standing still, in the same cell and in neighboring ones
+    ok &= check("still", true, 5.2, 5.8, 5.2, 5.8, 5.7, 5.1, 5.7, 5.1);
+    ok &= check("still apart", false, 5.5, 5.5, 5.5, 5.5, 5.5, 6.5, 5.5, 6.5);
+    // through the left tunnel into a cell at the right edge, and past one
+    ok &= check("tunnel", true, 5.5, 0.3, 5.5, COLUMNS - 0.3, 5.5, COLUMNS - 0.2, 5.5, 27.6);
+    ok &= check("tunnel apart", false, 5.5, 0.3, 5.5, COLUMNS - 0.3, 5.5, 26.9, 5.5, 26.5);
+    return ok;
+  }
+
+  /**
+   * Records two paths and checks whether they meet, both ways round.
+   *
+   * @param name name of the case
+   * @param expected whether the paths should meet
+   * @param path start row and column, then end row and column, of the first path and the second
+   * @return true if the outcome is the expected one
+   */
+  private static boolean check(String name, boolean expected, double... path) {
+    SweptCollision paths = new SweptCollision(2, COLUMNS);
+    paths.setStart(0, path[0], path[1]);
+    paths.setEnd(0, path[2], path[3]);
+    paths.setStart(1, path[4], path[5]);
+    paths.setEnd(1, path[6], path[7]);
+    if (paths.meet(0, 1) != expected || paths.meet(1, 0) != expected) {
+      Logger.error("  failed: " + name + ": expected meet() to be " + expected);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Compares meet() with the reference on random pairs of paths, near each other and sometimes
+   * through a tunnel. Each path runs along a row or a column, sometimes with a small step across
+   * as when an actor is put back on the centerline, and covers up to three cells.
+   *
+   * @return true if they always agree
+   */
+  private static boolean checkRandom() {
+    Random random = new Random(7);
+    SweptCollision paths = new SweptCollision(2, COLUMNS);
+    double[] unwrapped = new double[8];
+    int met = 0;
+    for (int pair = 0; pair < PAIRS; pair++) {
+      // half the pairs around the middle, the others around the side edges
+      double colBase = random.nextBoolean() ? COLUMNS / 2.0 : 0;
+      for (int a = 0; a < 2; a++) {
+        double row = 1 + random.nextDouble() * 4;
+        double col = colBase - 2 + random.nextDouble() * 4;
+        col = col < 0 ? col + COLUMNS : col;
+        double distance = (random.nextDouble() * 2 - 1) * 3;
+        double across = random.nextInt(4) == 0 ? (random.nextDouble() - 0.5) * 0.5 : 0;
+        double endRow = row;
+        double endCol = col;
+        if (random.nextBoolean()) {
+          endRow += distance;
+          endCol += across;
+        } else {
+          endCol += distance;
+          endRow += across;
+        }
+        unwrapped[4 * a] = row;
+        unwrapped[4 * a + 1] = col;
+        unwrapped[4 * a + 2] = endRow;
+        unwrapped[4 * a + 3] = endCol;
+        paths.setStart(a, row, col);
+        paths.setEnd(a, endRow, endCol - COLUMNS * Math.floor(endCol / COLUMNS));
+      }
+      boolean expected = meetReference(unwrapped);
+      if (paths.meet(0, 1) != expected) {
+        Logger.error(
+            "  failed: meet() is " + !expected + " for paths " + Arrays.toString(unwrapped));
+        return false;
+      }
+      if (expected) {
+        met++;
+      }
+    }
+    Logger.info("  ok: " + PAIRS + " random pairs agree with the reference, " + met + " meet");
+    return true;
+  }
+
+  /**
+   * Decides whether two paths meet by testing the moments at the start and end of the frame and
+   * in the middle of every stretch of it in which neither path crosses a cell boundary, since the
+   * cells do not change within such a stretch.
+   *
+   * @param path start row and column, then end row and column, of the first path and the second,
+   *     the columns continuing past the maze's edges rather than wrapping
+   * @return true if the paths are in the same cell at one of those moments
+   */
+  private static boolean meetReference(double[] path) {
+    double[] moments = new double[64];
+    int count = 0;
+    moments[count++] = 0;
+    moments[count++] = 1;
+    for (int a = 0; a < 2; a++) {
+      for (int axis = 0; axis < 2; axis++) {
+        double from = path[4 * a + axis];
+        double to = path[4 * a + 2 + axis];
+        for (int k = (int) Math.floor(Math.min(from, to)) + 1; k <= Math.max(from, to); k++) {
+          moments[count++] = (k - from) / (to - from);
+        }
+      }
+    }
+    Arrays.sort(moments, 0, count);
+    for (int m = 0; m < count; m++) {
+      if (sameCell(path, moments[m])) {
+        return true;
+      }
+      if (m + 1 < count && sameCell(path, (moments[m] + moments[m + 1]) / 2)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if two paths are in the same cell at the given moment of the frame.
+   *
+   * @param path start row and column, then end row and column, of the first path and the second
+   * @param t the moment, from 0 to 1
+   * @return true if they are in the same cell
+   */
+  private static boolean sameCell(double[] path, double t) {
+    return cellAt(path[0], path[2], t) == cellAt(path[4], path[6], t)
+        && Math.floorMod(cellAt(path[1], path[3], t), COLUMNS)
+            == Math.floorMod(cellAt(path[5], path[7], t), COLUMNS);
+  }
+
+  /**
+   * Returns the cell along one axis of a path at the given moment of the frame.
+   *
+   * @param from coordinate at the start of the frame
+   * @param to coordinate at the end of the frame
+   * @param t the moment, from 0 to 1
+   * @return the cell
+   */
+  private static int cellAt(double from, double to, double t) {
+    return (int) Math.floor(from + t * (to - from));
+  }
+
+  /**
+   * Plays games at the given frame rate with random turns, and after every frame in which nothing
+   * but pellets happened, checks with the reference that the player did not meet an enemy that
+   * could have killed it. At low frame rates actors move far enough each frame to pass through
+   * each other, which comparing cells after they move would miss.
+   *
+   * @param frameRate frames per second
+   * @return true if no player and enemy passed through each other
+   */
+  private static boolean checkGames(int frameRate) {
+    PacmanGame game = new PacmanGame(RunGame.MAIN1, frameRate, frameRate);
+    game.setPlayerDeathDelay(0);
+    GameEventRing.Subscriber events = game.getEvents().subscribe();
+    GameEvent event = new GameEvent();
+    Random random = new Random(frameRate);
+    Direction[] directions = Direction.values();
+    double[] path = new double[8];
+    Mode[] modes = new Mode[game.getEnemyCount()];
+    double[] starts = new double[2 * modes.length];
+    int checked = 0;
+    int deaths = 0;
+    for (int frame = 0; frame < FRAMES; frame++) {
+      if (game.levelOver()) {
+        game.restartLevel(frame);
+      }
+      if (random.nextInt(Math.max(1, frameRate / 5)) == 0) {
+        game.turnPlayer(directions[random.nextInt(directions.length)]);
+      }
+      Actor player = game.getPlayer();
+      path[0] = player.getRowExact();
+      path[1] = player.getColExact();
+      for (int i = 0; i < modes.length; i++) {
+        modes[i] = game.getEnemy(i).getMode();
+        starts[2 * i] = game.getEnemy(i).getRowExact();
+        starts[2 * i + 1] = game.getEnemy(i).getColExact();
+      }
+      game.updateAll();
+
+      boolean quiet = true;
+      while (events.poll(event)) {
+        if (event.getType() == GameEventType.PLAYER_DEATH) {
+          deaths++;
+        }
+        quiet &= event.getType() == GameEventType.PELLET_EATEN;
+      }
+      if (!quiet) {
+        continue;
+      }
+      checked++;
+      path[2] = player.getRowExact();
+      path[3] = unwrap(path[1], player.getColExact());
+      for (int i = 0; i < modes.length; i++) {
+        Actor a = game.getEnemy(i);
+        path[4] = starts[2 * i];
+        path[5] = starts[2 * i + 1];
+        path[6] = a.getRowExact();
+        path[7] = unwrap(path[5], a.getColExact());
+        if ((modes[i] == Mode.SCATTER || modes[i] == Mode.CHASE) && meetReference(path)) {
+          Logger.error(
+              "  failed: " + frameRate + " fps, frame " + frame + ": enemy " + i
+                  + " passed through the player");
+          return false;
+        }
+      }
+    }
+    Logger.info(
+        String.format(
+            "  ok: %d fps, %d quiet frames checked, %d deaths", frameRate, checked, deaths));
+    return true;
+  }
+
+  /**
+   * Unwraps the column at the end of a frame that went through a side tunnel.
+   *
+   * @param from column at the start of the frame
+   * @param to column at the end of the frame
+   * @return the end column, continuing past the maze's edge if the path went through a tunnel
+   */
+  private static double unwrap(double from, double to) {
+    if (to - from > COLUMNS / 2.0) {
+      return to - COLUMNS;
+    } else if (from - to > COLUMNS / 2.0) {
+      return to + COLUMNS;
+    }
+    return to;
+  }
+}
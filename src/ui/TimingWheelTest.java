@@ -0,0 +1,207 @@
+package ui;
+
+import api.TimingWheel;
+import java.util.Random;
+
+/**
+ * Test and benchmark for TimingWheel. Drives a wheel and an array of countdowns, decremented every
+ * frame the way PacmanGame used to poll its timers, with the same random schedules and
+ * cancellations, and checks that the same timers expire on the same frames in ascending order.
+ * Then compares the cost per frame of both with many long-running timers.
+ */
+public final class TimingWheelTest {
+
+  /** Timers in the conformance check. */
+  private static final int TIMERS = 64;
+
+  /** Slots in the conformance check, fewer than the delays so that timers wait for rounds. */
+  private static final int SLOTS = 16;
+
+  /** Frames in the conformance check. */
+  private static final int FRAMES = 200_000;
+
+  /** Longest delay in the conformance check. */
+  private static final int MAX_DELAY = 100;
+
+  /** Timers in the benchmark. */
+  private static final int BENCHMARK_TIMERS = 10_000;
+
+  /** Slots in the benchmark. */
+  private static final int BENCHMARK_SLOTS = 1024;
+
+  /** Frames in the benchmark. */
+  private static final int BENCHMARK_FRAMES = 20_000;
+
+  /** Delay of the benchmark timers, in frames; each is rescheduled when it expires. */
+  private static final int BENCHMARK_DELAY = 50_000;
+
+  /** Private constructor to prevent instantiation. */
+  private TimingWheelTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) {
+    boolean ok = checkConformance();
+    ok &= checkSkip();
+    ok &= checkArguments();
+    benchmark();
+    if (ok) {
+      Logger.info("PASS: timing wheel");
+    } else {
+      Logger.error("FAIL: timing wheel");
+    }
+  }
+
+  /**
+   * Compares a wheel with countdowns under random schedules and cancellations.
+   *
+   * @return true if they agree on every frame
+   */
+  private static boolean checkConformance() {
+    TimingWheel wheel = new TimingWheel(TIMERS, SLOTS);
+    int[] countdowns = new int[TIMERS];
+    Random random = new Random(8);
+    long expirations = 0;
+    for (int frame = 1; frame <= FRAMES; frame++) {
+      int count = wheel.advance();
+      int seen = 0;
+      for (int t = 0; t < TIMERS; t++) {
+        if (countdowns[t] > 0 && --countdowns[t] == 0) {
+          if (seen >= count || wheel.getExpired(seen) != t) {
+            Logger.error("  failed: timer " + t + " did not expire on frame " + frame);
+            return false;
+          }
+          seen++;
+        }
+      }
+      if (seen != count) {
+        Logger.error("  failed: " + count + " timers expired on frame " + frame + ", not " + seen);
+        return false;
+      }
+      expirations += count;
+
+      // a few random changes per frame
+      for (int change = random.nextInt(4); change > 0; change--) {
+        int t = random.nextInt(TIMERS);
+        if (random.nextInt(4) == 0) {
+          wheel.cancel(t);
+          countdowns[t] = 0;
+        } else {
+          int delay = 1 + random.nextInt(MAX_DELAY);
+          wheel.schedule(t, frame + delay);
+          countdowns[t] = delay;
+        }
+      }
+      int earliest = Integer.MAX_VALUE;
+      for (int t = 0; t < TIMERS; t++) {
+        if (wheel.getRemaining(t) != countdowns[t] || wheel.isScheduled(t) != countdowns[t] > 0) {
+          Logger.error("  failed: timer " + t + " has the wrong time left on frame " + frame);
+          return false;
+        }
+        if (countdowns[t] > 0) {
+          earliest = Math.min(earliest, countdowns[t]);
+        }
+      }
+      if (wheel.getFramesToNext() != earliest) {
+        Logger.error("  failed: wrong frames to the next timer on frame " + frame);
+        return false;
+      }
+    }
+    Logger.info("  ok: " + FRAMES + " frames, " + expirations + " expirations match countdowns");
+    return true;
+  }
+
+  /**
+   * Skips frames up to timers, checking that they still expire on their frames and that a skip
+   * over a due timer is refused.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkSkip() {
+    TimingWheel wheel = new TimingWheel(2, 4);
+    wheel.schedule(0, 10);
+    wheel.schedule(1, 30);
+    wheel.skip(wheel.getFramesToNext() - 1);
+    if (wheel.getFrame() != 9 || wheel.advance() != 1 || wheel.getExpired(0) != 0) {
+      Logger.error("  failed: timer 0 did not expire after a skip");
+      return false;
+    }
+    try {
+      wheel.skip(20);
+      Logger.error("  failed: skipped over timer 1");
+      return false;
+    } catch (IllegalArgumentException expected) {
+      // timer 1 is due on the last of those frames
+    }
+    wheel.skip(19);
+    if (wheel.advance() != 1
+        || wheel.getExpired(0) != 1
+        || wheel.getFramesToNext() != Integer.MAX_VALUE) {
+      Logger.error("  failed: timer 1 did not expire after a skip");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Checks that a timer cannot be scheduled on the current frame or earlier.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkArguments() {
+    TimingWheel wheel = new TimingWheel(1, 1);
+    wheel.advance();
+    try {
+      wheel.schedule(0, wheel.getFrame());
+      Logger.error("  failed: a timer was scheduled on the current frame");
+      return false;
+    } catch (IllegalArgumentException expected) {
+      return true;
+    }
+  }
+
+  /**
+   * Times frames of many long-running timers on a wheel and on countdowns decremented every frame.
+   */
+  private static void benchmark() {
+    double wheelNanos = 0;
+    double countdownNanos = 0;
+    long sink = 0;
+    for (int round = 0; round < 2; round++) {
+      Random random = new Random(9);
+      TimingWheel wheel = new TimingWheel(BENCHMARK_TIMERS, BENCHMARK_SLOTS);
+      int[] countdowns = new int[BENCHMARK_TIMERS];
+      for (int t = 0; t < BENCHMARK_TIMERS; t++) {
+        int delay = 1 + random.nextInt(BENCHMARK_DELAY);
+        wheel.schedule(t, delay);
+        countdowns[t] = delay;
+      }
+
+      long start = System.nanoTime();
+      for (int frame = 1; frame <= BENCHMARK_FRAMES; frame++) {
+        int count = wheel.advance();
+        for (int i = 0; i < count; i++) {
+          int t = wheel.getExpired(i);
+          wheel.schedule(t, frame + BENCHMARK_DELAY);
+          sink += t;
+        }
+      }
+      wheelNanos = (double) (System.nanoTime() - start) / BENCHMARK_FRAMES;
+
+      start = System.nanoTime();
+      for (int frame = 1; frame <= BENCHMARK_FRAMES; frame++) {
+        for (int t = 0; t < BENCHMARK_TIMERS; t++) {
+          if (countdowns[t] > 0 && --countdowns[t] == 0) {
+            countdowns[t] = BENCHMARK_DELAY;
+            sink += t;
+          }
+        }
+      }
+      countdownNanos = (double) (System.nanoTime() - start) / BENCHMARK_FRAMES;
+    }
+    Logger.info(
+        String.format(
+            "  %d timers: wheel %.0f ns per frame, countdowns %.0f ns per frame (%d)",
+            BENCHMARK_TIMERS, wheelNanos, countdownNanos, sink));
+  }
+}
@@ -0,0 +1,387 @@
+package ui;
+
+import api.StepResult;
+import com.pacman.env.Environment;
+import com.pacman.env.TransitionBatch;
+import com.pacman.env.TransitionBuffer;
+import com.pacman.ghost.ActorImpl;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Test for the off-heap replay buffer. Fills buffers, in memory and partly spilled to a file, with
+ * transitions from environment episodes and checks that sampled transitions are the ones stored.
+ * Then appends from several threads while sampling, checking that no sample is torn; checks that
+ * prioritized sampling follows the priorities; and checks that appending and sampling allocate
+ * nothing.
+ */
+public final class TransitionBufferTest {
+
+  /** Frame rate used by the game UI. */
+  private static final int FRAME_RATE = 50;
+
+  /** Frames per environment step. */
+  private static final int FRAMES_PER_STEP = 4;
+
+  /** Capacity of the buffer filled from episodes. */
+  private static final int CAPACITY = 5000;
+
+  /** Transitions appended from episodes, enough to wrap around. */
+  private static final int TRANSITIONS = 12_000;
+
+  /** Transitions per batch. */
+  private static final int BATCH_SIZE = 256;
+
+  /** Batches sampled in the checks. */
+  private static final int BATCHES = 40;
+
+  /** Threads appending concurrently. */
+  private static final int WRITERS = 4;
+
+  /** Appends per thread in the concurrency check. */
+  private static final int APPENDS_PER_WRITER = 200_000;
+
+  /** Observation size in the concurrency and priority checks. */
+  private static final int SMALL_OBSERVATION = 64;
+
+  /** Private constructor to prevent instantiation. */
+  private TransitionBufferTest() {
+    // Utility class
+  }
+
+  public static void main(String[] args) throws Exception {
+    ActorImpl.setMovementLogging(false);
+    boolean ok = checkEpisodes(null);
+    Path spill = Files.createTempFile("replay", ".bin");
+    try {
+      ok &= checkEpisodes(spill);
+    } finally {
+      Files.deleteIfExists(spill);
+    }
+    ok &= checkConcurrentAppends();
+    ok &= checkPriorities();
+    ok &= checkAllocations();
+    if (ok) {
+      Logger.info("PASS: replay buffer");
+    } else {
+      Logger.error("FAIL: replay buffer");
+    }
+  }
+
+  /**
+   * Records random episodes and compares sampled transitions with what was recorded.
+   *
+   * @param spill spill file for half of the buffer, or null to keep it in memory
+   * @return true if the check passes
+   */
+  private static boolean checkEpisodes(Path spill) throws Exception {
+    Environment env = new Environment(RunGame.MAIN1, FRAME_RATE, FRAMES_PER_STEP);
+    int size = env.getObservationSize();
+    TransitionBuffer buffer =
+        spill == null
+            ? new TransitionBuffer(CAPACITY, size)
+            : new TransitionBuffer(CAPACITY, size, (long) CAPACITY * size, spill);
+    int spilled = buffer.getSpilledCapacity();
+    String name = spill == null ? "in memory" : spilled + " spilled";
+    if (spill != null && (spilled == 0 || spilled == CAPACITY)) {
+      Logger.error("  failed: expected part of the buffer to spill, got " + name);
+      return false;
+    }
+
+    // what each record should hold
+    long[] observationCrcs = new long[CAPACITY];
+    long[] nextObservationCrcs = new long[CAPACITY];
+    int[] actions = new int[CAPACITY];
+    float[] rewards = new float[CAPACITY];
+    boolean[] dones = new boolean[CAPACITY];
+
+    ByteBuffer observation = ByteBuffer.allocateDirect(size);
+    ByteBuffer previous = ByteBuffer.allocateDirect(size);
+    env.setObservationBuffer(observation);
+    Random random = new Random(21);
+    for (int i = 0; i < TRANSITIONS; i++) {
+      if (env.isDone()) {
+        env.reset(i);
+      }
+      previous.put(0, observation, 0, size);
+      int action = random.nextInt(Environment.ACTION_COUNT);
+      StepResult result = env.step(action);
+      int index =
+          buffer.append(previous, action, result.getScoreDelta(), observation, env.isDone());
+      observationCrcs[index] = crc(previous, 0, size);
+      nextObservationCrcs[index] = crc(observation, 0, size);
+      actions[index] = action;
+      rewards[index] = result.getScoreDelta();
+      dones[index] = env.isDone();
+    }
+
+    TransitionBatch batch = new TransitionBatch(BATCH_SIZE, size);
+    for (int b = 0; b < BATCHES; b++) {
+      buffer.sample(batch, random);
+      for (int k = 0; k < BATCH_SIZE; k++) {
+        int index = batch.getIndex(k);
+        if (crc(batch.getObservations(), k * size, size) != observationCrcs[index]
+            || crc(batch.getNextObservations(), k * size, size) != nextObservationCrcs[index]
+            || batch.getAction(k) != actions[index]
+            || batch.getReward(k) != rewards[index]
+            || batch.isDone(k) != dones[index]
+            || batch.getProbability(k) != 1.0 / CAPACITY) {
+          Logger.error("  failed: " + name + ": sample of record " + index + " differs");
+          return false;
+        }
+      }
+    }
+    Logger.info(
+        "  ok: "
+            + name
+            + ", "
+            + TRANSITIONS
+            + " transitions of "
+            + size
+            + "-byte observations appended, "
+            + BATCHES * BATCH_SIZE
+            + " samples match");
+    return true;
+  }
+
+  /**
+   * Appends from several threads while another samples, with transitions whose fields all derive
+   * from one value so that a torn sample is detectable.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkConcurrentAppends() throws InterruptedException {
+    TransitionBuffer buffer = new TransitionBuffer(1024, SMALL_OBSERVATION);
+    Thread[] writers = new Thread[WRITERS];
+    for (int w = 0; w < WRITERS; w++) {
+      final int writer = w;
+      writers[w] =
+          new Thread(
+              () -> {
+                ByteBuffer observation = ByteBuffer.allocateDirect(SMALL_OBSERVATION);
+                ByteBuffer next = ByteBuffer.allocateDirect(SMALL_OBSERVATION);
+                for (int i = 0; i < APPENDS_PER_WRITER; i++) {
+                  byte value = (byte) (i * WRITERS + writer);
+                  fill(observation, value);
+                  fill(next, (byte) (value + 1));
+                  buffer.append(observation, writer, value, next, (value & 1) != 0);
+                }
+              });
+    }
+    for (Thread writer : writers) {
+      writer.start();
+    }
+
+    // sample while the writers run
+    TransitionBatch batch = new TransitionBatch(BATCH_SIZE, SMALL_OBSERVATION);
+    Random random = new Random(4);
+    long samples = 0;
+    long torn = 0;
+    while (buffer.getAppendCount() == 0) {
+      Thread.onSpinWait();
+    }
+    while (isAlive(writers)) {
+      buffer.sample(batch, random);
+      torn += countTorn(batch);
+      samples += BATCH_SIZE;
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    long expected = (long) WRITERS * APPENDS_PER_WRITER;
+    for (int b = 0; b < BATCHES; b++) {
+      buffer.sample(batch, random);
+      torn += countTorn(batch);
+    }
+    if (buffer.getAppendCount() != expected || torn > 0) {
+      Logger.error(
+          "  failed: concurrent appends: "
+              + buffer.getAppendCount()
+              + " of "
+              + expected
+              + " appends counted, "
+              + torn
+              + " torn samples");
+      return false;
+    }
+    Logger.info(
+        "  ok: "
+            + WRITERS
+            + " threads appended "
+            + expected
+            + " transitions while "
+            + samples
+            + " were sampled, none torn");
+    return true;
+  }
+
+  /**
+   * Sets priorities 0 to 3 on the records of a full buffer and checks that prioritized sampling
+   * draws them in proportion, and reports the right probabilities.
+   *
+   * @return true if the check passes
+   */
+  private static boolean checkPriorities() {
+    int capacity = 1000;
+    TransitionBuffer buffer = new TransitionBuffer(capacity, SMALL_OBSERVATION);
+    ByteBuffer observation = ByteBuffer.allocateDirect(SMALL_OBSERVATION);
+    for (int i = 0; i < capacity; i++) {
+      buffer.append(observation, i % 4, 0, observation, false);
+    }
+    for (int i = 0; i < capacity; i++) {
+      buffer.setPriority(i, i % 4);
+    }
+    double total = capacity / 4 * (0 + 1 + 2 + 3);
+
+    TransitionBatch batch = new TransitionBatch(BATCH_SIZE, SMALL_OBSERVATION);
+    Random random = new Random(8);
+    long[] counts = new long[4];
+    int draws = 0;
+    for (int b = 0; b < 1000; b++) {
+      buffer.samplePrioritized(batch, random);
+      for (int k = 0; k < BATCH_SIZE; k++) {
+        int index = batch.getIndex(k);
+        counts[batch.getAction(k)]++;
+        if (Math.abs(batch.getProbability(k) - buffer.getPriority(index) / total) > 1e-12) {
+          Logger.error("  failed: wrong probability for record " + index);
+          return false;
+        }
+      }
+      draws += BATCH_SIZE;
+    }
+    StringBuilder shares = new StringBuilder();
+    for (int p = 0; p < 4; p++) {
+      double share = (double) counts[p] / draws;
+      double expected = p / 6.0;
+      shares.append(String.format(" %.3f", share));
+      if (Math.abs(share - expected) > 0.01 || (p == 0 && counts[p] > 0)) {
+        Logger.error("  failed: priority " + p + " drawn with frequency " + share);
+        return false;
+      }
+    }
+    Logger.info("  ok: priorities 0..3 drawn with frequencies" + shares);
+    return true;
+  }
+
+  /**
+   * Measures the bytes allocated by the calling thread while appending and sampling.
+   *
+   * @return true if neither allocates
+   */
+  private static boolean checkAllocations() {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    TransitionBuffer buffer = new TransitionBuffer(CAPACITY, SMALL_OBSERVATION);
+    TransitionBatch batch = new TransitionBatch(BATCH_SIZE, SMALL_OBSERVATION);
+    ByteBuffer observation = ByteBuffer.allocateDirect(SMALL_OBSERVATION);
+    Random random = new Random(2);
+    AtomicLong sink = new AtomicLong();
+
+    // warm up, then measure
+    long bytes = 0;
+    for (int round = 0; round < 2; round++) {
+      long before = threads.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < TRANSITIONS; i++) {
+        int index = buffer.append(observation, i % Environment.ACTION_COUNT, i, observation, false);
+        buffer.setPriority(index, i % 7);
+      }
+      for (int b = 0; b < BATCHES; b++) {
+        buffer.sample(batch, random);
+        buffer.samplePrioritized(batch, random);
+        sink.addAndGet(batch.getIndex(0));
+      }
+      long after = threads.getThreadAllocatedBytes(threadId);
+      if (round == 1) {
+        bytes = after - before;
+      }
+    }
+    Logger.info(
+        "  "
+            + TRANSITIONS
+            + " appends and "
+            + 2 * BATCHES
+            + " batches of "
+            + BATCH_SIZE
+            + " allocated "
+            + bytes
+            + " bytes");
+    if (bytes > 0) {
+      Logger.error("  failed: appending or sampling allocates");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Counts the samples of a batch from checkConcurrentAppends() whose fields disagree.
+   *
+   * @param batch the batch
+   * @return number of torn samples
+   */
+  private static int countTorn(TransitionBatch batch) {
+    int torn = 0;
+    for (int k = 0; k < BATCH_SIZE; k++) {
+      byte value = (byte) batch.getReward(k);
+      boolean ok =
+          batch.getReward(k) == value
+              && (batch.isDone(k) == ((value & 1) != 0))
+              && (value & (WRITERS - 1)) == (batch.getAction(k) & (WRITERS - 1));
+      for (int i = 0; ok && i < SMALL_OBSERVATION; i++) {
+        ok =
+            batch.getObservations().get(k * SMALL_OBSERVATION + i) == value
+                && batch.getNextObservations().get(k * SMALL_OBSERVATION + i) == (byte) (value + 1);
+      }
+      if (!ok) {
+        torn++;
+      }
+    }
+    return torn;
+  }
+
+  /**
+   * Returns true if any of the threads is alive.
+   *
+   * @param threads the threads
+   * @return true if one is alive
+   */
+  private static boolean isAlive(Thread[] threads) {
+    for (Thread thread : threads) {
+      if (thread.isAlive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Fills a buffer with one value.
+   *
+   * @param buffer the buffer
+   * @param value the value
+   */
+  private static void fill(ByteBuffer buffer, byte value) {
+    for (int i = 0; i < buffer.capacity(); i++) {
+      buffer.put(i, value);
+    }
+  }
+
+  /**
+   * Computes the CRC-32 of a range of a buffer.
+   *
+   * @param buffer the buffer
+   * @param offset start of the range
+   * @param length length of the range
+   * @return the checksum
+   */
+  private static long crc(ByteBuffer buffer, int offset, int length) {
+    CRC32 crc = new CRC32();
+    crc.update(buffer.slice(offset, length));
+    return crc.getValue();
+  }
+}